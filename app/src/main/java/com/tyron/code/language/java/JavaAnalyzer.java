@@ -129,7 +129,8 @@ public class JavaAnalyzer extends SemanticAnalyzeManager {
         SourceFileObject object = new SourceFileObject(currentFile.toPath(), contents.toString(), Instant.now());
         CompilerContainer container = compiler.compile(Collections.singletonList(object));
 
-        return container.get(task -> {
+        // the highlighter only reads the symbols that javac attached to the attributed trees
+        return container.getShared(task -> {
             JavaSemanticHighlighter highlighter = new JavaSemanticHighlighter(task.task);
             CompilationUnitTree root = task.root(currentFile);
             highlighter.scan(root, true);
@@ -194,7 +195,7 @@ public class JavaAnalyzer extends SemanticAnalyzeManager {
                                                  Instant.now());
                     CompilerContainer container =
                             service.compile(Collections.singletonList(sourceFileObject));
-                    container.run(task -> {
+                    container.runShared(task -> {
                         if (!cancel.invoke()) {
                             List<DiagnosticWrapper> collect =
                                     task.diagnostics.stream().map(d -> modifyDiagnostic(task, d))
@@ -35,7 +35,12 @@ public class Aapt2Jni {
 
     private String mFailureString;
 
-    private final List<DiagnosticWrapper> mDiagnostics = new ArrayList<>();
+    /**
+     * The diagnostics of the last invocation on each thread, so resources can be compiled by
+     * several threads at the same time
+     */
+    private final ThreadLocal<List<DiagnosticWrapper>> mDiagnostics =
+            ThreadLocal.withInitial(ArrayList::new);
 
     private Aapt2Jni() {
 
@@ -98,11 +103,11 @@ public class Aapt2Jni {
             wrapper.setStartLine((int) line);
         }
         wrapper.setMessage(message);
-        mDiagnostics.add(wrapper);
+        mDiagnostics.get().add(wrapper);
     }
 
     private void clearLogs() {
-        mDiagnostics.clear();
+        mDiagnostics.get().clear();
     }
 
     /**
@@ -199,10 +204,13 @@ public class Aapt2Jni {
 
             logger.log(getLogLevel(level), path, getLineNumber(lineNumber), message);
         }
-        return logger.mDiagnostics.stream().anyMatch(it -> it.getKind() == Diagnostic.Kind.ERROR) ? 1 : 0;
+        return logger.mDiagnostics.get().stream().anyMatch(it -> it.getKind() == Diagnostic.Kind.ERROR) ? 1 : 0;
     }
 
+    /**
+     * @return the diagnostics of the last invocation of aapt2 on the current thread
+     */
     public static List<DiagnosticWrapper> getLogs() {
-        return getInstance().mDiagnostics;
+        return getInstance().mDiagnostics.get();
     }
 }
@@ -4,6 +4,7 @@ import android.content.Context;
 
 import androidx.annotation.NonNull;
 
+import com.tyron.builder.internal.hash.FileFingerprintStore;
 import com.tyron.common.util.Decompress;
 
 import java.io.File;
@@ -13,6 +14,7 @@ public class BuildModule {
     private static Context sApplicationContext;
     private static File sAndroidJar;
     private static File sLambdaStubs;
+    private static FileFingerprintStore sFileFingerprints;
 
     public static void initialize(Context applicationContext) {
             sApplicationContext = applicationContext.getApplicationContext();
@@ -52,6 +54,20 @@ public class BuildModule {
         return sLambdaStubs;
     }
 
+    /**
+     * @return the hashes of the files used by the incremental tasks, shared by every project
+     * and saved in the cache directory after each build
+     */
+    public static synchronized FileFingerprintStore getFileFingerprints() {
+        if (sFileFingerprints == null) {
+            Context context = BuildModule.getContext();
+            sFileFingerprints = new FileFingerprintStore(context == null
+                    ? null
+                    : new File(context.getCacheDir(), "file-fingerprints.bin"));
+        }
+        return sFileFingerprints;
+    }
+
     public static void setAndroidJar(@NonNull File jar) {
         sAndroidJar = jar;
     }
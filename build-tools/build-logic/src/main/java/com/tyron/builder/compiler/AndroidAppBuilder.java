@@ -5,6 +5,7 @@ import com.tyron.builder.compiler.apk.SignTask;
 import com.tyron.builder.compiler.apk.ZipAlignTask;
 import com.tyron.builder.compiler.dex.R8Task;
 import com.tyron.builder.compiler.firebase.GenerateFirebaseConfigTask;
+import com.tyron.builder.compiler.incremental.dex.DexLibrariesTask;
 import com.tyron.builder.compiler.incremental.dex.IncrementalD8Task;
 import com.tyron.builder.compiler.incremental.java.IncrementalJavaTask;
 import com.tyron.builder.compiler.incremental.kotlin.IncrementalKotlinCompiler;
@@ -53,6 +54,7 @@ public class AndroidAppBuilder extends BuilderImpl<AndroidModule> {
                 type == BuildType.RELEASE) {
             tasks.add(new R8Task(getProject(), module, logger));
         } else {
+            tasks.add(new DexLibrariesTask(getProject(), module, logger));
             tasks.add(new IncrementalD8Task(getProject(), module, logger));
         }
         tasks.add(new PackageTask(getProject(), module, logger));
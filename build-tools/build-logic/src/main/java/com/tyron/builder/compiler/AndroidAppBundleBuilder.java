@@ -3,6 +3,7 @@ package com.tyron.builder.compiler;
 import com.tyron.builder.compiler.aab.AabTask;
 import com.tyron.builder.compiler.dex.R8Task;
 import com.tyron.builder.compiler.firebase.GenerateFirebaseConfigTask;
+import com.tyron.builder.compiler.incremental.dex.DexLibrariesTask;
 import com.tyron.builder.compiler.incremental.dex.IncrementalD8Task;
 import com.tyron.builder.compiler.incremental.java.IncrementalJavaTask;
 import com.tyron.builder.compiler.incremental.kotlin.IncrementalKotlinCompiler;
@@ -42,6 +43,7 @@ public class AndroidAppBundleBuilder extends BuilderImpl<AndroidModule> {
         if (getModule().getSettings().getBoolean(ModuleSettings.USE_R8, false)) {
             tasks.add(new R8Task(getProject(), getModule(), getLogger()));
         } else {
+            tasks.add(new DexLibrariesTask(getProject(), getModule(), getLogger()));
             tasks.add(new IncrementalD8Task(getProject(), getModule(), getLogger()));
         }
         tasks.add(new AabTask(getProject(), getModule(), getLogger()));
@@ -0,0 +1,54 @@
+package com.tyron.builder.compiler;
+
+/**
+ * The intermediate outputs of a build that tasks read and write. {@link BuilderImpl} uses them
+ * to find out which tasks depend on each other and which ones can run at the same time.
+ */
+public enum BuildArtifact {
+
+    /**
+     * The extracted libraries of the module and their resources, manifests and symbols
+     */
+    LIBRARIES,
+
+    /**
+     * The merged AndroidManifest.xml in bin/
+     */
+    MANIFEST,
+
+    /**
+     * The android resources of the module, including the ones generated during the build
+     */
+    RESOURCES,
+
+    /**
+     * The java and kotlin sources of the module
+     */
+    SOURCES,
+
+    /**
+     * Sources generated during the build, such as R classes and view bindings
+     */
+    GENERATED_SOURCES,
+
+    /**
+     * The output of aapt2, the compiled resources, R.txt and the generated proguard rules
+     */
+    LINKED_RESOURCES,
+
+    KOTLIN_CLASSES,
+
+    JAVA_CLASSES,
+
+    /**
+     * The classes.dex of each library
+     */
+    LIBRARY_DEX,
+
+    /**
+     * The dex files of the module
+     */
+    DEX,
+
+    APK
+}
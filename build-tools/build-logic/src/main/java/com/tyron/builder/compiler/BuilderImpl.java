@@ -6,14 +6,26 @@ import android.os.Looper;
 import androidx.annotation.NonNull;
 import androidx.annotation.VisibleForTesting;
 
+import com.tyron.builder.BuildModule;
 import com.tyron.builder.exception.CompilationFailedException;
 import com.tyron.builder.log.ILogger;
+import com.tyron.builder.model.DiagnosticWrapper;
 import com.tyron.builder.project.Project;
 import com.tyron.builder.project.api.Module;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 public abstract class BuilderImpl<T extends Module> implements Builder<T> {
 
@@ -54,32 +66,186 @@ public abstract class BuilderImpl<T extends Module> implements Builder<T> {
         }
     }
 
+    /**
+     * Runs the tasks returned by {@link #getTasks(BuildType)}. A task starts as soon as every
+     * task before it that writes one of its inputs, or reads or writes one of its outputs, has
+     * finished, so tasks that do not depend on each other run on separate threads. The logs
+     * of each task are written in the order of the task list regardless of when it ran.
+     */
     @Override
     public final void build(BuildType type) throws CompilationFailedException, IOException {
         mTasksRan.clear();
         List<Task<? super T>> tasks = getTasks(type);
-        for (int i = 0, tasksSize = tasks.size(); i < tasksSize; i++) {
+        int size = tasks.size();
+        if (size == 0) {
+            return;
+        }
+
+        List<List<Integer>> dependents = new ArrayList<>(size);
+        int[] pending = new int[size];
+        for (int i = 0; i < size; i++) {
+            dependents.add(new ArrayList<>());
+            for (int j = 0; j < i; j++) {
+                if (dependsOn(tasks.get(i), tasks.get(j))) {
+                    dependents.get(j).add(i);
+                    pending[i]++;
+                }
+            }
+        }
+
+        OrderedLogger[] loggers = new OrderedLogger[size];
+        for (int i = 0; i < size; i++) {
             Task<? super T> task = tasks.get(i);
-            final float current = i;
-            getLogger().info("Running " + task.getName());
+            loggers[i] = new OrderedLogger(task.getLogger());
+            task.setLogger(loggers[i]);
+        }
+        loggers[0].flush();
+
+        Throwable[] failures = new Throwable[size];
+        boolean[] finished = new boolean[size];
+        int threads = Math.min(size, Runtime.getRuntime().availableProcessors());
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threads),
+                new WorkerThreadFactory());
+        CompletionService<Integer> completionService = new ExecutorCompletionService<>(executor);
+        int started = 0;
+        int running = 0;
+        int head = 0;
+        boolean failed = false;
+        try {
+            for (int i = 0; i < size; i++) {
+                if (pending[i] == 0) {
+                    submit(completionService, type, tasks, i, started++, loggers, failures);
+                    running++;
+                }
+            }
+
+            while (running > 0) {
+                int index = completionService.take().get();
+                running--;
+                finished[index] = true;
+
+                while (head < size && finished[head]) {
+                    head++;
+                    if (head < size) {
+                        loggers[head].flush();
+                    }
+                }
+
+                if (failures[index] != null) {
+                    failed = true;
+                }
+                if (failed) {
+                    // let the running tasks finish but do not start new ones
+                    continue;
+                }
+                for (int dependent : dependents.get(index)) {
+                    if (--pending[dependent] == 0) {
+                        submit(completionService, type, tasks, dependent, started++, loggers,
+                                failures);
+                        running++;
+                    }
+                }
+            }
+        } catch (InterruptedException | ExecutionException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+            throw new CompilationFailedException("Build was interrupted", e);
+        } finally {
+            executor.shutdown();
+            for (OrderedLogger logger : loggers) {
+                logger.flush();
+            }
+            saveFileFingerprints();
+        }
+
+        for (int i = 0; i < size; i++) {
+            if (finished[i] && failures[i] == null) {
+                mTasksRan.add(tasks.get(i));
+            }
+        }
+
+        if (!failed) {
+            mTasksRan.forEach(Task::clean);
+            return;
+        }
+
+        Throwable failure = null;
+        for (int i = 0; i < size; i++) {
+            if (failures[i] instanceof OutOfMemoryError) {
+                tasks.clear();
+                mTasksRan.clear();
+                throw new CompilationFailedException("Builder ran out of memory", failures[i]);
+            }
+            if (failure == null) {
+                failure = failures[i];
+            }
+        }
+        for (int i = 0; i < size; i++) {
+            if (finished[i]) {
+                tasks.get(i).clean();
+            }
+        }
+        rethrow(failure);
+    }
+
+    private void saveFileFingerprints() {
+        try {
+            BuildModule.getFileFingerprints().save();
+        } catch (IOException e) {
+            mLogger.warning("Unable to save file hashes: " + e.getMessage());
+        }
+    }
+
+    private void submit(CompletionService<Integer> completionService, BuildType type,
+                        List<Task<? super T>> tasks, int index, int started,
+                        OrderedLogger[] loggers, Throwable[] failures) {
+        Task<? super T> task = tasks.get(index);
+        loggers[index].info("Running " + task.getName());
+        mMainHandler.post(() -> updateProgress(task.getName(), "Task started",
+                (int) ((started / (float) tasks.size()) * 100f)));
+        completionService.submit(() -> {
             try {
-                mMainHandler.post(() -> updateProgress(task.getName(), "Task started",
-                        (int) ((current / (float) tasks.size()) * 100f)));
                 task.prepare(type);
                 task.run();
             } catch (Throwable e) {
-                if (e instanceof OutOfMemoryError) {
-                    tasks.clear();
-                    mTasksRan.clear();
-                    throw new CompilationFailedException("Builder ran out of memory", e);
-                }
-                task.clean();
-                mTasksRan.forEach(Task::clean);
-                throw e;
+                failures[index] = e;
             }
-            mTasksRan.add(task);
+            return index;
+        });
+    }
+
+    /**
+     * @return whether {@code task} has to wait for {@code previous}, which comes before it in
+     * the task list, to finish
+     */
+    private static boolean dependsOn(Task<?> task, Task<?> previous) {
+        Set<BuildArtifact> inputs = task.getInputs();
+        Set<BuildArtifact> outputs = task.getOutputs();
+        Set<BuildArtifact> previousInputs = previous.getInputs();
+        Set<BuildArtifact> previousOutputs = previous.getOutputs();
+        if ((inputs.isEmpty() && outputs.isEmpty()) ||
+            (previousInputs.isEmpty() && previousOutputs.isEmpty())) {
+            return true;
+        }
+        return !Collections.disjoint(inputs, previousOutputs) ||
+               !Collections.disjoint(outputs, previousOutputs) ||
+               !Collections.disjoint(outputs, previousInputs);
+    }
+
+    private static void rethrow(Throwable e) throws CompilationFailedException, IOException {
+        if (e instanceof CompilationFailedException) {
+            throw (CompilationFailedException) e;
+        }
+        if (e instanceof IOException) {
+            throw (IOException) e;
+        }
+        if (e instanceof RuntimeException) {
+            throw (RuntimeException) e;
+        }
+        if (e instanceof Error) {
+            throw (Error) e;
         }
-        mTasksRan.forEach(Task::clean);
+        throw new CompilationFailedException(e.getMessage(), e);
     }
 
     public abstract List<Task<? super T>> getTasks(BuildType type);
@@ -96,4 +262,71 @@ public abstract class BuilderImpl<T extends Module> implements Builder<T> {
     public ILogger getLogger() {
         return mLogger;
     }
+
+    private static class WorkerThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger mCount = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            return new Thread(runnable, "Builder-Worker-" + mCount.incrementAndGet());
+        }
+    }
+
+    /**
+     * Holds the logs of a task until every task before it has finished, the logs are written
+     * directly once it has been flushed.
+     */
+    private static class OrderedLogger implements ILogger {
+
+        private final ILogger mDelegate;
+        private List<Consumer<ILogger>> mPending = new ArrayList<>();
+
+        public OrderedLogger(ILogger delegate) {
+            mDelegate = delegate;
+        }
+
+        public synchronized void flush() {
+            if (mPending == null) {
+                return;
+            }
+            for (Consumer<ILogger> log : mPending) {
+                log.accept(mDelegate);
+            }
+            mPending = null;
+        }
+
+        private synchronized void log(Consumer<ILogger> log) {
+            if (mPending == null) {
+                log.accept(mDelegate);
+            } else {
+                mPending.add(log);
+            }
+        }
+
+        @Override
+        public void info(DiagnosticWrapper wrapper) {
+            log(logger -> logger.info(wrapper));
+        }
+
+        @Override
+        public void debug(DiagnosticWrapper wrapper) {
+            log(logger -> logger.debug(wrapper));
+        }
+
+        @Override
+        public void warning(DiagnosticWrapper wrapper) {
+            log(logger -> logger.warning(wrapper));
+        }
+
+        @Override
+        public void error(DiagnosticWrapper wrapper) {
+            log(logger -> logger.error(wrapper));
+        }
+
+        @Override
+        public void verbose(String message) {
+            log(logger -> logger.verbose(message));
+        }
+    }
 }
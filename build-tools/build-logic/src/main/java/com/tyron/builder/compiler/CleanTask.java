@@ -1,14 +1,13 @@
 package com.tyron.builder.compiler;
 
+import com.tyron.builder.BuildModule;
 import com.tyron.builder.compiler.incremental.dex.IncrementalD8Task;
-import com.tyron.builder.compiler.incremental.java.IncrementalJavaTask;
 import com.tyron.builder.compiler.symbol.MergeSymbolsTask;
 import com.tyron.builder.exception.CompilationFailedException;
 import com.tyron.builder.log.ILogger;
 import com.tyron.builder.parser.FileManager;
 import com.tyron.builder.project.Project;
 import com.tyron.builder.project.api.AndroidModule;
-import com.tyron.common.util.Cache;
 
 import org.apache.commons.io.FileUtils;
 
@@ -64,11 +63,11 @@ public class CleanTask extends Task<AndroidModule> {
             FileUtils.deleteDirectory(intermediateDirectory);
         }
 
-        getModule().getCache(IncrementalJavaTask.CACHE_KEY, new Cache<>())
+        getModule().getCache(IncrementalD8Task.CACHE_KEY,
+                BuildModule.getFileFingerprints().newCache())
                 .clear();
-        getModule().getCache(IncrementalD8Task.CACHE_KEY, new Cache<>())
-                .clear();
-        getModule().getCache(MergeSymbolsTask.CACHE_KEY, new Cache<>())
+        getModule().getCache(MergeSymbolsTask.CACHE_KEY,
+                BuildModule.getFileFingerprints().newCache())
                 .clear();
     }
     private void cleanClasses() {
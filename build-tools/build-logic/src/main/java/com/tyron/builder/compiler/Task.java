@@ -6,6 +6,8 @@ import com.tyron.builder.project.Project;
 import com.tyron.builder.project.api.Module;
 
 import java.io.IOException;
+import java.util.Collections;
+import java.util.Set;
 
 /**
  *
@@ -14,7 +16,7 @@ public abstract class Task<T extends Module> {
 
     private final Project mProject;
     private final T mModule;
-    private final ILogger mLogger;
+    private ILogger mLogger;
 
     public Task(Project project, T module, ILogger logger) {
         mProject = project;
@@ -29,6 +31,13 @@ public abstract class Task<T extends Module> {
         return mLogger;
     }
 
+    /**
+     * Called by {@link BuilderImpl} to order the logs of tasks that run at the same time
+     */
+    void setLogger(ILogger logger) {
+        mLogger = logger;
+    }
+
     protected Project getProject() {
         return mProject;
     }
@@ -44,6 +53,21 @@ public abstract class Task<T extends Module> {
      */
     public abstract String getName();
 
+    /**
+     * @return the artifacts that this task reads. A task that declares neither inputs nor
+     * outputs only runs after every task before it has finished and before any task after it
+     */
+    public Set<BuildArtifact> getInputs() {
+        return Collections.emptySet();
+    }
+
+    /**
+     * @return the artifacts that this task writes
+     */
+    public Set<BuildArtifact> getOutputs() {
+        return Collections.emptySet();
+    }
+
     /**
      * Called before run() to give the subclass information about the project
      * @throws IOException if an exception occurred during a file operation
@@ -0,0 +1,581 @@
+package com.tyron.builder.compiler.apk;
+
+import com.android.sdklib.build.DuplicateFileException;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+
+/**
+ * Packages an APK with the same contents as {@link com.android.sdklib.build.ApkBuilder}, but
+ * reuses the previous APK. Entries that have not changed keep their compressed data where it
+ * is, only the entries that have been added or changed are written at the end of the file
+ * followed by a new central directory. Once more than half of the file is taken by entries
+ * that are no longer used, the APK is written again by copying the compressed data of the
+ * live entries.
+ *
+ * <p>Entries that come from another zip, like the resources linked by aapt2 or the java
+ * resources of libraries, are copied without being inflated.</p>
+ */
+public class IncrementalApkPackager implements Closeable {
+
+    /**
+     * The DOS date of 1981-01-01, used for every new entry so the APK only depends on the
+     * contents of its entries
+     */
+    private static final int DOS_DATE = ((1981 - 1980) << 9) | (1 << 5) | 1;
+    private static final int DOS_TIME = 0;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private abstract static class Source {
+
+        /**
+         * The file this entry came from, used to report duplicates
+         */
+        abstract File getFile();
+    }
+
+    private static class FileSource extends Source {
+        final File file;
+
+        FileSource(File file) {
+            this.file = file;
+        }
+
+        @Override
+        File getFile() {
+            return file;
+        }
+    }
+
+    private static class ZipSource extends Source {
+        final File zip;
+        final FileChannel channel;
+        final ZipCentralDirectory.Entry entry;
+
+        ZipSource(File zip, FileChannel channel, ZipCentralDirectory.Entry entry) {
+            this.zip = zip;
+            this.channel = channel;
+            this.entry = entry;
+        }
+
+        @Override
+        File getFile() {
+            return zip;
+        }
+    }
+
+    /**
+     * The result of packaging
+     */
+    public static class Result {
+        private final int mReusedEntries;
+        private final int mWrittenEntries;
+        private final boolean mRewritten;
+
+        Result(int reusedEntries, int writtenEntries, boolean rewritten) {
+            mReusedEntries = reusedEntries;
+            mWrittenEntries = writtenEntries;
+            mRewritten = rewritten;
+        }
+
+        public int getReusedEntries() {
+            return mReusedEntries;
+        }
+
+        public int getWrittenEntries() {
+            return mWrittenEntries;
+        }
+
+        /**
+         * @return whether the whole APK had to be written again
+         */
+        public boolean isRewritten() {
+            return mRewritten;
+        }
+    }
+
+    private final File mApk;
+    private final boolean mDebugMode;
+    private final Map<String, Source> mEntries = new LinkedHashMap<>();
+    private final List<RandomAccessFile> mOpenFiles = new ArrayList<>();
+
+    public IncrementalApkPackager(File apk, boolean debugMode) {
+        mApk = apk;
+        mDebugMode = debugMode;
+    }
+
+    /**
+     * Adds every file entry of the zip, like the resources linked by aapt2
+     */
+    public void addZipFile(File zip) throws IOException, DuplicateFileException {
+        addZip(zip, false);
+    }
+
+    /**
+     * Adds the java resources of a jar, skipping classes and signature files
+     */
+    public void addResourcesFromJar(File jar) throws IOException, DuplicateFileException {
+        addZip(jar, true);
+    }
+
+    public void addFile(File file, String archivePath) throws DuplicateFileException {
+        add(archivePath, new FileSource(file));
+    }
+
+    /**
+     * Adds the native libraries of each ABI folder to lib/
+     */
+    public void addNativeLibraries(File nativeFolder) throws DuplicateFileException {
+        File[] abiList = nativeFolder.listFiles();
+        if (abiList == null) {
+            return;
+        }
+        for (File abi : abiList) {
+            File[] libs = abi.isDirectory() ? abi.listFiles() : null;
+            if (libs == null) {
+                continue;
+            }
+            for (File lib : libs) {
+                String name = lib.getName();
+                if (lib.isFile() && (name.toLowerCase(Locale.ROOT).endsWith(".so") ||
+                                     (mDebugMode && "gdbserver".equals(name)))) {
+                    add("lib/" + abi.getName() + "/" + name, new FileSource(lib));
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds the java resources in the given folder
+     */
+    public void addSourceFolder(File folder) throws DuplicateFileException {
+        addSourceFolder(folder, "");
+    }
+
+    private void addSourceFolder(File folder, String prefix) throws DuplicateFileException {
+        File[] files = folder.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            String name = file.getName();
+            if (file.isDirectory()) {
+                if (checkFolderForPackaging(name)) {
+                    addSourceFolder(file, prefix + name + "/");
+                }
+            } else if (checkFileForPackaging(name)) {
+                add(prefix + name, new FileSource(file));
+            }
+        }
+    }
+
+    private void addZip(File zip, boolean javaResources)
+            throws IOException, DuplicateFileException {
+        RandomAccessFile file = new RandomAccessFile(zip, "r");
+        mOpenFiles.add(file);
+        FileChannel channel = file.getChannel();
+        for (ZipCentralDirectory.Entry entry : ZipCentralDirectory.read(channel).getEntries()) {
+            if (entry.isDirectory() || isIgnoredMetaInf(entry.name)) {
+                continue;
+            }
+            if (javaResources && !checkJavaResource(entry.name)) {
+                continue;
+            }
+            add(entry.name, new ZipSource(zip, channel, entry));
+        }
+    }
+
+    private void add(String archivePath, Source source) throws DuplicateFileException {
+        Source existing = mEntries.get(archivePath);
+        if (existing != null) {
+            throw new DuplicateFileException(archivePath, existing.getFile(), source.getFile());
+        }
+        mEntries.put(archivePath, source);
+    }
+
+    /**
+     * Writes the APK, reusing the entries of the previous one that have not changed
+     */
+    public Result seal() throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(mApk, "rw")) {
+            FileChannel channel = file.getChannel();
+            ZipCentralDirectory previous = null;
+            if (channel.size() > 0) {
+                try {
+                    previous = ZipCentralDirectory.read(channel);
+                } catch (IOException e) {
+                    // the previous APK is not valid, it will be written again
+                }
+            }
+
+            Map<String, ZipCentralDirectory.Entry> previousEntries = new HashMap<>();
+            if (previous != null) {
+                for (ZipCentralDirectory.Entry entry : previous.getEntries()) {
+                    previousEntries.put(entry.name, entry);
+                }
+            }
+
+            Map<String, ZipCentralDirectory.Entry> reused = new HashMap<>();
+            long liveBytes = 0;
+            for (Map.Entry<String, Source> entry : mEntries.entrySet()) {
+                ZipCentralDirectory.Entry old = previousEntries.get(entry.getKey());
+                if (old != null && isUpToDate(old, entry.getValue())) {
+                    reused.put(entry.getKey(), old);
+                    liveBytes += ZipCentralDirectory.getEndOffset(channel, old) -
+                                 old.localHeaderOffset;
+                }
+            }
+
+            boolean rewrite = previous == null || liveBytes < previous.getOffset() / 2;
+            if (rewrite) {
+                rewrite(channel, reused);
+            } else {
+                append(channel, previous.getOffset(), reused);
+            }
+            return new Result(reused.size(), mEntries.size() - reused.size(), rewrite);
+        }
+    }
+
+    /**
+     * Writes the new entries in place of the central directory of the previous APK
+     */
+    private void append(FileChannel channel, long offset,
+                        Map<String, ZipCentralDirectory.Entry> reused) throws IOException {
+        List<ZipCentralDirectory.Entry> centralDirectory = new ArrayList<>(mEntries.size());
+        long position = offset;
+        for (Map.Entry<String, Source> entry : mEntries.entrySet()) {
+            ZipCentralDirectory.Entry record = reused.get(entry.getKey());
+            if (record == null) {
+                record = new ZipCentralDirectory.Entry();
+                record.name = entry.getKey();
+                record.localHeaderOffset = position;
+                position = write(channel, position, record, entry.getValue());
+            }
+            centralDirectory.add(record);
+        }
+        writeCentralDirectory(channel, position, centralDirectory);
+    }
+
+    /**
+     * Writes a new APK, the compressed data of the entries that have not changed is
+     * transferred from the previous APK
+     */
+    private void rewrite(FileChannel previous, Map<String, ZipCentralDirectory.Entry> reused)
+            throws IOException {
+        File temp = new File(mApk.getParentFile(), mApk.getName() + ".tmp");
+        try (RandomAccessFile file = new RandomAccessFile(temp, "rw")) {
+            FileChannel channel = file.getChannel();
+            channel.truncate(0);
+
+            List<ZipCentralDirectory.Entry> centralDirectory = new ArrayList<>(mEntries.size());
+            long position = 0;
+            for (Map.Entry<String, Source> entry : mEntries.entrySet()) {
+                ZipCentralDirectory.Entry old = reused.get(entry.getKey());
+                ZipCentralDirectory.Entry record = new ZipCentralDirectory.Entry();
+                record.name = entry.getKey();
+                record.localHeaderOffset = position;
+                if (old != null) {
+                    long end = ZipCentralDirectory.getEndOffset(previous, old);
+                    transfer(previous, old.localHeaderOffset, end - old.localHeaderOffset,
+                            channel, position);
+                    position += end - old.localHeaderOffset;
+                    record.flags = old.flags;
+                    record.method = old.method;
+                    record.time = old.time;
+                    record.date = old.date;
+                    record.crc = old.crc;
+                    record.compressedSize = old.compressedSize;
+                    record.size = old.size;
+                } else {
+                    position = write(channel, position, record, entry.getValue());
+                }
+                centralDirectory.add(record);
+            }
+            writeCentralDirectory(channel, position, centralDirectory);
+        }
+
+        if (!temp.renameTo(mApk)) {
+            temp.delete();
+            throw new IOException("Unable to replace " + mApk);
+        }
+    }
+
+    /**
+     * Writes the local header and the data of an entry
+     *
+     * @return the position after the entry
+     */
+    private long write(FileChannel channel, long position, ZipCentralDirectory.Entry record,
+                       Source source) throws IOException {
+        byte[] name = record.name.getBytes(StandardCharsets.UTF_8);
+        long dataOffset = position + ZipCentralDirectory.LOCAL_HEADER_SIZE + name.length;
+        record.flags = ZipCentralDirectory.FLAG_UTF8;
+        record.time = DOS_TIME;
+        record.date = DOS_DATE;
+
+        if (source instanceof ZipSource) {
+            ZipSource zipSource = (ZipSource) source;
+            ZipCentralDirectory.Entry entry = zipSource.entry;
+            long sourceOffset = ZipCentralDirectory.getDataOffset(zipSource.channel, entry);
+            transfer(zipSource.channel, sourceOffset, entry.compressedSize, channel, dataOffset);
+            record.method = entry.method;
+            record.crc = entry.crc;
+            record.compressedSize = entry.compressedSize;
+            record.size = entry.size;
+        } else {
+            File file = ((FileSource) source).file;
+            record.method = ZipEntry.DEFLATED;
+            deflate(file, channel, dataOffset, record);
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(ZipCentralDirectory.LOCAL_HEADER_SIZE +
+                                                name.length).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(ZipCentralDirectory.LOCAL_HEADER_SIGNATURE);
+        header.putShort((short) 20);
+        header.putShort((short) record.flags);
+        header.putShort((short) record.method);
+        header.putShort((short) record.time);
+        header.putShort((short) record.date);
+        header.putInt((int) record.crc);
+        header.putInt((int) record.compressedSize);
+        header.putInt((int) record.size);
+        header.putShort((short) name.length);
+        header.putShort((short) 0);
+        header.put(name);
+        header.flip();
+        writeFully(channel, header, position);
+        return dataOffset + record.compressedSize;
+    }
+
+    private static void deflate(File file, FileChannel channel, long position,
+                                ZipCentralDirectory.Entry record) throws IOException {
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        CRC32 crc = new CRC32();
+        byte[] input = new byte[BUFFER_SIZE];
+        byte[] output = new byte[BUFFER_SIZE];
+        long written = 0;
+        long size = 0;
+        try (InputStream inputStream = new FileInputStream(file)) {
+            int read;
+            while ((read = inputStream.read(input)) != -1) {
+                crc.update(input, 0, read);
+                size += read;
+                deflater.setInput(input, 0, read);
+                while (!deflater.needsInput()) {
+                    int count = deflater.deflate(output);
+                    writeFully(channel, ByteBuffer.wrap(output, 0, count), position + written);
+                    written += count;
+                }
+            }
+            deflater.finish();
+            while (!deflater.finished()) {
+                int count = deflater.deflate(output);
+                writeFully(channel, ByteBuffer.wrap(output, 0, count), position + written);
+                written += count;
+            }
+        } finally {
+            deflater.end();
+        }
+        record.crc = crc.getValue();
+        record.size = size;
+        record.compressedSize = written;
+    }
+
+    private void writeCentralDirectory(FileChannel channel, long position,
+                                       List<ZipCentralDirectory.Entry> entries)
+            throws IOException {
+        if (entries.size() >= 0xFFFF || position >= 0xFFFFFFFFL) {
+            throw new IOException("The APK is too large to be packaged");
+        }
+        long start = position;
+        for (ZipCentralDirectory.Entry entry : entries) {
+            byte[] name = entry.name.getBytes(StandardCharsets.UTF_8);
+            ByteBuffer buffer = ByteBuffer.allocate(ZipCentralDirectory.CENTRAL_HEADER_SIZE +
+                                                    name.length).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(ZipCentralDirectory.CENTRAL_HEADER_SIGNATURE);
+            buffer.putShort((short) 20);
+            buffer.putShort((short) 20);
+            buffer.putShort((short) entry.flags);
+            buffer.putShort((short) entry.method);
+            buffer.putShort((short) entry.time);
+            buffer.putShort((short) entry.date);
+            buffer.putInt((int) entry.crc);
+            buffer.putInt((int) entry.compressedSize);
+            buffer.putInt((int) entry.size);
+            buffer.putShort((short) name.length);
+            buffer.putShort((short) 0);
+            buffer.putShort((short) 0);
+            buffer.putShort((short) 0);
+            buffer.putShort((short) 0);
+            buffer.putInt(0);
+            buffer.putInt((int) entry.localHeaderOffset);
+            buffer.put(name);
+            buffer.flip();
+            position += writeFully(channel, buffer, position);
+        }
+
+        ByteBuffer end = ByteBuffer.allocate(ZipCentralDirectory.END_SIZE)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        end.putInt(ZipCentralDirectory.END_SIGNATURE);
+        end.putShort((short) 0);
+        end.putShort((short) 0);
+        end.putShort((short) entries.size());
+        end.putShort((short) entries.size());
+        end.putInt((int) (position - start));
+        end.putInt((int) start);
+        end.putShort((short) 0);
+        end.flip();
+        position += writeFully(channel, end, position);
+        channel.truncate(position);
+    }
+
+    /**
+     * @return whether the entry of the previous APK has the same contents as the source
+     */
+    private static boolean isUpToDate(ZipCentralDirectory.Entry old, Source source)
+            throws IOException {
+        if (source instanceof ZipSource) {
+            ZipCentralDirectory.Entry entry = ((ZipSource) source).entry;
+            return old.method == entry.method && old.crc == entry.crc &&
+                   old.size == entry.size && old.compressedSize == entry.compressedSize;
+        }
+        File file = ((FileSource) source).file;
+        // computing the checksum is much cheaper than compressing the file again
+        return old.method == ZipEntry.DEFLATED && old.size == file.length() &&
+               old.crc == crc32(file);
+    }
+
+    private static long crc32(File file) throws IOException {
+        CRC32 crc = new CRC32();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try (InputStream inputStream = new FileInputStream(file)) {
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                crc.update(buffer, 0, read);
+            }
+        }
+        return crc.getValue();
+    }
+
+    private static void transfer(FileChannel source, long position, long count,
+                                 FileChannel target, long targetPosition) throws IOException {
+        long transferred = 0;
+        while (transferred < count) {
+            long read = source.transferTo(position + transferred, count - transferred,
+                    target.position(targetPosition + transferred));
+            if (read <= 0) {
+                throw new IOException("Unexpected end of file while copying zip entry");
+            }
+            transferred += read;
+        }
+    }
+
+    private static int writeFully(FileChannel channel, ByteBuffer buffer, long position)
+            throws IOException {
+        int written = 0;
+        while (buffer.hasRemaining()) {
+            written += channel.write(buffer, position + written);
+        }
+        return written;
+    }
+
+    /**
+     * The manifest, maven metadata and signature files of libraries are not packaged
+     */
+    private static boolean isIgnoredMetaInf(String name) {
+        if (!name.startsWith("META-INF/")) {
+            return false;
+        }
+        String subName = name.substring("META-INF/".length());
+        if ("MANIFEST.MF".equals(subName) || subName.startsWith("maven/")) {
+            return true;
+        }
+        return subName.indexOf('/') == -1 &&
+               (subName.endsWith(".SF") || subName.endsWith(".RSA") ||
+                subName.endsWith(".DSA"));
+    }
+
+    private static boolean checkJavaResource(String archivePath) {
+        String[] segments = archivePath.split("/");
+        if (segments.length == 0) {
+            return false;
+        }
+        for (int i = 0; i < segments.length - 1; i++) {
+            if (!checkFolderForPackaging(segments[i])) {
+                return false;
+            }
+        }
+        if (!checkFileForPackaging(segments[segments.length - 1])) {
+            return false;
+        }
+        // native libraries of jars are only valid in lib/
+        if (archivePath.endsWith(".so") || archivePath.endsWith(".jnilib")) {
+            return archivePath.startsWith("lib/");
+        }
+        return true;
+    }
+
+    private static boolean checkFolderForPackaging(String folderName) {
+        return !folderName.equalsIgnoreCase("CVS") &&
+               !folderName.equalsIgnoreCase(".svn") &&
+               !folderName.equalsIgnoreCase("SCCS") &&
+               !folderName.startsWith("_");
+    }
+
+    private static boolean checkFileForPackaging(String fileName) {
+        if (fileName.isEmpty() || fileName.charAt(0) == '.' ||
+            fileName.charAt(fileName.length() - 1) == '~') {
+            return false;
+        }
+        int index = fileName.lastIndexOf('.');
+        String extension = index == -1 ? "" : fileName.substring(index + 1);
+        return !"aidl".equalsIgnoreCase(extension) &&
+               !"rs".equalsIgnoreCase(extension) &&
+               !"fs".equalsIgnoreCase(extension) &&
+               !"rsh".equalsIgnoreCase(extension) &&
+               !"d".equalsIgnoreCase(extension) &&
+               !"java".equalsIgnoreCase(extension) &&
+               !"scala".equalsIgnoreCase(extension) &&
+               !"class".equalsIgnoreCase(extension) &&
+               !"scc".equalsIgnoreCase(extension) &&
+               !"swp".equalsIgnoreCase(extension) &&
+               !"thumbs.db".equalsIgnoreCase(fileName) &&
+               !"picasa.ini".equalsIgnoreCase(fileName) &&
+               !"package.html".equalsIgnoreCase(fileName) &&
+               !"overview.html".equalsIgnoreCase(fileName);
+    }
+
+    @Override
+    public void close() throws IOException {
+        IOException exception = null;
+        for (RandomAccessFile file : mOpenFiles) {
+            try {
+                file.close();
+            } catch (IOException e) {
+                exception = e;
+            }
+        }
+        mOpenFiles.clear();
+        if (exception != null) {
+            throw exception;
+        }
+    }
+}
@@ -2,10 +2,8 @@ package com.tyron.builder.compiler.apk;
 
 import android.net.Uri;
 
-import com.android.sdklib.build.ApkBuilder;
-import com.android.sdklib.build.ApkCreationException;
 import com.android.sdklib.build.DuplicateFileException;
-import com.android.sdklib.build.SealedApkException;
+import com.tyron.builder.compiler.BuildArtifact;
 import com.tyron.builder.compiler.BuildType;
 import com.tyron.builder.compiler.Task;
 import com.tyron.builder.exception.CompilationFailedException;
@@ -16,7 +14,9 @@ import com.tyron.builder.project.api.AndroidModule;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Set;
 
 public class PackageTask extends Task<AndroidModule> {
 
@@ -51,6 +51,17 @@ public class PackageTask extends Task<AndroidModule> {
         return "Package";
     }
 
+    @Override
+    public Set<BuildArtifact> getInputs() {
+        return EnumSet.of(BuildArtifact.LIBRARIES, BuildArtifact.LIBRARY_DEX,
+                BuildArtifact.LINKED_RESOURCES, BuildArtifact.DEX);
+    }
+
+    @Override
+    public Set<BuildArtifact> getOutputs() {
+        return EnumSet.of(BuildArtifact.APK);
+    }
+
     @Override
     public void prepare(BuildType type) throws IOException {
         mBuildType = type;
@@ -81,37 +92,33 @@ public class PackageTask extends Task<AndroidModule> {
     public void run() throws IOException, CompilationFailedException {
 
         int dexCount = 1;
-        try {
-            ApkBuilder builder = new ApkBuilder(
-                    mApk.getAbsolutePath(),
-                    mGeneratedRes.getAbsolutePath(),
-                    mDexFile.getAbsolutePath(),
-                    null,
-                    null);
+        try (IncrementalApkPackager packager =
+                     new IncrementalApkPackager(mApk, mBuildType == BuildType.DEBUG)) {
+            packager.addZipFile(mGeneratedRes);
+            packager.addFile(mDexFile, "classes.dex");
 
             for (File extraDex : mDexFiles) {
                 dexCount++;
-                builder.addFile(extraDex, Uri.parse(extraDex.getAbsolutePath()).getLastPathSegment());
+                packager.addFile(extraDex, Uri.parse(extraDex.getAbsolutePath()).getLastPathSegment());
             }
 
             for (File library : mLibraries) {
-                builder.addResourcesFromJar(library);
+                packager.addResourcesFromJar(library);
 
                 File parent = library.getParentFile();
                 if (parent != null) {
                     File jniFolder = new File(parent, "jni");
                     if (jniFolder.exists() && jniFolder.isDirectory()) {
-                        builder.addNativeLibraries(jniFolder);
+                        packager.addNativeLibraries(jniFolder);
                     }
                 }
             }
 
             if (getModule().getNativeLibrariesDirectory().exists()) {
-                builder.addNativeLibraries(getModule().getNativeLibrariesDirectory());
+                packager.addNativeLibraries(getModule().getNativeLibrariesDirectory());
             }
 
             if (mBuildType == BuildType.DEBUG) {
-                builder.setDebugMode(true);
                 // For debug mode, dex files are not merged to save up compile time
                 for (File it : getModule().getLibraries()) {
                     File parent = it.getParentFile();
@@ -120,7 +127,7 @@ public class PackageTask extends Task<AndroidModule> {
                         if (dexFiles != null) {
                             for (File dexFile : dexFiles) {
                                 dexCount++;
-                                builder.addFile(dexFile, "classes" + dexCount + ".dex");
+                                packager.addFile(dexFile, "classes" + dexCount + ".dex");
                             }
                         }
                     }
@@ -129,12 +136,12 @@ public class PackageTask extends Task<AndroidModule> {
 
             File resourcesDir = getModule().getResourcesDir();
             if (resourcesDir.exists()) {
-                builder.addSourceFolder(resourcesDir);
+                packager.addSourceFolder(resourcesDir);
             }
 
-            builder.sealApk();
-        } catch (ApkCreationException | SealedApkException e) {
-            throw new CompilationFailedException(e);
+            IncrementalApkPackager.Result result = packager.seal();
+            getLogger().debug("Packaged " + result.getWrittenEntries() + " changed entries, " +
+                              "reused " + result.getReusedEntries() + " entries.");
         } catch (DuplicateFileException e) {
             String message = "Duplicate files from two libraries detected. \n";
             message += "File1: " + e.getFile1() + " \n";
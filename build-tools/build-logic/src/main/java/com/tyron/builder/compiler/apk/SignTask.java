@@ -1,6 +1,7 @@
 package com.tyron.builder.compiler.apk;
 
 import com.tyron.builder.compiler.ApkSigner;
+import com.tyron.builder.compiler.BuildArtifact;
 import com.tyron.builder.compiler.BuildType;
 import com.tyron.builder.compiler.Task;
 import com.tyron.builder.exception.CompilationFailedException;
@@ -12,11 +13,14 @@ import org.apache.commons.io.FileUtils;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.EnumSet;
+import java.util.Set;
 
 public class SignTask extends Task<AndroidModule> {
 
     private File mInputApk;
     private File mOutputApk;
+    private File mAlignedApk;
 
     public SignTask(Project project, AndroidModule module, ILogger logger) {
         super(project, module, logger);
@@ -27,9 +31,20 @@ public class SignTask extends Task<AndroidModule> {
         return "Sign";
     }
 
+    @Override
+    public Set<BuildArtifact> getInputs() {
+        return EnumSet.of(BuildArtifact.APK);
+    }
+
+    @Override
+    public Set<BuildArtifact> getOutputs() {
+        return EnumSet.of(BuildArtifact.APK);
+    }
+
     @Override
     public void prepare(BuildType type) throws IOException {
-        mInputApk = new File(getModule().getBuildDirectory(), "bin/aligned.apk");
+        mAlignedApk = new File(getModule().getBuildDirectory(), "bin/aligned.apk");
+        mInputApk = mAlignedApk;
         mOutputApk = new File(getModule().getBuildDirectory(), "bin/signed.apk");
 
         if (!mInputApk.exists()) {
@@ -54,6 +69,9 @@ public class SignTask extends Task<AndroidModule> {
             throw new CompilationFailedException(e);
         }
 
-        FileUtils.forceDelete(mInputApk);
+        // generated.apk is kept, the next build only updates the entries that have changed
+        if (mInputApk.equals(mAlignedApk)) {
+            FileUtils.forceDelete(mInputApk);
+        }
     }
 }
@@ -0,0 +1,164 @@
+package com.tyron.builder.compiler.apk;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.ZipException;
+
+/**
+ * Reads the central directory of a zip file without inflating any of its entries, so the
+ * compressed data of an entry can be copied as is to another zip.
+ */
+class ZipCentralDirectory {
+
+    static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+    static final int END_SIGNATURE = 0x06054b50;
+    static final int DATA_DESCRIPTOR_SIGNATURE = 0x08074b50;
+
+    static final int LOCAL_HEADER_SIZE = 30;
+    static final int CENTRAL_HEADER_SIZE = 46;
+    static final int END_SIZE = 22;
+
+    static final int FLAG_DATA_DESCRIPTOR = 1 << 3;
+    static final int FLAG_UTF8 = 1 << 11;
+
+    static class Entry {
+        String name;
+        int flags;
+        int method;
+        int time;
+        int date;
+        long crc;
+        long compressedSize;
+        long size;
+        long localHeaderOffset;
+
+        boolean isDirectory() {
+            return name.endsWith("/");
+        }
+    }
+
+    private final List<Entry> mEntries;
+    private final long mOffset;
+
+    private ZipCentralDirectory(List<Entry> entries, long offset) {
+        mEntries = entries;
+        mOffset = offset;
+    }
+
+    List<Entry> getEntries() {
+        return mEntries;
+    }
+
+    /**
+     * @return the position of the central directory, everything before it are the entries
+     */
+    long getOffset() {
+        return mOffset;
+    }
+
+    static ZipCentralDirectory read(FileChannel channel) throws IOException {
+        long fileSize = channel.size();
+        if (fileSize < END_SIZE) {
+            throw new ZipException("Not a zip file");
+        }
+
+        // the end record is followed by a comment of at most 65535 bytes
+        int tailSize = (int) Math.min(fileSize, END_SIZE + 0xFFFF);
+        ByteBuffer tail = readFully(channel, fileSize - tailSize, tailSize);
+        int end = -1;
+        for (int i = tailSize - END_SIZE; i >= 0; i--) {
+            if (tail.getInt(i) == END_SIGNATURE) {
+                end = i;
+                break;
+            }
+        }
+        if (end == -1) {
+            throw new ZipException("End of central directory not found");
+        }
+
+        int count = tail.getShort(end + 10) & 0xFFFF;
+        long size = tail.getInt(end + 12) & 0xFFFFFFFFL;
+        long offset = tail.getInt(end + 16) & 0xFFFFFFFFL;
+        if (count == 0xFFFF || offset == 0xFFFFFFFFL) {
+            throw new ZipException("Zip64 archives are not supported");
+        }
+        if (offset + size > fileSize) {
+            throw new ZipException("Invalid central directory");
+        }
+
+        ByteBuffer buffer = readFully(channel, offset, (int) size);
+        List<Entry> entries = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            if (buffer.remaining() < CENTRAL_HEADER_SIZE ||
+                buffer.getInt(buffer.position()) != CENTRAL_HEADER_SIGNATURE) {
+                throw new ZipException("Invalid central directory entry");
+            }
+            int start = buffer.position();
+            Entry entry = new Entry();
+            entry.flags = buffer.getShort(start + 8) & 0xFFFF;
+            entry.method = buffer.getShort(start + 10) & 0xFFFF;
+            entry.time = buffer.getShort(start + 12) & 0xFFFF;
+            entry.date = buffer.getShort(start + 14) & 0xFFFF;
+            entry.crc = buffer.getInt(start + 16) & 0xFFFFFFFFL;
+            entry.compressedSize = buffer.getInt(start + 20) & 0xFFFFFFFFL;
+            entry.size = buffer.getInt(start + 24) & 0xFFFFFFFFL;
+            int nameLength = buffer.getShort(start + 28) & 0xFFFF;
+            int extraLength = buffer.getShort(start + 30) & 0xFFFF;
+            int commentLength = buffer.getShort(start + 32) & 0xFFFF;
+            entry.localHeaderOffset = buffer.getInt(start + 42) & 0xFFFFFFFFL;
+
+            byte[] name = new byte[nameLength];
+            buffer.position(start + CENTRAL_HEADER_SIZE);
+            buffer.get(name);
+            entry.name = new String(name, StandardCharsets.UTF_8);
+            buffer.position(buffer.position() + extraLength + commentLength);
+            entries.add(entry);
+        }
+        return new ZipCentralDirectory(entries, offset);
+    }
+
+    /**
+     * @return the position of the compressed data of the entry
+     */
+    static long getDataOffset(FileChannel channel, Entry entry) throws IOException {
+        ByteBuffer header = readFully(channel, entry.localHeaderOffset, LOCAL_HEADER_SIZE);
+        if (header.getInt(0) != LOCAL_HEADER_SIGNATURE) {
+            throw new ZipException("Invalid local header for " + entry.name);
+        }
+        int nameLength = header.getShort(26) & 0xFFFF;
+        int extraLength = header.getShort(28) & 0xFFFF;
+        return entry.localHeaderOffset + LOCAL_HEADER_SIZE + nameLength + extraLength;
+    }
+
+    /**
+     * @return the position right after the entry, including its data descriptor
+     */
+    static long getEndOffset(FileChannel channel, Entry entry) throws IOException {
+        long end = getDataOffset(channel, entry) + entry.compressedSize;
+        if ((entry.flags & FLAG_DATA_DESCRIPTOR) != 0) {
+            // the signature of the data descriptor is optional
+            ByteBuffer descriptor = readFully(channel, end, 4);
+            end += descriptor.getInt(0) == DATA_DESCRIPTOR_SIGNATURE ? 16 : 12;
+        }
+        return end;
+    }
+
+    static ByteBuffer readFully(FileChannel channel, long position, int length)
+            throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new ZipException("Unexpected end of zip file");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+}
@@ -73,41 +73,12 @@ public class D8Task extends Task<JavaModule> {
 	}
 
 	/**
-	 * Ensures that all libraries of the project has been dex-ed
+	 * Ensures that all libraries of the project has been dex-ed, see {@link LibraryDexCache}
 	 * @throws com.android.tools.r8.CompilationFailedException if the compilation has failed
 	 */
 	protected void ensureDexedLibraries() throws com.android.tools.r8.CompilationFailedException {
-		List<File> libraries = getModule().getLibraries();
-
-		for (File lib : libraries) {
-			File parentFile = lib.getParentFile();
-			if (parentFile == null) {
-				continue;
-			}
-			File[] libFiles = lib.getParentFile().listFiles();
-			if (libFiles == null) {
-				if (!lib.delete()) {
-					getLogger().warning("Failed to delete " + lib.getAbsolutePath());
-				}
-			} else {
-				File dex = new File(lib.getParentFile(), "classes.dex");
-				if (dex.exists()) {
-					continue;
-				}
-				if (lib.exists()) {
-					getLogger().debug("Dexing jar " + parentFile.getName());
-					D8Command command = D8Command.builder(new DexDiagnosticHandler(getLogger(), getModule()))
-							.addLibraryFiles(getLibraryFiles())
-							.addClasspathFiles(libraries.stream().map(File::toPath).collect(Collectors.toList()))
-							.setMinApiLevel(21)
-							.addProgramFiles(lib.toPath())
-							.setMode(CompilationMode.RELEASE)
-							.setOutput(lib.getParentFile().toPath(), OutputMode.DexIndexed)
-							.build();
-					D8.run(command);
-				}
-			}
-		}
+		LibraryDexCache.getInstance().dexLibraries(getModule(), 21, CompilationMode.RELEASE,
+				new DexDiagnosticHandler(getLogger(), getModule()), getLogger());
 	}
 
 	private List<Path> getLibraryFiles() {
@@ -0,0 +1,147 @@
+package com.tyron.builder.compiler.dex;
+
+import com.android.tools.r8.ArchiveClassFileProvider;
+import com.android.tools.r8.CompilationFailedException;
+import com.android.tools.r8.D8;
+import com.android.tools.r8.D8Command;
+import com.google.common.hash.HashCode;
+import com.tyron.builder.BuildModule;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs D8 in process with what stays the same between builds kept alive: the threads D8 works
+ * on and the opened library and classpath jars, along with the index of the classes in them.
+ * Without it, every invocation of D8 creates its own threads and reads the central directory
+ * of the bootstrap jar and of every library again, which takes longer than dexing the few
+ * classes that changed.
+ *
+ * <p>A jar is opened again once its contents change, the least recently used jars are closed
+ * when there are too many of them.</p>
+ */
+public class DexingService {
+
+    /**
+     * The number of jars that are kept open, more than the libraries of most projects
+     */
+    private static final int MAX_OPEN_ARCHIVES = 256;
+
+    private static DexingService sInstance;
+
+    public static synchronized DexingService getInstance() {
+        if (sInstance == null) {
+            sInstance = new DexingService();
+        }
+        return sInstance;
+    }
+
+    private static class Archive {
+        final HashCode hash;
+        final ArchiveClassFileProvider provider;
+
+        Archive(HashCode hash, ArchiveClassFileProvider provider) {
+            this.hash = hash;
+            this.provider = provider;
+        }
+
+        void close() {
+            try {
+                provider.close();
+            } catch (IOException ignored) {
+                // the jar is not used anymore
+            }
+        }
+    }
+
+    private final ExecutorService mExecutor;
+
+    private final Map<Path, Archive> mArchives =
+            new LinkedHashMap<Path, Archive>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Path, Archive> eldest) {
+                    if (size() > MAX_OPEN_ARCHIVES) {
+                        eldest.getValue().close();
+                        return true;
+                    }
+                    return false;
+                }
+            };
+
+    private DexingService() {
+        mExecutor = Executors.newFixedThreadPool(
+                Math.max(1, Runtime.getRuntime().availableProcessors()),
+                new DaemonThreadFactory());
+    }
+
+    /**
+     * Adds the library and classpath jars to the command and runs it. The rest of the command,
+     * like the program files and the output, is set up by the caller.
+     *
+     * @param builder the command to run
+     * @param libraryFiles the jars of the platform, like the bootstrap jar and the lambda stubs
+     * @param classpathFiles the jars the program is compiled against
+     * @throws IOException if one of the jars cannot be read
+     * @throws CompilationFailedException if D8 has failed
+     */
+    public synchronized void run(D8Command.Builder builder, List<Path> libraryFiles,
+                                 List<Path> classpathFiles)
+            throws IOException, CompilationFailedException {
+        for (Path file : libraryFiles) {
+            builder.addLibraryResourceProvider(getProvider(file));
+        }
+        for (Path file : classpathFiles) {
+            builder.addClasspathResourceProvider(getProvider(file));
+        }
+        D8.run(builder.build(), mExecutor);
+    }
+
+    /**
+     * Closes the jars, they are opened again when they are needed
+     */
+    public synchronized void clear() {
+        Iterator<Archive> iterator = mArchives.values().iterator();
+        while (iterator.hasNext()) {
+            iterator.next().close();
+            iterator.remove();
+        }
+    }
+
+    private ArchiveClassFileProvider getProvider(Path file) throws IOException {
+        HashCode hash = BuildModule.getFileFingerprints().hashIfExists(file.toFile());
+        if (hash == null) {
+            throw new IOException("Unable to read " + file);
+        }
+        Archive archive = mArchives.get(file);
+        if (archive != null && !archive.hash.equals(hash)) {
+            mArchives.remove(file);
+            archive.close();
+            archive = null;
+        }
+        if (archive == null) {
+            archive = new Archive(hash, new ArchiveClassFileProvider(file));
+            mArchives.put(file, archive);
+        }
+        return archive.provider;
+    }
+
+    private static class DaemonThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger mCount = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "D8-Worker-" + mCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -7,6 +7,7 @@ import com.android.tools.r8.D8;
 import com.android.tools.r8.D8Command;
 import com.android.tools.r8.DiagnosticsHandler;
 import com.android.tools.r8.OutputMode;
+import com.tyron.builder.BuildModule;
 import com.tyron.builder.compiler.BuildType;
 import com.tyron.builder.compiler.Task;
 import com.tyron.builder.compiler.incremental.dex.IncrementalD8Task;
@@ -58,7 +59,8 @@ public class JavaD8Task extends Task<JavaModule> {
     public void prepare(BuildType type) throws IOException {
         mBuildType = type;
         diagnosticsHandler = new DexDiagnosticHandler(getLogger(), getModule());
-        mDexCache = getModule().getCache(IncrementalD8Task.CACHE_KEY, new Cache<>());
+        mDexCache = getModule().getCache(IncrementalD8Task.CACHE_KEY,
+                BuildModule.getFileFingerprints().newCache());
 
         File output = new File(getModule().getBuildDirectory(), "intermediate/classes");
         if (!output.exists() && !output.mkdirs()) {
@@ -207,43 +209,13 @@ public class JavaD8Task extends Task<JavaModule> {
     }
 
     /**
-     * Ensures that all libraries of the project has been dex-ed
+     * Ensures that all libraries of the project has been dex-ed, see {@link LibraryDexCache}
      *
      * @throws com.android.tools.r8.CompilationFailedException if the compilation has failed
      */
     protected void ensureDexedLibraries() throws com.android.tools.r8.CompilationFailedException {
-        List<File> libraries = getModule().getLibraries();
-
-        for (File lib : libraries) {
-            File parentFile = lib.getParentFile();
-            if (parentFile == null) {
-                continue;
-            }
-            File[] libFiles = lib.getParentFile().listFiles();
-            if (libFiles == null) {
-                if (!lib.delete()) {
-                    getLogger().warning("Failed to delete " + lib.getAbsolutePath());
-                }
-            } else {
-                File dex = new File(lib.getParentFile(), "classes.dex");
-                if (dex.exists()) {
-                    continue;
-                }
-                if (lib.exists()) {
-                    getLogger().debug("Dexing jar " + parentFile.getName());
-                    D8Command command = D8Command.builder(diagnosticsHandler)
-                            .addLibraryFiles(getLibraryFiles())
-                            .addClasspathFiles(libraries.stream().map(File::toPath)
-                                    .collect(Collectors.toList()))
-                            .setMinApiLevel(21)
-                            .addProgramFiles(lib.toPath())
-                            .setMode(CompilationMode.RELEASE)
-                            .setOutput(lib.getParentFile().toPath(), OutputMode.DexIndexed)
-                            .build();
-                    D8.run(command);
-                }
-            }
-        }
+        LibraryDexCache.getInstance().dexLibraries(getModule(), 21, CompilationMode.RELEASE,
+                diagnosticsHandler, getLogger());
     }
 
     private List<Path> getLibraryFiles() {
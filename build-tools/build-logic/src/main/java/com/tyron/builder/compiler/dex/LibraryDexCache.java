@@ -0,0 +1,473 @@
+package com.tyron.builder.compiler.dex;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.VisibleForTesting;
+
+import com.android.tools.r8.CompilationFailedException;
+import com.android.tools.r8.CompilationMode;
+import com.android.tools.r8.D8;
+import com.android.tools.r8.D8Command;
+import com.android.tools.r8.DiagnosticsHandler;
+import com.android.tools.r8.OutputMode;
+import com.tyron.builder.BuildModule;
+import com.tyron.builder.compiler.java.CheckLibrariesTask;
+import com.tyron.builder.log.ILogger;
+import com.tyron.builder.model.Library;
+import com.tyron.builder.project.api.JavaModule;
+
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Stores the dex files of libraries in a directory shared by every project. Entries are keyed
+ * by the MD5 of the library jar, the minimum sdk and the compilation mode so a library is only
+ * dexed once no matter how many times its projects are cleaned.
+ *
+ * <p>Below {@link #MIN_SDK_DEFAULT_INTERFACE_METHODS}, D8 desugars default and static interface
+ * methods using the other libraries of the module, the bootstrap jar and the lambda stubs, so
+ * the output of a library depends on them as well. For these projects a hash of that classpath
+ * is added to the key: a library is dexed again whenever a dependency of the module changes
+ * and is only shared between projects with the same libraries. From that sdk on the classpath
+ * does not change the output and the entries are shared by every project.</p>
+ *
+ * <p>The last modified time of an entry is updated every time it is used. After each call to
+ * {@link #dexLibraries} the entries that have not been used for {@link #MAX_UNUSED_AGE} are
+ * deleted, then the least recently used ones until the cache fits in its maximum size.
+ * Entries that are being used by a build are never deleted.</p>
+ */
+public class LibraryDexCache {
+
+    private static final String DEX_EXTENSION = ".dex";
+
+    /**
+     * Written next to the dex files of a library to remember which cache entry they came from
+     */
+    private static final String KEY_FILE = "classes.dex.key";
+
+    private static final String TEMP_DIR_INFIX = ".tmp-";
+
+    /**
+     * The first sdk that supports default and static interface methods, D8 does not need
+     * the classpath to desugar them from this sdk on
+     */
+    private static final int MIN_SDK_DEFAULT_INTERFACE_METHODS = 24;
+
+    /**
+     * The default maximum size of the cache, in bytes
+     */
+    private static final long MAX_SIZE = 512L * 1024 * 1024;
+
+    /**
+     * Entries that have not been used for this long are deleted, in milliseconds
+     */
+    private static final long MAX_UNUSED_AGE = TimeUnit.DAYS.toMillis(30);
+
+    private static LibraryDexCache sInstance;
+
+    public static synchronized LibraryDexCache getInstance() {
+        if (sInstance == null) {
+            sInstance = new LibraryDexCache(
+                    new File(BuildModule.getContext().getCacheDir(), "library-dex"));
+        }
+        return sInstance;
+    }
+
+    private final File mDirectory;
+    private final long mMaxSize;
+
+    /**
+     * The hashes of the jars that have been computed, keyed by their path, size and last
+     * modified time
+     */
+    private final Map<String, String> mHashes = new ConcurrentHashMap<>();
+
+    /**
+     * The number of builds that are using each entry, these entries are not deleted
+     */
+    private final Map<String, Integer> mInUse = new HashMap<>();
+
+    public LibraryDexCache(File directory) {
+        this(directory, MAX_SIZE);
+    }
+
+    @VisibleForTesting
+    public LibraryDexCache(File directory, long maxSize) {
+        mDirectory = directory;
+        mMaxSize = maxSize;
+    }
+
+    /**
+     * Makes sure that every library of the module has its dex files next to it. The libraries
+     * are hashed and the ones that are not in the cache yet are dexed in parallel.
+     *
+     * @throws CompilationFailedException if dexing a library has failed
+     */
+    public void dexLibraries(JavaModule module, int minSdk, CompilationMode mode,
+                             DiagnosticsHandler diagnosticsHandler, ILogger logger)
+            throws CompilationFailedException {
+        List<File> libraries = module.getLibraries();
+        List<File> toCheck = new ArrayList<>();
+        for (File lib : libraries) {
+            File parentFile = lib.getParentFile();
+            if (parentFile == null) {
+                continue;
+            }
+            File[] libFiles = parentFile.listFiles();
+            if (libFiles == null) {
+                if (!lib.delete()) {
+                    logger.warning("Failed to delete " + lib.getAbsolutePath());
+                }
+            } else if (lib.exists()) {
+                toCheck.add(lib);
+            }
+        }
+        if (toCheck.isEmpty()) {
+            return;
+        }
+
+        List<Path> classpath = libraries.stream().map(File::toPath).collect(Collectors.toList());
+        List<Path> libraryFiles = new ArrayList<>();
+        libraryFiles.add(module.getLambdaStubsJarFile().toPath());
+        libraryFiles.add(module.getBootstrapJarFile().toPath());
+        String classpathKey = minSdk < MIN_SDK_DEFAULT_INTERFACE_METHODS
+                ? getClasspathKey(libraries,
+                        Arrays.asList(module.getLambdaStubsJarFile(), module.getBootstrapJarFile()))
+                : null;
+
+        int threads = Math.min(toCheck.size(), Runtime.getRuntime().availableProcessors());
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threads));
+        Set<String> used = ConcurrentHashMap.newKeySet();
+        try {
+            List<Future<Void>> futures = new ArrayList<>();
+            for (File lib : toCheck) {
+                futures.add(executor.submit(() -> {
+                    String key = getKey(lib, minSdk, mode, classpathKey);
+                    if (key == null) {
+                        logger.warning("Unable to hash " + lib.getAbsolutePath());
+                        return null;
+                    }
+                    if (used.add(key)) {
+                        acquire(key);
+                    }
+                    File entryDir = new File(mDirectory, key);
+                    if (key.equals(readKey(lib.getParentFile()))
+                        && isInstalled(entryDir, lib.getParentFile())) {
+                        markUsed(entryDir);
+                        return null;
+                    }
+
+                    if (!entryDir.exists()) {
+                        logger.debug(getDexingMessage(module, lib));
+                        File tempDir = createTempDir(key);
+                        try {
+                            D8Command command = D8Command.builder(diagnosticsHandler)
+                                    .addLibraryFiles(libraryFiles)
+                                    .addClasspathFiles(classpath)
+                                    .addProgramFiles(lib.toPath())
+                                    .setMode(mode)
+                                    .setMinApiLevel(minSdk)
+                                    .setOutput(tempDir.toPath(), OutputMode.DexIndexed)
+                                    .build();
+                            D8.run(command);
+                            commit(tempDir, entryDir);
+                        } finally {
+                            FileUtils.deleteQuietly(tempDir);
+                        }
+                    }
+                    install(entryDir, lib.getParentFile(), key);
+                    markUsed(entryDir);
+                    return null;
+                }));
+            }
+            for (Future<Void> future : futures) {
+                getResult(future);
+            }
+        } finally {
+            executor.shutdownNow();
+            for (String key : used) {
+                release(key);
+            }
+        }
+        trim(logger);
+    }
+
+    private synchronized void acquire(String key) {
+        mInUse.merge(key, 1, Integer::sum);
+    }
+
+    private synchronized void release(String key) {
+        mInUse.computeIfPresent(key, (k, count) -> count == 1 ? null : count - 1);
+    }
+
+    private static void markUsed(File entryDir) {
+        if (entryDir.exists()) {
+            //noinspection ResultOfMethodCallIgnored
+            entryDir.setLastModified(System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * Deletes the entries that have not been used for {@link #MAX_UNUSED_AGE}, then the least
+     * recently used entries until the size of the cache is at most its maximum size. Entries
+     * that are in use and temporary directories of dexing that may still be running are kept.
+     */
+    @VisibleForTesting
+    public synchronized void trim(ILogger logger) {
+        File[] files = mDirectory.listFiles(File::isDirectory);
+        if (files == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        List<File> entries = new ArrayList<>();
+        long totalSize = 0;
+        for (File file : files) {
+            String name = file.getName();
+            boolean temp = name.contains(TEMP_DIR_INFIX);
+            if (temp && now - file.lastModified() > TimeUnit.DAYS.toMillis(1)) {
+                // left behind by a build that was killed while dexing
+                FileUtils.deleteQuietly(file);
+                continue;
+            }
+            if (temp || mInUse.containsKey(name)) {
+                continue;
+            }
+            if (now - file.lastModified() > MAX_UNUSED_AGE) {
+                FileUtils.deleteQuietly(file);
+                continue;
+            }
+            entries.add(file);
+            totalSize += FileUtils.sizeOfDirectory(file);
+        }
+
+        long inUseSize = 0;
+        for (String key : mInUse.keySet()) {
+            File entryDir = new File(mDirectory, key);
+            if (entryDir.isDirectory()) {
+                inUseSize += FileUtils.sizeOfDirectory(entryDir);
+            }
+        }
+        totalSize += inUseSize;
+        if (totalSize <= mMaxSize) {
+            return;
+        }
+
+        entries.sort(Comparator.comparingLong(File::lastModified));
+        for (File entry : entries) {
+            if (totalSize <= mMaxSize) {
+                break;
+            }
+            long size = FileUtils.sizeOfDirectory(entry);
+            if (FileUtils.deleteQuietly(entry)) {
+                totalSize -= size;
+            } else {
+                logger.warning("Unable to delete cached dex files in " + entry);
+            }
+        }
+    }
+
+    /**
+     * @param classpathKey the hash of the desugaring classpath, see {@link #getClasspathKey}.
+     *                     It is only part of the key below
+     *                     {@link #MIN_SDK_DEFAULT_INTERFACE_METHODS} and may be null otherwise.
+     * @return the key of the cache entry of this jar, or null if it cannot be read
+     */
+    @VisibleForTesting
+    public String getKey(File jar, int minSdk, CompilationMode mode, String classpathKey) {
+        String hash = getHash(jar);
+        if (hash == null) {
+            return null;
+        }
+        String key = hash + '-' + minSdk + '-' + mode.name().toLowerCase(Locale.ROOT);
+        if (minSdk < MIN_SDK_DEFAULT_INTERFACE_METHODS) {
+            key += '-' + classpathKey;
+        }
+        return key;
+    }
+
+    /**
+     * Hashes the jars that D8 uses to desugar a library. The classpath is hashed regardless of
+     * its order while the order of the library files is kept. Jars that cannot be read are
+     * hashed by their path.
+     *
+     * @param classpath the libraries of the module
+     * @param libraryFiles the bootstrap jar and the other library files passed to D8
+     */
+    @VisibleForTesting
+    public String getClasspathKey(List<File> classpath, List<File> libraryFiles) {
+        List<String> classpathHashes = new ArrayList<>();
+        for (File file : classpath) {
+            String hash = getHash(file);
+            classpathHashes.add(hash != null ? hash : file.getAbsolutePath());
+        }
+        Collections.sort(classpathHashes);
+
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        for (String hash : classpathHashes) {
+            digest.update(hash.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+        }
+        // separates the classpath from the library files
+        digest.update((byte) 1);
+        for (File file : libraryFiles) {
+            String hash = getHash(file);
+            digest.update((hash != null ? hash : file.getAbsolutePath())
+                    .getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+        }
+        StringBuilder builder = new StringBuilder();
+        for (byte b : digest.digest()) {
+            builder.append(String.format(Locale.ROOT, "%02x", b));
+        }
+        return builder.toString();
+    }
+
+    private String getHash(File jar) {
+        String fileKey = jar.getAbsolutePath() + ':' + jar.length() + ':' + jar.lastModified();
+        String hash = mHashes.get(fileKey);
+        if (hash == null) {
+            if (!jar.isFile()) {
+                return null;
+            }
+            hash = CheckLibrariesTask.calculateMD5(jar);
+            if (hash == null) {
+                return null;
+            }
+            mHashes.put(fileKey, hash);
+        }
+        return hash;
+    }
+
+    private File createTempDir(String key) throws IOException {
+        File tempDir = new File(mDirectory, key + TEMP_DIR_INFIX + UUID.randomUUID());
+        if (!tempDir.mkdirs()) {
+            throw new IOException("Unable to create " + tempDir);
+        }
+        return tempDir;
+    }
+
+    /**
+     * Moves the output of D8 to the cache entry. Another build may have dexed the same library
+     * at the same time, in that case the output of the one that finished first is kept.
+     */
+    private static void commit(File tempDir, File entryDir) throws IOException {
+        if (!tempDir.renameTo(entryDir) && !entryDir.exists()) {
+            throw new IOException("Unable to store the dex files in " + entryDir);
+        }
+    }
+
+    private static void install(File entryDir, File libraryDir, String key) throws IOException {
+        File[] oldDexFiles = libraryDir.listFiles(file -> file.getName().endsWith(DEX_EXTENSION));
+        if (oldDexFiles != null) {
+            for (File oldDexFile : oldDexFiles) {
+                FileUtils.delete(oldDexFile);
+            }
+        }
+        File[] dexFiles = entryDir.listFiles(file -> file.getName().endsWith(DEX_EXTENSION));
+        if (dexFiles != null) {
+            for (File dexFile : dexFiles) {
+                Files.copy(dexFile.toPath(), new File(libraryDir, dexFile.getName()).toPath(),
+                        StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        FileUtils.writeStringToFile(new File(libraryDir, KEY_FILE), key, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return whether the dex files of the entry are still next to the library, they may
+     * have been deleted while the key file was kept
+     */
+    @VisibleForTesting
+    static boolean isInstalled(File entryDir, File libraryDir) {
+        File[] installed = libraryDir.listFiles(file -> file.getName().endsWith(DEX_EXTENSION));
+        if (installed == null || installed.length == 0) {
+            return false;
+        }
+        File[] dexFiles = entryDir.listFiles(file -> file.getName().endsWith(DEX_EXTENSION));
+        if (dexFiles == null) {
+            // the entry has been evicted, the installed files are all that is left
+            return true;
+        }
+        for (File dexFile : dexFiles) {
+            File installedFile = new File(libraryDir, dexFile.getName());
+            if (!installedFile.isFile() || installedFile.length() != dexFile.length()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String readKey(File libraryDir) {
+        File keyFile = new File(libraryDir, KEY_FILE);
+        if (!keyFile.exists()) {
+            return null;
+        }
+        try {
+            return FileUtils.readFileToString(keyFile, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    @NonNull
+    private static String getDexingMessage(JavaModule module, File lib) {
+        File parentFile = lib.getParentFile();
+        Library library = module.getLibrary(parentFile.getName());
+        if (library != null) {
+            boolean declared = library.getDeclaration() != null;
+            return "Dexing library " +
+                   (declared ? library.getDeclaration() : library.getSourceFile().getName());
+        }
+        return "Dexing jar " + parentFile.getName();
+    }
+
+    private static void getResult(Future<Void> future) throws CompilationFailedException {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof CompilationFailedException) {
+                throw (CompilationFailedException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new RuntimeException(cause);
+        }
+    }
+}
@@ -13,6 +13,7 @@ import com.android.tools.r8.R8;
 import com.android.tools.r8.R8Command;
 import com.android.tools.r8.inspector.Inspector;
 import com.android.tools.r8.origin.Origin;
+import com.tyron.builder.compiler.BuildArtifact;
 import com.tyron.builder.compiler.BuildType;
 import com.tyron.builder.compiler.Task;
 import com.tyron.builder.exception.CompilationFailedException;
@@ -30,6 +31,7 @@ import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Objects;
 import java.util.Set;
@@ -49,6 +51,17 @@ public class R8Task extends Task<AndroidModule> {
         return TAG;
     }
 
+    @Override
+    public Set<BuildArtifact> getInputs() {
+        return EnumSet.of(BuildArtifact.LIBRARIES, BuildArtifact.LINKED_RESOURCES,
+                BuildArtifact.KOTLIN_CLASSES, BuildArtifact.JAVA_CLASSES);
+    }
+
+    @Override
+    public Set<BuildArtifact> getOutputs() {
+        return EnumSet.of(BuildArtifact.DEX);
+    }
+
     @Override
     public void prepare(BuildType type) throws IOException {
 
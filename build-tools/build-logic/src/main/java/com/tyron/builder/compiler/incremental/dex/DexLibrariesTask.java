@@ -0,0 +1,74 @@
+package com.tyron.builder.compiler.incremental.dex;
+
+import com.android.tools.r8.CompilationMode;
+import com.android.tools.r8.DiagnosticsHandler;
+import com.tyron.builder.compiler.BuildArtifact;
+import com.tyron.builder.compiler.BuildType;
+import com.tyron.builder.compiler.Task;
+import com.tyron.builder.compiler.dex.DexDiagnosticHandler;
+import com.tyron.builder.compiler.dex.LibraryDexCache;
+import com.tyron.builder.exception.CompilationFailedException;
+import com.tyron.builder.log.ILogger;
+import com.tyron.builder.project.Project;
+import com.tyron.builder.project.api.AndroidModule;
+
+import java.io.IOException;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Dexes the libraries of the module. It only depends on the libraries so it runs while the
+ * resources and the sources of the module are being compiled.
+ */
+public class DexLibrariesTask extends Task<AndroidModule> {
+
+    private static final String TAG = DexLibrariesTask.class.getSimpleName();
+
+    private DiagnosticsHandler mDiagnosticsHandler;
+
+    public DexLibrariesTask(Project project, AndroidModule module, ILogger logger) {
+        super(project, module, logger);
+    }
+
+    @Override
+    public String getName() {
+        return TAG;
+    }
+
+    @Override
+    public Set<BuildArtifact> getInputs() {
+        return EnumSet.of(BuildArtifact.LIBRARIES);
+    }
+
+    @Override
+    public Set<BuildArtifact> getOutputs() {
+        return EnumSet.of(BuildArtifact.LIBRARY_DEX);
+    }
+
+    @Override
+    public void prepare(BuildType type) throws IOException {
+        mDiagnosticsHandler = new DexDiagnosticHandler(getLogger(), getModule());
+    }
+
+    @Override
+    public void run() throws IOException, CompilationFailedException {
+        try {
+            dexLibraries(getModule(), getLogger(), mDiagnosticsHandler);
+        } catch (com.android.tools.r8.CompilationFailedException e) {
+            throw new CompilationFailedException(e);
+        }
+    }
+
+    /**
+     * Dexes the libraries of the module that do not have their dex files yet, using the
+     * {@link LibraryDexCache} shared by every project
+     *
+     * @throws com.android.tools.r8.CompilationFailedException if the compilation has failed
+     */
+    public static void dexLibraries(AndroidModule module, ILogger logger,
+                                    DiagnosticsHandler diagnosticsHandler)
+            throws com.android.tools.r8.CompilationFailedException {
+        LibraryDexCache.getInstance().dexLibraries(module, module.getMinSdk(),
+                CompilationMode.RELEASE, diagnosticsHandler, logger);
+    }
+}
@@ -1,17 +1,20 @@
 package com.tyron.builder.compiler.incremental.dex;
 
+import androidx.annotation.VisibleForTesting;
+
 import com.android.tools.r8.CompilationMode;
-import com.android.tools.r8.D8;
 import com.android.tools.r8.D8Command;
 import com.android.tools.r8.DiagnosticsHandler;
 import com.android.tools.r8.OutputMode;
+import com.tyron.builder.BuildModule;
+import com.tyron.builder.compiler.BuildArtifact;
 import com.tyron.builder.compiler.BuildType;
 import com.tyron.builder.compiler.Task;
 import com.tyron.builder.compiler.dex.D8Task;
 import com.tyron.builder.compiler.dex.DexDiagnosticHandler;
+import com.tyron.builder.compiler.dex.DexingService;
 import com.tyron.builder.exception.CompilationFailedException;
 import com.tyron.builder.log.ILogger;
-import com.tyron.builder.model.Library;
 import com.tyron.builder.project.Project;
 import com.tyron.builder.project.api.AndroidModule;
 import com.tyron.builder.project.cache.CacheHolder;
@@ -21,12 +24,15 @@ import org.apache.commons.io.FileUtils;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.EnumSet;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 public class IncrementalD8Task extends Task<AndroidModule> {
@@ -36,7 +42,14 @@ public class IncrementalD8Task extends Task<AndroidModule> {
     public static final CacheHolder.CacheKey<String, List<File>> CACHE_KEY =
             new CacheHolder.CacheKey<>("dexCache");
 
+    /**
+     * Written next to the dex files of the classes, the dex files are only reused if the
+     * libraries, the minimum sdk and the compilation mode are the same
+     */
+    private static final String KEY_FILE = "classes.dex.key";
+
     private DiagnosticsHandler diagnosticsHandler;
+    private List<File> mClassDirectories;
     private List<Path> mClassFiles;
     private List<Path> mFilesToCompile;
 
@@ -55,11 +68,23 @@ public class IncrementalD8Task extends Task<AndroidModule> {
         return TAG;
     }
 
+    @Override
+    public Set<BuildArtifact> getInputs() {
+        return EnumSet.of(BuildArtifact.LIBRARIES, BuildArtifact.KOTLIN_CLASSES,
+                BuildArtifact.JAVA_CLASSES, BuildArtifact.LIBRARY_DEX);
+    }
+
+    @Override
+    public Set<BuildArtifact> getOutputs() {
+        return EnumSet.of(BuildArtifact.DEX);
+    }
+
     @Override
     public void prepare(BuildType type) throws IOException {
         mBuildType = type;
         diagnosticsHandler = new DexDiagnosticHandler(getLogger(), getModule());
-        mDexCache = getModule().getCache(CACHE_KEY, new Cache<>());
+        mDexCache = getModule().getCache(CACHE_KEY,
+                BuildModule.getFileFingerprints().newCache());
 
         File output = new File(getModule().getBuildDirectory(), "intermediate/classes");
         if (!output.exists() && !output.mkdirs()) {
@@ -67,19 +92,35 @@ public class IncrementalD8Task extends Task<AndroidModule> {
         }
         mOutputPath = output.toPath();
 
-        mFilesToCompile = new ArrayList<>();
-        mClassFiles = new ArrayList<>(D8Task.getClassFiles(
-                new File(getModule().getBuildDirectory(), "bin/java/classes")));
-        mClassFiles.addAll(D8Task.getClassFiles(
-                new File(getModule().getBuildDirectory(), "bin/kotlin/classes")));
-        for (Cache.Key<String> key : new HashSet<>(mDexCache.getKeys())) {
-            if (!mFilesToCompile.contains(key.file)) {
-                File file = mDexCache.get(key.file, "dex").iterator().next();
-                deleteAllFiles(file, ".dex");
-                mDexCache.remove(key.file, "dex");
+        mClassDirectories = Arrays.asList(
+                new File(getModule().getBuildDirectory(), "bin/java/classes"),
+                new File(getModule().getBuildDirectory(), "bin/kotlin/classes"));
+        mClassFiles = new ArrayList<>();
+        for (File directory : mClassDirectories) {
+            mClassFiles.addAll(D8Task.getClassFiles(directory));
+        }
+
+        // the dex files of other libraries, another minimum sdk or another build type are
+        // not valid anymore, neither are the dex files that are not in the cache after a restart
+        File keyFile = new File(output, KEY_FILE);
+        String key = getDexKey(type);
+        if (mDexCache.getKeys().isEmpty() || !key.equals(readKey(keyFile))) {
+            mDexCache.clear();
+            FileUtils.cleanDirectory(output);
+            FileUtils.writeStringToFile(keyFile, key, StandardCharsets.UTF_8);
+        }
+
+        Set<Path> classFiles = new HashSet<>(mClassFiles);
+        for (Cache.Key<String> cacheKey : new HashSet<>(mDexCache.getKeys())) {
+            if (!classFiles.contains(cacheKey.file)) {
+                for (File dexFile : mDexCache.get(cacheKey.file, "dex")) {
+                    FileUtils.deleteQuietly(dexFile);
+                }
+                mDexCache.remove(cacheKey.file, "dex");
             }
         }
 
+        mFilesToCompile = new ArrayList<>();
         for (Path file : mClassFiles) {
             if (mDexCache.needs(file, "dex")) {
                 mFilesToCompile.add(file);
@@ -101,69 +142,69 @@ public class IncrementalD8Task extends Task<AndroidModule> {
         super.clean();
     }
 
-    private void doRelease() throws CompilationFailedException {
+    private void doRelease() throws IOException, CompilationFailedException {
         try {
             ensureDexedLibraries();
-            D8Command command = D8Command.builder(diagnosticsHandler).addClasspathFiles(
-                    getModule().getLibraries().stream().map(File::toPath)
-                            .collect(Collectors.toList())).addProgramFiles(mFilesToCompile)
-                    .addLibraryFiles(getLibraryFiles()).setMinApiLevel(getModule().getMinSdk())
-                    .setMode(CompilationMode.RELEASE).setIntermediate(true)
-                    .setOutput(mOutputPath, OutputMode.DexFilePerClassFile).build();
-            D8.run(command);
-            for (Path file : mFilesToCompile) {
-                mDexCache.load(file, "dex", Collections.singletonList(getDexFile(file.toFile())));
-            }
-
+            dexClassFiles(CompilationMode.RELEASE);
             mergeRelease();
         } catch (com.android.tools.r8.CompilationFailedException e) {
             throw new CompilationFailedException(e);
         }
     }
 
-    private void doDebug() throws CompilationFailedException {
+    private void doDebug() throws IOException, CompilationFailedException {
         try {
             ensureDexedLibraries();
+            dexClassFiles(CompilationMode.DEBUG);
 
-            D8Command command = D8Command.builder(diagnosticsHandler).addClasspathFiles(
-                    getModule().getLibraries().stream().map(File::toPath)
-                            .collect(Collectors.toList())).addProgramFiles(mFilesToCompile)
-                    .addLibraryFiles(getLibraryFiles()).setMinApiLevel(getModule().getMinSdk())
-                    .setMode(CompilationMode.DEBUG).setIntermediate(true)
-                    .setOutput(mOutputPath, OutputMode.DexFilePerClassFile).build();
-            D8.run(command);
-
-            for (Path file : mFilesToCompile) {
-                mDexCache.load(file, "dex", Collections.singletonList(getDexFile(file.toFile())));
-            }
-
+            File output = new File(getModule().getBuildDirectory(), "bin");
             D8Command.Builder builder = D8Command.builder(diagnosticsHandler)
                     .addProgramFiles(getAllDexFiles(mOutputPath.toFile()))
-                    .addLibraryFiles(getLibraryFiles()).addClasspathFiles(
-                            getModule().getLibraries().stream().map(File::toPath)
-                                    .collect(Collectors.toList()))
-                    .setMinApiLevel(getModule().getMinSdk());
-
-            File output = new File(getModule().getBuildDirectory(), "bin");
-            builder.setMode(CompilationMode.DEBUG);
-            builder.setOutput(output.toPath(), OutputMode.DexIndexed);
-            D8.run(builder.build());
-
+                    .setMinApiLevel(getModule().getMinSdk())
+                    .setMode(CompilationMode.DEBUG)
+                    .setOutput(output.toPath(), OutputMode.DexIndexed);
+            DexingService.getInstance().run(builder, getLibraryFiles(), getClasspathFiles());
         } catch (com.android.tools.r8.CompilationFailedException e) {
             throw new CompilationFailedException(e);
         }
     }
 
-    private void mergeRelease() throws com.android.tools.r8.CompilationFailedException {
+    /**
+     * Dexes the class files that have changed since the last build, each of them to its own
+     * dex file in the intermediate directory, to be merged afterwards
+     */
+    private void dexClassFiles(CompilationMode mode)
+            throws IOException, com.android.tools.r8.CompilationFailedException {
+        if (mFilesToCompile.isEmpty()) {
+            return;
+        }
+
+        long start = System.currentTimeMillis();
+        D8Command.Builder builder = D8Command.builder(diagnosticsHandler)
+                .addProgramFiles(mFilesToCompile)
+                .setMinApiLevel(getModule().getMinSdk())
+                .setMode(mode)
+                .setIntermediate(true)
+                .setOutput(mOutputPath, OutputMode.DexFilePerClassFile);
+        DexingService.getInstance().run(builder, getLibraryFiles(), getClasspathFiles());
+
+        for (Path file : mFilesToCompile) {
+            mDexCache.load(file, "dex", Collections.singletonList(getDexFile(file)));
+        }
+        getLogger().debug("Dexed " + mFilesToCompile.size() + " classes in " +
+                          (System.currentTimeMillis() - start) + " ms");
+    }
+
+    private void mergeRelease()
+            throws IOException, com.android.tools.r8.CompilationFailedException {
         File output = new File(getModule().getBuildDirectory(), "bin");
-        D8Command command = D8Command.builder(diagnosticsHandler).addClasspathFiles(
-                getModule().getLibraries().stream().map(File::toPath).collect(Collectors.toList()))
-                .addLibraryFiles(getLibraryFiles())
+        D8Command.Builder builder = D8Command.builder(diagnosticsHandler)
                 .addProgramFiles(getAllDexFiles(mOutputPath.toFile()))
-                .addProgramFiles(getLibraryDexes()).setMinApiLevel(getModule().getMinSdk())
-                .setMode(CompilationMode.RELEASE).setOutput(output.toPath(), OutputMode.DexIndexed)
-                .build();
-        D8.run(command);
+                .addProgramFiles(getLibraryDexes())
+                .setMinApiLevel(getModule().getMinSdk())
+                .setMode(CompilationMode.RELEASE)
+                .setOutput(output.toPath(), OutputMode.DexIndexed);
+        DexingService.getInstance().run(builder, getLibraryFiles(), getClasspathFiles());
     }
 
     private List<Path> getLibraryDexes() {
@@ -182,65 +223,60 @@ public class IncrementalD8Task extends Task<AndroidModule> {
     }
 
 
-    private File getDexFile(File file) {
-        File output = new File(getModule().getBuildDirectory(), "bin/classes/");
-        String packageName =
-                file.getAbsolutePath().replace(output.getAbsolutePath(), "").substring(1)
-                        .replace(".class", ".dex");
+    /**
+     * @return the dex file D8 writes for the given class file, at the same path relative to
+     * the intermediate directory as the class file is relative to its class directory
+     */
+    private File getDexFile(Path classFile) {
+        for (File directory : mClassDirectories) {
+            Path root = directory.toPath();
+            if (classFile.startsWith(root)) {
+                String relativePath = root.relativize(classFile).toString();
+                String dexPath = relativePath.substring(0,
+                        relativePath.length() - ".class".length()) + ".dex";
+                return mOutputPath.resolve(dexPath).toFile();
+            }
+        }
+        throw new IllegalArgumentException(classFile + " is not in a class directory");
+    }
+
+    /**
+     * @return the string identifying what the dex files of the classes depend on besides the
+     * classes themselves
+     */
+    private String getDexKey(BuildType type) {
+        StringBuilder key = new StringBuilder();
+        key.append(type.name()).append(':').append(getModule().getMinSdk());
+        for (Path file : getLibraryFiles()) {
+            key.append('\n').append(file).append('=')
+                    .append(BuildModule.getFileFingerprints().hashIfExists(file.toFile()));
+        }
+        for (Path file : getClasspathFiles()) {
+            key.append('\n').append(file).append('=')
+                    .append(BuildModule.getFileFingerprints().hashIfExists(file.toFile()));
+        }
+        return key.toString();
+    }
 
-        File intermediate = new File(getModule().getBuildDirectory(), "intermediate/classes");
-        File file1 = new File(intermediate, packageName);
-        return file1;
+    private static String readKey(File keyFile) {
+        if (!keyFile.exists()) {
+            return null;
+        }
+        try {
+            return FileUtils.readFileToString(keyFile, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            return null;
+        }
     }
 
     /**
-     * Ensures that all libraries of the project has been dex-ed
+     * Ensures that all libraries of the project has been dex-ed, they are usually dexed by
+     * {@link DexLibrariesTask} before this task runs.
      *
      * @throws com.android.tools.r8.CompilationFailedException if the compilation has failed
      */
     protected void ensureDexedLibraries() throws com.android.tools.r8.CompilationFailedException {
-        List<File> libraries = getModule().getLibraries();
-
-        for (File lib : libraries) {
-            File parentFile = lib.getParentFile();
-            if (parentFile == null) {
-                continue;
-            }
-            File[] libFiles = lib.getParentFile().listFiles();
-            if (libFiles == null) {
-                if (!lib.delete()) {
-                    getLogger().warning("Failed to delete " + lib.getAbsolutePath());
-                }
-            } else {
-                File dex = new File(lib.getParentFile(), "classes.dex");
-                if (dex.exists()) {
-                    continue;
-                }
-                if (lib.exists()) {
-                    String message;
-                    Library library = getModule().getLibrary(parentFile.getName());
-                    if (library != null) {
-                        boolean declared = library.getDeclaration() != null;
-                        message = "Dexing library " +
-                                  (declared ? library.getDeclaration() : library.getSourceFile()
-                                          .getName());
-                    } else {
-                        message = "Dexing jar " + parentFile.getName();
-                    }
-                    getLogger().debug(message);
-                    D8Command command = D8Command.builder(diagnosticsHandler)
-                                    .addLibraryFiles(getLibraryFiles())
-                                    .addClasspathFiles(libraries.stream().map(File::toPath)
-                                                               .collect(Collectors.toList()))
-                                    .addProgramFiles(lib.toPath())
-                                    .setMode(CompilationMode.RELEASE)
-                                    .setMinApiLevel(getModule().getMinSdk())
-                                    .setOutput(lib.getParentFile().toPath(), OutputMode.DexIndexed)
-                                    .build();
-                    D8.run(command);
-                }
-            }
-        }
+        DexLibrariesTask.dexLibraries(getModule(), getLogger(), diagnosticsHandler);
     }
 
     private List<Path> getLibraryFiles() {
@@ -250,26 +286,9 @@ public class IncrementalD8Task extends Task<AndroidModule> {
         return path;
     }
 
-    private void deleteAllFiles(File classFile, String ext) throws IOException {
-
-        File dexFile = getDexFile(classFile);
-        if (!dexFile.exists()) {
-            return;
-        }
-        File parent = dexFile.getParentFile();
-        String name = dexFile.getName().replace(ext, "");
-        if (parent != null) {
-            File[] children =
-                    parent.listFiles((c) -> c.getName().endsWith(ext) && c.getName().contains("$"));
-            if (children != null) {
-                for (File child : children) {
-                    if (child.getName().startsWith(name)) {
-                        FileUtils.delete(child);
-                    }
-                }
-            }
-        }
-        FileUtils.delete(dexFile);
+    private List<Path> getClasspathFiles() {
+        return getModule().getLibraries().stream().map(File::toPath)
+                .collect(Collectors.toList());
     }
 
     private List<Path> getAllDexFiles(File dir) {
@@ -286,4 +305,9 @@ public class IncrementalD8Task extends Task<AndroidModule> {
         }
         return files;
     }
+
+    @VisibleForTesting
+    public List<Path> getFilesToCompile() {
+        return mFilesToCompile;
+    }
 }
@@ -0,0 +1,204 @@
+package com.tyron.builder.compiler.incremental.java;
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.tyron.builder.internal.classanalysis.AsmConstants;
+
+import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import java.lang.reflect.Array;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Computes a hash of the parts of a class file that other classes can compile against: the
+ * class declaration, its member classes and its non-private fields and methods including the
+ * values of constants. The annotations of the class, of these members and of the method
+ * parameters are part of the hash with their values, since they are read by the compiler and
+ * by annotation processors. Method bodies, private and synthetic members are left out so a
+ * change that only touches them keeps the same hash.
+ */
+public class AbiHasher extends ClassVisitor {
+
+    public static HashCode hash(ClassReader reader) {
+        AbiHasher hasher = new AbiHasher();
+        reader.accept(hasher, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG |
+                              ClassReader.SKIP_FRAMES);
+        return hasher.getHash();
+    }
+
+    private final List<String> mMembers = new ArrayList<>();
+    private String mDeclaration;
+    private String mName;
+
+    private AbiHasher() {
+        super(AsmConstants.ASM_LEVEL);
+    }
+
+    @Override
+    public void visit(int version, int access, String name, String signature, String superName,
+                      String[] interfaces) {
+        mName = name;
+        mDeclaration = (access & ~Opcodes.ACC_SUPER) + " " + name + " " + signature + " " +
+                       superName + " " + (interfaces == null ? "" : Arrays.toString(interfaces));
+    }
+
+    @Override
+    public AnnotationVisitor visitAnnotation(String descriptor, boolean visible) {
+        return new AnnotationHasher("annotation " + descriptor);
+    }
+
+    @Override
+    public void visitInnerClass(String name, String outerName, String innerName, int access) {
+        // only the member classes declared by this class, anonymous and local classes used in
+        // method bodies are also listed here
+        if (mName.equals(outerName) && innerName != null && isAccessible(access)) {
+            mMembers.add("class " + access + " " + name);
+        }
+    }
+
+    @Override
+    public FieldVisitor visitField(int access, String name, String descriptor, String signature,
+                                   Object value) {
+        if (!isAccessible(access)) {
+            return null;
+        }
+        String member = "field " + access + " " + name + " " + descriptor + " " + signature +
+                        " " + value;
+        mMembers.add(member);
+        return new FieldVisitor(AsmConstants.ASM_LEVEL) {
+            @Override
+            public AnnotationVisitor visitAnnotation(String annotation, boolean visible) {
+                return new AnnotationHasher(member + " annotation " + annotation);
+            }
+        };
+    }
+
+    @Override
+    public MethodVisitor visitMethod(int access, String name, String descriptor, String signature,
+                                     String[] exceptions) {
+        if (!isAccessible(access)) {
+            return null;
+        }
+        String member = "method " + access + " " + name + descriptor + " " + signature + " " +
+                        (exceptions == null ? "" : Arrays.toString(exceptions));
+        mMembers.add(member);
+        return new MethodVisitor(AsmConstants.ASM_LEVEL) {
+            @Override
+            public AnnotationVisitor visitAnnotation(String annotation, boolean visible) {
+                return new AnnotationHasher(member + " annotation " + annotation);
+            }
+
+            @Override
+            public AnnotationVisitor visitParameterAnnotation(int parameter, String annotation,
+                                                              boolean visible) {
+                return new AnnotationHasher(
+                        member + " parameter " + parameter + " annotation " + annotation);
+            }
+
+            @Override
+            public AnnotationVisitor visitAnnotationDefault() {
+                // the default value of an element of an annotation type
+                return new AnnotationHasher(member + " default");
+            }
+        };
+    }
+
+    private HashCode getHash() {
+        // the order of the members in the source file does not matter to other classes
+        Collections.sort(mMembers);
+        Hasher hasher = Hashing.murmur3_128().newHasher();
+        hasher.putInt(mDeclaration.length());
+        hasher.putString(mDeclaration, StandardCharsets.UTF_8);
+        for (String member : mMembers) {
+            hasher.putInt(member.length());
+            hasher.putString(member, StandardCharsets.UTF_8);
+        }
+        return hasher.hash();
+    }
+
+    /**
+     * Adds an annotation and its values to the members once it has been visited, nested
+     * annotations and arrays are written in the text of the annotation that contains them
+     */
+    private class AnnotationHasher extends AnnotationVisitor {
+
+        private final StringBuilder mBuilder;
+        private final String mEnd;
+
+        AnnotationHasher(String prefix) {
+            this(new StringBuilder(prefix), null);
+        }
+
+        private AnnotationHasher(StringBuilder builder, String end) {
+            super(AsmConstants.ASM_LEVEL);
+            mBuilder = builder;
+            mEnd = end;
+        }
+
+        @Override
+        public void visit(String name, Object value) {
+            appendName(name);
+            if (value != null && value.getClass().isArray()) {
+                // arrays of primitives are visited as a single value
+                mBuilder.append('[');
+                for (int i = 0; i < Array.getLength(value); i++) {
+                    mBuilder.append(Array.get(value, i)).append(',');
+                }
+                mBuilder.append(']');
+            } else {
+                mBuilder.append(value);
+            }
+        }
+
+        @Override
+        public void visitEnum(String name, String descriptor, String value) {
+            appendName(name);
+            mBuilder.append(descriptor).append('.').append(value);
+        }
+
+        @Override
+        public AnnotationVisitor visitAnnotation(String name, String descriptor) {
+            appendName(name);
+            mBuilder.append('@').append(descriptor).append('(');
+            return new AnnotationHasher(mBuilder, ")");
+        }
+
+        @Override
+        public AnnotationVisitor visitArray(String name) {
+            appendName(name);
+            mBuilder.append('[');
+            return new AnnotationHasher(mBuilder, "]");
+        }
+
+        @Override
+        public void visitEnd() {
+            if (mEnd == null) {
+                mMembers.add(mBuilder.toString());
+            } else {
+                mBuilder.append(mEnd);
+            }
+        }
+
+        private void appendName(String name) {
+            // the values of an array have no name
+            mBuilder.append(' ');
+            if (name != null) {
+                mBuilder.append(name).append('=');
+            }
+        }
+    }
+
+    private static boolean isAccessible(int access) {
+        return (access & (Opcodes.ACC_PRIVATE | Opcodes.ACC_SYNTHETIC)) == 0;
+    }
+}
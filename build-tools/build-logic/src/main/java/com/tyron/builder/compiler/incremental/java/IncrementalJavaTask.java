@@ -2,52 +2,79 @@ package com.tyron.builder.compiler.incremental.java;
 
 import androidx.annotation.VisibleForTesting;
 
+import com.google.common.hash.HashCode;
 import com.sun.source.util.JavacTask;
+import com.sun.source.util.TaskEvent;
+import com.sun.source.util.TaskListener;
 import com.sun.tools.javac.api.JavacTool;
 import com.sun.tools.javac.file.JavacFileManager;
+import com.tyron.builder.api.internal.tasks.compile.incremental.asm.ClassDependenciesVisitor;
+import com.tyron.builder.api.internal.tasks.compile.incremental.compilerapi.deps.DependentsSet;
+import com.tyron.builder.api.internal.tasks.compile.incremental.deps.ClassAnalysis;
+import com.tyron.builder.api.internal.tasks.compile.incremental.deps.ClassSetAnalysis;
+import com.tyron.builder.BuildModule;
+import com.tyron.builder.compiler.BuildArtifact;
 import com.tyron.builder.compiler.BuildType;
 import com.tyron.builder.compiler.Task;
-import com.tyron.builder.compiler.incremental.kotlin.IncrementalKotlinCompiler;
 import com.tyron.builder.exception.CompilationFailedException;
+import com.tyron.builder.internal.cache.StringInterner;
+import com.tyron.builder.internal.hash.FileFingerprintStore;
 import com.tyron.builder.log.ILogger;
 import com.tyron.builder.model.DiagnosticWrapper;
 import com.tyron.builder.project.Project;
 import com.tyron.builder.project.api.AndroidModule;
 import com.tyron.builder.project.api.JavaModule;
-import com.tyron.builder.project.cache.CacheHolder;
-import com.tyron.common.util.Cache;
 
 import org.apache.commons.io.FileUtils;
+import org.objectweb.asm.ClassReader;
 
 import java.io.File;
 import java.io.IOException;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
-import java.util.Objects;
+import java.util.Map;
+import java.util.Set;
 
+import javax.lang.model.element.TypeElement;
 import javax.tools.DiagnosticListener;
 import javax.tools.JavaFileObject;
 import javax.tools.SimpleJavaFileObject;
 import javax.tools.StandardLocation;
 
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import it.unimi.dsi.fastutil.ints.IntSet;
+import it.unimi.dsi.fastutil.ints.IntSets;
+
+/**
+ * Compiles the java files of the module. Only the files that have changed are compiled first,
+ * then the classes that depend on a class whose ABI has changed are compiled in another round,
+ * until no ABI changes anymore. A change that only touches method bodies or private members
+ * does not cause any other file to be recompiled.
+ */
 public class IncrementalJavaTask extends Task<JavaModule> {
 
-    public static final CacheHolder.CacheKey<String, List<File>> CACHE_KEY =
-            new CacheHolder.CacheKey<>("javaCache");
     private static final String TAG = IncrementalJavaTask.class.getSimpleName();
 
+    private final StringInterner mInterner = new StringInterner();
+
     private File mOutputDir;
+    private File mStateFile;
+    private JavaCompilationState mState;
     private List<File> mJavaFiles;
+    private Map<String, HashCode> mSourceHashes;
     private List<File> mFilesToCompile;
-    private Cache<String, List<File>> mClassCache;
+    private List<File> mCompiledFiles;
 
     public IncrementalJavaTask(Project project, JavaModule module, ILogger logger) {
         super(project, module, logger);
@@ -58,35 +85,78 @@ public class IncrementalJavaTask extends Task<JavaModule> {
         return TAG;
     }
 
+    @Override
+    public Set<BuildArtifact> getInputs() {
+        return EnumSet.of(BuildArtifact.LIBRARIES, BuildArtifact.SOURCES,
+                BuildArtifact.GENERATED_SOURCES, BuildArtifact.KOTLIN_CLASSES);
+    }
+
+    @Override
+    public Set<BuildArtifact> getOutputs() {
+        return EnumSet.of(BuildArtifact.JAVA_CLASSES);
+    }
+
     @Override
     public void prepare(BuildType type) throws IOException {
         mOutputDir = new File(getModule().getBuildDirectory(), "bin/java/classes");
         if (!mOutputDir.exists() && !mOutputDir.mkdirs()) {
             throw new IOException("Unable to create output directory");
         }
+        mStateFile = new File(getModule().getBuildDirectory(), "intermediate/java/compilation.bin");
+        mState = JavaCompilationState.load(mStateFile, mInterner);
 
         mFilesToCompile = new ArrayList<>();
-        mClassCache = getModule().getCache(CACHE_KEY, new Cache<>());
+        mCompiledFiles = new ArrayList<>();
 
         mJavaFiles = new ArrayList<>(getModule().getJavaFiles().values());
         if (getModule() instanceof AndroidModule) {
             mJavaFiles.addAll(((AndroidModule) getModule()).getResourceClasses().values());
         }
-        for (Cache.Key<String> key : new HashSet<>(mClassCache.getKeys())) {
-            if (!mJavaFiles.contains(key.file.toFile())) {
-                File file = mClassCache.get(key.file, "class").iterator().next();
-                deleteAllFiles(file, ".class");
-                mClassCache.remove(key.file, "class", "dex");
+        FileFingerprintStore fingerprints = BuildModule.getFileFingerprints();
+        mSourceHashes = new HashMap<>();
+        for (File file : mJavaFiles) {
+            mSourceHashes.put(file.getAbsolutePath(), fingerprints.hashIfExists(file));
+        }
+
+        // classes compiled against a different set of libraries may not be valid anymore
+        String librariesKey = getLibrariesKey();
+        if (!librariesKey.equals(mState.getLibrariesKey())) {
+            fullRebuild();
+            mState.setLibrariesKey(librariesKey);
+            return;
+        }
+
+        Set<String> changedClasses = new HashSet<>();
+        Map<String, IntSet> changedConstants = new HashMap<>();
+        for (String path : mState.getSourcePaths()) {
+            if (!mSourceHashes.containsKey(path)) {
+                JavaCompilationState.SourceEntry entry = mState.removeSource(path);
+                for (String className : entry.classes) {
+                    removeClass(className, changedClasses, changedConstants);
+                }
             }
         }
+        findChangedClasspathClasses(changedClasses, changedConstants);
 
         for (File file : mJavaFiles) {
-            Path filePath = file.toPath();
-            if (mClassCache.needs(filePath, "class")) {
+            JavaCompilationState.SourceEntry entry = mState.getSource(file.getAbsolutePath());
+            HashCode hash = mSourceHashes.get(file.getAbsolutePath());
+            if (entry == null || entry.hash == null || !entry.hash.equals(hash) ||
+                !classFilesExist(entry)) {
                 mFilesToCompile.add(file);
             }
         }
 
+        DependentsSet dependents = new ClassSetAnalysis(mState.getAnalysisData())
+                .findTransitiveDependents(changedClasses, changedConstants);
+        if (dependents.isDependencyToAll()) {
+            getLogger().debug("Recompiling all java files because " +
+                              dependents.getDescription());
+            fullRebuild();
+            mState.setLibrariesKey(librariesKey);
+            return;
+        }
+        addSources(dependents.getAllDependentClasses(), mFilesToCompile);
     }
 
     private boolean mHasErrors = false;
@@ -94,11 +164,53 @@ public class IncrementalJavaTask extends Task<JavaModule> {
     @Override
     public void run() throws IOException, CompilationFailedException {
         if (mFilesToCompile.isEmpty()) {
+            mState.save(mStateFile, mInterner);
             return;
         }
 
         getLogger().debug("Compiling java files");
 
+        Set<File> compiled = new HashSet<>();
+        List<File> round = mFilesToCompile;
+        while (!round.isEmpty()) {
+            compiled.addAll(round);
+            mCompiledFiles.addAll(round);
+
+            Map<String, String> generated = compile(round);
+            if (mHasErrors) {
+                markDirty(round);
+                mState.save(mStateFile, mInterner);
+                throw new CompilationFailedException(
+                        "Compilation failed, check logs for more details");
+            }
+
+            Set<String> changedClasses = new HashSet<>();
+            Map<String, IntSet> changedConstants = new HashMap<>();
+            updateState(round, generated, changedClasses, changedConstants);
+
+            DependentsSet dependents = new ClassSetAnalysis(mState.getAnalysisData())
+                    .findTransitiveDependents(changedClasses, changedConstants);
+            List<File> next = new ArrayList<>();
+            if (dependents.isDependencyToAll()) {
+                getLogger().debug("Recompiling all java files because " +
+                                  dependents.getDescription());
+                next.addAll(mJavaFiles);
+            } else {
+                addSources(dependents.getAllDependentClasses(), next);
+            }
+            next.removeAll(compiled);
+            round = next;
+        }
+
+        mState.save(mStateFile, mInterner);
+    }
+
+    /**
+     * Compiles the given files
+     *
+     * @return the binary names of the generated classes mapped to the source they came from
+     */
+    private Map<String, String> compile(List<File> files) throws CompilationFailedException {
         DiagnosticListener<JavaFileObject> diagnosticCollector = diagnostic -> {
             switch (diagnostic.getKind()) {
                 case ERROR:
@@ -119,9 +231,7 @@ public class IncrementalJavaTask extends Task<JavaModule> {
 
         List<File> classpath = new ArrayList<>(getModule().getLibraries());
         classpath.add(mOutputDir);
-
-        File kotlinOutputDir = new File(getModule().getBuildDirectory(), "bin/kotlin/classes");
-        classpath.add(kotlinOutputDir);
+        classpath.add(getKotlinOutputDir());
 
         try {
             standardJavaFileManager.setLocation(StandardLocation.CLASS_OUTPUT,
@@ -136,7 +246,7 @@ public class IncrementalJavaTask extends Task<JavaModule> {
         }
 
         List<JavaFileObject> javaFileObjects = new ArrayList<>();
-        for (File file : mFilesToCompile) {
+        for (File file : files) {
             javaFileObjects.add(new SimpleJavaFileObject(file.toURI(), JavaFileObject.Kind.SOURCE) {
                 @Override
                 public CharSequence getCharContent(boolean ignoreEncodingErrors) throws IOException {
@@ -153,96 +263,239 @@ public class IncrementalJavaTask extends Task<JavaModule> {
         JavacTask task = tool.getTask(null, standardJavaFileManager, diagnosticCollector,
                 options, null, javaFileObjects);
 
-        HashMap<String, List<File>> compiledFiles = new HashMap<>();
-        try {
+        Map<String, String> generated = new LinkedHashMap<>();
+        task.addTaskListener(new TaskListener() {
+            @Override
+            public void started(TaskEvent e) {
 
+            }
+
+            @Override
+            public void finished(TaskEvent e) {
+                TypeElement element = e.getTypeElement();
+                if (e.getKind() != TaskEvent.Kind.GENERATE || element == null ||
+                    e.getSourceFile() == null) {
+                    return;
+                }
+                String className = task.getElements().getBinaryName(element).toString();
+                generated.put(mInterner.intern(className),
+                        new File(e.getSourceFile().toUri()).getAbsolutePath());
+            }
+        });
+
+        try {
             task.parse();
             task.analyze();
-            Iterable<? extends JavaFileObject> generate = task.generate();
-            for (JavaFileObject fileObject : generate) {
-                String path = fileObject.getName();
-                File classFile = new File(path);
-                if (classFile. exists()) {
-                    String classPath = classFile.getAbsolutePath().replace("build/bin/classes/",
-                            "src/main/java/").replace(".class", ".java");
-                    if (classFile.getName().indexOf('$') != -1) {
-                        classPath = classPath.substring(0, classPath.indexOf('$')) + ".java";
-                    }
-                    File file = new File(classPath);
-                    if (!file.exists()) {
-                        file = new File(classPath.replace("src/main/java", "build/gen"));
-                    }
+            task.generate();
+        } catch (Exception e) {
+            throw new CompilationFailedException(e);
+        }
+        return generated;
+    }
 
-                    if (!compiledFiles.containsKey(file.getAbsolutePath())) {
-                        ArrayList<File> list = new ArrayList<>();
-                        list.add(classFile);
-                        compiledFiles.put(file.getAbsolutePath(), list);
-                    } else {
-                        Objects.requireNonNull(compiledFiles.get(file.getAbsolutePath())).add(classFile);
+    /**
+     * Records the classes generated by the last round and finds the ones whose ABI has changed.
+     * Classes that a recompiled source no longer generates are deleted.
+     */
+    private void updateState(List<File> round, Map<String, String> generated,
+                             Set<String> changedClasses, Map<String, IntSet> changedConstants)
+            throws IOException {
+        Map<String, List<String>> classesBySource = new LinkedHashMap<>();
+        for (File file : round) {
+            classesBySource.put(file.getAbsolutePath(), new ArrayList<>());
+        }
+        generated.forEach((className, source) ->
+                classesBySource.computeIfAbsent(source, s -> new ArrayList<>()).add(className));
+
+        for (Map.Entry<String, List<String>> entry : classesBySource.entrySet()) {
+            String source = entry.getKey();
+            List<String> classes = entry.getValue();
+
+            JavaCompilationState.SourceEntry old = mState.getSource(source);
+            if (old != null) {
+                for (String className : old.classes) {
+                    if (!classes.contains(className)) {
+                        removeClass(className, changedClasses, changedConstants);
                     }
-                    mClassCache.load(file.toPath(), "class", Collections.singletonList(classFile));
                 }
             }
 
-            compiledFiles.forEach((key, values) -> {
-                File sourceFile = new File(key);
-                String name = sourceFile.getName().replace(".java", "");
-                File first = values.iterator().next();
-                File parent = first.getParentFile();
-                if (parent != null) {
-                    File[] children = parent.listFiles(c -> {
-                        if (!c.getName().contains("$")) {
-                            return false;
-                        }
-                        String baseClassName = c.getName().substring(0, c.getName().indexOf('$'));
-                        return baseClassName.equals(name);
-                    });
-                    if (children != null) {
-                        for (File file : children) {
-                            if (!values.contains(file)) {
-                                if (file.delete()) {
-                                    getLogger().debug("Deleted file " + file.getAbsolutePath());
-                                }
-                            }
-                        }
-                    }
+            for (String className : classes) {
+                File classFile = getClassFile(className);
+                if (!classFile.exists()) {
+                    continue;
                 }
-            });
-        } catch (Exception e) {
-            throw new CompilationFailedException(e);
+                ClassReader reader = new ClassReader(FileUtils.readFileToByteArray(classFile));
+                ClassAnalysis analysis =
+                        ClassDependenciesVisitor.analyze(className, reader, mInterner);
+                HashCode abiHash = AbiHasher.hash(reader);
+
+                JavaCompilationState.ClassEntry previous = mState.getClass(className);
+                if (previous == null || !previous.abiHash.equals(abiHash)) {
+                    changedClasses.add(className);
+                }
+                if (previous != null) {
+                    addRemovedConstants(className, previous.analysis.getConstants(),
+                            analysis.getConstants(), changedConstants);
+                }
+                mState.putClass(new JavaCompilationState.ClassEntry(abiHash, analysis));
+            }
+
+            mState.putSource(source, new JavaCompilationState.SourceEntry(
+                    mSourceHashes.get(source), classes));
         }
+    }
 
-        if (mHasErrors) {
-            throw new CompilationFailedException("Compilation failed, check logs for more details");
+    /**
+     * Compares the classes of the kotlin compiler with the ones the java files were compiled
+     * against, a class whose ABI has changed is treated like a changed java class.
+     */
+    private void findChangedClasspathClasses(Set<String> changedClasses,
+                                             Map<String, IntSet> changedConstants)
+            throws IOException {
+        Map<String, JavaCompilationState.ClasspathEntry> previous =
+                mState.getClasspathClasses();
+        Set<String> found = new HashSet<>();
+
+        File kotlinOutputDir = getKotlinOutputDir();
+        Collection<File> classFiles = kotlinOutputDir.exists()
+                ? FileUtils.listFiles(kotlinOutputDir, new String[]{"class"}, true)
+                : Collections.emptyList();
+        for (File classFile : classFiles) {
+            String path = classFile.getAbsolutePath();
+            found.add(path);
+
+            HashCode hash = BuildModule.getFileFingerprints().hash(classFile);
+            JavaCompilationState.ClasspathEntry entry = previous.get(path);
+            if (entry != null && entry.hash.equals(hash)) {
+                continue;
+            }
+            ClassReader reader = new ClassReader(FileUtils.readFileToByteArray(classFile));
+            String className = mInterner.intern(reader.getClassName().replace('/', '.'));
+            IntSet constants =
+                    ClassDependenciesVisitor.analyze(className, reader, mInterner).getConstants();
+            HashCode abiHash = AbiHasher.hash(reader);
+            if (entry == null || !entry.abiHash.equals(abiHash)) {
+                changedClasses.add(className);
+            }
+            if (entry != null) {
+                addRemovedConstants(className, entry.constants, constants, changedConstants);
+            }
+            previous.put(path, new JavaCompilationState.ClasspathEntry(
+                    hash, className, abiHash, constants));
         }
+
+        previous.entrySet().removeIf(entry -> {
+            if (found.contains(entry.getKey())) {
+                return false;
+            }
+            changedClasses.add(entry.getValue().className);
+            addRemovedConstants(entry.getValue().className, entry.getValue().constants,
+                    IntSets.EMPTY_SET, changedConstants);
+            return true;
+        });
     }
 
-    @VisibleForTesting
-    public List<File> getCompiledFiles() {
-        return mFilesToCompile;
+    private void removeClass(String className, Set<String> changedClasses,
+                             Map<String, IntSet> changedConstants) throws IOException {
+        JavaCompilationState.ClassEntry entry = mState.removeClass(className);
+        if (entry != null) {
+            addRemovedConstants(className, entry.analysis.getConstants(), IntSets.EMPTY_SET,
+                    changedConstants);
+        }
+        changedClasses.add(className);
+        File classFile = getClassFile(className);
+        if (classFile.exists()) {
+            FileUtils.delete(classFile);
+        }
     }
 
-    private File findClassFile(String packageName) {
-        String path = packageName.replace(".", "/").concat(".class");
-        return new File(mOutputDir, path);
+    /**
+     * Constants are inlined by javac so the classes using them do not reference the class that
+     * declares them, a constant that is no longer there means its value has changed.
+     */
+    private static void addRemovedConstants(String className, IntSet previous, IntSet current,
+                                            Map<String, IntSet> changedConstants) {
+        IntSet removed = new IntOpenHashSet(previous);
+        removed.removeAll(current);
+        if (!removed.isEmpty()) {
+            changedConstants.computeIfAbsent(className, c -> new IntOpenHashSet())
+                    .addAll(removed);
+        }
     }
 
-    private void deleteAllFiles(File classFile, String ext) throws IOException {
-        File parent = classFile.getParentFile();
-        String name = classFile.getName().replace(ext, "");
-        if (parent != null) {
-            File[] children =
-                    parent.listFiles((c) -> c.getName().endsWith(ext) && c.getName().contains("$"));
-            if (children != null) {
-                for (File child : children) {
-                    if (child.getName().startsWith(name)) {
-                        FileUtils.delete(child);
-                    }
-                }
+    private void addSources(Set<String> classes, List<File> files) {
+        Map<String, String> sourcesByClass = mState.getSourcesByClass();
+        Set<String> paths = new HashSet<>();
+        for (File file : files) {
+            paths.add(file.getAbsolutePath());
+        }
+        for (String className : classes) {
+            String source = sourcesByClass.get(className);
+            if (source != null && mSourceHashes.containsKey(source) && paths.add(source)) {
+                files.add(new File(source));
             }
         }
-        if (classFile.exists()) {
-            FileUtils.delete(classFile);
+    }
+
+    /**
+     * Forgets everything about the previous compilation so every java file is compiled
+     */
+    private void fullRebuild() throws IOException {
+        mState.clear();
+        FileUtils.cleanDirectory(mOutputDir);
+        findChangedClasspathClasses(new HashSet<>(), new HashMap<>());
+        mFilesToCompile.clear();
+        mFilesToCompile.addAll(mJavaFiles);
+    }
+
+    /**
+     * Makes sure that the given files are compiled again on the next build
+     */
+    private void markDirty(List<File> files) {
+        for (File file : files) {
+            String path = file.getAbsolutePath();
+            JavaCompilationState.SourceEntry entry = mState.getSource(path);
+            mState.putSource(path, new JavaCompilationState.SourceEntry(null,
+                    entry == null ? Collections.emptyList() : entry.classes));
         }
     }
+
+    private boolean classFilesExist(JavaCompilationState.SourceEntry entry) {
+        for (String className : entry.classes) {
+            if (!getClassFile(className).exists()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String getLibrariesKey() {
+        List<File> files = new ArrayList<>(getModule().getLibraries());
+        // the same libraries in another order are the same class path
+        files.sort(Comparator.comparing(File::getAbsolutePath));
+        files.add(getModule().getBootstrapJarFile());
+        files.add(getModule().getLambdaStubsJarFile());
+        FileFingerprintStore fingerprints = BuildModule.getFileFingerprints();
+        StringBuilder builder = new StringBuilder();
+        for (File file : files) {
+            builder.append(file.getAbsolutePath())
+                    .append(':').append(fingerprints.hashIfExists(file))
+                    .append(';');
+        }
+        return builder.toString();
+    }
+
+    private File getKotlinOutputDir() {
+        return new File(getModule().getBuildDirectory(), "bin/kotlin/classes");
+    }
+
+    private File getClassFile(String className) {
+        return new File(mOutputDir, className.replace('.', '/') + ".class");
+    }
+
+    @VisibleForTesting
+    public List<File> getCompiledFiles() {
+        return mCompiledFiles;
+    }
 }
@@ -0,0 +1,252 @@
+package com.tyron.builder.compiler.incremental.java;
+
+import com.google.common.hash.HashCode;
+import com.tyron.builder.api.internal.tasks.compile.incremental.deps.ClassAnalysis;
+import com.tyron.builder.api.internal.tasks.compile.incremental.deps.ClassDependentsAccumulator;
+import com.tyron.builder.api.internal.tasks.compile.incremental.deps.ClassSetAnalysisData;
+import com.tyron.builder.internal.cache.StringInterner;
+import com.tyron.builder.internal.serialize.HashCodeSerializer;
+import com.tyron.builder.internal.serialize.IntSetSerializer;
+import com.tyron.builder.internal.serialize.kryo.KryoBackedDecoder;
+import com.tyron.builder.internal.serialize.kryo.KryoBackedEncoder;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import it.unimi.dsi.fastutil.ints.IntSet;
+
+/**
+ * What {@link IncrementalJavaTask} knows about the previous compilation of a module: the
+ * classes generated from each source file, and for each class its dependencies and the hash of
+ * its ABI. It is saved in the build directory so it is still valid after a restart.
+ */
+class JavaCompilationState {
+
+    private static final int VERSION = 3;
+
+    static class SourceEntry {
+
+        /**
+         * The hash of the source when it was compiled, null if it has to be compiled again
+         */
+        final HashCode hash;
+        final List<String> classes;
+
+        SourceEntry(HashCode hash, List<String> classes) {
+            this.hash = hash;
+            this.classes = classes;
+        }
+    }
+
+    static class ClassEntry {
+        final HashCode abiHash;
+        final ClassAnalysis analysis;
+
+        ClassEntry(HashCode abiHash, ClassAnalysis analysis) {
+            this.abiHash = abiHash;
+            this.analysis = analysis;
+        }
+    }
+
+    /**
+     * A class that is compiled against but not compiled by this task, like the output of the
+     * kotlin compiler
+     */
+    static class ClasspathEntry {
+        final HashCode hash;
+        final String className;
+        final HashCode abiHash;
+        final IntSet constants;
+
+        ClasspathEntry(HashCode hash, String className, HashCode abiHash, IntSet constants) {
+            this.hash = hash;
+            this.className = className;
+            this.abiHash = abiHash;
+            this.constants = constants;
+        }
+    }
+
+    private final Map<String, SourceEntry> mSources = new HashMap<>();
+    private final Map<String, ClassEntry> mClasses = new HashMap<>();
+    private final Map<String, ClasspathEntry> mClasspathClasses = new HashMap<>();
+    private String mLibrariesKey;
+
+    /**
+     * @return the saved state, or an empty state if it does not exist or cannot be read
+     */
+    static JavaCompilationState load(File file, StringInterner interner) {
+        JavaCompilationState state = new JavaCompilationState();
+        if (!file.exists()) {
+            return state;
+        }
+        try (KryoBackedDecoder decoder = new KryoBackedDecoder(new FileInputStream(file))) {
+            if (decoder.readSmallInt() != VERSION) {
+                return state;
+            }
+            state.read(decoder, interner);
+            return state;
+        } catch (Exception e) {
+            return new JavaCompilationState();
+        }
+    }
+
+    void save(File file, StringInterner interner) throws IOException {
+        File parent = file.getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Unable to create " + parent);
+        }
+        try (KryoBackedEncoder encoder = new KryoBackedEncoder(new FileOutputStream(file))) {
+            encoder.writeSmallInt(VERSION);
+            write(encoder, interner);
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException(e);
+        }
+    }
+
+    private void read(KryoBackedDecoder decoder, StringInterner interner) throws Exception {
+        HashCodeSerializer hashSerializer = new HashCodeSerializer();
+        ClassAnalysis.Serializer analysisSerializer = new ClassAnalysis.Serializer(interner);
+
+        mLibrariesKey = decoder.readNullableString();
+        int count = decoder.readSmallInt();
+        for (int i = 0; i < count; i++) {
+            String path = decoder.readString();
+            HashCode hash = decoder.readBoolean() ? hashSerializer.read(decoder) : null;
+            int classCount = decoder.readSmallInt();
+            List<String> classes = new ArrayList<>(classCount);
+            for (int j = 0; j < classCount; j++) {
+                classes.add(interner.intern(decoder.readString()));
+            }
+            mSources.put(path, new SourceEntry(hash, classes));
+        }
+        count = decoder.readSmallInt();
+        for (int i = 0; i < count; i++) {
+            HashCode abiHash = hashSerializer.read(decoder);
+            ClassAnalysis analysis = analysisSerializer.read(decoder);
+            mClasses.put(analysis.getClassName(), new ClassEntry(abiHash, analysis));
+        }
+        count = decoder.readSmallInt();
+        for (int i = 0; i < count; i++) {
+            String path = decoder.readString();
+            HashCode hash = hashSerializer.read(decoder);
+            String className = interner.intern(decoder.readString());
+            HashCode abiHash = hashSerializer.read(decoder);
+            IntSet constants = IntSetSerializer.INSTANCE.read(decoder);
+            mClasspathClasses.put(path,
+                    new ClasspathEntry(hash, className, abiHash, constants));
+        }
+    }
+
+    private void write(KryoBackedEncoder encoder, StringInterner interner) throws Exception {
+        HashCodeSerializer hashSerializer = new HashCodeSerializer();
+        ClassAnalysis.Serializer analysisSerializer = new ClassAnalysis.Serializer(interner);
+
+        encoder.writeNullableString(mLibrariesKey);
+        encoder.writeSmallInt(mSources.size());
+        for (Map.Entry<String, SourceEntry> entry : mSources.entrySet()) {
+            encoder.writeString(entry.getKey());
+            HashCode hash = entry.getValue().hash;
+            encoder.writeBoolean(hash != null);
+            if (hash != null) {
+                hashSerializer.write(encoder, hash);
+            }
+            encoder.writeSmallInt(entry.getValue().classes.size());
+            for (String className : entry.getValue().classes) {
+                encoder.writeString(className);
+            }
+        }
+        encoder.writeSmallInt(mClasses.size());
+        for (ClassEntry entry : mClasses.values()) {
+            hashSerializer.write(encoder, entry.abiHash);
+            analysisSerializer.write(encoder, entry.analysis);
+        }
+        encoder.writeSmallInt(mClasspathClasses.size());
+        for (Map.Entry<String, ClasspathEntry> entry : mClasspathClasses.entrySet()) {
+            encoder.writeString(entry.getKey());
+            hashSerializer.write(encoder, entry.getValue().hash);
+            encoder.writeString(entry.getValue().className);
+            hashSerializer.write(encoder, entry.getValue().abiHash);
+            IntSetSerializer.INSTANCE.write(encoder, entry.getValue().constants);
+        }
+    }
+
+    String getLibrariesKey() {
+        return mLibrariesKey;
+    }
+
+    void setLibrariesKey(String librariesKey) {
+        mLibrariesKey = librariesKey;
+    }
+
+    Collection<String> getSourcePaths() {
+        return new ArrayList<>(mSources.keySet());
+    }
+
+    SourceEntry getSource(String path) {
+        return mSources.get(path);
+    }
+
+    void putSource(String path, SourceEntry entry) {
+        mSources.put(path, entry);
+    }
+
+    SourceEntry removeSource(String path) {
+        return mSources.remove(path);
+    }
+
+    ClassEntry getClass(String className) {
+        return mClasses.get(className);
+    }
+
+    void putClass(ClassEntry entry) {
+        mClasses.put(entry.analysis.getClassName(), entry);
+    }
+
+    ClassEntry removeClass(String className) {
+        return mClasses.remove(className);
+    }
+
+    Map<String, ClasspathEntry> getClasspathClasses() {
+        return mClasspathClasses;
+    }
+
+    /**
+     * @return the source files that the given classes were compiled from
+     */
+    Map<String, String> getSourcesByClass() {
+        Map<String, String> sources = new HashMap<>(mClasses.size());
+        for (Map.Entry<String, SourceEntry> entry : mSources.entrySet()) {
+            for (String className : entry.getValue().classes) {
+                sources.put(className, entry.getKey());
+            }
+        }
+        return sources;
+    }
+
+    /**
+     * @return the dependency graph of the classes compiled by this task
+     */
+    ClassSetAnalysisData getAnalysisData() {
+        ClassDependentsAccumulator accumulator = new ClassDependentsAccumulator();
+        for (ClassEntry entry : mClasses.values()) {
+            accumulator.addClass(entry.analysis, entry.abiHash);
+        }
+        return accumulator.getAnalysis();
+    }
+
+    void clear() {
+        mSources.clear();
+        mClasses.clear();
+        mClasspathClasses.clear();
+        mLibrariesKey = null;
+    }
+}
@@ -5,6 +5,7 @@ import android.text.TextUtils;
 import androidx.annotation.NonNull;
 
 import com.google.common.base.Throwables;
+import com.tyron.builder.compiler.BuildArtifact;
 import com.tyron.builder.compiler.BuildType;
 import com.tyron.builder.compiler.Task;
 import com.tyron.builder.exception.CompilationFailedException;
@@ -31,8 +32,10 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Set;
 import java.util.jar.JarFile;
 import java.util.stream.Collectors;
 
@@ -58,6 +61,17 @@ public class IncrementalKotlinCompiler extends Task<AndroidModule> {
         return TAG;
     }
 
+    @Override
+    public Set<BuildArtifact> getInputs() {
+        return EnumSet.of(BuildArtifact.LIBRARIES, BuildArtifact.SOURCES,
+                BuildArtifact.GENERATED_SOURCES);
+    }
+
+    @Override
+    public Set<BuildArtifact> getOutputs() {
+        return EnumSet.of(BuildArtifact.KOTLIN_CLASSES);
+    }
+
     @Override
     public void prepare(BuildType type) throws IOException {
         mFilesToCompile = new ArrayList<>();
@@ -93,6 +107,12 @@ public class IncrementalKotlinCompiler extends Task<AndroidModule> {
 
         List<File> javaSourceRoots = new ArrayList<>(getModule().getJavaFiles().values());
 
+        List<File> plugins = getPlugins();
+        String[] pluginOptions = getPluginOptions();
+        KotlinCompilerSession session = KotlinCompilerSession.getInstance();
+        boolean warm = session.begin(classpath, plugins, pluginOptions);
+        long start = System.currentTimeMillis();
+        boolean completed = false;
         try {
             K2JVMCompiler compiler = new K2JVMCompiler();
             K2JVMCompilerArguments args = new K2JVMCompilerArguments();
@@ -112,13 +132,12 @@ public class IncrementalKotlinCompiler extends Task<AndroidModule> {
            // args.setKotlinHome(mKotlinHome.getAbsolutePath());
             args.setDestination(mClassOutput.getAbsolutePath());
 
-            List<File> plugins = getPlugins();
             getLogger().debug("Loading kotlin compiler plugins: " + plugins);
 
             args.setPluginClasspaths(plugins.stream()
                     .map(File::getAbsolutePath)
                     .toArray(String[]::new));
-            args.setPluginOptions(getPluginOptions());
+            args.setPluginOptions(pluginOptions);
 
             File cacheDir = new File(getModule().getBuildDirectory(), "intermediate/kotlin");
 
@@ -142,8 +161,20 @@ public class IncrementalKotlinCompiler extends Task<AndroidModule> {
                                                            @NonNull ExitCode exitCode) {
                         }
                     });
+            completed = true;
         } catch (Exception e) {
             throw new CompilationFailedException(Throwables.getStackTraceAsString(e));
+        } finally {
+            long time = System.currentTimeMillis() - start;
+            session.end(time, completed);
+            if (warm) {
+                getLogger().debug("Compiled kotlin sources in " + time + " ms with a warm " +
+                                  "compiler, average: " + session.getAverageWarmTime() +
+                                  " ms, cold: " + session.getColdTime() + " ms");
+            } else {
+                getLogger().debug("Compiled kotlin sources in " + time + " ms with a cold " +
+                                  "compiler");
+            }
         }
 
         if (mCollector.hasErrors()) {
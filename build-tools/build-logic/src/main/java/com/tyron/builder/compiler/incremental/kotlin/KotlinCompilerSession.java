@@ -0,0 +1,161 @@
+package com.tyron.builder.compiler.incremental.kotlin;
+
+import com.google.common.hash.HashCode;
+import com.tyron.builder.BuildModule;
+
+import org.jetbrains.kotlin.cli.jvm.compiler.KotlinCoreEnvironment;
+import org.jetbrains.kotlin.com.intellij.openapi.Disposable;
+import org.jetbrains.kotlin.com.intellij.openapi.util.Disposer;
+import org.jetbrains.kotlin.config.CompilerConfiguration;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Keeps the application environment of the kotlin compiler alive between builds, like the
+ * kotlin daemon does. Creating it registers the extension points of the compiler, indexes the
+ * jars of the classpath and loads the compiler plugins, which takes longer than compiling the
+ * few files that changed in an incremental build.
+ *
+ * <p>The application environment is shared by every kotlin environment of the process and the
+ * compiler disposes it once the last project using it is disposed. The session holds its own
+ * reference to it, so it outlives the project of each compilation. Releasing the session only
+ * releases that reference, the environment stays alive while another project such as the one
+ * of the code completion still uses it.</p>
+ *
+ * <p>The reference is released when the classpath, the compiler plugins or their options
+ * change, and when the heap is almost full so the memory it holds can be reclaimed. The next
+ * build then starts a cold session again.</p>
+ */
+public class KotlinCompilerSession {
+
+    /**
+     * The fraction of the maximum heap size above which the environment is disposed after a
+     * build
+     */
+    private static final double MAX_HEAP_USAGE = 0.75;
+
+    private static KotlinCompilerSession sInstance;
+
+    public static synchronized KotlinCompilerSession getInstance() {
+        if (sInstance == null) {
+            sInstance = new KotlinCompilerSession();
+        }
+        return sInstance;
+    }
+
+    private Disposable mDisposable;
+    private String mKey;
+    private boolean mWarm;
+    private int mWarmBuilds;
+    private long mColdTime = -1;
+    private long mLastWarmTime = -1;
+    private long mTotalWarmTime;
+
+    private KotlinCompilerSession() {
+    }
+
+    /**
+     * Called before compiling, disposes the environment if it was created with another
+     * classpath or other plugins. The reference of the session is taken before the compiler
+     * creates its project, so disposing that project does not dispose the environment.
+     *
+     * @return whether the compilation reuses the environment of a previous build
+     */
+    public synchronized boolean begin(List<File> classpath, List<File> plugins,
+                                      String[] pluginOptions) {
+        String key = getKey(classpath, plugins, pluginOptions);
+        if (mWarm && !key.equals(mKey)) {
+            dispose();
+        }
+        if (mDisposable == null) {
+            mDisposable = Disposer.newDisposable("Kotlin compiler session");
+            KotlinCoreEnvironment.Companion.getOrCreateApplicationEnvironmentForProduction(
+                    mDisposable, new CompilerConfiguration());
+        }
+        mKey = key;
+        return mWarm;
+    }
+
+    /**
+     * Called after compiling to record how long it took, the environment is kept if the
+     * compiler has not thrown and there is enough memory left. Errors in the sources do not
+     * affect the environment.
+     */
+    public synchronized void end(long time, boolean completed) {
+        if (mWarm) {
+            mWarmBuilds++;
+            mLastWarmTime = time;
+            mTotalWarmTime += time;
+        } else {
+            mColdTime = time;
+        }
+
+        Runtime runtime = Runtime.getRuntime();
+        long used = runtime.totalMemory() - runtime.freeMemory();
+        if (!completed || used > runtime.maxMemory() * MAX_HEAP_USAGE) {
+            dispose();
+        } else {
+            mWarm = true;
+        }
+    }
+
+    /**
+     * Releases the reference of the session to the environment. It is disposed by the
+     * compiler if no other project uses it, the next compilation then creates it again.
+     */
+    public synchronized void dispose() {
+        if (mDisposable != null) {
+            Disposer.dispose(mDisposable);
+            mDisposable = null;
+        }
+        mWarm = false;
+        mKey = null;
+    }
+
+    /**
+     * @return how long the last compilation that created the environment took, -1 if there
+     * was none
+     */
+    public synchronized long getColdTime() {
+        return mColdTime;
+    }
+
+    /**
+     * @return how long the last compilation that reused the environment took, -1 if there
+     * was none
+     */
+    public synchronized long getLastWarmTime() {
+        return mLastWarmTime;
+    }
+
+    /**
+     * @return the average time of the compilations that reused the environment, -1 if there
+     * were none
+     */
+    public synchronized long getAverageWarmTime() {
+        return mWarmBuilds == 0 ? -1 : mTotalWarmTime / mWarmBuilds;
+    }
+
+    public synchronized int getWarmBuildCount() {
+        return mWarmBuilds;
+    }
+
+    private static String getKey(List<File> classpath, List<File> plugins,
+                                 String[] pluginOptions) {
+        StringBuilder key = new StringBuilder();
+        appendFiles(key, classpath);
+        key.append("\n\n");
+        appendFiles(key, plugins);
+        key.append("\n\n").append(Arrays.toString(pluginOptions));
+        return key.toString();
+    }
+
+    private static void appendFiles(StringBuilder key, List<File> files) {
+        for (File file : files) {
+            HashCode hash = BuildModule.getFileFingerprints().hashIfExists(file);
+            key.append(file.getAbsolutePath()).append('=').append(hash).append('\n');
+        }
+    }
+}
@@ -1,12 +1,15 @@
 package com.tyron.builder.compiler.incremental.resource;
 
 import com.android.tools.aapt2.Aapt2Jni;
+import com.tyron.builder.BuildModule;
+import com.tyron.builder.compiler.BuildArtifact;
 import com.tyron.builder.compiler.BuildType;
 import com.tyron.builder.compiler.Task;
 import com.tyron.builder.exception.CompilationFailedException;
 import com.tyron.builder.log.ILogger;
 import com.tyron.builder.log.LogUtils;
 import com.tyron.builder.model.DiagnosticWrapper;
+import com.tyron.builder.model.Library;
 import com.tyron.builder.project.Project;
 import com.tyron.builder.project.api.AndroidModule;
 import com.tyron.builder.project.api.Module;
@@ -21,15 +24,26 @@ import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 
 public class IncrementalAapt2Task extends Task<AndroidModule> {
 
     private static final String TAG = "IncrementalAAPT2";
 
+    /**
+     * Launching aapt2 has a cost, small changes are compiled by a single process
+     */
+    private static final int MIN_FILES_PER_JOB = 32;
+
     private final boolean mGenerateProtoFormat;
 
     public IncrementalAapt2Task(Project project,
@@ -45,6 +59,16 @@ public class IncrementalAapt2Task extends Task<AndroidModule> {
         return TAG;
     }
 
+    @Override
+    public Set<BuildArtifact> getInputs() {
+        return EnumSet.of(BuildArtifact.LIBRARIES, BuildArtifact.MANIFEST, BuildArtifact.RESOURCES);
+    }
+
+    @Override
+    public Set<BuildArtifact> getOutputs() {
+        return EnumSet.of(BuildArtifact.GENERATED_SOURCES, BuildArtifact.LINKED_RESOURCES);
+    }
+
     @Override
     public void prepare(BuildType type) throws IOException {
 
@@ -55,8 +79,7 @@ public class IncrementalAapt2Task extends Task<AndroidModule> {
                 getFiles(getModule(), getOutputDirectory(getModule()));
         List<File> librariesToCompile = getLibraries();
 
-        compileProject(filesToCompile);
-        compileLibraries(librariesToCompile);
+        compileResources(filesToCompile, librariesToCompile);
 
         link();
 
@@ -72,77 +95,165 @@ public class IncrementalAapt2Task extends Task<AndroidModule> {
         }
     }
 
-    private void compileProject(Map<String, List<File>> files) throws IOException,
-            CompilationFailedException {
-        List<String> args = new ArrayList<>();
+    /**
+     * Compiles the changed resources of the project and the resources of the libraries that
+     * have not been compiled yet. Each library is compiled to its own zip by a separate aapt2
+     * process and the project files are split in chunks, all of them run on a pool bounded by
+     * the number of processors.
+     */
+    private void compileResources(Map<String, List<File>> files, List<File> libraries)
+            throws IOException, CompilationFailedException {
+        List<CompileJob> jobs = new ArrayList<>();
 
-        for (String resourceType : files.keySet()) {
-            List<File> filesToCompile = files.get(resourceType);
-            if (filesToCompile != null && !filesToCompile.isEmpty()) {
+        List<String> projectFiles = new ArrayList<>();
+        for (List<File> filesToCompile : files.values()) {
+            if (filesToCompile != null) {
                 for (File fileToCompile : filesToCompile) {
-                    args.add(fileToCompile.getAbsolutePath());
+                    projectFiles.add(fileToCompile.getAbsolutePath());
                 }
             }
         }
-        args.add("-o");
-
-        File outputCompiled = new File(getModule().getBuildDirectory(), "bin/res/compiled");
-        if (!outputCompiled.exists() && !outputCompiled.mkdirs()) {
-            throw new IOException("Failed to create compiled directory");
+        int projectJobs = 0;
+        if (!projectFiles.isEmpty()) {
+            File outputCompiled = new File(getModule().getBuildDirectory(), "bin/res/compiled");
+            if (!outputCompiled.exists() && !outputCompiled.mkdirs()) {
+                throw new IOException("Failed to create compiled directory");
+            }
+            int chunks = Math.min(Runtime.getRuntime().availableProcessors(),
+                    (projectFiles.size() + MIN_FILES_PER_JOB - 1) / MIN_FILES_PER_JOB);
+            int chunkSize = (projectFiles.size() + chunks - 1) / chunks;
+            for (int i = 0; i < projectFiles.size(); i += chunkSize) {
+                List<String> args = new ArrayList<>(
+                        projectFiles.subList(i, Math.min(projectFiles.size(), i + chunkSize)));
+                args.add("-o");
+                args.add(outputCompiled.getAbsolutePath());
+                jobs.add(new CompileJob(getModule().getRootFile().getName(), args, null));
+                projectJobs++;
+            }
         }
-        args.add(outputCompiled.getAbsolutePath());
-
-        int compile = Aapt2Jni.compile(args);
-        List<DiagnosticWrapper> logs = Aapt2Jni.getLogs();
-        LogUtils.log(logs, getLogger());
 
-        if (compile != 0) {
+        if (!libraries.isEmpty()) {
+            getLogger().debug("Compiling libraries.");
+        }
+        File output = new File(getModule().getBuildDirectory(), "bin/res");
+        if (!output.exists() && !output.mkdirs()) {
+            throw new IOException("Failed to create resource output directory");
+        }
+        for (File library : libraries) {
+            File parent = library.getParentFile();
+            if (parent == null) {
+                throw new IOException("Library folder doesn't exist");
+            }
+            File resDir = new File(parent, "res");
+            if (!resDir.isDirectory()) {
+                continue;
+            }
+            File outputZip = new File(output, parent.getName() + ".zip");
+            List<String> args = new ArrayList<>();
+            args.add("--dir");
+            args.add(resDir.getAbsolutePath());
+            args.add("-o");
+            args.add(outputZip.getAbsolutePath());
+            jobs.add(new CompileJob(getLibraryName(parent), args, outputZip));
+        }
+
+        if (jobs.isEmpty()) {
+            return;
+        }
+
+        long start = System.currentTimeMillis();
+        List<CompileResult> results = runJobs(jobs);
+
+        boolean failed = false;
+        for (int i = 0; i < jobs.size(); i++) {
+            CompileJob job = jobs.get(i);
+            CompileResult result = results.get(i);
+            LogUtils.log(result.logs, getLogger());
+            if (job.output != null) {
+                getLogger().debug("Compiled resources of " + job.name + " in " +
+                                  result.duration + " ms");
+            }
+            if (result.exitCode != 0) {
+                failed = true;
+                if (job.output != null) {
+                    // a partial zip would be taken as already compiled on the next build
+                    FileUtils.deleteQuietly(job.output);
+                }
+            }
+        }
+        if (failed) {
             throw new CompilationFailedException(
                     "Compilation failed, check logs for more details.");
         }
+        getLogger().debug("Compiled " + (jobs.size() - projectJobs) + " libraries and " +
+                          projectFiles.size() + " resource files in " +
+                          (System.currentTimeMillis() - start) + " ms");
 
         copyMapToDir(files);
     }
 
-    private void compileLibraries(List<File> libraries) throws IOException,
-            CompilationFailedException {
-        getLogger().debug("Compiling libraries.");
-
-        File output = new File(getModule().getBuildDirectory(), "bin/res");
-        if (!output.exists()) {
-            if (!output.mkdirs()) {
-                throw new IOException("Failed to create resource output directory");
+    private List<CompileResult> runJobs(List<CompileJob> jobs) throws CompilationFailedException {
+        int threads = Math.min(jobs.size(), Runtime.getRuntime().availableProcessors());
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threads));
+        try {
+            List<Future<CompileResult>> futures = new ArrayList<>(jobs.size());
+            for (CompileJob job : jobs) {
+                futures.add(executor.submit(() -> {
+                    long start = System.currentTimeMillis();
+                    int exitCode = Aapt2Jni.compile(new ArrayList<>(job.args));
+                    List<DiagnosticWrapper> logs = new ArrayList<>(Aapt2Jni.getLogs());
+                    return new CompileResult(exitCode, logs,
+                            System.currentTimeMillis() - start);
+                }));
+            }
+            List<CompileResult> results = new ArrayList<>(jobs.size());
+            for (Future<CompileResult> future : futures) {
+                results.add(future.get());
             }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CompilationFailedException("Resource compilation was interrupted", e);
+        } catch (ExecutionException e) {
+            throw new CompilationFailedException("Resource compilation failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
         }
+    }
 
-        for (File file : libraries) {
-            File parent = file.getParentFile();
-            if (parent == null) {
-                throw new IOException("Library folder doesn't exist");
-            }
-            File[] files = parent.listFiles();
-            if (files == null) {
-                continue;
-            }
+    private String getLibraryName(File libraryDir) {
+        Library library = getModule().getLibrary(libraryDir.getName());
+        if (library != null && library.getDeclaration() != null) {
+            return library.getDeclaration();
+        }
+        return libraryDir.getName();
+    }
 
-            for (File inside : files) {
-                if (inside.isDirectory() && inside.getName().equals("res")) {
-                    List<String> args = new ArrayList<>();
-                    args.add("--dir");
-                    args.add(inside.getAbsolutePath());
-                    args.add("-o");
-                    args.add(createNewFile(output, parent.getName() + ".zip").getAbsolutePath());
-
-                    int compile = Aapt2Jni.compile(args);
-                    List<DiagnosticWrapper> logs = Aapt2Jni.getLogs();
-                    LogUtils.log(logs, getLogger());
-
-                    if (compile != 0) {
-                        throw new CompilationFailedException(
-                                "Compilation failed, check logs for more details.");
-                    }
-                }
-            }
+    private static class CompileJob {
+        final String name;
+        final List<String> args;
+
+        /**
+         * The zip the resources of a library are compiled to, null for the project files
+         */
+        final File output;
+
+        CompileJob(String name, List<String> args, File output) {
+            this.name = name;
+            this.args = args;
+            this.output = output;
+        }
+    }
+
+    private static class CompileResult {
+        final int exitCode;
+        final List<DiagnosticWrapper> logs;
+        final long duration;
+
+        CompileResult(int exitCode, List<DiagnosticWrapper> logs, long duration) {
+            this.exitCode = exitCode;
+            this.logs = logs;
+            this.duration = duration;
         }
     }
 
@@ -394,15 +505,7 @@ public class IncrementalAapt2Task extends Task<AndroidModule> {
     }
 
     private static boolean contentModified(File newFile, File oldFile) {
-        if (!oldFile.exists() || !newFile.exists()) {
-            return true;
-        }
-
-        if (newFile.length() != oldFile.length()) {
-            return true;
-        }
-
-        return newFile.lastModified() > oldFile.lastModified();
+        return !BuildModule.getFileFingerprints().contentEquals(newFile, oldFile);
     }
 
     /**
@@ -71,6 +71,14 @@ public class SourceFileObject extends SimpleJavaFileObject {
 		}
 	}
 
+	/**
+	 * @return whether {@link #getCharContent(boolean)} always returns the contents given to
+	 * this object, instead of reading them from the editor or from the file each time
+	 */
+	public boolean hasFixedContents() {
+		return mProject == null && mContents != null;
+	}
+
 	/**
 	 * By default, the java compiler treats tabs as 8 spaces.
 	 * A work around for this is to replace the tabs with the number of space
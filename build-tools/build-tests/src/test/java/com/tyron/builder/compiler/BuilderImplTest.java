@@ -0,0 +1,332 @@
+package com.tyron.builder.compiler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.tyron.builder.exception.CompilationFailedException;
+import com.tyron.builder.log.ILogger;
+import com.tyron.builder.model.DiagnosticWrapper;
+import com.tyron.builder.project.api.Module;
+import com.tyron.builder.project.mock.MockFileManager;
+import com.tyron.builder.project.mock.MockJavaModule;
+
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+@RunWith(RobolectricTestRunner.class)
+public class BuilderImplTest {
+
+    private final List<String> mEvents = Collections.synchronizedList(new ArrayList<>());
+    private MockJavaModule mModule;
+
+    @Before
+    public void setup() throws IOException {
+        File root = Files.createTempDirectory("builder").toFile();
+        mModule = new MockJavaModule(root, new MockFileManager(root));
+    }
+
+    @Test
+    public void testDependentTasksRunInOrder() throws Exception {
+        TestTask sources = task("sources").writes(BuildArtifact.SOURCES);
+        TestTask java = task("java").reads(BuildArtifact.SOURCES)
+                .writes(BuildArtifact.JAVA_CLASSES);
+        TestTask dex = task("dex").reads(BuildArtifact.JAVA_CLASSES).writes(BuildArtifact.DEX);
+
+        TestBuilder builder = builder(sources, java, dex);
+        builder.build(BuildType.DEBUG);
+
+        assertTrue(mEvents.indexOf("end sources") < mEvents.indexOf("start java"));
+        assertTrue(mEvents.indexOf("end java") < mEvents.indexOf("start dex"));
+        assertEquals(Arrays.asList(sources, java, dex), builder.getTasksRan());
+        assertTrue(sources.mCleaned && java.mCleaned && dex.mCleaned);
+    }
+
+    @Test
+    public void testIndependentTasksRunInParallel() throws Exception {
+        Assume.assumeTrue(Runtime.getRuntime().availableProcessors() > 1);
+        CountDownLatch bothRunning = new CountDownLatch(2);
+        TestTask resources = task("resources").writes(BuildArtifact.LINKED_RESOURCES)
+                .signaling(bothRunning).awaiting(bothRunning);
+        TestTask libraries = task("libraries").writes(BuildArtifact.LIBRARY_DEX)
+                .signaling(bothRunning).awaiting(bothRunning);
+
+        // each task only finishes if the other one is running at the same time
+        builder(resources, libraries).build(BuildType.DEBUG);
+
+        assertTrue(resources.mCompleted && libraries.mCompleted);
+    }
+
+    @Test
+    public void testUndeclaredTaskIsBarrier() throws Exception {
+        TestTask first = task("first").writes(BuildArtifact.SOURCES);
+        TestTask barrier = task("barrier");
+        TestTask last = task("last").writes(BuildArtifact.APK);
+
+        builder(first, barrier, last).build(BuildType.DEBUG);
+
+        assertTrue(mEvents.indexOf("end first") < mEvents.indexOf("start barrier"));
+        assertTrue(mEvents.indexOf("end barrier") < mEvents.indexOf("start last"));
+    }
+
+    @Test
+    public void testFailureStopsDependents() throws Exception {
+        CompilationFailedException error = new CompilationFailedException("java failed");
+        TestTask java = task("java").writes(BuildArtifact.JAVA_CLASSES).failing(error);
+        TestTask resources = task("resources").writes(BuildArtifact.LINKED_RESOURCES);
+        TestTask dex = task("dex").reads(BuildArtifact.JAVA_CLASSES).writes(BuildArtifact.DEX);
+
+        TestBuilder builder = builder(java, resources, dex);
+        try {
+            builder.build(BuildType.DEBUG);
+            fail("The build should have failed");
+        } catch (CompilationFailedException e) {
+            assertSame(error, e);
+        }
+
+        assertFalse(mEvents.contains("start dex"));
+        assertEquals(Collections.singletonList(resources), builder.getTasksRan());
+        // every task that ran is cleaned, even the one that failed
+        assertTrue(java.mCleaned && resources.mCleaned);
+        assertFalse(dex.mCleaned);
+    }
+
+    @Test
+    public void testFirstFailureInListOrderIsThrown() throws Exception {
+        Assume.assumeTrue(Runtime.getRuntime().availableProcessors() > 1);
+        CountDownLatch secondFailed = new CountDownLatch(1);
+        IOException firstError = new IOException("first");
+        IOException secondError = new IOException("second");
+        TestTask first = task("first").writes(BuildArtifact.JAVA_CLASSES)
+                .awaiting(secondFailed).failing(firstError);
+        TestTask second = task("second").writes(BuildArtifact.LINKED_RESOURCES)
+                .failing(secondError).signaling(secondFailed);
+
+        try {
+            builder(first, second).build(BuildType.DEBUG);
+            fail("The build should have failed");
+        } catch (IOException e) {
+            assertSame(firstError, e);
+        }
+    }
+
+    @Test
+    public void testLogsFollowTaskOrder() throws Exception {
+        Assume.assumeTrue(Runtime.getRuntime().availableProcessors() > 1);
+        List<String> logs = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch secondLogged = new CountDownLatch(1);
+        TestTask first = task("first").writes(BuildArtifact.JAVA_CLASSES)
+                .awaiting(secondLogged);
+        TestTask second = task("second").writes(BuildArtifact.LINKED_RESOURCES)
+                .signaling(secondLogged);
+        first.setLogger(new RecordingLogger(logs));
+        second.setLogger(new RecordingLogger(logs));
+
+        builder(first, second).build(BuildType.DEBUG);
+
+        // the second task logged first, but its logs are written after the ones of the first
+        List<String> messages = new ArrayList<>();
+        for (String log : logs) {
+            if (log.startsWith("log ")) {
+                messages.add(log);
+            }
+        }
+        assertEquals(Arrays.asList("log first", "log second"), messages);
+    }
+
+    @Test
+    public void testInterruptCancelsBuild() throws Exception {
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch never = new CountDownLatch(1);
+        TestTask blocking = task("blocking").writes(BuildArtifact.JAVA_CLASSES)
+                .signaling(running).awaiting(never);
+        TestTask dex = task("dex").reads(BuildArtifact.JAVA_CLASSES).writes(BuildArtifact.DEX);
+        TestBuilder builder = builder(blocking, dex);
+
+        AtomicReference<Throwable> thrown = new AtomicReference<>();
+        Thread thread = new Thread(() -> {
+            try {
+                builder.build(BuildType.DEBUG);
+            } catch (Throwable e) {
+                thrown.set(e);
+            }
+        });
+        thread.start();
+        assertTrue(running.await(5, TimeUnit.SECONDS));
+        thread.interrupt();
+        thread.join(5000);
+
+        assertFalse(thread.isAlive());
+        assertTrue(thrown.get() instanceof CompilationFailedException);
+        assertFalse(blocking.mCompleted);
+        assertFalse(mEvents.contains("start dex"));
+    }
+
+    private TestTask task(String name) {
+        return new TestTask(mModule, name);
+    }
+
+    private TestBuilder builder(TestTask... tasks) {
+        return new TestBuilder(mModule, Arrays.asList(tasks));
+    }
+
+    private static class TestBuilder extends BuilderImpl<Module> {
+
+        private final List<Task<? super Module>> mTasks = new ArrayList<>();
+
+        TestBuilder(Module module, List<TestTask> tasks) {
+            super(null, module, ILogger.EMPTY);
+            mTasks.addAll(tasks);
+        }
+
+        @Override
+        public List<Task<? super Module>> getTasks(BuildType type) {
+            return new ArrayList<>(mTasks);
+        }
+    }
+
+    private class TestTask extends Task<Module> {
+
+        private final String mName;
+        private final Set<BuildArtifact> mInputs = EnumSet.noneOf(BuildArtifact.class);
+        private final Set<BuildArtifact> mOutputs = EnumSet.noneOf(BuildArtifact.class);
+        private CountDownLatch mAwait;
+        private CountDownLatch mSignal;
+        private Exception mFailure;
+        private volatile boolean mCompleted;
+        private volatile boolean mCleaned;
+
+        TestTask(Module module, String name) {
+            super(null, module, ILogger.EMPTY);
+            mName = name;
+        }
+
+        TestTask reads(BuildArtifact artifact) {
+            mInputs.add(artifact);
+            return this;
+        }
+
+        TestTask writes(BuildArtifact artifact) {
+            mOutputs.add(artifact);
+            return this;
+        }
+
+        TestTask awaiting(CountDownLatch latch) {
+            mAwait = latch;
+            return this;
+        }
+
+        TestTask signaling(CountDownLatch latch) {
+            mSignal = latch;
+            return this;
+        }
+
+        TestTask failing(Exception failure) {
+            mFailure = failure;
+            return this;
+        }
+
+        @Override
+        public String getName() {
+            return mName;
+        }
+
+        @Override
+        public Set<BuildArtifact> getInputs() {
+            return mInputs;
+        }
+
+        @Override
+        public Set<BuildArtifact> getOutputs() {
+            return mOutputs;
+        }
+
+        @Override
+        public void prepare(BuildType type) {
+
+        }
+
+        @Override
+        public void run() throws IOException, CompilationFailedException {
+            mEvents.add("start " + mName);
+            getLogger().info("log " + mName);
+            if (mSignal != null) {
+                mSignal.countDown();
+            }
+            if (mAwait != null) {
+                try {
+                    if (!mAwait.await(5, TimeUnit.SECONDS)) {
+                        throw new CompilationFailedException(mName + " timed out");
+                    }
+                } catch (InterruptedException e) {
+                    throw new CompilationFailedException(mName + " was interrupted", e);
+                }
+            }
+            if (mFailure instanceof IOException) {
+                throw (IOException) mFailure;
+            }
+            if (mFailure instanceof CompilationFailedException) {
+                throw (CompilationFailedException) mFailure;
+            }
+            mCompleted = true;
+            mEvents.add("end " + mName);
+        }
+
+        @Override
+        protected void clean() {
+            mCleaned = true;
+        }
+    }
+
+    private static class RecordingLogger implements ILogger {
+
+        private final List<String> mLogs;
+
+        RecordingLogger(List<String> logs) {
+            mLogs = logs;
+        }
+
+        private void log(DiagnosticWrapper wrapper) {
+            mLogs.add(wrapper.getMessage(Locale.getDefault()));
+        }
+
+        @Override
+        public void info(DiagnosticWrapper wrapper) {
+            log(wrapper);
+        }
+
+        @Override
+        public void debug(DiagnosticWrapper wrapper) {
+            log(wrapper);
+        }
+
+        @Override
+        public void warning(DiagnosticWrapper wrapper) {
+            log(wrapper);
+        }
+
+        @Override
+        public void error(DiagnosticWrapper wrapper) {
+            log(wrapper);
+        }
+    }
+}
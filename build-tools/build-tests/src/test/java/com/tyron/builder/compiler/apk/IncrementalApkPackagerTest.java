@@ -0,0 +1,263 @@
+package com.tyron.builder.compiler.apk;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.android.sdklib.build.DuplicateFileException;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+public class IncrementalApkPackagerTest {
+
+    private File mDirectory;
+    private File mApk;
+    private File mResources;
+    private File mDex;
+
+    @Before
+    public void setup() throws IOException {
+        mDirectory = Files.createTempDirectory("apk").toFile();
+        mApk = new File(mDirectory, "generated.apk");
+
+        Map<String, String> resources = new LinkedHashMap<>();
+        resources.put("AndroidManifest.xml", "<manifest/>");
+        resources.put("res/layout/main.xml", repeat("<LinearLayout/>", 2000));
+        resources.put("resources.arsc", repeat("table", 2000));
+        mResources = createZip("resources.ap_", resources);
+        mDex = createFile("classes.dex", repeat("dex", 100));
+    }
+
+    @Test
+    public void testCentralDirectory() throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(mResources, "r")) {
+            ZipCentralDirectory directory = ZipCentralDirectory.read(file.getChannel());
+            List<ZipCentralDirectory.Entry> entries = directory.getEntries();
+            assertEquals(3, entries.size());
+
+            // ZipOutputStream writes the sizes of deflated entries in a data descriptor
+            long end = 0;
+            for (ZipCentralDirectory.Entry entry : entries) {
+                assertEquals(end, entry.localHeaderOffset);
+                assertTrue((entry.flags & ZipCentralDirectory.FLAG_DATA_DESCRIPTOR) != 0);
+                end = ZipCentralDirectory.getEndOffset(file.getChannel(), entry);
+            }
+            assertEquals(end, directory.getOffset());
+        }
+    }
+
+    @Test
+    public void testInvalidZip() throws IOException {
+        File file = createFile("invalid.zip", repeat("not a zip", 10));
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r")) {
+            ZipCentralDirectory.read(randomAccessFile.getChannel());
+            fail("An invalid zip should not be read");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testFirstBuildWritesEveryEntry() throws Exception {
+        IncrementalApkPackager.Result result = seal(mResources, mDex);
+
+        assertTrue(result.isRewritten());
+        assertEquals(0, result.getReusedEntries());
+        assertEquals(4, result.getWrittenEntries());
+        assertContents(mResources, mDex);
+    }
+
+    @Test
+    public void testUnchangedEntriesAreKept() throws Exception {
+        seal(mResources, mDex);
+        long size = mApk.length();
+
+        IncrementalApkPackager.Result result = seal(mResources, mDex);
+
+        assertFalse(result.isRewritten());
+        assertEquals(4, result.getReusedEntries());
+        assertEquals(0, result.getWrittenEntries());
+        assertEquals(size, mApk.length());
+        assertContents(mResources, mDex);
+    }
+
+    @Test
+    public void testChangedEntryIsAppended() throws Exception {
+        seal(mResources, mDex);
+        byte[] before = FileUtils.readFileToByteArray(mApk);
+
+        FileUtils.writeStringToFile(mDex, repeat("changed", 100), StandardCharsets.UTF_8);
+        IncrementalApkPackager.Result result = seal(mResources, mDex);
+
+        assertFalse(result.isRewritten());
+        assertEquals(3, result.getReusedEntries());
+        assertEquals(1, result.getWrittenEntries());
+        assertContents(mResources, mDex);
+
+        // the entries of the resources were written first, they did not move
+        long resourcesEnd;
+        try (RandomAccessFile file = new RandomAccessFile(mApk, "r")) {
+            List<ZipCentralDirectory.Entry> entries =
+                    ZipCentralDirectory.read(file.getChannel()).getEntries();
+            resourcesEnd = ZipCentralDirectory.getEndOffset(file.getChannel(), entries.get(2));
+        }
+        byte[] after = FileUtils.readFileToByteArray(mApk);
+        assertArrayEquals(Arrays.copyOf(before, (int) resourcesEnd),
+                Arrays.copyOf(after, (int) resourcesEnd));
+    }
+
+    @Test
+    public void testRemovedEntryIsDropped() throws Exception {
+        seal(mResources, mDex);
+
+        Map<String, String> resources = new LinkedHashMap<>();
+        resources.put("AndroidManifest.xml", "<manifest/>");
+        resources.put("resources.arsc", repeat("table", 2000));
+        File newResources = createZip("resources.ap_", resources);
+        seal(newResources, mDex);
+
+        assertContents(newResources, mDex);
+        try (ZipFile zipFile = new ZipFile(mApk)) {
+            assertNull(zipFile.getEntry("res/layout/main.xml"));
+        }
+    }
+
+    @Test
+    public void testApkIsRewrittenWhenMostOfItIsUnused() throws Exception {
+        seal(mResources, mDex);
+
+        // the large entries are replaced, so most of the file is no longer used
+        Map<String, String> resources = new LinkedHashMap<>();
+        resources.put("AndroidManifest.xml", "<manifest/>");
+        resources.put("res/layout/main.xml", repeat("<FrameLayout/>", 2000));
+        resources.put("resources.arsc", repeat("arsc", 2000));
+        File newResources = createZip("resources.ap_", resources);
+        IncrementalApkPackager.Result result = seal(newResources, mDex);
+
+        assertTrue(result.isRewritten());
+        assertEquals(2, result.getReusedEntries());
+        assertEquals(2, result.getWrittenEntries());
+        assertFalse(new File(mDirectory, "generated.apk.tmp").exists());
+        assertContents(newResources, mDex);
+    }
+
+    @Test
+    public void testInvalidApkIsRewritten() throws Exception {
+        FileUtils.writeStringToFile(mApk, repeat("not a zip", 10), StandardCharsets.UTF_8);
+
+        IncrementalApkPackager.Result result = seal(mResources, mDex);
+
+        assertTrue(result.isRewritten());
+        assertContents(mResources, mDex);
+    }
+
+    @Test
+    public void testDuplicateEntries() throws Exception {
+        File other = createFile("other.dex", "other");
+        try (IncrementalApkPackager packager = new IncrementalApkPackager(mApk, true)) {
+            packager.addFile(mDex, "classes.dex");
+            packager.addFile(other, "classes.dex");
+            fail("The same path should not be added twice");
+        } catch (DuplicateFileException e) {
+            assertEquals("classes.dex", e.getArchivePath());
+        }
+
+        try (IncrementalApkPackager packager = new IncrementalApkPackager(mApk, true)) {
+            packager.addZipFile(mResources);
+            packager.addFile(other, "resources.arsc");
+            fail("The same path should not be added twice");
+        } catch (DuplicateFileException e) {
+            assertEquals("resources.arsc", e.getArchivePath());
+        }
+    }
+
+    private IncrementalApkPackager.Result seal(File resources, File dex) throws Exception {
+        try (IncrementalApkPackager packager = new IncrementalApkPackager(mApk, true)) {
+            packager.addZipFile(resources);
+            packager.addFile(dex, "classes.dex");
+            return packager.seal();
+        }
+    }
+
+    /**
+     * Checks that the APK can be read by {@link ZipFile} and contains exactly the entries of
+     * the resources and the dex file
+     */
+    private void assertContents(File resources, File dex) throws IOException {
+        Map<String, byte[]> expected = new LinkedHashMap<>();
+        try (ZipFile zipFile = new ZipFile(resources)) {
+            Enumeration<? extends ZipEntry> entries = zipFile.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                try (InputStream inputStream = zipFile.getInputStream(entry)) {
+                    expected.put(entry.getName(), IOUtils.toByteArray(inputStream));
+                }
+            }
+        }
+        expected.put("classes.dex", FileUtils.readFileToByteArray(dex));
+
+        try (ZipFile zipFile = new ZipFile(mApk)) {
+            Set<String> names = new HashSet<>();
+            Enumeration<? extends ZipEntry> entries = zipFile.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                names.add(entry.getName());
+                try (InputStream inputStream = zipFile.getInputStream(entry)) {
+                    assertArrayEquals(entry.getName(), expected.get(entry.getName()),
+                            IOUtils.toByteArray(inputStream));
+                }
+            }
+            assertEquals(expected.keySet(), names);
+        }
+    }
+
+    private File createZip(String name, Map<String, String> entries) throws IOException {
+        File file = new File(mDirectory, name);
+        try (ZipOutputStream outputStream = new ZipOutputStream(new FileOutputStream(file))) {
+            for (Map.Entry<String, String> entry : entries.entrySet()) {
+                outputStream.putNextEntry(new ZipEntry(entry.getKey()));
+                outputStream.write(entry.getValue().getBytes(StandardCharsets.UTF_8));
+                outputStream.closeEntry();
+            }
+        }
+        return file;
+    }
+
+    private File createFile(String name, String contents) throws IOException {
+        File file = new File(mDirectory, name);
+        FileUtils.writeStringToFile(file, contents, StandardCharsets.UTF_8);
+        return file;
+    }
+
+    private static String repeat(String string, int count) {
+        StringBuilder builder = new StringBuilder(string.length() * count);
+        for (int i = 0; i < count; i++) {
+            builder.append(string).append(i);
+        }
+        return builder.toString();
+    }
+}
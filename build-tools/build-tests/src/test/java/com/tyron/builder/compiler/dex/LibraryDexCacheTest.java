@@ -0,0 +1,135 @@
+package com.tyron.builder.compiler.dex;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.android.tools.r8.CompilationMode;
+import com.tyron.builder.log.ILogger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+public class LibraryDexCacheTest {
+
+    private File mDirectory;
+
+    @Before
+    public void setup() throws IOException {
+        mDirectory = Files.createTempDirectory("library-dex").toFile();
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEntriesAreEvicted() throws IOException {
+        long now = System.currentTimeMillis();
+        File oldest = createEntry("a-21-debug", 100, now - 3000);
+        File older = createEntry("b-21-debug", 100, now - 2000);
+        File newest = createEntry("c-21-debug", 100, now - 1000);
+
+        new LibraryDexCache(mDirectory, 250).trim(ILogger.EMPTY);
+
+        assertFalse(oldest.exists());
+        assertTrue(older.exists());
+        assertTrue(newest.exists());
+    }
+
+    @Test
+    public void testUnusedEntriesAreEvicted() throws IOException {
+        long now = System.currentTimeMillis();
+        File unused = createEntry("a-21-debug", 10, now - TimeUnit.DAYS.toMillis(40));
+        File recent = createEntry("b-21-debug", 10, now);
+
+        new LibraryDexCache(mDirectory, Long.MAX_VALUE).trim(ILogger.EMPTY);
+
+        assertFalse(unused.exists());
+        assertTrue(recent.exists());
+    }
+
+    @Test
+    public void testStaleTemporaryDirectoriesAreDeleted() throws IOException {
+        long now = System.currentTimeMillis();
+        File stale = createEntry("a-21-debug.tmp-1", 10, now - TimeUnit.DAYS.toMillis(2));
+        File running = createEntry("b-21-debug.tmp-2", 10, now);
+
+        new LibraryDexCache(mDirectory, 0).trim(ILogger.EMPTY);
+
+        assertFalse(stale.exists());
+        // the dexing may still be running
+        assertTrue(running.exists());
+    }
+
+    @Test
+    public void testClasspathIsPartOfTheKey() throws IOException {
+        LibraryDexCache cache = new LibraryDexCache(mDirectory);
+        File library = createJar("library.jar", 1);
+        File other = createJar("other.jar", 2);
+        File bootstrap = createJar("android.jar", 3);
+
+        String key = cache.getClasspathKey(Arrays.asList(library, other),
+                Collections.singletonList(bootstrap));
+        String reordered = cache.getClasspathKey(Arrays.asList(other, library),
+                Collections.singletonList(bootstrap));
+        String withoutOther = cache.getClasspathKey(Collections.singletonList(library),
+                Collections.singletonList(bootstrap));
+
+        assertEquals(key, reordered);
+        assertNotEquals(key, withoutOther);
+        assertNotEquals(cache.getKey(library, 21, CompilationMode.DEBUG, key),
+                cache.getKey(library, 21, CompilationMode.DEBUG, withoutOther));
+    }
+
+    @Test
+    public void testClasspathIsNotPartOfTheKeyWithoutDesugaring() throws IOException {
+        LibraryDexCache cache = new LibraryDexCache(mDirectory);
+        File library = createJar("library.jar", 1);
+        File other = createJar("other.jar", 2);
+        File bootstrap = createJar("android.jar", 3);
+
+        String key = cache.getClasspathKey(Arrays.asList(library, other),
+                Collections.singletonList(bootstrap));
+        String withoutOther = cache.getClasspathKey(Collections.singletonList(library),
+                Collections.singletonList(bootstrap));
+
+        // default interface methods are supported, the other libraries do not change the output
+        assertEquals(cache.getKey(library, 24, CompilationMode.DEBUG, key),
+                cache.getKey(library, 24, CompilationMode.DEBUG, withoutOther));
+        assertEquals(cache.getKey(library, 24, CompilationMode.DEBUG, key),
+                cache.getKey(library, 24, CompilationMode.DEBUG, null));
+        assertNotEquals(cache.getKey(library, 24, CompilationMode.DEBUG, null),
+                cache.getKey(library, 26, CompilationMode.DEBUG, null));
+    }
+
+    @Test
+    public void testMissingDexFilesAreNotInstalled() throws IOException {
+        File entry = createEntry("a-21-debug-b", 10, System.currentTimeMillis());
+        File libraryDir = new File(mDirectory, "library");
+        assertTrue(libraryDir.mkdirs());
+
+        assertFalse(LibraryDexCache.isInstalled(entry, libraryDir));
+
+        Files.write(new File(libraryDir, "classes.dex").toPath(), new byte[10]);
+        assertTrue(LibraryDexCache.isInstalled(entry, libraryDir));
+    }
+
+    private File createJar(String name, int content) throws IOException {
+        File jar = new File(mDirectory, name);
+        Files.write(jar.toPath(), new byte[]{(byte) content});
+        return jar;
+    }
+
+    private File createEntry(String key, int size, long lastModified) throws IOException {
+        File entry = new File(mDirectory, key);
+        assertTrue(entry.mkdirs());
+        Files.write(new File(entry, "classes.dex").toPath(), new byte[size]);
+        assertTrue(entry.setLastModified(lastModified));
+        return entry;
+    }
+}
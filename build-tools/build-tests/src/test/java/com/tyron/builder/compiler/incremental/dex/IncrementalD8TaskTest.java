@@ -0,0 +1,163 @@
+package com.tyron.builder.compiler.incremental.dex;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.tyron.builder.compiler.BuildType;
+import com.tyron.builder.log.ILogger;
+import com.tyron.builder.project.mock.MockAndroidModule;
+import com.tyron.builder.project.mock.MockFileManager;
+import com.tyron.common.util.Cache;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Checks which classes {@link IncrementalD8Task} dexes again and which of the dex files of the
+ * previous build it keeps. Dexing itself is not run, the dex files are written by the test the
+ * way the task does after dexing.
+ */
+public class IncrementalD8TaskTest {
+
+    private MockAndroidModule mModule;
+    private File mBootstrap;
+    private File mClassesDir;
+    private File mDexDir;
+
+    @Before
+    public void setup() throws IOException {
+        File root = Files.createTempDirectory("incremental-d8").toFile();
+        mModule = new MockAndroidModule(root, new MockFileManager(root));
+        mModule.setMinSdk(21);
+        mBootstrap = write(new File(root, "android.jar"), "bootstrap");
+        mModule.setBootstrapFile(mBootstrap);
+        mModule.setLambdaStubsJarFile(write(new File(root, "core-lambda-stubs.jar"), "stubs"));
+
+        mClassesDir = new File(mModule.getBuildDirectory(), "bin/java/classes");
+        mDexDir = new File(mModule.getBuildDirectory(), "intermediate/classes");
+        write(new File(mClassesDir, "test/A.class"), "A");
+        write(new File(mClassesDir, "test/B.class"), "B");
+        write(new File(mModule.getBuildDirectory(), "bin/kotlin/classes/test/K.class"), "K");
+
+        assertDexed(prepare(BuildType.DEBUG), "A", "B", "K");
+    }
+
+    @Test
+    public void testUnchangedClassesAreNotDexedAgain() throws IOException {
+        assertDexed(prepare(BuildType.DEBUG));
+    }
+
+    @Test
+    public void testChangedClassIsDexedAgain() throws IOException {
+        write(new File(mClassesDir, "test/A.class"), "changed A");
+
+        assertDexed(prepare(BuildType.DEBUG), "A");
+        assertTrue(getDexFile("A").exists());
+    }
+
+    @Test
+    public void testDexOfDeletedClassIsRemoved() throws IOException {
+        FileUtils.delete(new File(mClassesDir, "test/B.class"));
+
+        assertDexed(prepare(BuildType.DEBUG));
+        assertFalse(getDexFile("B").exists());
+        assertTrue(getDexFile("A").exists());
+        for (Cache.Key<String> key : getCache().getKeys()) {
+            assertFalse(key.file.endsWith("B.class"));
+        }
+    }
+
+    @Test
+    public void testMinSdkChangeDexesEverything() throws IOException {
+        File stale = writeStaleDexFile();
+        mModule.setMinSdk(26);
+
+        assertDexed(prepare(BuildType.DEBUG), "A", "B", "K");
+        assertFalse(stale.exists());
+    }
+
+    @Test
+    public void testBuildTypeChangeDexesEverything() throws IOException {
+        File stale = writeStaleDexFile();
+
+        assertDexed(prepare(BuildType.RELEASE), "A", "B", "K");
+        assertFalse(stale.exists());
+    }
+
+    @Test
+    public void testLibraryChangeDexesEverything() throws IOException {
+        File stale = writeStaleDexFile();
+        write(mBootstrap, "another bootstrap");
+
+        assertDexed(prepare(BuildType.DEBUG), "A", "B", "K");
+        assertFalse(stale.exists());
+    }
+
+    @Test
+    public void testRestartDexesEverything() throws IOException {
+        File stale = writeStaleDexFile();
+        // the dex files on disk are not known by the cache of a new process
+        mModule.removeCache(IncrementalD8Task.CACHE_KEY);
+
+        assertDexed(prepare(BuildType.DEBUG), "A", "B", "K");
+        assertFalse(stale.exists());
+    }
+
+    /**
+     * Prepares the task and writes the dex files of the classes it would compile
+     */
+    private IncrementalD8Task prepare(BuildType type) throws IOException {
+        IncrementalD8Task task = new IncrementalD8Task(null, mModule, ILogger.EMPTY);
+        task.prepare(type);
+        Cache<String, List<File>> cache = getCache();
+        for (Path file : task.getFilesToCompile()) {
+            File dexFile = getDexFile(file.getFileName().toString().replace(".class", ""));
+            write(dexFile, "dex " + file);
+            cache.load(file, "dex", Collections.singletonList(dexFile));
+        }
+        return task;
+    }
+
+    /**
+     * @return a dex file that is not written again by the next build, it is only removed if
+     * the dex files of the previous build are discarded
+     */
+    private File writeStaleDexFile() throws IOException {
+        return write(new File(mDexDir, "test/Removed.dex"), "dex");
+    }
+
+    private static void assertDexed(IncrementalD8Task task, String... classNames) {
+        List<String> names = new ArrayList<>();
+        for (Path file : task.getFilesToCompile()) {
+            names.add(file.getFileName().toString().replace(".class", ""));
+        }
+        Collections.sort(names);
+        List<String> expected = new ArrayList<>();
+        Collections.addAll(expected, classNames);
+        assertEquals(expected, names);
+    }
+
+    private Cache<String, List<File>> getCache() {
+        return mModule.getCache(IncrementalD8Task.CACHE_KEY, null);
+    }
+
+    private File getDexFile(String className) {
+        return new File(mDexDir, "test/" + className + ".dex");
+    }
+
+    private static File write(File file, String contents) throws IOException {
+        FileUtils.writeStringToFile(file, contents, StandardCharsets.UTF_8);
+        return file;
+    }
+}
@@ -0,0 +1,170 @@
+package com.tyron.builder.compiler.incremental.java;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.tyron.builder.compiler.BuildType;
+import com.tyron.builder.exception.CompilationFailedException;
+import com.tyron.builder.log.ILogger;
+import com.tyron.builder.project.mock.MockFileManager;
+import com.tyron.builder.project.mock.MockJavaModule;
+import com.tyron.common.TestUtil;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+public class IncrementalJavaTaskTest {
+
+    private static final String API = "package test;\n" +
+            "public class Api {\n" +
+            "    public int value() { return secret(); }\n" +
+            "    private int secret() { return 1; }\n" +
+            "}";
+    private static final String USER = "package test;\n" +
+            "public class User {\n" +
+            "    int get() { return new Api().value(); }\n" +
+            "}";
+    private static final String CONSTANTS = "package test;\n" +
+            "public class Constants {\n" +
+            "    public static final int LIMIT = 1;\n" +
+            "}";
+    private static final String LIMITED = "package test;\n" +
+            "public class Limited {\n" +
+            "    int limit() { return Constants.LIMIT; }\n" +
+            "}";
+    private static final String UNRELATED = "package test;\n" +
+            "public class Unrelated {\n" +
+            "}";
+
+    private MockJavaModule mModule;
+    private File mJavaDir;
+    private File mClassesDir;
+
+    @Before
+    public void setup() throws Exception {
+        File resourcesDir = TestUtil.getResourcesDirectory();
+        File root = Files.createTempDirectory("incremental-java").toFile();
+        mModule = new MockJavaModule(root, new MockFileManager(root));
+        mModule.setLambdaStubsJarFile(new File(resourcesDir, "bootstraps/core-lambda-stubs.jar"));
+        mModule.setBootstrapFile(new File(resourcesDir, "bootstraps/rt.jar"));
+        mJavaDir = new File(mModule.getJavaDirectory(), "test");
+        mClassesDir = new File(mModule.getBuildDirectory(), "bin/java/classes/test");
+
+        write("Api", API);
+        write("User", USER);
+        write("Constants", CONSTANTS);
+        write("Limited", LIMITED);
+        write("Unrelated", UNRELATED);
+        assertCompiled(build(), "Api", "Constants", "Limited", "Unrelated", "User");
+    }
+
+    @Test
+    public void testNothingChanged() throws Exception {
+        assertCompiled(build());
+    }
+
+    @Test
+    public void testPrivateChangeOnlyRecompilesChangedFile() throws Exception {
+        write("Api", API.replace("return 1;", "return 2;")
+                .replace("}\n}", "}\n    private void added() { }\n}"));
+
+        assertCompiled(build(), "Api");
+    }
+
+    @Test
+    public void testPublicChangeRecompilesDependents() throws Exception {
+        write("Api", API.replace("}\n}", "}\n    public void added() { }\n}"));
+
+        assertCompiled(build(), "Api", "User");
+    }
+
+    @Test
+    public void testMethodAnnotationChangeRecompilesDependents() throws Exception {
+        write("Api", API.replace("    public int value()",
+                "    @Deprecated\n    public int value()"));
+
+        assertCompiled(build(), "Api", "User");
+    }
+
+    @Test
+    public void testConstantChangeRecompilesEverything() throws Exception {
+        // the value of the constant is inlined in Limited, which does not reference Constants
+        write("Constants", CONSTANTS.replace("LIMIT = 1", "LIMIT = 2"));
+
+        assertCompiled(build(), "Api", "Constants", "Limited", "Unrelated", "User");
+    }
+
+    @Test
+    public void testDeletedClassRecompilesDependents() throws Exception {
+        delete("Unrelated");
+        assertCompiled(build());
+        assertFalse(new File(mClassesDir, "Unrelated.class").exists());
+
+        delete("Api");
+        IncrementalJavaTask task = new IncrementalJavaTask(null, mModule, ILogger.EMPTY);
+        task.prepare(BuildType.DEBUG);
+        try {
+            task.run();
+            fail("User should not compile without Api");
+        } catch (CompilationFailedException e) {
+            // expected
+        }
+        assertEquals(Collections.singletonList(new File(mJavaDir, "User.java")),
+                task.getCompiledFiles());
+        assertFalse(new File(mClassesDir, "Api.class").exists());
+
+        // User failed to compile so it is compiled again on the next build
+        write("User", "package test;\npublic class User {\n}");
+        assertCompiled(build(), "User");
+    }
+
+    private List<File> build() throws Exception {
+        IncrementalJavaTask task = new IncrementalJavaTask(null, mModule, ILogger.EMPTY);
+        task.prepare(BuildType.DEBUG);
+        task.run();
+        return task.getCompiledFiles();
+    }
+
+    private void assertCompiled(List<File> compiled, String... classNames) {
+        List<String> names = new ArrayList<>();
+        for (File file : compiled) {
+            names.add(file.getName().replace(".java", ""));
+        }
+        Collections.sort(names);
+        assertEquals(Arrays.asList(classNames), names);
+        for (String className : classNames) {
+            assertTrue(new File(mClassesDir, className + ".class").exists());
+        }
+    }
+
+    private void write(String className, String contents) throws IOException {
+        File file = new File(mJavaDir, className + ".java");
+        long lastModified = file.lastModified();
+        FileUtils.writeStringToFile(file, contents, StandardCharsets.UTF_8);
+        // the fingerprint of a file is only computed again if its size or time stamp changed
+        if (!file.setLastModified(Math.max(lastModified + 2000, file.lastModified()))) {
+            throw new IOException("Unable to set the modified time of " + file);
+        }
+        mModule.addJavaFile(file);
+    }
+
+    private void delete(String className) throws IOException {
+        FileUtils.delete(new File(mJavaDir, className + ".java"));
+        mModule.removeJavaFile("test." + className);
+    }
+}
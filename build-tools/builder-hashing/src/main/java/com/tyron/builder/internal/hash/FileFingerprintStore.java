@@ -0,0 +1,217 @@
+package com.tyron.builder.internal.hash;
+
+import com.google.common.hash.HashCode;
+import com.tyron.common.util.Cache;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A {@link FileHasher} that remembers the hash of each file along with the length and the last
+ * modified time it had when it was hashed. A file is only read again when one of them changes,
+ * or when it was modified so close to the time its hash was recorded that another edit in the
+ * same tick of the file system clock would have kept the same last modified time.
+ *
+ * <p>The hashes can be saved to a file so they are still known after a restart, a file whose
+ * last modified time changed without its contents changing, like after a checkout, is then
+ * still seen as unchanged.</p>
+ *
+ * <p>This class is thread safe.</p>
+ */
+public class FileFingerprintStore implements FileHasher, Cache.VersionProvider {
+
+    private static final int VERSION = 1;
+
+    /**
+     * Some file systems, like FAT on external storage, only store the last modified time with a
+     * resolution of 2 seconds
+     */
+    private static final long MODIFICATION_TIME_RESOLUTION = 2000;
+
+    private static class Fingerprint {
+        final long length;
+        final long lastModified;
+        final long recordedAt;
+        final HashCode hash;
+
+        Fingerprint(long length, long lastModified, long recordedAt, HashCode hash) {
+            this.length = length;
+            this.lastModified = lastModified;
+            this.recordedAt = recordedAt;
+            this.hash = hash;
+        }
+
+        boolean isUpToDate(long length, long lastModified) {
+            return this.length == length && this.lastModified == lastModified &&
+                   lastModified + MODIFICATION_TIME_RESOLUTION < recordedAt;
+        }
+    }
+
+    private final File mFile;
+    private final FileHasher mDelegate;
+    private final Map<String, Fingerprint> mFingerprints = new ConcurrentHashMap<>();
+    private volatile boolean mDirty;
+
+    /**
+     * @param file The file the hashes are saved to, or null to only keep them in memory
+     */
+    public FileFingerprintStore(File file) {
+        this(file, new DefaultFileHasher(new DefaultStreamHasher()));
+    }
+
+    public FileFingerprintStore(File file, FileHasher delegate) {
+        mFile = file;
+        mDelegate = delegate;
+        load();
+    }
+
+    @Override
+    public HashCode hash(File file) {
+        return hash(file, file.length(), file.lastModified());
+    }
+
+    @Override
+    public HashCode hash(File file, long length, long lastModified) {
+        String path = file.getAbsolutePath();
+        Fingerprint fingerprint = mFingerprints.get(path);
+        if (fingerprint != null && fingerprint.isUpToDate(length, lastModified)) {
+            return fingerprint.hash;
+        }
+
+        long recordedAt = System.currentTimeMillis();
+        HashCode hash = mDelegate.hash(file);
+        mFingerprints.put(path, new Fingerprint(length, lastModified, recordedAt, hash));
+        mDirty = true;
+        return hash;
+    }
+
+    /**
+     * @return The hash of the file, or null if it is not a file
+     */
+    public HashCode hashIfExists(File file) {
+        if (!file.isFile()) {
+            return null;
+        }
+        try {
+            return hash(file);
+        } catch (UncheckedIOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return Whether both files exist and have the same contents
+     */
+    public boolean contentEquals(File first, File second) {
+        if (!first.isFile() || !second.isFile() || first.length() != second.length()) {
+            return false;
+        }
+        HashCode firstHash = hashIfExists(first);
+        return firstHash != null && firstHash.equals(hashIfExists(second));
+    }
+
+    /**
+     * Uses the hash of the contents of the file as its version, so values of a {@link Cache}
+     * only expire when the contents of their file change.
+     */
+    @Override
+    public long getVersion(Path file) {
+        HashCode hash = hashIfExists(file.toFile());
+        return hash == null ? Cache.UNKNOWN_VERSION : hash.padToLong();
+    }
+
+    /**
+     * Creates an unbounded cache whose values expire when the contents of their file change
+     */
+    public <K, V> Cache<K, V> newCache() {
+        return new Cache<>(this, Long.MAX_VALUE, (k, v) -> 1);
+    }
+
+    /**
+     * Saves the hashes of the files that still exist, if any of them have changed since they
+     * were loaded
+     */
+    public synchronized void save() throws IOException {
+        if (mFile == null || !mDirty) {
+            return;
+        }
+        // cleared before writing so that hashes recorded meanwhile are saved the next time,
+        // and set again below if the write does not complete
+        mDirty = false;
+        boolean saved = false;
+        try {
+            write();
+            saved = true;
+        } finally {
+            if (!saved) {
+                mDirty = true;
+            }
+        }
+    }
+
+    private void write() throws IOException {
+        File parent = mFile.getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Unable to create " + parent);
+        }
+        File temp = new File(mFile.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeInt(VERSION);
+            for (Map.Entry<String, Fingerprint> entry : mFingerprints.entrySet()) {
+                if (!new File(entry.getKey()).exists()) {
+                    mFingerprints.remove(entry.getKey());
+                    continue;
+                }
+                Fingerprint fingerprint = entry.getValue();
+                byte[] hash = fingerprint.hash.asBytes();
+                out.writeBoolean(true);
+                out.writeUTF(entry.getKey());
+                out.writeLong(fingerprint.length);
+                out.writeLong(fingerprint.lastModified);
+                out.writeLong(fingerprint.recordedAt);
+                out.writeByte(hash.length);
+                out.write(hash);
+            }
+            out.writeBoolean(false);
+        }
+        if (!temp.renameTo(mFile)) {
+            throw new IOException("Unable to save file hashes to " + mFile);
+        }
+    }
+
+    private void load() {
+        if (mFile == null || !mFile.isFile()) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(mFile)))) {
+            if (in.readInt() != VERSION) {
+                return;
+            }
+            while (in.readBoolean()) {
+                String path = in.readUTF();
+                long length = in.readLong();
+                long lastModified = in.readLong();
+                long recordedAt = in.readLong();
+                byte[] hash = new byte[in.readUnsignedByte()];
+                in.readFully(hash);
+                mFingerprints.put(path, new Fingerprint(length, lastModified, recordedAt,
+                        HashCode.fromBytes(hash)));
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            // the saved hashes are only a shortcut, the files are hashed again
+            mFingerprints.clear();
+        }
+    }
+}
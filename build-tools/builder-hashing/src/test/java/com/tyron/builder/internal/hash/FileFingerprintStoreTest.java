@@ -0,0 +1,184 @@
+package com.tyron.builder.internal.hash;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.google.common.hash.HashCode;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+public class FileFingerprintStoreTest {
+
+    /**
+     * Counts how many times the contents of a file are read
+     */
+    private static class CountingHasher implements FileHasher {
+
+        private final FileHasher mDelegate = new DefaultFileHasher(new DefaultStreamHasher());
+        private int mCount;
+
+        @Override
+        public HashCode hash(File file) {
+            mCount++;
+            return mDelegate.hash(file);
+        }
+
+        @Override
+        public HashCode hash(File file, long length, long lastModified) {
+            mCount++;
+            return mDelegate.hash(file, length, lastModified);
+        }
+    }
+
+    private File mDirectory;
+    private File mStoreFile;
+    private File mFile;
+    private long mOldTime;
+
+    @Before
+    public void setup() throws IOException {
+        mDirectory = Files.createTempDirectory("fingerprints").toFile();
+        mStoreFile = new File(mDirectory, "fingerprints.bin");
+        // well before the time the hash is recorded, so the time stamp can be trusted
+        mOldTime = (System.currentTimeMillis() / 1000 - 60) * 1000;
+        mFile = write("file.txt", "contents", mOldTime);
+    }
+
+    @Test
+    public void testUnchangedFileIsNotReadAgain() {
+        CountingHasher hasher = new CountingHasher();
+        FileFingerprintStore store = new FileFingerprintStore(null, hasher);
+
+        HashCode hash = store.hash(mFile);
+        assertEquals(hash, store.hash(mFile));
+        assertEquals(1, hasher.mCount);
+    }
+
+    @Test
+    public void testRecentlyModifiedFileIsReadAgain() throws IOException {
+        // another edit in the same tick of the clock would keep the same time stamp
+        File file = write("recent.txt", "contents", System.currentTimeMillis());
+        CountingHasher hasher = new CountingHasher();
+        FileFingerprintStore store = new FileFingerprintStore(null, hasher);
+
+        store.hash(file);
+        store.hash(file);
+        assertEquals(2, hasher.mCount);
+    }
+
+    @Test
+    public void testSizeChange() throws IOException {
+        CountingHasher hasher = new CountingHasher();
+        FileFingerprintStore store = new FileFingerprintStore(null, hasher);
+        HashCode hash = store.hash(mFile);
+
+        // the time stamp is the same, only the size tells that the file has changed
+        write("file.txt", "changed contents", mOldTime);
+        assertNotEquals(hash, store.hash(mFile));
+        assertEquals(2, hasher.mCount);
+    }
+
+    @Test
+    public void testModifiedTimeChange() throws IOException {
+        CountingHasher hasher = new CountingHasher();
+        FileFingerprintStore store = new FileFingerprintStore(null, hasher);
+        HashCode hash = store.hash(mFile);
+
+        write("file.txt", "CONTENTS", mOldTime + 2000);
+        HashCode changed = store.hash(mFile);
+        assertNotEquals(hash, changed);
+        assertEquals(2, hasher.mCount);
+
+        // touching the file reads it again, but its hash stays the same
+        assertTrue(mFile.setLastModified(mOldTime + 4000));
+        assertEquals(changed, store.hash(mFile));
+        assertEquals(3, hasher.mCount);
+    }
+
+    @Test
+    public void testHashesAreSaved() throws IOException {
+        File deleted = write("deleted.txt", "deleted", mOldTime);
+        FileFingerprintStore store = new FileFingerprintStore(mStoreFile);
+        HashCode hash = store.hash(mFile);
+        store.hash(deleted);
+        assertTrue(deleted.delete());
+        store.save();
+
+        CountingHasher hasher = new CountingHasher();
+        FileFingerprintStore loaded = new FileFingerprintStore(mStoreFile, hasher);
+        assertEquals(hash, loaded.hash(mFile));
+        assertEquals(0, hasher.mCount);
+        assertNull(loaded.hashIfExists(deleted));
+
+        // a file that changed while the hashes were saved is read again
+        write("file.txt", "changed contents", mOldTime + 2000);
+        loaded = new FileFingerprintStore(mStoreFile, hasher);
+        assertNotEquals(hash, loaded.hash(mFile));
+        assertEquals(1, hasher.mCount);
+    }
+
+    @Test
+    public void testNothingIsSavedWithoutChanges() throws IOException {
+        FileFingerprintStore store = new FileFingerprintStore(mStoreFile);
+        store.save();
+        assertFalse(mStoreFile.exists());
+    }
+
+    @Test
+    public void testFailedSaveIsRetried() throws IOException {
+        // a file where the directory of the hashes should be makes the first save fail
+        File blocked = write("blocked", "", mOldTime);
+        File storeFile = new File(blocked, "fingerprints.bin");
+        FileFingerprintStore store = new FileFingerprintStore(storeFile);
+        HashCode hash = store.hash(mFile);
+        try {
+            store.save();
+            fail("The hashes should not be saved");
+        } catch (IOException e) {
+            // expected
+        }
+
+        assertTrue(blocked.delete());
+        store.save();
+        CountingHasher hasher = new CountingHasher();
+        FileFingerprintStore loaded = new FileFingerprintStore(storeFile, hasher);
+        assertEquals(hash, loaded.hash(mFile));
+        assertEquals(0, hasher.mCount);
+    }
+
+    @Test
+    public void testCorruptFileIsIgnored() throws IOException {
+        FileFingerprintStore store = new FileFingerprintStore(mStoreFile);
+        HashCode hash = store.hash(mFile);
+        store.save();
+
+        // keep the version but cut the file in the middle of an entry
+        byte[] bytes = Files.readAllBytes(mStoreFile.toPath());
+        try (FileOutputStream out = new FileOutputStream(mStoreFile)) {
+            out.write(bytes, 0, bytes.length / 2);
+        }
+
+        CountingHasher hasher = new CountingHasher();
+        FileFingerprintStore loaded = new FileFingerprintStore(mStoreFile, hasher);
+        assertEquals(hash, loaded.hash(mFile));
+        assertEquals(1, hasher.mCount);
+    }
+
+    private File write(String name, String contents, long lastModified) throws IOException {
+        File file = new File(mDirectory, name);
+        Files.write(file.toPath(), contents.getBytes(StandardCharsets.UTF_8));
+        assertTrue(file.setLastModified(lastModified));
+        return file;
+    }
+}
@@ -4,6 +4,7 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
 import com.tyron.builder.model.Library;
+import com.tyron.builder.project.util.ClassNameIndex;
 import com.tyron.builder.project.util.PackageTrie;
 
 import java.io.File;
@@ -54,6 +55,13 @@ public interface JavaModule extends Module {
     @NonNull
     PackageTrie getClassIndex();
 
+    /**
+     * @return The index of the classes in this module and its libraries keyed by their
+     * simple name, used for class name completion
+     */
+    @NonNull
+    ClassNameIndex getClassNameIndex();
+
     /**
      * @return The resources directory of the project. Note that
      * this is different from android's res directory
@@ -29,12 +29,14 @@ public class AndroidModuleImpl extends JavaModuleImpl implements AndroidModule {
 
     private ManifestData mManifestData;
     private final Map<String, File> mKotlinFiles;
+    private final Map<File, String> mKotlinClassNames;
     private Map<String, File> mResourceClasses;
 
     public AndroidModuleImpl(File root) {
         super(root);
 
         mKotlinFiles = new HashMap<>();
+        mKotlinClassNames = new HashMap<>();
         mResourceClasses = new HashMap<>(1);
     }
 
@@ -190,12 +192,24 @@ public class AndroidModuleImpl extends JavaModuleImpl implements AndroidModule {
             packageName = "";
         }
         String fqn = packageName + "." + file.getName().replace(".kt", "");
-        mKotlinFiles.put(fqn, file);
+        // the package of the file may have changed since it was last added
+        String previous = putClass(mKotlinFiles, mKotlinClassNames, fqn, file);
+        if (previous != null) {
+            removeClassName(previous);
+        }
+        getClassNameIndex().add(fqn);
+    }
+
+    @Override
+    protected boolean containsClass(@NonNull String className) {
+        return mKotlinFiles.containsKey(className) || super.containsClass(className);
     }
 
     @Override
     public void clear() {
         super.clear();
+        mKotlinFiles.clear();
+        mKotlinClassNames.clear();
 
         try {
             Class<?> clazz = Class.forName("com.tyron.builder.compiler.symbol.MergeSymbolsTask");
@@ -7,6 +7,8 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.tyron.builder.model.Library;
 import com.tyron.builder.project.api.JavaModule;
+import com.tyron.builder.project.util.ClassIndexFile;
+import com.tyron.builder.project.util.ClassNameIndex;
 import com.tyron.builder.project.util.PackageTrie;
 import com.tyron.common.util.StringSearch;
 
@@ -18,33 +20,36 @@ import org.jetbrains.kotlin.com.intellij.util.ReflectionUtil;
 import java.io.File;
 import java.io.IOException;
 import java.lang.reflect.Method;
-import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.jar.JarEntry;
-import java.util.jar.JarFile;
 
 public class JavaModuleImpl extends ModuleImpl implements JavaModule {
 
-    // Map of fully qualified names and the jar they are contained in
-    private final Map<String, File> mClassFiles;
+    // Map of jar files and the memory mapped index of the classes they contain
+    private final Map<File, ClassIndexFile> mClassFiles;
     private final Map<String, File> mJavaFiles;
     private final Map<String, Library> mLibraryHashMap;
     private final Map<String, File> mInjectedClassesMap;
+    // the class declared by each injected file, to find it again when the file is re-injected
+    private final Map<File, String> mInjectedClassNames;
     private final Set<File> mLibraries;
 
     // the index of all the class files in this module
     private final PackageTrie mClassIndex = new PackageTrie();
+    // the index of all the class files in this module keyed by their simple name
+    private final ClassNameIndex mClassNameIndex = new ClassNameIndex();
 
     public JavaModuleImpl(File root) {
         super(root);
         mJavaFiles = new HashMap<>();
-        mClassFiles = new HashMap<>();
+        mClassFiles = new LinkedHashMap<>();
         mLibraries = new HashSet<>();
         mInjectedClassesMap = new HashMap<>();
+        mInjectedClassNames = new HashMap<>();
         mLibraryHashMap = new HashMap<>();
     }
 
@@ -54,6 +59,12 @@ public class JavaModuleImpl extends ModuleImpl implements JavaModule {
         return mClassIndex;
     }
 
+    @NonNull
+    @Override
+    public ClassNameIndex getClassNameIndex() {
+        return mClassNameIndex;
+    }
+
     @NonNull
     @Override
     public Map<String, File> getJavaFiles() {
@@ -70,6 +81,7 @@ public class JavaModuleImpl extends ModuleImpl implements JavaModule {
     public void removeJavaFile(@NonNull String packageName) {
         mJavaFiles.remove(packageName);
         mClassIndex.remove(packageName);
+        removeClassName(packageName);
     }
 
     @Override
@@ -80,6 +92,7 @@ public class JavaModuleImpl extends ModuleImpl implements JavaModule {
         String className = getFullyQualifiedName(javaFile);
         mJavaFiles.put(className, javaFile);
         mClassIndex.add(className);
+        mClassNameIndex.add(className);
     }
 
     @Override
@@ -97,7 +110,9 @@ public class JavaModuleImpl extends ModuleImpl implements JavaModule {
     public Set<String> getAllClasses() {
         Set<String> classes = new HashSet<>();
         classes.addAll(mJavaFiles.keySet());
-        classes.addAll(mClassFiles.keySet());
+        for (ClassIndexFile index : mClassFiles.values()) {
+            classes.addAll(index.getClassNames());
+        }
         classes.addAll(mInjectedClassesMap.keySet());
         return classes;
     }
@@ -113,8 +128,6 @@ public class JavaModuleImpl extends ModuleImpl implements JavaModule {
             return;
         }
         try {
-            // noinspection unused, used to check if jar is valid.
-            JarFile jarFile = new JarFile(jar);
             putJar(jar);
             mLibraries.add(jar);
         } catch (IOException e) {
@@ -122,32 +135,26 @@ public class JavaModuleImpl extends ModuleImpl implements JavaModule {
         }
     }
 
+    /**
+     * Adds the classes of the jar to the class indexes. The names stay in the memory mapped
+     * {@link ClassIndexFile} of the jar, which is only created again if the jar has changed.
+     */
     private void putJar(File file) throws IOException {
         if (file == null) {
             return;
         }
-        try (JarFile jar = new JarFile(file)) {
-            Enumeration<JarEntry> entries = jar.entries();
-            while (entries.hasMoreElements()) {
-                JarEntry entry = entries.nextElement();
-
-                if (!entry.getName().endsWith(".class")) {
-                    continue;
-                }
-
-                // We only want top level classes, if it contains $ then
-                // its an inner class, we ignore it
-                if (entry.getName().contains("$")) {
-                    continue;
-                }
-
-                String packageName = entry.getName().replace("/", ".")
-                        .substring(0, entry.getName().length() - ".class".length());
-
-                mClassFiles.put(packageName, file);
-                mClassIndex.add(packageName);
-            }
+        ClassIndexFile index = ClassIndexFile.open(file, getClassIndexDirectory());
+        ClassIndexFile previous = mClassFiles.put(file, index);
+        if (previous != null) {
+            mClassIndex.removeIndexFile(previous);
+            mClassNameIndex.removeIndexFile(previous);
         }
+        mClassIndex.addIndexFile(index);
+        mClassNameIndex.addIndexFile(index);
+    }
+
+    private File getClassIndexDirectory() {
+        return new File(getBuildDirectory(), "intermediate/class_index");
     }
 
     @NonNull
@@ -222,7 +229,65 @@ public class JavaModuleImpl extends ModuleImpl implements JavaModule {
         }
 
         String className = getFullyQualifiedName(javaFile);
-        mInjectedClassesMap.put(className, javaFile);
+        // the package of the class may have changed since it was last injected
+        String previous =
+                putClass(mInjectedClassesMap, mInjectedClassNames, className, javaFile);
+        if (previous != null) {
+            removeClassName(previous);
+        }
+        mClassNameIndex.add(className);
+    }
+
+    /**
+     * Removes the class from the class name index, unless it is still declared by a source
+     * file, an injected class or a library of this module
+     */
+    protected void removeClassName(@NonNull String className) {
+        if (containsClass(className)) {
+            return;
+        }
+        mClassNameIndex.remove(className);
+    }
+
+    /**
+     * @return whether the class is declared by a source file, an injected class or a library
+     * of this module
+     */
+    protected boolean containsClass(@NonNull String className) {
+        if (mJavaFiles.containsKey(className) || mInjectedClassesMap.containsKey(className)) {
+            return true;
+        }
+        for (ClassIndexFile index : mClassFiles.values()) {
+            if (index.contains(className)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Maps the class to the file that declares it, keeping the map from each file to its class
+     * in sync so the previous class of a file is found without scanning the classes.
+     *
+     * @return the class previously declared by the file if it is not the same class, it is
+     * no longer in the map of classes
+     */
+    @Nullable
+    protected static String putClass(@NonNull Map<String, File> classes,
+                                     @NonNull Map<File, String> classNames,
+                                     @NonNull String className,
+                                     @NonNull File file) {
+        String previous = classNames.put(file, className);
+        if (previous != null && !previous.equals(className)) {
+            classes.remove(previous);
+        } else {
+            previous = null;
+        }
+        File replaced = classes.put(className, file);
+        if (replaced != null && !replaced.equals(file)) {
+            classNames.remove(replaced);
+        }
+        return previous;
     }
 
     private static String getFullyQualifiedName(@NonNull File javaFile) {
@@ -273,5 +338,12 @@ public class JavaModuleImpl extends ModuleImpl implements JavaModule {
         mJavaFiles.clear();
         mLibraries.clear();
         mLibraryHashMap.clear();
+        mClassFiles.clear();
+        mClassIndex.clear();
+        mClassNameIndex.clear();
+        // injected classes are not added back by index(), keep them in the index
+        for (String className : mInjectedClassesMap.keySet()) {
+            mClassNameIndex.add(className);
+        }
     }
 }
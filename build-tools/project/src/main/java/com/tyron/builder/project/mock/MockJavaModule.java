@@ -7,6 +7,7 @@ import com.tyron.builder.model.ModuleSettings;
 import com.tyron.builder.project.api.FileManager;
 import com.tyron.builder.project.api.JavaModule;
 import com.tyron.builder.project.impl.ModuleImpl;
+import com.tyron.builder.project.util.ClassNameIndex;
 import com.tyron.builder.project.util.PackageTrie;
 import com.tyron.common.util.StringSearch;
 
@@ -103,6 +104,12 @@ public class MockJavaModule extends ModuleImpl implements JavaModule {
         return new PackageTrie();
     }
 
+    @NonNull
+    @Override
+    public ClassNameIndex getClassNameIndex() {
+        return new ClassNameIndex();
+    }
+
     @NonNull
     @Override
     public File getResourcesDir() {
@@ -0,0 +1,449 @@
+package com.tyron.builder.project.util;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+/**
+ * A memory mapped, on-disk index of the top level classes contained in a jar file.
+ *
+ * The index is stored in a versioned binary file and is reused as long as the jar it was
+ * created from has not changed. A jar is considered unchanged if its size and last modified
+ * time are the same, if they are not, the content hash of the jar is compared before
+ * deciding to rebuild the index. This avoids enumerating every entry of every library jar
+ * each time a project is opened.
+ *
+ * The names are never copied to the heap as a whole, lookups by package and by simple name
+ * are range scans over the sorted sections of the mapped file.
+ *
+ * File layout:
+ * <pre>
+ *     int     magic
+ *     int     version
+ *     long    jar size
+ *     long    jar last modified time
+ *     byte[16] jar content hash
+ *     int     class count
+ *     int[]   offsets of each class name, relative to the start of the names section
+ *     int[]   indices of the names sorted by their lower case simple name
+ *     int[]   indices of the names sorted by their camel-hump initials
+ *     names   each name is stored as an unsigned short length followed by its UTF-8 bytes,
+ *             sorted in ascending order
+ * </pre>
+ */
+public class ClassIndexFile {
+
+    static final Comparator<String> INITIALS_ORDER =
+            Comparator.comparing((String fqn) -> ClassNameIndex.getInitials(
+                    ClassNameIndex.getSimpleName(fqn)))
+                    .thenComparing(ClassNameIndex.SIMPLE_NAME_ORDER);
+
+    private static final int MAGIC = 0x4A434958; // JCIX
+    private static final int VERSION = 2;
+    private static final int HASH_LENGTH = 16;
+    private static final int HEADER_SIZE = 4 + 4 + 8 + 8 + HASH_LENGTH + 4;
+
+    /**
+     * The number of int sections before the names: the offsets of the names and the two
+     * orderings of the names
+     */
+    private static final int SECTION_COUNT = 3;
+
+    private static final int SIZE_OFFSET = 8;
+    private static final int HASH_OFFSET = 24;
+
+    /**
+     * Opens the index of the given jar file from the index directory, creating or
+     * rebuilding it if it does not exist or is out of date.
+     *
+     * @param jar The jar file to index
+     * @param indexDirectory The directory where the index files are stored
+     * @return The index of the jar file
+     * @throws IOException if the jar file is not valid
+     */
+    @NonNull
+    public static ClassIndexFile open(@NonNull File jar,
+                                      @NonNull File indexDirectory) throws IOException {
+        File indexFile = getIndexFile(jar, indexDirectory);
+        ClassIndexFile existing = tryLoad(jar, indexFile);
+        if (existing != null) {
+            return existing;
+        }
+
+        List<String> classNames = readClassNames(jar);
+        write(indexFile, jar, hash(jar), classNames);
+        ClassIndexFile created = tryLoad(jar, indexFile);
+        if (created == null) {
+            throw new IOException("Unable to load the class index of " + jar);
+        }
+        return created;
+    }
+
+    @NonNull
+    private static File getIndexFile(File jar, File indexDirectory) {
+        String path = jar.getAbsolutePath();
+        String name = jar.getParentFile() == null
+                ? jar.getName()
+                : jar.getParentFile().getName() + "_" + jar.getName();
+        return new File(indexDirectory,
+                name + "_" + Integer.toHexString(path.hashCode()) + ".idx");
+    }
+
+    @Nullable
+    private static ClassIndexFile tryLoad(File jar, File indexFile) throws IOException {
+        if (!indexFile.exists()) {
+            return null;
+        }
+
+        MappedByteBuffer buffer;
+        try (RandomAccessFile file = new RandomAccessFile(indexFile, "r");
+             FileChannel channel = file.getChannel()) {
+            if (channel.size() < HEADER_SIZE || channel.size() > Integer.MAX_VALUE) {
+                return null;
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (IOException e) {
+            // the index cannot be read, it is created again
+            return null;
+        }
+
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION || !isValid(buffer)) {
+            return null;
+        }
+
+        long size = buffer.getLong(SIZE_OFFSET);
+        long lastModified = buffer.getLong(SIZE_OFFSET + 8);
+        if (size != jar.length() || lastModified != jar.lastModified()) {
+            // the jar may have only been touched, compare its contents before rebuilding
+            byte[] storedHash = new byte[HASH_LENGTH];
+            for (int i = 0; i < HASH_LENGTH; i++) {
+                storedHash[i] = buffer.get(HASH_OFFSET + i);
+            }
+            if (!Arrays.equals(storedHash, hash(jar))) {
+                return null;
+            }
+            updateStamp(indexFile, jar);
+        }
+        return new ClassIndexFile(jar, buffer);
+    }
+
+    /**
+     * Checks that the sections of the index are inside the file, so a truncated or corrupt
+     * index is created again instead of being read out of bounds.
+     */
+    private static boolean isValid(MappedByteBuffer buffer) {
+        long limit = buffer.limit();
+        int count = buffer.getInt(HEADER_SIZE - 4);
+        if (count < 0) {
+            return false;
+        }
+        long namesOffset = HEADER_SIZE + (long) count * 4 * SECTION_COUNT;
+        if (namesOffset > limit) {
+            return false;
+        }
+        for (int i = 0; i < count; i++) {
+            int offset = buffer.getInt(HEADER_SIZE + i * 4);
+            if (offset < 0 || namesOffset + offset + 2 > limit) {
+                return false;
+            }
+            int length = buffer.getShort((int) (namesOffset + offset)) & 0xFFFF;
+            if (namesOffset + offset + 2 + length > limit) {
+                return false;
+            }
+        }
+        for (int section = 1; section < SECTION_COUNT; section++) {
+            int sectionOffset = HEADER_SIZE + section * count * 4;
+            for (int i = 0; i < count; i++) {
+                int index = buffer.getInt(sectionOffset + i * 4);
+                if (index < 0 || index >= count) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Saves the new size and last modified time of a jar that has only been touched
+     */
+    private static void updateStamp(File indexFile, File jar) {
+        try (RandomAccessFile file = new RandomAccessFile(indexFile, "rw")) {
+            file.seek(SIZE_OFFSET);
+            file.writeLong(jar.length());
+            file.writeLong(jar.lastModified());
+        } catch (IOException ignored) {
+            // the hash is compared again next time
+        }
+    }
+
+    private static byte[] hash(File jar) throws IOException {
+        return Files.asByteSource(jar).hash(Hashing.murmur3_128()).asBytes();
+    }
+
+    private static List<String> readClassNames(File file) throws IOException {
+        List<String> classNames = new ArrayList<>();
+        try (JarFile jar = new JarFile(file)) {
+            Enumeration<JarEntry> entries = jar.entries();
+            while (entries.hasMoreElements()) {
+                JarEntry entry = entries.nextElement();
+
+                if (!entry.getName().endsWith(".class")) {
+                    continue;
+                }
+
+                // We only want top level classes, if it contains $ then
+                // its an inner class, we ignore it
+                if (entry.getName().contains("$")) {
+                    continue;
+                }
+
+                String packageName = entry.getName().replace("/", ".")
+                        .substring(0, entry.getName().length() - ".class".length());
+                classNames.add(packageName);
+            }
+        }
+        Collections.sort(classNames);
+        return classNames;
+    }
+
+    private static void write(File indexFile,
+                              File jar,
+                              byte[] hash,
+                              List<String> classNames) throws IOException {
+        File parent = indexFile.getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Unable to create directory " + parent);
+        }
+
+        List<byte[]> encoded = new ArrayList<>(classNames.size());
+        for (String name : classNames) {
+            encoded.add(name.getBytes(StandardCharsets.UTF_8));
+        }
+
+        File temp = new File(indexFile.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(jar.length());
+            out.writeLong(jar.lastModified());
+            out.write(hash, 0, HASH_LENGTH);
+            out.writeInt(encoded.size());
+            int offset = 0;
+            for (byte[] bytes : encoded) {
+                out.writeInt(offset);
+                offset += 2 + bytes.length;
+            }
+            for (int index : sortIndices(classNames, ClassNameIndex.SIMPLE_NAME_ORDER)) {
+                out.writeInt(index);
+            }
+            for (int index : sortIndices(classNames, INITIALS_ORDER)) {
+                out.writeInt(index);
+            }
+            for (byte[] bytes : encoded) {
+                out.writeShort(bytes.length);
+                out.write(bytes);
+            }
+        }
+        if (indexFile.exists() && !indexFile.delete()) {
+            throw new IOException("Unable to delete old index " + indexFile);
+        }
+        if (!temp.renameTo(indexFile)) {
+            throw new IOException("Unable to create index " + indexFile);
+        }
+    }
+
+    private static List<Integer> sortIndices(List<String> classNames,
+                                             Comparator<String> comparator) {
+        List<Integer> indices = new ArrayList<>(classNames.size());
+        for (int i = 0; i < classNames.size(); i++) {
+            indices.add(i);
+        }
+        indices.sort((a, b) -> comparator.compare(classNames.get(a), classNames.get(b)));
+        return indices;
+    }
+
+    private final File mJarFile;
+    private final MappedByteBuffer mBuffer;
+    private final int mSize;
+    private final int mNamesOffset;
+
+    private ClassIndexFile(File jarFile, MappedByteBuffer buffer) {
+        mJarFile = jarFile;
+        mBuffer = buffer;
+        mSize = buffer.getInt(HEADER_SIZE - 4);
+        mNamesOffset = HEADER_SIZE + mSize * 4 * SECTION_COUNT;
+    }
+
+    @NonNull
+    public File getJarFile() {
+        return mJarFile;
+    }
+
+    /**
+     * @return The number of classes in this index
+     */
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * @param index the index of the class, from 0 to {@link #size()}
+     * @return The fully qualified name of the class at the given index
+     */
+    @NonNull
+    public String getClassName(int index) {
+        if (index < 0 || index >= mSize) {
+            throw new IndexOutOfBoundsException(String.valueOf(index));
+        }
+        int position = mNamesOffset + mBuffer.getInt(HEADER_SIZE + index * 4);
+        int length = mBuffer.getShort(position) & 0xFFFF;
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = mBuffer.get(position + 2 + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Checks whether the jar contains the given class using a binary search over the
+     * memory mapped names.
+     *
+     * @param fqn The fully qualified name of the class
+     */
+    public boolean contains(@NonNull String fqn) {
+        int index = lowerBound(getClassNames(), fqn);
+        return index < mSize && getClassName(index).equals(fqn);
+    }
+
+    /**
+     * Finds the classes in the given package and in its sub packages.
+     *
+     * @param packageName The name of the package, e.g. {@code java.util}
+     * @return The fully qualified names of the classes, in ascending order
+     */
+    @NonNull
+    public List<String> getClassesInPackage(@NonNull String packageName) {
+        if (packageName.isEmpty()) {
+            return Collections.emptyList();
+        }
+        // every name in the package is between "package." and "package/"
+        List<String> names = getClassNames();
+        int start = lowerBound(names, packageName + '.');
+        int end = lowerBound(names, packageName + '/');
+        return new ArrayList<>(names.subList(start, end));
+    }
+
+    /**
+     * @return The first segment of the name of every class, in ascending order. This is the
+     * top level package of the class, or its name if it is in the default package.
+     */
+    @NonNull
+    public List<String> getTopLevelSegments() {
+        List<String> names = getClassNames();
+        List<String> segments = new ArrayList<>();
+        int index = 0;
+        while (index < mSize) {
+            String name = getClassName(index);
+            int dot = name.indexOf('.');
+            String segment = dot == -1 ? name : name.substring(0, dot);
+            segments.add(segment);
+            // skip the rest of the names that start with the same segment
+            index = Math.max(index + 1, lowerBound(names, segment + '/'));
+        }
+        return segments;
+    }
+
+    /**
+     * @return A view of the class names sorted by their lower case simple name, then by their
+     * simple name and then by their fully qualified name
+     */
+    @NonNull
+    public List<String> getClassNamesBySimpleName() {
+        return getSortedView(1);
+    }
+
+    /**
+     * @return A view of the class names sorted by the initials of their simple name, then by
+     * their lower case simple name and then by their fully qualified name
+     */
+    @NonNull
+    public List<String> getClassNamesByInitials() {
+        return getSortedView(2);
+    }
+
+    private List<String> getSortedView(int section) {
+        int sectionOffset = HEADER_SIZE + section * mSize * 4;
+        return new AbstractList<String>() {
+            @Override
+            public String get(int index) {
+                if (index < 0 || index >= mSize) {
+                    throw new IndexOutOfBoundsException(String.valueOf(index));
+                }
+                return getClassName(mBuffer.getInt(sectionOffset + index * 4));
+            }
+
+            @Override
+            public int size() {
+                return mSize;
+            }
+        };
+    }
+
+    /**
+     * @return The index of the first name that is not less than the key
+     */
+    private static int lowerBound(List<String> names, String key) {
+        int low = 0;
+        int high = names.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (names.get(mid).compareTo(key) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return A view of the class names in this index, the names are decoded lazily
+     * from the memory mapped file.
+     */
+    @NonNull
+    public List<String> getClassNames() {
+        return new AbstractList<String>() {
+            @Override
+            public String get(int index) {
+                return getClassName(index);
+            }
+
+            @Override
+            public int size() {
+                return mSize;
+            }
+        };
+    }
+}
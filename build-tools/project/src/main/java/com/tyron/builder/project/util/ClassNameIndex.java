@@ -0,0 +1,369 @@
+package com.tyron.builder.project.util;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * An index of fully qualified class names keyed by their simple name and by their
+ * camel-hump initials, so class name completion does not have to scan every class
+ * in the class path on each keystroke.
+ *
+ * The index keeps two sorted maps:
+ * <ul>
+ *     <li>lower case simple name, e.g. {@code arraylist}</li>
+ *     <li>camel-hump initials, e.g. {@code AL}</li>
+ * </ul>
+ * A query is answered by a range scan over these maps, so the cost of a lookup is
+ * proportional to the number of returned results rather than the size of the index. Case
+ * sensitive prefix matches are the case insensitive ones filtered by their case.
+ *
+ * Results are returned in ranked order:
+ * <ol>
+ *     <li>Case sensitive prefix matches</li>
+ *     <li>Case insensitive prefix matches, only if case insensitive matching is requested</li>
+ *     <li>Camel-hump matches, e.g. {@code ArLi} or {@code AL} for {@code ArrayList}</li>
+ * </ol>
+ * Within each group, results are sorted by {@link #SIMPLE_NAME_ORDER}. The classes with the
+ * same key in a map are kept in that order as well, so the results that are kept when a group
+ * is truncated are the same whether the classes come from these maps or from an index file.
+ *
+ * The classes of libraries are not copied into these maps, their {@link ClassIndexFile} is
+ * added instead and searched with the same range scans over its memory mapped sections.
+ */
+public class ClassNameIndex {
+
+    private static final int TIER_PREFIX = 0;
+    private static final int TIER_PREFIX_IGNORE_CASE = 1;
+    private static final int TIER_CAMEL_HUMP = 2;
+
+    /**
+     * The order of the results: by lower case simple name, then by simple name, then by fully
+     * qualified name. The sections of {@link ClassIndexFile} are sorted in the same order.
+     */
+    static final Comparator<String> SIMPLE_NAME_ORDER =
+            Comparator.comparing((String fqn) -> getSimpleName(fqn).toLowerCase())
+                    .thenComparing(ClassNameIndex::getSimpleName)
+                    .thenComparing(Comparator.naturalOrder());
+
+    private final NavigableMap<String, NavigableSet<String>> mByLowerCaseName =
+            new ConcurrentSkipListMap<>();
+    private final NavigableMap<String, NavigableSet<String>> mByInitials =
+            new ConcurrentSkipListMap<>();
+    private final List<ClassIndexFile> mIndexFiles = new CopyOnWriteArrayList<>();
+
+    /**
+     * Add a class to the index.
+     *
+     * @param fqn The fully qualified name of a class, including its name
+     */
+    public void add(@NonNull String fqn) {
+        String simpleName = getSimpleName(fqn);
+        if (simpleName.isEmpty()) {
+            return;
+        }
+        put(mByLowerCaseName, simpleName.toLowerCase(), fqn);
+        put(mByInitials, getInitials(simpleName), fqn);
+    }
+
+    /**
+     * Remove a class from the index.
+     *
+     * @param fqn The fully qualified name of a class, including its name
+     */
+    public void remove(@NonNull String fqn) {
+        String simpleName = getSimpleName(fqn);
+        if (simpleName.isEmpty()) {
+            return;
+        }
+        delete(mByLowerCaseName, simpleName.toLowerCase(), fqn);
+        delete(mByInitials, getInitials(simpleName), fqn);
+    }
+
+    /**
+     * Add the classes of a library to the index, they are read from the index file when
+     * searching.
+     */
+    public void addIndexFile(@NonNull ClassIndexFile indexFile) {
+        mIndexFiles.add(indexFile);
+    }
+
+    public void removeIndexFile(@NonNull ClassIndexFile indexFile) {
+        mIndexFiles.remove(indexFile);
+    }
+
+    public void clear() {
+        mByLowerCaseName.clear();
+        mByInitials.clear();
+        mIndexFiles.clear();
+    }
+
+    public int size() {
+        int size = 0;
+        for (Set<String> value : mByLowerCaseName.values()) {
+            size += value.size();
+        }
+        for (ClassIndexFile indexFile : mIndexFiles) {
+            size += indexFile.size();
+        }
+        return size;
+    }
+
+    /**
+     * Finds the classes whose simple name matches the given query.
+     *
+     * @param query the partial simple name typed by the user
+     * @param caseSensitive whether prefix matches should be case sensitive
+     * @param limit the maximum number of results returned
+     * @return the fully qualified names of the matching classes, in ranked order
+     */
+    @NonNull
+    public List<String> search(@NonNull String query, boolean caseSensitive, int limit) {
+        return search(Collections.singletonList(this), query, caseSensitive, limit);
+    }
+
+    /**
+     * Finds the classes matching the query across several indexes, the results are ranked
+     * as if the indexes were a single index.
+     *
+     * @see #search(String, boolean, int)
+     */
+    @NonNull
+    public static List<String> search(@NonNull Collection<ClassNameIndex> indexes,
+                                      @NonNull String query,
+                                      boolean caseSensitive,
+                                      int limit) {
+        if (".".equals(query)) {
+            query = "";
+        }
+        Set<String> result = new LinkedHashSet<>();
+        for (int tier = TIER_PREFIX; tier <= TIER_CAMEL_HUMP; tier++) {
+            if (tier == TIER_PREFIX_IGNORE_CASE && caseSensitive) {
+                continue;
+            }
+            List<String> tierResult = new ArrayList<>();
+            for (ClassNameIndex index : indexes) {
+                index.collect(tier, query, caseSensitive, limit - result.size(), result,
+                        tierResult);
+            }
+            tierResult.sort(SIMPLE_NAME_ORDER);
+            for (String fqn : tierResult) {
+                if (result.size() >= limit) {
+                    break;
+                }
+                result.add(fqn);
+            }
+            if (result.size() >= limit) {
+                break;
+            }
+        }
+        return new ArrayList<>(result);
+    }
+
+    private void collect(int tier,
+                         String query,
+                         boolean caseSensitive,
+                         int limit,
+                         Set<String> existing,
+                         List<String> out) {
+        switch (tier) {
+            case TIER_PREFIX:
+                // the names are sorted without case, keep the ones with the same case
+                Predicate<String> sameCase = fqn -> getSimpleName(fqn).startsWith(query);
+                collectPrefix(mByLowerCaseName, query.toLowerCase(), limit, existing, out,
+                        sameCase);
+                for (ClassIndexFile indexFile : mIndexFiles) {
+                    collectPrefix(indexFile.getClassNamesBySimpleName(),
+                            fqn -> getSimpleName(fqn).toLowerCase(), query.toLowerCase(), limit,
+                            existing, out, sameCase);
+                }
+                break;
+            case TIER_PREFIX_IGNORE_CASE:
+                collectPrefix(mByLowerCaseName, query.toLowerCase(), limit, existing, out, null);
+                for (ClassIndexFile indexFile : mIndexFiles) {
+                    collectPrefix(indexFile.getClassNamesBySimpleName(),
+                            fqn -> getSimpleName(fqn).toLowerCase(), query.toLowerCase(), limit,
+                            existing, out, null);
+                }
+                break;
+            case TIER_CAMEL_HUMP:
+                String initials = getQueryInitials(query);
+                // a query with a single hump is already covered by the prefix matches
+                if (initials.length() > 1) {
+                    Predicate<String> filter =
+                            fqn -> matchesCamelHump(getSimpleName(fqn), query, caseSensitive);
+                    collectPrefix(mByInitials, initials, limit, existing, out, filter);
+                    for (ClassIndexFile indexFile : mIndexFiles) {
+                        collectPrefix(indexFile.getClassNamesByInitials(),
+                                fqn -> getInitials(getSimpleName(fqn)), initials, limit,
+                                existing, out, filter);
+                    }
+                }
+                break;
+        }
+    }
+
+    /**
+     * Same as {@link #collectPrefix(NavigableMap, String, int, Set, List, Predicate)} for
+     * names sorted by the given key
+     */
+    private static void collectPrefix(List<String> sortedNames,
+                                      Function<String, String> key,
+                                      String prefix,
+                                      int limit,
+                                      Set<String> existing,
+                                      List<String> out,
+                                      Predicate<String> filter) {
+        int low = 0;
+        int high = sortedNames.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (key.apply(sortedNames.get(mid)).compareTo(prefix) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+
+        int added = 0;
+        for (int i = low; i < sortedNames.size() && added < limit; i++) {
+            String fqn = sortedNames.get(i);
+            if (!key.apply(fqn).startsWith(prefix)) {
+                break;
+            }
+            if (existing.contains(fqn)) {
+                continue;
+            }
+            if (filter != null && !filter.test(fqn)) {
+                continue;
+            }
+            out.add(fqn);
+            added++;
+        }
+    }
+
+    private static void collectPrefix(NavigableMap<String, NavigableSet<String>> map,
+                                      String prefix,
+                                      int limit,
+                                      Set<String> existing,
+                                      List<String> out,
+                                      Predicate<String> filter) {
+        int added = 0;
+        for (Map.Entry<String, NavigableSet<String>> entry : map.tailMap(prefix, true)
+                .entrySet()) {
+            if (!entry.getKey().startsWith(prefix)) {
+                break;
+            }
+            for (String fqn : entry.getValue()) {
+                if (added >= limit) {
+                    return;
+                }
+                if (existing.contains(fqn)) {
+                    continue;
+                }
+                if (filter != null && !filter.test(fqn)) {
+                    continue;
+                }
+                out.add(fqn);
+                added++;
+            }
+        }
+    }
+
+    /**
+     * Checks whether each hump of the query is a prefix of the consecutive humps
+     * of the name, starting from the first one. For example, {@code ArLi} and {@code AL}
+     * both match {@code ArrayList}.
+     */
+    public static boolean matchesCamelHump(String name, String query, boolean caseSensitive) {
+        int nameIndex = 0;
+        int queryIndex = 0;
+        while (queryIndex < query.length()) {
+            if (nameIndex >= name.length()) {
+                return false;
+            }
+            // the start of each hump is always compared without case
+            if (Character.toUpperCase(name.charAt(nameIndex)) !=
+                Character.toUpperCase(query.charAt(queryIndex))) {
+                return false;
+            }
+            nameIndex++;
+            queryIndex++;
+
+            while (queryIndex < query.length() && !Character.isUpperCase(query.charAt(queryIndex))) {
+                if (nameIndex >= name.length()) {
+                    return false;
+                }
+                char n = name.charAt(nameIndex);
+                char q = query.charAt(queryIndex);
+                if (n != q && (caseSensitive || Character.toLowerCase(n) != q)) {
+                    return false;
+                }
+                nameIndex++;
+                queryIndex++;
+            }
+
+            // skip the rest of the current hump
+            while (nameIndex < name.length() && !Character.isUpperCase(name.charAt(nameIndex))) {
+                nameIndex++;
+            }
+        }
+        return true;
+    }
+
+    static String getInitials(String simpleName) {
+        StringBuilder builder = new StringBuilder();
+        builder.append(Character.toUpperCase(simpleName.charAt(0)));
+        for (int i = 1; i < simpleName.length(); i++) {
+            char c = simpleName.charAt(i);
+            if (Character.isUpperCase(c)) {
+                builder.append(c);
+            }
+        }
+        return builder.toString();
+    }
+
+    private static String getQueryInitials(String query) {
+        if (query.isEmpty()) {
+            return query;
+        }
+        return getInitials(query);
+    }
+
+    static String getSimpleName(String fqn) {
+        int index = fqn.lastIndexOf('.');
+        if (index == -1) {
+            return fqn;
+        }
+        return fqn.substring(index + 1);
+    }
+
+    private static void put(NavigableMap<String, NavigableSet<String>> map,
+                            String key,
+                            String fqn) {
+        map.computeIfAbsent(key, k -> new ConcurrentSkipListSet<>(SIMPLE_NAME_ORDER)).add(fqn);
+    }
+
+    private static void delete(NavigableMap<String, NavigableSet<String>> map,
+                               String key,
+                               String fqn) {
+        map.computeIfPresent(key, (k, set) -> {
+            set.remove(fqn);
+            return set.isEmpty() ? null : set;
+        });
+    }
+}
@@ -1,14 +1,18 @@
 package com.tyron.builder.project.util;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
-import java.util.function.Function;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * A trie that stores package segments to a node.
@@ -21,10 +25,21 @@ import java.util.function.Function;
  *     /  \
  * String Object
  * </p>
+ *
+ * To keep the memory footprint low when indexing large class paths, the segments are
+ * interned so a segment such as {@code android} is only stored once across all tries and
+ * each node keeps its children in a sorted array instead of a hash map. Children are
+ * looked up with a binary search.
+ *
+ * The classes of libraries are not added to the trie, their {@link ClassIndexFile} is added
+ * instead and its sorted names are searched directly.
  */
 public class PackageTrie {
 
+    private static final Interner<String> SEGMENTS = Interners.newWeakInterner();
+
     private final Node mRoot;
+    private final List<ClassIndexFile> mIndexFiles = new CopyOnWriteArrayList<>();
 
     public PackageTrie() {
         mRoot = new Node();
@@ -49,6 +64,27 @@ public class PackageTrie {
         remove(fqn, true);
     }
 
+    /**
+     * Add the classes of a library to the index, they are read from the index file when
+     * searching.
+     */
+    public void addIndexFile(@NonNull ClassIndexFile indexFile) {
+        mIndexFiles.add(indexFile);
+    }
+
+    public void removeIndexFile(@NonNull ClassIndexFile indexFile) {
+        mIndexFiles.remove(indexFile);
+    }
+
+    /**
+     * Remove every package from the index
+     */
+    public void clear() {
+        mRoot.mChildren = Node.EMPTY;
+        mRoot.mChildCount = 0;
+        mIndexFiles.clear();
+    }
+
     /**
      * Remove the package to the index
      *
@@ -71,25 +107,34 @@ public class PackageTrie {
             if (current == null) {
                 break;
             }
-            if (current.getChildren() == null) {
-                current = null;
-            } else {
-                Node next = current.getChildren().get(part);
-                if (next != null && (isLeaf || !leafOnly)) {
-                    current.getChildren().remove(next.getValue());
-                }
-                current = next;
+            Node next = current.getChild(part);
+            if (next != null && (isLeaf || !leafOnly)) {
+                current.removeChild(part);
             }
+            current = next;
         }
     }
 
     public List<String> getMatchingPackages(String packageQuery) {
+        List<String> result = getMatchingPackagesInTrie(packageQuery);
+        if (mIndexFiles.isEmpty()) {
+            return result;
+        }
+        Set<String> merged = new LinkedHashSet<>(result);
+        for (ClassIndexFile indexFile : mIndexFiles) {
+            merged.addAll(indexFile.getClassesInPackage(packageQuery));
+        }
+        return new ArrayList<>(merged);
+    }
+
+    private List<String> getMatchingPackagesInTrie(String packageQuery) {
         List<String> result = new ArrayList<>();
         StringBuilder currentPackage = new StringBuilder();
         String[] parts = getParts(packageQuery);
         Node current = mRoot;
         for (String part : parts) {
-            if (current == null || current.getChildren() == null || !current.getChildren().containsKey(part)) {
+            Node next = current.getChild(part);
+            if (next == null) {
                 return result;
             }
 
@@ -106,24 +151,29 @@ public class PackageTrie {
                 currentPackage.append(part);
             }
 
-            current = current.getChildren().get(part);
+            current = next;
         }
 
-        if (current.getChildren() != null) {
-            for (Node node : current.getChildren().values()) {
-                recurse(node, currentPackage.toString(), result);
-            }
+        for (int i = 0; i < current.mChildCount; i++) {
+            recurse(current.mChildren[i], currentPackage.toString(), result);
         }
 
         return result;
     }
 
     public Set<String> getTopLevelNonLeafNodes() {
-        if (mRoot.getChildren() == null) {
+        if (mRoot.mChildCount == 0 && mIndexFiles.isEmpty()) {
             return Collections.emptySet();
         }
 
-        return mRoot.getChildren().keySet();
+        Set<String> nodes = new LinkedHashSet<>();
+        for (int i = 0; i < mRoot.mChildCount; i++) {
+            nodes.add(mRoot.mChildren[i].getValue());
+        }
+        for (ClassIndexFile indexFile : mIndexFiles) {
+            nodes.addAll(indexFile.getTopLevelSegments());
+        }
+        return Collections.unmodifiableSet(nodes);
     }
 
     private void recurse(Node node, String currentPackage, List<String> result) {
@@ -138,11 +188,8 @@ public class PackageTrie {
                     : currentPackage + "." + node.getValue();
         }
 
-        if (node.getChildren() == null) {
-            return;
-        }
-        for (Node child : node.getChildren().values()) {
-            recurse(child, currentPackage, result);
+        for (int i = 0; i < node.mChildCount; i++) {
+            recurse(node.mChildren[i], currentPackage, result);
         }
     }
 
@@ -155,30 +202,80 @@ public class PackageTrie {
 
     private static class Node {
 
-        private Map<String, Node> mChildren;
+        private static final Node[] EMPTY = new Node[0];
+
+        /**
+         * The children of this node sorted by their value, only the first
+         * {@link #mChildCount} elements are used.
+         */
+        private Node[] mChildren = EMPTY;
+
+        private int mChildCount;
 
         private boolean isLeaf;
 
-        private String mValue;
+        private final String mValue;
 
         public Node() {
-
+            mValue = null;
         }
 
         public Node(String value) {
-            mValue = value;
+            mValue = SEGMENTS.intern(value);
         }
 
         public Node getOrCreateChild(String part) {
-            if (mChildren == null) {
-                mChildren = new HashMap<>();
+            int index = indexOf(part);
+            if (index >= 0) {
+                return mChildren[index];
             }
 
-            return mChildren.computeIfAbsent(part, Node::new);
+            int insertion = -(index + 1);
+            if (mChildCount == mChildren.length) {
+                int newLength = mChildren.length == 0 ? 1 : mChildren.length * 2;
+                mChildren = Arrays.copyOf(mChildren, newLength);
+            }
+            System.arraycopy(mChildren, insertion, mChildren, insertion + 1,
+                    mChildCount - insertion);
+            Node child = new Node(part);
+            mChildren[insertion] = child;
+            mChildCount++;
+            return child;
+        }
+
+        @Nullable
+        public Node getChild(String part) {
+            int index = indexOf(part);
+            return index >= 0 ? mChildren[index] : null;
         }
 
-        public Map<String, Node> getChildren() {
-            return mChildren;
+        public void removeChild(String part) {
+            int index = indexOf(part);
+            if (index < 0) {
+                return;
+            }
+            System.arraycopy(mChildren, index + 1, mChildren, index, mChildCount - index - 1);
+            mChildren[--mChildCount] = null;
+            if (mChildCount == 0) {
+                mChildren = EMPTY;
+            }
+        }
+
+        private int indexOf(String part) {
+            int low = 0;
+            int high = mChildCount - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int compare = mChildren[mid].mValue.compareTo(part);
+                if (compare < 0) {
+                    low = mid + 1;
+                } else if (compare > 0) {
+                    high = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -(low + 1);
         }
 
         public String getValue() {
@@ -0,0 +1,193 @@
+package com.tyron.builder.project.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
+
+public class ClassIndexFileTest {
+
+    private static void writeJar(File file, String... entries) throws IOException {
+        try (JarOutputStream out = new JarOutputStream(new FileOutputStream(file))) {
+            for (String entry : entries) {
+                out.putNextEntry(new ZipEntry(entry));
+                out.write(new byte[]{0});
+                out.closeEntry();
+            }
+        }
+    }
+
+    @Test
+    public void testIndex() throws IOException {
+        File dir = Files.createTempDirectory("class_index").toFile();
+        File jar = new File(dir, "classes.jar");
+        writeJar(jar, "b/B.class", "a/A.class", "a/A$Inner.class", "META-INF/MANIFEST.MF");
+
+        ClassIndexFile index = ClassIndexFile.open(jar, new File(dir, "index"));
+        List<String> names = index.getClassNames();
+        assert names.equals(Arrays.asList("a.A", "b.B"));
+        assert index.contains("b.B");
+        assert !index.contains("a.A$Inner");
+    }
+
+    @Test
+    public void testReuse() throws IOException {
+        File dir = Files.createTempDirectory("class_index").toFile();
+        File indexDir = new File(dir, "index");
+        File jar = new File(dir, "classes.jar");
+        writeJar(jar, "a/A.class");
+        ClassIndexFile.open(jar, indexDir);
+
+        // only the modified time has changed, the index should still be valid
+        assert jar.setLastModified(jar.lastModified() - 10_000);
+        ClassIndexFile index = ClassIndexFile.open(jar, indexDir);
+        assert index.contains("a.A");
+
+        // the contents has changed, the index should be rebuilt
+        writeJar(jar, "a/A.class", "a/B.class");
+        index = ClassIndexFile.open(jar, indexDir);
+        assert index.size() == 2;
+        assert index.contains("a.B");
+    }
+
+    @Test
+    public void testPackageRange() throws IOException {
+        File dir = Files.createTempDirectory("class_index").toFile();
+        File jar = new File(dir, "classes.jar");
+        writeJar(jar, "a/A.class", "a/b/B.class", "ab/C.class", "b/D.class", "E.class");
+
+        ClassIndexFile index = ClassIndexFile.open(jar, new File(dir, "index"));
+        assertEquals(Arrays.asList("a.A", "a.b.B"), index.getClassesInPackage("a"));
+        assertEquals(Collections.singletonList("a.b.B"), index.getClassesInPackage("a.b"));
+        assertEquals(Collections.emptyList(), index.getClassesInPackage("c"));
+        assertEquals(Arrays.asList("E", "a", "ab", "b"), index.getTopLevelSegments());
+    }
+
+    @Test
+    public void testSiblingPackagesWithSamePrefix() throws IOException {
+        File dir = Files.createTempDirectory("class_index").toFile();
+        File jar = new File(dir, "classes.jar");
+        writeJar(jar, "org/apache/commons/lang/StringUtils.class",
+                "org/apache/commons/lang3/StringUtils.class", "com/A.class", "com1/B.class",
+                "com2/C.class");
+
+        ClassIndexFile index = ClassIndexFile.open(jar, new File(dir, "index"));
+        assertEquals(Collections.singletonList("org.apache.commons.lang.StringUtils"),
+                index.getClassesInPackage("org.apache.commons.lang"));
+        assertEquals(Collections.singletonList("org.apache.commons.lang3.StringUtils"),
+                index.getClassesInPackage("org.apache.commons.lang3"));
+        assertEquals(Collections.singletonList("com.A"), index.getClassesInPackage("com"));
+        assertEquals(Arrays.asList("com", "com1", "com2", "org"), index.getTopLevelSegments());
+
+        PackageTrie trie = new PackageTrie();
+        trie.addIndexFile(index);
+        assertEquals(Collections.singletonList("org.apache.commons.lang.StringUtils"),
+                trie.getMatchingPackages("org.apache.commons.lang"));
+    }
+
+    @Test
+    public void testLookupsFromIndexFile() throws IOException {
+        File dir = Files.createTempDirectory("class_index").toFile();
+        File jar = new File(dir, "classes.jar");
+        writeJar(jar, "java/util/ArrayList.class", "java/util/List.class",
+                "java/util/AbstractList.class", "java/awt/List.class");
+        ClassIndexFile index = ClassIndexFile.open(jar, new File(dir, "index"));
+
+        ClassNameIndex classNameIndex = new ClassNameIndex();
+        classNameIndex.add("android.widget.ListView");
+        classNameIndex.addIndexFile(index);
+        assertEquals(5, classNameIndex.size());
+        assertEquals(Arrays.asList("java.awt.List", "java.util.List", "android.widget.ListView"),
+                classNameIndex.search("List", true, 10));
+        assertEquals(Arrays.asList("java.util.AbstractList", "java.util.ArrayList"),
+                classNameIndex.search("AL", true, 10));
+
+        PackageTrie trie = new PackageTrie();
+        trie.add("android.widget.ListView");
+        trie.addIndexFile(index);
+        assertEquals(Arrays.asList("java.util.AbstractList", "java.util.ArrayList",
+                "java.util.List"), trie.getMatchingPackages("java.util"));
+        assertEquals(new java.util.HashSet<>(Arrays.asList("android", "java")),
+                trie.getTopLevelNonLeafNodes());
+
+        classNameIndex.removeIndexFile(index);
+        assertEquals(Collections.singletonList("android.widget.ListView"),
+                classNameIndex.search("List", true, 10));
+    }
+
+    @Test
+    public void testCorruptIndexIsRecreated() throws IOException {
+        File dir = Files.createTempDirectory("class_index").toFile();
+        File indexDir = new File(dir, "index");
+        File jar = new File(dir, "classes.jar");
+        writeJar(jar, "a/A.class", "b/B.class");
+        ClassIndexFile.open(jar, indexDir);
+        File[] files = indexDir.listFiles();
+        assertTrue(files != null && files.length == 1);
+        File indexFile = files[0];
+
+        // a count that points past the end of the file
+        try (RandomAccessFile file = new RandomAccessFile(indexFile, "rw")) {
+            file.seek(40);
+            file.writeInt(Integer.MAX_VALUE / 4);
+        }
+        ClassIndexFile index = ClassIndexFile.open(jar, indexDir);
+        assertEquals(Arrays.asList("a.A", "b.B"), index.getClassNames());
+
+        // the names section is cut off
+        try (RandomAccessFile file = new RandomAccessFile(indexFile, "rw")) {
+            file.setLength(file.length() - 3);
+        }
+        index = ClassIndexFile.open(jar, indexDir);
+        assertEquals(Arrays.asList("a.A", "b.B"), index.getClassNames());
+
+        // shorter than the header
+        try (RandomAccessFile file = new RandomAccessFile(indexFile, "rw")) {
+            file.setLength(10);
+        }
+        index = ClassIndexFile.open(jar, indexDir);
+        assertEquals(Arrays.asList("a.A", "b.B"), index.getClassNames());
+    }
+
+    @Test
+    public void testSameRankingAsInMemoryIndex() throws IOException {
+        String[] classNames = {"c.ARRAY", "b.ArrayList", "a.Arraylist", "a.ArrayList",
+                "d.ArrayMap", "x.AbstractList", "a.array"};
+        File dir = Files.createTempDirectory("class_index").toFile();
+        File jar = new File(dir, "classes.jar");
+        String[] entries = new String[classNames.length];
+        for (int i = 0; i < classNames.length; i++) {
+            entries[i] = classNames[i].replace('.', '/') + ".class";
+        }
+        writeJar(jar, entries);
+
+        ClassNameIndex fromFile = new ClassNameIndex();
+        fromFile.addIndexFile(ClassIndexFile.open(jar, new File(dir, "index")));
+        ClassNameIndex inMemory = new ClassNameIndex();
+        for (String className : classNames) {
+            inMemory.add(className);
+        }
+
+        for (String query : Arrays.asList("", "A", "Arr", "arr", "ArrayL", "AL")) {
+            for (int limit = 1; limit <= classNames.length; limit++) {
+                assertEquals(query + " " + limit, inMemory.search(query, true, limit),
+                        fromFile.search(query, true, limit));
+                assertEquals(query + " " + limit, inMemory.search(query, false, limit),
+                        fromFile.search(query, false, limit));
+            }
+        }
+        assertEquals(Arrays.asList("a.ArrayList", "b.ArrayList", "a.Arraylist", "d.ArrayMap"),
+                inMemory.search("Arr", true, 10));
+    }
+}
@@ -0,0 +1,76 @@
+package com.tyron.builder.project.util;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+public class ClassNameIndexTest {
+
+    private ClassNameIndex createIndex() {
+        ClassNameIndex index = new ClassNameIndex();
+        index.add("java.util.ArrayList");
+        index.add("java.util.AbstractList");
+        index.add("java.util.List");
+        index.add("java.awt.List");
+        index.add("java.util.LinkedList");
+        index.add("android.widget.ListView");
+        index.add("java.net.URLConnection");
+        return index;
+    }
+
+    @Test
+    public void testPrefix() {
+        ClassNameIndex index = createIndex();
+
+        List<String> names = index.search("List", true, 10);
+        assert names.equals(Arrays.asList("java.awt.List", "java.util.List",
+                "android.widget.ListView"));
+
+        assert index.search("list", true, 10).isEmpty();
+        assert index.search("list", false, 10).size() == 3;
+    }
+
+    @Test
+    public void testCamelHump() {
+        ClassNameIndex index = createIndex();
+
+        List<String> names = index.search("AL", true, 10);
+        assert names.equals(Arrays.asList("java.util.AbstractList", "java.util.ArrayList"));
+
+        names = index.search("ArLi", true, 10);
+        assert names.equals(Arrays.asList("java.util.ArrayList"));
+
+        names = index.search("URLC", true, 10);
+        assert names.equals(Arrays.asList("java.net.URLConnection"));
+    }
+
+    @Test
+    public void testLimit() {
+        ClassNameIndex index = createIndex();
+        assert index.search("", true, 3).size() == 3;
+        assert index.search("L", true, 1).size() == 1;
+    }
+
+    @Test
+    public void testRemove() {
+        ClassNameIndex index = createIndex();
+        index.remove("java.util.ArrayList");
+
+        assert index.search("ArrayList", true, 10).isEmpty();
+        assert index.search("AL", true, 10).size() == 1;
+        assert index.size() == 6;
+    }
+
+    @Test
+    public void testMultipleIndexes() {
+        ClassNameIndex first = new ClassNameIndex();
+        first.add("b.Button");
+        ClassNameIndex second = new ClassNameIndex();
+        second.add("a.Bundle");
+        second.add("a.Button");
+
+        List<String> names = ClassNameIndex.search(Arrays.asList(first, second), "Bu", true, 10);
+        assert names.equals(Arrays.asList("a.Bundle", "a.Button", "b.Button"));
+    }
+}
@@ -0,0 +1,49 @@
+package com.tyron.builder.project.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates class names shaped like the android bootstrap jar with AndroidX, and the package
+ * queries that are made against them.
+ */
+final class ClassPathFixture {
+
+    static final String[] ROOTS = {"android", "androidx", "java", "javax", "kotlin",
+            "com.google.android.material", "org.w3c.dom", "org.xml.sax"};
+    static final String[] SEGMENTS = {"app", "view", "widget", "content", "util",
+            "core", "graphics", "internal", "lifecycle", "recyclerview", "fragment", "text",
+            "io", "net", "os", "annotation", "compat", "impl", "collection", "media"};
+
+    static List<String> createClassNames(int count) {
+        Random random = new Random(42);
+        List<String> names = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            StringBuilder builder = new StringBuilder(ROOTS[random.nextInt(ROOTS.length)]);
+            int depth = 1 + random.nextInt(3);
+            for (int j = 0; j < depth; j++) {
+                builder.append('.').append(SEGMENTS[random.nextInt(SEGMENTS.length)]);
+            }
+            builder.append(".Class").append(i);
+            names.add(builder.toString());
+        }
+        return names;
+    }
+
+    /**
+     * @return The root and the packages made of the root and one of the segments
+     */
+    static List<String> createQueries(String root) {
+        List<String> queries = new ArrayList<>();
+        queries.add(root);
+        for (String segment : SEGMENTS) {
+            queries.add(root + "." + segment);
+        }
+        return queries;
+    }
+
+    private ClassPathFixture() {
+
+    }
+}
@@ -0,0 +1,83 @@
+package com.tyron.builder.project.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link PackageTrie} against the previous hash map based implementation on the
+ * class names of {@link ClassPathFixture}. The lookup benchmarks measure the latency of the
+ * package queries, running with {@code -prof gc} shows the memory allocated to build each
+ * trie. Run it with {@code org.openjdk.jmh.Main PackageTrieBenchmark} on the test classpath
+ * of this module.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class PackageTrieBenchmark {
+
+    private List<String> mNames;
+    private List<String> mQueries;
+    private HashMapPackageTrie mLegacy;
+    private PackageTrie mTrie;
+
+    @Setup
+    public void setup() {
+        mNames = ClassPathFixture.createClassNames(100_000);
+        mQueries = new ArrayList<>();
+        for (String root : ClassPathFixture.ROOTS) {
+            mQueries.addAll(ClassPathFixture.createQueries(root));
+        }
+        mLegacy = buildLegacy();
+        mTrie = buildTrie();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public HashMapPackageTrie buildLegacy() {
+        HashMapPackageTrie trie = new HashMapPackageTrie();
+        for (String name : mNames) {
+            trie.add(name);
+        }
+        return trie;
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public PackageTrie buildTrie() {
+        PackageTrie trie = new PackageTrie();
+        for (String name : mNames) {
+            trie.add(name);
+        }
+        return trie;
+    }
+
+    @Benchmark
+    public void lookupLegacy(Blackhole blackhole) {
+        for (String query : mQueries) {
+            blackhole.consume(mLegacy.getMatchingPackages(query));
+        }
+    }
+
+    @Benchmark
+    public void lookupTrie(Blackhole blackhole) {
+        for (String query : mQueries) {
+            blackhole.consume(mTrie.getMatchingPackages(query));
+        }
+    }
+}
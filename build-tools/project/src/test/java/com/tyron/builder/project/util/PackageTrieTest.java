@@ -1,8 +1,12 @@
 package com.tyron.builder.project.util;
 
+import static org.junit.Assert.assertEquals;
+
 import org.junit.Test;
 
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 public class PackageTrieTest {
 
@@ -47,4 +51,28 @@ public class PackageTrieTest {
         List<String> packages = trie.getMatchingPackages("a");
         assert packages.size() == 1;
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testClassPath() {
+        List<String> names = ClassPathFixture.createClassNames(10_000);
+        PackageTrie trie = new PackageTrie();
+        for (String name : names) {
+            trie.add(name);
+        }
+
+        Set<String> topLevel = new HashSet<>();
+        for (String root : ClassPathFixture.ROOTS) {
+            topLevel.add(root.split("\\.")[0]);
+            for (String query : ClassPathFixture.createQueries(root)) {
+                Set<String> expected = new HashSet<>();
+                for (String name : names) {
+                    if (name.startsWith(query + ".")) {
+                        expected.add(name);
+                    }
+                }
+                assertEquals(query, expected, new HashSet<>(trie.getMatchingPackages(query)));
+            }
+        }
+        assertEquals(topLevel, trie.getTopLevelNonLeafNodes());
+    }
+}
@@ -47,14 +47,14 @@ public class AndroidResourceRepository extends SimpleResourceRepository {
     public boolean hasResources(@NotNull ResourceNamespace namespace,
                                 @NotNull ResourceType resourceType,
                                 @NotNull String resourceName) {
-        return !mTable.getOrPutEmpty(namespace, resourceType).get(resourceName).isEmpty();
+        return !mTable.getOrEmpty(namespace, resourceType).get(resourceName).isEmpty();
     }
 
     @NotNull
     @Override
     public List<ResourceItem> getResources(@NotNull ResourceNamespace namespace, @NotNull ResourceType type, @NotNull Predicate<ResourceItem> filter) {
         ListMultimap<String, ResourceItem> value =
-                mTable.get(namespace, type);
+                mTable.getOrEmpty(namespace, type);
         List<ResourceItem> items = new ArrayList<>();
         for (Map.Entry<String, ResourceItem> entry : value.entries()) {
             if (filter.test(entry.getValue())) {
@@ -69,14 +69,14 @@ public class AndroidResourceRepository extends SimpleResourceRepository {
     public List<ResourceItem> getResources(@NotNull ResourceNamespace namespace,
                                            @NotNull ResourceType resourceType,
                                            @NotNull String resourceName) {
-        return mTable.getOrPutEmpty(namespace, resourceType).get(resourceName);
+        return mTable.getOrEmpty(namespace, resourceType).get(resourceName);
     }
 
     @NotNull
     @Override
     public ListMultimap<String, ResourceItem> getResources(@NotNull ResourceNamespace namespace,
                                                            @NotNull ResourceType resourceType) {
-        return mTable.getOrPutEmpty(namespace, resourceType);
+        return mTable.getOrEmpty(namespace, resourceType);
     }
 
     public static File getOrExtractFiles() {
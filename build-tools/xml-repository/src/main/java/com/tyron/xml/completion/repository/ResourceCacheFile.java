@@ -0,0 +1,215 @@
+package com.tyron.xml.completion.repository;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.tyron.xml.completion.repository.api.ResourceNamespace;
+import com.tyron.xml.completion.repository.api.ResourceValue;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The resources parsed from the res directory of a library, saved on disk so the libraries of
+ * a project do not have to be parsed again every time it is opened.
+ *
+ * The cache is reused as long as the stamp of the res directory is the same, the stamp is a
+ * hash of the path, size and last modified time of every resource file, along with the
+ * namespace and the name of the library the resources belong to.
+ *
+ * File layout:
+ * <pre>
+ *     int     magic
+ *     int     version
+ *     byte[16] stamp of the res directory
+ *     int     file count
+ *     entries each entry is the path of the file relative to the res directory and the name
+ *             of its folder in modified UTF-8, followed by the serialized list of its values
+ * </pre>
+ */
+public class ResourceCacheFile {
+
+    private static final int MAGIC = 0x52435348; // RCSH
+    private static final int VERSION = 1;
+    private static final int STAMP_LENGTH = 16;
+
+    /**
+     * The resources parsed from a single file
+     */
+    public static class Entry {
+
+        private final File mFile;
+        private final String mFolderName;
+        private final List<ResourceValue> mValues;
+
+        public Entry(@NotNull File file,
+                     @NotNull String folderName,
+                     @NotNull List<ResourceValue> values) {
+            mFile = file;
+            mFolderName = folderName;
+            mValues = values;
+        }
+
+        @NotNull
+        public File getFile() {
+            return mFile;
+        }
+
+        @NotNull
+        public String getFolderName() {
+            return mFolderName;
+        }
+
+        @NotNull
+        public List<ResourceValue> getValues() {
+            return mValues;
+        }
+    }
+
+    /**
+     * Computes the stamp of the given resource files
+     *
+     * @param resDir The res directory the files are in
+     * @param files The resource files of the res directory
+     * @param namespace The namespace of the resources
+     * @param libraryName The name of the library the resources belong to, may be null
+     */
+    @NotNull
+    public static byte[] getStamp(@NotNull File resDir,
+                                  @NotNull Collection<File> files,
+                                  @NotNull ResourceNamespace namespace,
+                                  @Nullable String libraryName) {
+        List<String> paths = new ArrayList<>(files.size());
+        for (File file : files) {
+            paths.add(getRelativePath(resDir, file));
+        }
+        Collections.sort(paths);
+
+        Hasher hasher = Hashing.murmur3_128().newHasher();
+        hasher.putInt(VERSION);
+        hasher.putString(namespace.getXmlNamespaceUri(), StandardCharsets.UTF_8);
+        hasher.putString(String.valueOf(libraryName), StandardCharsets.UTF_8);
+        for (String path : paths) {
+            File file = new File(resDir, path);
+            hasher.putString(path, StandardCharsets.UTF_8);
+            hasher.putLong(file.length());
+            hasher.putLong(file.lastModified());
+        }
+        return hasher.hash().asBytes();
+    }
+
+    /**
+     * Loads the cached resources of the res directory
+     *
+     * @param resDir The res directory whose resources were cached
+     * @param cacheDirectory The directory where the cache files are stored
+     * @param stamp The current stamp of the res directory
+     * @return The resources of each file, or null if there is no cache or it is out of date
+     */
+    @Nullable
+    public static List<Entry> load(@NotNull File resDir,
+                                   @NotNull File cacheDirectory,
+                                   @NotNull byte[] stamp) {
+        File cacheFile = getCacheFile(resDir, cacheDirectory);
+        if (!cacheFile.isFile()) {
+            return null;
+        }
+
+        try (ObjectInputStream in = new ObjectInputStream(
+                new BufferedInputStream(new FileInputStream(cacheFile)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return null;
+            }
+            byte[] storedStamp = new byte[STAMP_LENGTH];
+            in.readFully(storedStamp);
+            if (!Arrays.equals(storedStamp, stamp)) {
+                return null;
+            }
+
+            int count = in.readInt();
+            List<Entry> entries = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                File file = new File(resDir, in.readUTF());
+                String folderName = in.readUTF();
+                @SuppressWarnings("unchecked")
+                List<ResourceValue> values = (List<ResourceValue>) in.readObject();
+                entries.add(new Entry(file, folderName, values));
+            }
+            return entries;
+        } catch (IOException | ClassNotFoundException | ClassCastException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Saves the resources of the res directory, replacing the existing cache
+     *
+     * @param resDir The res directory that was parsed
+     * @param cacheDirectory The directory where the cache files are stored
+     * @param stamp The stamp of the res directory when it was parsed
+     * @param entries The resources of each file of the res directory
+     * @throws IOException if the cache cannot be written, for example if a value cannot be
+     * serialized
+     */
+    public static void create(@NotNull File resDir,
+                              @NotNull File cacheDirectory,
+                              @NotNull byte[] stamp,
+                              @NotNull List<Entry> entries) throws IOException {
+        File cacheFile = getCacheFile(resDir, cacheDirectory);
+        File parent = cacheFile.getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Unable to create directory " + parent);
+        }
+
+        File temp = new File(cacheFile.getPath() + ".tmp");
+        try (ObjectOutputStream out = new ObjectOutputStream(
+                new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.write(stamp, 0, STAMP_LENGTH);
+            out.writeInt(entries.size());
+            for (Entry entry : entries) {
+                out.writeUTF(getRelativePath(resDir, entry.getFile()));
+                out.writeUTF(entry.getFolderName());
+                out.writeObject(new ArrayList<>(entry.getValues()));
+            }
+        } catch (IOException e) {
+            //noinspection ResultOfMethodCallIgnored
+            temp.delete();
+            throw e;
+        }
+        if (cacheFile.exists() && !cacheFile.delete()) {
+            throw new IOException("Unable to delete old cache " + cacheFile);
+        }
+        if (!temp.renameTo(cacheFile)) {
+            throw new IOException("Unable to create cache " + cacheFile);
+        }
+    }
+
+    @NotNull
+    private static File getCacheFile(File resDir, File cacheDirectory) {
+        String path = resDir.getAbsolutePath();
+        File parent = resDir.getParentFile();
+        String name = parent == null ? resDir.getName() : parent.getName();
+        return new File(cacheDirectory,
+                name + "_" + Integer.toHexString(path.hashCode()) + ".rcache");
+    }
+
+    private static String getRelativePath(File resDir, File file) {
+        return resDir.toURI().relativize(file.toURI()).getPath();
+    }
+}
@@ -6,6 +6,7 @@ import com.tyron.builder.compiler.manifest.xml.AndroidManifestParser;
 import com.tyron.builder.compiler.manifest.xml.ManifestData;
 import com.tyron.builder.model.Library;
 import com.tyron.builder.project.api.AndroidModule;
+import com.tyron.common.logging.IdeLog;
 import com.tyron.xml.completion.repository.api.ResourceNamespace;
 import com.tyron.xml.completion.repository.api.ResourceReference;
 import com.tyron.xml.completion.repository.api.ResourceValue;
@@ -14,12 +15,27 @@ import org.jetbrains.annotations.NotNull;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 public class ResourceRepository extends SimpleResourceRepository {
 
+    /**
+     * The directory inside the build directory where the resources of the libraries are cached
+     */
+    private static final String CACHE_DIRECTORY = "intermediate/resource_cache";
+
     private static boolean sInitializeAndroidRepo = true;
 
+    private final Logger logger = IdeLog.getCurrentLogger(this);
+
     private final AndroidModule mModule;
     private final AndroidResourceRepository mAndroidRepository;
 
@@ -41,37 +57,93 @@ public class ResourceRepository extends SimpleResourceRepository {
             mAndroidRepository.initialize();
         }
 
-        File resDir = mModule.getAndroidResourcesDirectory();
-        parse(resDir, getNamespace(), null);
-
+        List<File> libraryResDirs = new ArrayList<>();
         for (File library : mModule.getLibraries()) {
             File parent = library.getParentFile();
             if (parent == null) {
                 continue;
             }
-
-            ResourceNamespace namespace;
-            File manifest = new File(parent, "AndroidManifest.xml");
-            try {
-                ManifestData data = AndroidManifestParser.parse(manifest);
-                namespace = ResourceNamespace.fromPackageName(data.getPackage());
-            } catch (IOException ignored) {
-                namespace = ResourceNamespace.RES_AUTO;
+            File libraryResDir = new File(parent, "res");
+            if (libraryResDir.exists() && !libraryResDirs.contains(libraryResDir)) {
+                libraryResDirs.add(libraryResDir);
             }
+        }
 
-            File libraryResDir = new File(parent, "res");
-            if (!libraryResDir.exists()) {
-                continue;
+        // the libraries are parsed in parallel, their values are added to the table below
+        // in the same order as the libraries so it does not depend on which finishes first
+        int threads = Math.min(libraryResDirs.size(), Runtime.getRuntime().availableProcessors());
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threads));
+        try {
+            List<Future<List<ResourceCacheFile.Entry>>> futures = new ArrayList<>();
+            for (File libraryResDir : libraryResDirs) {
+                futures.add(executor.submit(() -> parseLibrary(libraryResDir)));
             }
 
-            Library lib = mModule.getLibrary(parent.getName());
-            String name = null;
-            if (lib != null) {
-                name = lib.getSourceFile()
-                        .getName();
+            File resDir = mModule.getAndroidResourcesDirectory();
+            parse(resDir, getNamespace(), null);
+
+            for (int i = 0; i < futures.size(); i++) {
+                addEntries(getResult(futures.get(i), libraryResDirs.get(i)));
             }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Parses the res directory of a library, or loads it from the cache if it has not changed
+     * since the last time it was parsed
+     */
+    private List<ResourceCacheFile.Entry> parseLibrary(File libraryResDir) {
+        File parent = libraryResDir.getParentFile();
+
+        ResourceNamespace namespace;
+        File manifest = new File(parent, "AndroidManifest.xml");
+        try {
+            ManifestData data = AndroidManifestParser.parse(manifest);
+            namespace = ResourceNamespace.fromPackageName(data.getPackage());
+        } catch (IOException ignored) {
+            namespace = ResourceNamespace.RES_AUTO;
+        }
+
+        Library lib = mModule.getLibrary(parent.getName());
+        String name = null;
+        if (lib != null) {
+            name = lib.getSourceFile()
+                    .getName();
+        }
+
+        File cacheDirectory = new File(mModule.getBuildDirectory(), CACHE_DIRECTORY);
+        List<File> files = listResourceFiles(libraryResDir);
+        byte[] stamp = ResourceCacheFile.getStamp(libraryResDir, files, namespace, name);
+        List<ResourceCacheFile.Entry> entries =
+                ResourceCacheFile.load(libraryResDir, cacheDirectory, stamp);
+        if (entries != null) {
+            return entries;
+        }
+
+        entries = parseFiles(files, namespace, name);
+        try {
+            ResourceCacheFile.create(libraryResDir, cacheDirectory, stamp, entries);
+        } catch (IOException e) {
+            // the library is parsed again the next time
+            logger.warning("Unable to cache the resources of " + parent.getName() + ": " +
+                           e.getMessage());
+        }
+        return entries;
+    }
 
-            parse(libraryResDir, namespace, name);
+    private <T> List<T> getResult(Future<List<T>> future, File libraryResDir) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Collections.emptyList();
+        } catch (ExecutionException e) {
+            // the library cannot be read, its resources are skipped
+            logger.log(Level.WARNING, "Unable to read the resources of " +
+                                      libraryResDir.getParentFile().getName(), e.getCause());
+            return Collections.emptyList();
         }
     }
 
@@ -6,6 +6,8 @@ import org.jetbrains.annotations.Nullable;
 
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.ForwardingTable;
+import com.google.common.collect.HashBasedTable;
+import com.google.common.collect.ImmutableListMultimap;
 import com.google.common.collect.ListMultimap;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Table;
@@ -16,9 +18,10 @@ import com.tyron.xml.completion.repository.api.ResourceReference;
 
 import java.util.HashMap;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
- * Mutable, three-dimensional table for storing {@link ResourceItem}, indexed by components of a
+ * Versioned, three-dimensional table for storing {@link ResourceItem}, indexed by components of a
  * {@link ResourceReference}.
  *
  * <p>The first dimension is namespace. Can be taken straight from {@link ResourceReference}.
@@ -29,63 +32,166 @@ import java.util.List;
  * ResourceItem}s. There can be multiple items defined under the same name with different resource
  * qualifiers.
  *
+ * <p>The contents of the table are an immutable {@link Snapshot}. Readers do not lock, they
+ * read the latest snapshot, and readers that make multiple reads take the snapshot once with
+ * {@link #getSnapshot()} so they all see the same version. Writers make their changes through
+ * {@link #update(Consumer)}, which publishes a new snapshot that only copies the multimaps that
+ * were changed.
  */
-public final class ResourceTable
-        extends ForwardingTable<ResourceNamespace, ResourceType, ListMultimap<String, ResourceItem>> {
-
-    private final Table<ResourceNamespace, ResourceType, ListMultimap<String, ResourceItem>>
-            delegate =
-            Tables.newCustomTable(
-                    new HashMap<>(), () -> Maps.newEnumMap(ResourceType.class));
-
-    @Override
-    protected Table<ResourceNamespace, ResourceType, ListMultimap<String, ResourceItem>>
-    delegate() {
-        return delegate;
+public final class ResourceTable {
+
+    /**
+     * An immutable version of the table, its multimaps are immutable as well. There are no
+     * empty multimaps in it, so the set of rows and columns reflects reality.
+     */
+    public static final class Snapshot
+            extends ForwardingTable<ResourceNamespace, ResourceType, ListMultimap<String, ResourceItem>> {
+
+        private final Table<ResourceNamespace, ResourceType, ListMultimap<String, ResourceItem>>
+                mDelegate;
+        private final long mVersion;
+
+        private Snapshot(
+                Table<ResourceNamespace, ResourceType, ListMultimap<String, ResourceItem>> delegate,
+                long version) {
+            mDelegate = Tables.unmodifiableTable(delegate);
+            mVersion = version;
+        }
+
+        @Override
+        protected Table<ResourceNamespace, ResourceType, ListMultimap<String, ResourceItem>>
+        delegate() {
+            return mDelegate;
+        }
+
+        /**
+         * @return the number of updates that were made to the table before this snapshot
+         */
+        public long getVersion() {
+            return mVersion;
+        }
+
+        /**
+         * Gets the corresponding multimap from the snapshot, or an empty multimap if there is
+         * none
+         */
+        @NotNull
+        public ListMultimap<String, ResourceItem> getOrEmpty(
+                @NotNull ResourceNamespace namespace, @NotNull ResourceType resourceType) {
+            ListMultimap<String, ResourceItem> multimap = get(namespace, resourceType);
+            if (multimap == null) {
+                return ImmutableListMultimap.of();
+            }
+            return multimap;
+        }
+
+        @Nullable
+        public List<ResourceItem> get(@NotNull ResourceReference reference) {
+            ListMultimap<String, ResourceItem> multimap =
+                    get(reference.getNamespace(), reference.getResourceType());
+            if (multimap == null) {
+                return null;
+            }
+
+            return multimap.get(reference.getName());
+        }
+    }
+
+    /**
+     * The changes made to the table in a single update, the multimaps that are changed are
+     * copied the first time they are changed
+     */
+    public static final class Editor {
+
+        private final Snapshot mBase;
+        private final Table<ResourceNamespace, ResourceType, ListMultimap<String, ResourceItem>>
+                mChanged = HashBasedTable.create();
+
+        private Editor(Snapshot base) {
+            mBase = base;
+        }
+
+        public void put(@NotNull ResourceItem resourceItem) {
+            getMutable(resourceItem.getNamespace(), resourceItem.getType())
+                    .put(resourceItem.getName(), resourceItem);
+        }
+
+        public void remove(@NotNull ResourceItem resourceItem) {
+            getMutable(resourceItem.getNamespace(), resourceItem.getType())
+                    .remove(resourceItem.getName(), resourceItem);
+        }
+
+        private ListMultimap<String, ResourceItem> getMutable(ResourceNamespace namespace,
+                                                              ResourceType resourceType) {
+            ListMultimap<String, ResourceItem> multimap = mChanged.get(namespace, resourceType);
+            if (multimap == null) {
+                multimap = ArrayListMultimap.create();
+                ListMultimap<String, ResourceItem> existing = mBase.get(namespace, resourceType);
+                if (existing != null) {
+                    multimap.putAll(existing);
+                }
+                mChanged.put(namespace, resourceType, multimap);
+            }
+            return multimap;
+        }
     }
 
+    private volatile Snapshot mSnapshot = new Snapshot(newTable(), 0);
+
     /**
-     * Removes the given {@link ResourceItem} from the table, making sure no empty multimaps are
-     * left as {@link Table} values. This way the set of rows and columns we get from the {@link
-     * Table} reflects reality.
+     * @return the latest version of the table, it does not change when the table is updated
      */
-    public void remove(ResourceItem resourceItem) {
-        ResourceNamespace namespace = resourceItem.getNamespace();
-        ResourceType type = resourceItem.getType();
-        String name = resourceItem.getName();
-
-        ListMultimap<String, ResourceItem> multimap = get(namespace, type);
-        if (multimap != null) {
-            multimap.remove(name, resourceItem);
-            if (multimap.isEmpty()) {
-                remove(namespace, type);
+    @NotNull
+    public Snapshot getSnapshot() {
+        return mSnapshot;
+    }
+
+    /**
+     * Makes changes to the table and publishes them as a new snapshot once the action is done.
+     * Updates are applied one at a time, readers see either all the changes of an update or
+     * none of them.
+     */
+    public synchronized void update(@NotNull Consumer<Editor> action) {
+        Snapshot base = mSnapshot;
+        Editor editor = new Editor(base);
+        action.accept(editor);
+        if (editor.mChanged.isEmpty()) {
+            return;
+        }
+
+        Table<ResourceNamespace, ResourceType, ListMultimap<String, ResourceItem>> table =
+                newTable();
+        table.putAll(base);
+        for (Table.Cell<ResourceNamespace, ResourceType, ListMultimap<String, ResourceItem>> cell :
+                editor.mChanged.cellSet()) {
+            ListMultimap<String, ResourceItem> multimap = cell.getValue();
+            if (multimap == null || multimap.isEmpty()) {
+                table.remove(cell.getRowKey(), cell.getColumnKey());
+            } else {
+                table.put(cell.getRowKey(), cell.getColumnKey(),
+                          ImmutableListMultimap.copyOf(multimap));
             }
         }
+        mSnapshot = new Snapshot(table, base.getVersion() + 1);
     }
 
     /**
-     * Gets the corresponding multimap from the table, if necessary creating an empty one and
-     * putting it in the table.
+     * Gets the corresponding multimap from the latest snapshot, or an empty multimap if there
+     * is none
      */
     @NotNull
-    public ListMultimap<String, ResourceItem> getOrPutEmpty(
+    public ListMultimap<String, ResourceItem> getOrEmpty(
             @NotNull ResourceNamespace namespace, @NotNull ResourceType resourceType) {
-        ListMultimap<String, ResourceItem> multimap = get(namespace, resourceType);
-        if (multimap == null) {
-            multimap = ArrayListMultimap.create();
-            put(namespace, resourceType, multimap);
-        }
-        return multimap;
+        return mSnapshot.getOrEmpty(namespace, resourceType);
     }
 
     @Nullable
     public List<ResourceItem> get(@NotNull ResourceReference reference) {
-        ListMultimap<String, ResourceItem> multimap =
-                get(reference.getNamespace(), reference.getResourceType());
-        if (multimap == null) {
-            return null;
-        }
+        return mSnapshot.get(reference);
+    }
 
-        return multimap.get(reference.getName());
+    private static Table<ResourceNamespace, ResourceType, ListMultimap<String, ResourceItem>>
+    newTable() {
+        return Tables.newCustomTable(new HashMap<>(), () -> Maps.newEnumMap(ResourceType.class));
     }
 }
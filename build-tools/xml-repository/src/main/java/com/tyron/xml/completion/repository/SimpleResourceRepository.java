@@ -6,6 +6,7 @@ import org.jetbrains.annotations.Nullable;
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ListMultimap;
 import com.google.common.collect.Multimap;
 import com.tyron.builder.compiler.manifest.configuration.Configurable;
@@ -13,10 +14,13 @@ import com.tyron.builder.compiler.manifest.configuration.FolderConfiguration;
 import com.tyron.builder.compiler.manifest.resources.ResourceFolderType;
 import com.tyron.builder.compiler.manifest.resources.ResourceType;
 import com.tyron.common.logging.IdeLog;
+import com.tyron.xml.completion.repository.api.DensityBasedResourceValueImpl;
 import com.tyron.xml.completion.repository.api.ResourceNamespace;
 import com.tyron.xml.completion.repository.api.ResourceReference;
 import com.tyron.xml.completion.repository.api.ResourceValue;
+import com.tyron.xml.completion.repository.api.ResourceValueImpl;
 import com.tyron.xml.completion.repository.api.StyleResourceValue;
+import com.tyron.xml.completion.repository.api.TextResourceValueImpl;
 import com.tyron.xml.completion.repository.parser.LayoutXmlParser;
 import com.tyron.xml.completion.repository.parser.MenuParser;
 import com.tyron.xml.completion.repository.parser.ResourceParser;
@@ -62,11 +66,24 @@ public class SimpleResourceRepository implements Repository {
         sParsers = parsers.build();
     }
 
+    /**
+     * The classes of values whose equals method compares all of their contents, other values
+     * are replaced whenever their file is parsed again
+     */
+    private static final ImmutableSet<Class<?>> sComparableValues = ImmutableSet.of(
+            ResourceValueImpl.class,
+            TextResourceValueImpl.class,
+            DensityBasedResourceValueImpl.class);
+
     private final Logger logger = IdeLog.getCurrentLogger(this);
 
     private final File mResDir;
     private final ResourceNamespace mNamespace;
     protected final ResourceTable mTable = new ResourceTable();
+    /**
+     * The items of each file, only used by the writers of the table which are synchronized on
+     * this repository
+     */
     protected final Multimap<File, ResourceItem> mFileItems = ArrayListMultimap.create();
 
     private FolderConfiguration mConfiguration;
@@ -84,30 +101,75 @@ public class SimpleResourceRepository implements Repository {
     }
 
     protected void parse(File resDir, ResourceNamespace namespace, String name) throws IOException {
+        addEntries(parseFiles(listResourceFiles(resDir), namespace, name));
+    }
+
+    /**
+     * @return the files of the res directory whose folder has a parser
+     */
+    @NotNull
+    protected static List<File> listResourceFiles(@NotNull File resDir) {
+        List<File> files = new ArrayList<>();
         Collection<File> dirs = FileUtils.listFilesAndDirs(resDir, FalseFileFilter.INSTANCE,
                                                            TrueFileFilter.INSTANCE);
         for (File dir : dirs) {
+            if (getParser(dir) == null) {
+                continue;
+            }
+            files.addAll(FileUtils.listFiles(dir, TrueFileFilter.INSTANCE,
+                                             FalseFileFilter.INSTANCE));
+        }
+        return files;
+    }
 
-            ResourceParser parser = getParser(dir);
+    /**
+     * Parses the given resource files without adding their values to this repository, so
+     * multiple res directories can be parsed at the same time.
+     *
+     * @return the values of each file, files that cannot be read are skipped
+     */
+    @NotNull
+    protected List<ResourceCacheFile.Entry> parseFiles(@NotNull Collection<File> files,
+                                                       @NotNull ResourceNamespace namespace,
+                                                       @Nullable String libraryName) {
+        List<ResourceCacheFile.Entry> entries = new ArrayList<>(files.size());
+        for (File xmlFile : files) {
+            File dir = xmlFile.getParentFile();
+            ResourceParser parser = dir == null ? null : getParser(dir);
             if (parser == null) {
                 continue;
             }
+            try {
+                String contents = FileUtils.readFileToString(xmlFile, StandardCharsets.UTF_8);
+                List<ResourceValue> values =
+                        parser.parse(xmlFile, contents, namespace, libraryName);
+                entries.add(new ResourceCacheFile.Entry(xmlFile, dir.getName(), values));
+            } catch (IOException e) {
+                logger.warning("Unable to parse " + xmlFile.getName() + ": " + e.getMessage());
+            }
+        }
+        return entries;
+    }
 
-            Collection<File> xmlFiles =
-                    FileUtils.listFiles(dir, TrueFileFilter.INSTANCE, FalseFileFilter.INSTANCE);
-            for (File xmlFile : xmlFiles) {
-                try {
-                    String contents = FileUtils.readFileToString(xmlFile, StandardCharsets.UTF_8);
-                    parseFile(parser, xmlFile, contents, dir.getName(), namespace, name);
-                } catch (IOException e) {
-                    logger.warning("Unable to parse " + xmlFile.getName() + ": " + e.getMessage());
-                }
+    /**
+     * Adds the parsed values of each file to this repository, they are published to readers
+     * all at once
+     */
+    protected synchronized void addEntries(@NotNull List<ResourceCacheFile.Entry> entries) {
+        Multimap<File, ResourceItem> addedItems = ArrayListMultimap.create();
+        for (ResourceCacheFile.Entry entry : entries) {
+            for (ResourceValue value : entry.getValues()) {
+                addedItems.put(entry.getFile(),
+                               new SimpleResourceItem(value, entry.getFolderName()));
             }
         }
+
+        mTable.update(editor -> addedItems.values().forEach(editor::put));
+        mFileItems.putAll(addedItems);
     }
 
     @Nullable
-    private ResourceParser getParser(@NotNull File directory) {
+    private static ResourceParser getParser(@NotNull File directory) {
         ResourceFolderType folderType = ResourceFolderType.getFolderType(directory.getName());
         if (folderType == null) {
             return null;
@@ -115,44 +177,63 @@ public class SimpleResourceRepository implements Repository {
         return sParsers.get(folderType);
     }
 
-    private void parseFile(@NotNull ResourceParser parser,
-                           @NotNull File xmlFile,
-                           @Nullable String contents,
-                           @NotNull String folderName,
-                           @NotNull ResourceNamespace namespace,
-                           @Nullable String libraryName) throws IOException {
-        List<ResourceValue> values = parser.parse(xmlFile, contents, namespace, libraryName);
-        for (ResourceValue value : values) {
-            ListMultimap<String, ResourceItem> tableValue =
-                    mTable.getOrPutEmpty(value.getNamespace(), value.getResourceType());
-            SimpleResourceItem resourceItem = new SimpleResourceItem(value, folderName);
-            tableValue.put(value.getName(), resourceItem);
-
-            mFileItems.put(xmlFile, resourceItem);
-        }
-    }
-
+    /**
+     * Parses the file again and only updates the items whose value has changed, the items of
+     * the file that are the same as before are kept in the table. The changes of the file are
+     * published to readers as a single new version of the table.
+     */
     @Override
-    public void updateFile(@NotNull File file, @Nullable String contents) throws IOException {
-        Collection<ResourceItem> existingItems = mFileItems.get(file);
-        if (existingItems != null) {
-            existingItems.stream()
-                    .filter(Objects::nonNull)
-                    .forEach(mTable::remove);
-        }
+    public synchronized void updateFile(@NotNull File file, @Nullable String contents) throws IOException {
+        List<ResourceItem> existingItems = new ArrayList<>(mFileItems.get(file));
 
         File parent = file.getParentFile();
-        if (parent == null) {
+        ResourceParser parser = parent == null ? null : getParser(parent);
+        if (parser == null) {
+            // should not happen, but remove the items of the file just in case
+            mTable.update(editor -> existingItems.forEach(editor::remove));
+            mFileItems.removeAll(file);
             return;
         }
 
-        ResourceParser parser = getParser(parent);
-        if (parser == null) {
-            // should not happen, but return just in case
-            return;
+        // the file may belong to a library, keep the namespace its values were parsed with
+        ResourceNamespace namespace = mNamespace;
+        String libraryName = null;
+        if (!existingItems.isEmpty()) {
+            namespace = existingItems.get(0).getNamespace();
+            libraryName = existingItems.get(0).getLibraryName();
+        }
+
+        List<ResourceValue> values = parser.parse(file, contents, namespace, libraryName);
+        List<ResourceItem> removedItems = new ArrayList<>(existingItems);
+        List<ResourceItem> addedItems = new ArrayList<>();
+        for (ResourceValue value : values) {
+            int index = indexOfSameValue(removedItems, value);
+            if (index != -1) {
+                removedItems.remove(index);
+            } else {
+                addedItems.add(new SimpleResourceItem(value, parent.getName()));
+            }
         }
 
-        parseFile(parser, file, contents, parent.getName(), mNamespace, null);
+        // the items of the file are only changed once the table has been updated
+        mTable.update(editor -> {
+            removedItems.forEach(editor::remove);
+            addedItems.forEach(editor::put);
+        });
+        removedItems.forEach(item -> mFileItems.remove(file, item));
+        mFileItems.putAll(file, addedItems);
+    }
+
+    private static int indexOfSameValue(List<ResourceItem> items, ResourceValue value) {
+        if (!sComparableValues.contains(value.getClass())) {
+            return -1;
+        }
+        for (int i = 0; i < items.size(); i++) {
+            if (value.equals(items.get(i).getResourceValue())) {
+                return i;
+            }
+        }
+        return -1;
     }
 
     @NotNull
@@ -160,14 +241,15 @@ public class SimpleResourceRepository implements Repository {
     public List<ResourceItem> getResources(@NotNull ResourceNamespace namespace,
                                            @NotNull ResourceType resourceType,
                                            @NotNull String resourceName) {
+        ResourceTable.Snapshot snapshot = mTable.getSnapshot();
         ListMultimap<String, ResourceItem> publicResources =
-                mTable.get(namespace, ResourceType.PUBLIC);
+                snapshot.get(namespace, ResourceType.PUBLIC);
         if (publicResources != null && !publicResources.isEmpty()) {
             if (!publicResources.containsKey(resourceName)) {
                 return ImmutableList.of();
             }
         }
-        return mTable.getOrPutEmpty(namespace, resourceType)
+        return snapshot.getOrEmpty(namespace, resourceType)
                 .get(resourceName);
     }
 
@@ -176,7 +258,7 @@ public class SimpleResourceRepository implements Repository {
     public List<ResourceItem> getResources(@NotNull ResourceNamespace namespace,
                                            @NotNull ResourceType type,
                                            @NotNull Predicate<ResourceItem> filter) {
-        ListMultimap<String, ResourceItem> value = mTable.get(namespace, type);
+        ListMultimap<String, ResourceItem> value = mTable.getOrEmpty(namespace, type);
         List<ResourceItem> items = new ArrayList<>();
         for (Map.Entry<String, ResourceItem> entry : value.entries()) {
             if (filter.test(entry.getValue())) {
@@ -196,10 +278,11 @@ public class SimpleResourceRepository implements Repository {
                     .getResources(namespace, resourceType);
         }
         if (namespace.equals(ResourceNamespace.RES_AUTO)) {
-            Set<ResourceNamespace> namespaces = mTable.rowKeySet();
+            ResourceTable.Snapshot snapshot = mTable.getSnapshot();
+            Set<ResourceNamespace> namespaces = snapshot.rowKeySet();
             for (ResourceNamespace resourceNamespace : namespaces) {
                 ListMultimap<String, ResourceItem> values =
-                        mTable.get(resourceNamespace, resourceType);
+                        snapshot.get(resourceNamespace, resourceType);
                 if (values != null) {
                     resources.putAll(values);
                 }
@@ -207,16 +290,14 @@ public class SimpleResourceRepository implements Repository {
             return resources;
         }
 
-        ListMultimap<String, ResourceItem> publicResources =
-                mTable.getOrPutEmpty(namespace, ResourceType.PUBLIC);
-        return mTable.getOrPutEmpty(namespace, resourceType);
+        return mTable.getOrEmpty(namespace, resourceType);
     }
 
     @Override
     public boolean hasResources(@NotNull ResourceNamespace namespace,
                                 @NotNull ResourceType resourceType,
                                 @NotNull String resourceName) {
-        return !mTable.getOrPutEmpty(namespace, resourceType)
+        return !mTable.getOrEmpty(namespace, resourceType)
                 .isEmpty();
     }
 
@@ -229,13 +310,13 @@ public class SimpleResourceRepository implements Repository {
     @NotNull
     @Override
     public List<ResourceNamespace> getNamespaces() {
-        return ImmutableList.copyOf(mTable.rowKeySet());
+        return ImmutableList.copyOf(mTable.getSnapshot().rowKeySet());
     }
 
     @NotNull
     @Override
     public List<ResourceType> getResourceTypes() {
-        return ImmutableList.copyOf(mTable.columnKeySet());
+        return ImmutableList.copyOf(mTable.getSnapshot().columnKeySet());
     }
 
     @NotNull
@@ -6,6 +6,8 @@ import org.jetbrains.annotations.NotNull;
 import com.google.common.base.MoreObjects;
 import com.tyron.builder.compiler.manifest.resources.ResourceType;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.util.Objects;
 
 /** Simple implementation of the {@link ResourceValue} interface. */
@@ -137,6 +139,12 @@ public class ResourceValueImpl implements ResourceValue {
         this.mNamespaceResolver = resolver;
     }
 
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        // field initializers are not run when deserializing
+        mNamespaceResolver = ResourceNamespace.Resolver.EMPTY_RESOLVER;
+    }
+
     @Override
     public boolean equals(@Nullable Object o) {
         if (this == o) {
@@ -0,0 +1,184 @@
+package com.tyron.xml.completion.repository;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.tyron.xml.completion.repository.api.ResourceNamespace;
+import com.tyron.xml.completion.repository.api.ResourceValue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+public class ResourceCacheFileTest {
+
+    private static final ResourceNamespace NAMESPACE =
+            ResourceNamespace.fromPackageName("com.example.library");
+    private static final String LIBRARY_NAME = "library.aar";
+
+    private File mResDir;
+    private File mCacheDir;
+    private File mValuesFile;
+    private List<File> mFiles;
+    private List<ResourceCacheFile.Entry> mEntries;
+
+    @Before
+    public void setup() throws IOException {
+        File root = Files.createTempDirectory("resource-cache").toFile();
+        mResDir = new File(root, "library/res");
+        mCacheDir = new File(root, "cache");
+        // well before now, so changing the time stamp always changes it
+        long lastModified = (System.currentTimeMillis() / 1000 - 60) * 1000;
+        mValuesFile = write("values/values.xml",
+                            "<resources>\n" +
+                            "    <string name=\"app_name\">Library</string>\n" +
+                            "    <color name=\"accent\">#ff0000</color>\n" +
+                            "    <integer name=\"columns\">2</integer>\n" +
+                            "</resources>", lastModified);
+        write("values-night/values.xml",
+              "<resources>\n" +
+              "    <color name=\"accent\">#00ff00</color>\n" +
+              "</resources>", lastModified);
+
+        mFiles = SimpleResourceRepository.listResourceFiles(mResDir);
+        mEntries = new SimpleResourceRepository(mResDir, NAMESPACE)
+                .parseFiles(mFiles, NAMESPACE, LIBRARY_NAME);
+        assertEquals(2, mEntries.size());
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        byte[] stamp = getStamp();
+        assertNull(ResourceCacheFile.load(mResDir, mCacheDir, stamp));
+        ResourceCacheFile.create(mResDir, mCacheDir, stamp, mEntries);
+
+        List<ResourceCacheFile.Entry> loaded = ResourceCacheFile.load(mResDir, mCacheDir, stamp);
+        assertNotNull(loaded);
+        assertEquals(mEntries.size(), loaded.size());
+        for (int i = 0; i < mEntries.size(); i++) {
+            ResourceCacheFile.Entry expected = mEntries.get(i);
+            ResourceCacheFile.Entry actual = loaded.get(i);
+            assertEquals(expected.getFile(), actual.getFile());
+            assertEquals(expected.getFolderName(), actual.getFolderName());
+            assertEquals(expected.getValues(), actual.getValues());
+            for (ResourceValue value : actual.getValues()) {
+                assertEquals(NAMESPACE, value.getNamespace());
+                assertEquals(LIBRARY_NAME, value.getLibraryName());
+            }
+        }
+    }
+
+    @Test
+    public void testCacheIsReplaced() throws IOException {
+        ResourceCacheFile.create(mResDir, mCacheDir, getStamp(), mEntries);
+        write("values/values.xml", "<resources/>", mValuesFile.lastModified() + 2000);
+        byte[] stamp = getStamp();
+        ResourceCacheFile.create(mResDir, mCacheDir, stamp, mEntries.subList(0, 1));
+
+        List<ResourceCacheFile.Entry> loaded = ResourceCacheFile.load(mResDir, mCacheDir, stamp);
+        assertNotNull(loaded);
+        assertEquals(1, loaded.size());
+        File[] files = mCacheDir.listFiles();
+        assertNotNull(files);
+        assertEquals(1, files.length);
+    }
+
+    @Test
+    public void testModifiedTimeChangeInvalidatesCache() throws IOException {
+        byte[] stamp = getStamp();
+        ResourceCacheFile.create(mResDir, mCacheDir, stamp, mEntries);
+
+        assertTrue(mValuesFile.setLastModified(mValuesFile.lastModified() + 2000));
+        byte[] newStamp = getStamp();
+        assertFalse(Arrays.equals(stamp, newStamp));
+        assertNull(ResourceCacheFile.load(mResDir, mCacheDir, newStamp));
+    }
+
+    @Test
+    public void testSizeChangeInvalidatesCache() throws IOException {
+        byte[] stamp = getStamp();
+        ResourceCacheFile.create(mResDir, mCacheDir, stamp, mEntries);
+
+        // the time stamp is the same, only the size tells that the file has changed
+        write("values/values.xml", "<resources></resources>", mValuesFile.lastModified());
+        byte[] newStamp = getStamp();
+        assertFalse(Arrays.equals(stamp, newStamp));
+        assertNull(ResourceCacheFile.load(mResDir, mCacheDir, newStamp));
+    }
+
+    @Test
+    public void testAddedFileInvalidatesCache() throws IOException {
+        byte[] stamp = getStamp();
+        write("values/strings.xml", "<resources/>", mValuesFile.lastModified());
+        mFiles = SimpleResourceRepository.listResourceFiles(mResDir);
+
+        assertFalse(Arrays.equals(stamp, getStamp()));
+    }
+
+    @Test
+    public void testLibraryChangeInvalidatesCache() {
+        byte[] stamp = getStamp();
+        assertFalse(Arrays.equals(stamp, ResourceCacheFile.getStamp(
+                mResDir, mFiles, NAMESPACE, "other.aar")));
+        assertFalse(Arrays.equals(stamp, ResourceCacheFile.getStamp(
+                mResDir, mFiles, ResourceNamespace.RES_AUTO, LIBRARY_NAME)));
+    }
+
+    @Test
+    public void testTruncatedCacheIsIgnored() throws IOException {
+        byte[] stamp = getStamp();
+        ResourceCacheFile.create(mResDir, mCacheDir, stamp, mEntries);
+        File cacheFile = getCacheFile();
+
+        // keep the header but cut the file in the middle of the values
+        try (RandomAccessFile file = new RandomAccessFile(cacheFile, "rw")) {
+            file.setLength(file.length() / 2);
+        }
+        assertNull(ResourceCacheFile.load(mResDir, mCacheDir, stamp));
+    }
+
+    @Test
+    public void testCorruptCacheIsIgnored() throws IOException {
+        byte[] stamp = getStamp();
+        ResourceCacheFile.create(mResDir, mCacheDir, stamp, mEntries);
+        File cacheFile = getCacheFile();
+
+        try (FileOutputStream out = new FileOutputStream(cacheFile)) {
+            out.write("not a cache file".getBytes(StandardCharsets.UTF_8));
+        }
+        assertNull(ResourceCacheFile.load(mResDir, mCacheDir, stamp));
+    }
+
+    private byte[] getStamp() {
+        return ResourceCacheFile.getStamp(mResDir, mFiles, NAMESPACE, LIBRARY_NAME);
+    }
+
+    private File getCacheFile() {
+        File[] files = mCacheDir.listFiles();
+        assertNotNull(files);
+        assertEquals(1, files.length);
+        return files[0];
+    }
+
+    private File write(String path, String contents, long lastModified) throws IOException {
+        File file = new File(mResDir, path);
+        File parent = file.getParentFile();
+        if (!parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Unable to create directory " + parent);
+        }
+        Files.write(file.toPath(), contents.getBytes(StandardCharsets.UTF_8));
+        assertTrue(file.setLastModified(lastModified));
+        return file;
+    }
+}
@@ -0,0 +1,109 @@
+package com.tyron.xml.completion.repository;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ListMultimap;
+import com.tyron.builder.compiler.manifest.resources.ResourceType;
+import com.tyron.xml.completion.repository.api.ResourceNamespace;
+import com.tyron.xml.completion.repository.api.ResourceValueImpl;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class ResourceTableTest {
+
+    private static final ResourceNamespace NAMESPACE =
+            ResourceNamespace.fromPackageName("com.example");
+
+    private ResourceTable mTable;
+    private ResourceItem mAppName;
+    private ResourceItem mAccent;
+
+    @Before
+    public void setup() {
+        mTable = new ResourceTable();
+        mAppName = createItem(ResourceType.STRING, "app_name", "Example");
+        mAccent = createItem(ResourceType.COLOR, "accent", "#ff0000");
+        mTable.update(editor -> {
+            editor.put(mAppName);
+            editor.put(mAccent);
+        });
+    }
+
+    @Test
+    public void testOldSnapshotIsUnchanged() {
+        ResourceTable.Snapshot snapshot = mTable.getSnapshot();
+        ResourceItem title = createItem(ResourceType.STRING, "title", "Title");
+
+        mTable.update(editor -> {
+            editor.remove(mAccent);
+            editor.put(title);
+        });
+
+        assertEquals(ImmutableList.of(mAccent),
+                     snapshot.getOrEmpty(NAMESPACE, ResourceType.COLOR).get("accent"));
+        assertEquals(1, snapshot.getOrEmpty(NAMESPACE, ResourceType.STRING).size());
+        assertTrue(snapshot.getOrEmpty(NAMESPACE, ResourceType.STRING).get("title").isEmpty());
+
+        ResourceTable.Snapshot latest = mTable.getSnapshot();
+        assertEquals(ImmutableList.of(title),
+                     latest.getOrEmpty(NAMESPACE, ResourceType.STRING).get("title"));
+        assertEquals(ImmutableList.of(mAppName),
+                     latest.getOrEmpty(NAMESPACE, ResourceType.STRING).get("app_name"));
+    }
+
+    @Test
+    public void testUnchangedMultimapsAreShared() {
+        ResourceTable.Snapshot snapshot = mTable.getSnapshot();
+
+        mTable.update(editor -> editor.put(createItem(ResourceType.STRING, "title", "Title")));
+
+        assertSame(snapshot.get(NAMESPACE, ResourceType.COLOR),
+                   mTable.getSnapshot().get(NAMESPACE, ResourceType.COLOR));
+    }
+
+    @Test
+    public void testVersionIncreases() {
+        long version = mTable.getSnapshot().getVersion();
+        assertEquals(1, version);
+
+        mTable.update(editor -> editor.remove(mAppName));
+        assertEquals(version + 1, mTable.getSnapshot().getVersion());
+
+        // an update without changes does not publish a new snapshot
+        ResourceTable.Snapshot snapshot = mTable.getSnapshot();
+        mTable.update(editor -> { });
+        assertSame(snapshot, mTable.getSnapshot());
+    }
+
+    @Test
+    public void testEmptyMultimapsAreDropped() {
+        mTable.update(editor -> editor.remove(mAccent));
+
+        ResourceTable.Snapshot snapshot = mTable.getSnapshot();
+        assertNull(snapshot.get(NAMESPACE, ResourceType.COLOR));
+        assertFalse(snapshot.columnKeySet().contains(ResourceType.COLOR));
+        assertTrue(snapshot.getOrEmpty(NAMESPACE, ResourceType.COLOR).isEmpty());
+
+        mTable.update(editor -> editor.remove(mAppName));
+        assertTrue(mTable.getSnapshot().isEmpty());
+        assertTrue(mTable.getSnapshot().rowKeySet().isEmpty());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testSnapshotMultimapsAreImmutable() {
+        ListMultimap<String, ResourceItem> strings =
+                mTable.getOrEmpty(NAMESPACE, ResourceType.STRING);
+        strings.put("title", createItem(ResourceType.STRING, "title", "Title"));
+    }
+
+    private static ResourceItem createItem(ResourceType type, String name, String value) {
+        return new SimpleResourceItem(new ResourceValueImpl(NAMESPACE, type, name, value),
+                                      "values");
+    }
+}
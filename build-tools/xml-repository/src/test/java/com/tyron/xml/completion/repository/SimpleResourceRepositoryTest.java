@@ -0,0 +1,102 @@
+package com.tyron.xml.completion.repository;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.tyron.builder.compiler.manifest.resources.ResourceType;
+import com.tyron.xml.completion.repository.api.ResourceNamespace;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+public class SimpleResourceRepositoryTest {
+
+    private static final ResourceNamespace NAMESPACE =
+            ResourceNamespace.fromPackageName("com.example");
+
+    private static final String VALUES = "<resources>\n" +
+            "    <string name=\"app_name\">Example</string>\n" +
+            "    <color name=\"accent\">#ff0000</color>\n" +
+            "    <integer name=\"columns\">2</integer>\n" +
+            "</resources>";
+
+    private SimpleResourceRepository mRepository;
+    private File mValuesFile;
+
+    @Before
+    public void setup() throws IOException {
+        File resDir = new File(Files.createTempDirectory("resources").toFile(), "res");
+        mValuesFile = new File(resDir, "values/values.xml");
+        if (!mValuesFile.getParentFile().mkdirs()) {
+            throw new IOException("Unable to create " + mValuesFile.getParentFile());
+        }
+        Files.write(mValuesFile.toPath(), VALUES.getBytes(StandardCharsets.UTF_8));
+
+        mRepository = new SimpleResourceRepository(resDir, NAMESPACE);
+        mRepository.initialize();
+        assertEquals(3, mRepository.mFileItems.get(mValuesFile).size());
+    }
+
+    @Test
+    public void testUnchangedValuesAreKept() throws IOException {
+        ResourceItem appName = getItem(ResourceType.STRING, "app_name");
+        ResourceItem accent = getItem(ResourceType.COLOR, "accent");
+
+        mRepository.updateFile(mValuesFile, VALUES);
+
+        assertSame(appName, getItem(ResourceType.STRING, "app_name"));
+        assertSame(accent, getItem(ResourceType.COLOR, "accent"));
+        assertEquals(3, mRepository.mFileItems.get(mValuesFile).size());
+    }
+
+    @Test
+    public void testChangedValueIsReplaced() throws IOException {
+        ResourceItem appName = getItem(ResourceType.STRING, "app_name");
+        ResourceItem accent = getItem(ResourceType.COLOR, "accent");
+
+        mRepository.updateFile(mValuesFile, VALUES.replace("#ff0000", "#00ff00"));
+
+        assertSame(appName, getItem(ResourceType.STRING, "app_name"));
+        ResourceItem changed = getItem(ResourceType.COLOR, "accent");
+        assertNotSame(accent, changed);
+        assertEquals("#00ff00", changed.getResourceValue().getValue());
+        assertEquals(3, mRepository.mFileItems.get(mValuesFile).size());
+        assertTrue(mRepository.mFileItems.get(mValuesFile).contains(changed));
+    }
+
+    @Test
+    public void testRemovedValueIsDropped() throws IOException {
+        ResourceItem appName = getItem(ResourceType.STRING, "app_name");
+
+        mRepository.updateFile(mValuesFile, VALUES.replace(
+                "    <integer name=\"columns\">2</integer>\n", ""));
+
+        assertSame(appName, getItem(ResourceType.STRING, "app_name"));
+        assertTrue(mRepository.getResources(NAMESPACE, ResourceType.INTEGER, "columns").isEmpty());
+        assertEquals(2, mRepository.mFileItems.get(mValuesFile).size());
+    }
+
+    @Test
+    public void testAddedValue() throws IOException {
+        mRepository.updateFile(mValuesFile, VALUES.replace(
+                "</resources>", "    <string name=\"title\">Title</string>\n</resources>"));
+
+        assertEquals("Title", getItem(ResourceType.STRING, "title").getResourceValue()
+                .getValue());
+        assertEquals(4, mRepository.mFileItems.get(mValuesFile).size());
+    }
+
+    private ResourceItem getItem(ResourceType type, String name) {
+        List<ResourceItem> items = mRepository.getResources(NAMESPACE, type, name);
+        assertEquals(1, items.size());
+        return items.get(0);
+    }
+}
@@ -3,15 +3,65 @@ package com.tyron.common.util;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.attribute.FileTime;
-import java.time.Instant;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.function.Supplier;
 
-/** Cache maps a file + an arbitrary key to a value. When the file is modified, the mapping expires. */
+/**
+ * Cache maps a file + an arbitrary key to a value. When the file is modified, all the mappings
+ * of the file expire.
+ *
+ * Whether a file has been modified is decided by comparing the version of the file when the
+ * value was loaded with its current version, as reported by a {@link VersionProvider}. By
+ * default the last modified time of the file on disk is used, callers that keep the contents
+ * of files in memory can supply the version of their snapshot instead to avoid a stat call
+ * on each lookup.
+ *
+ * The cache can be bounded by a maximum total weight, the weight of each value is computed
+ * by a {@link Weigher}. When the bound is exceeded, the least recently used values are evicted.
+ *
+ * This class is thread safe.
+ */
 public class Cache<K, V> {
+
+    /**
+     * The version returned when the version of a file is not known, values of such
+     * files are always considered expired.
+     */
+    public static final long UNKNOWN_VERSION = Long.MIN_VALUE;
+
+    public interface VersionProvider {
+
+        /**
+         * @return The current version of the file, or {@link #UNKNOWN_VERSION}
+         */
+        long getVersion(Path file);
+    }
+
+    public interface Weigher<K, V> {
+
+        /**
+         * @return The weight of the value, must not be negative
+         */
+        int weigh(K key, V value);
+    }
+
+    /**
+     * Uses the last modified time of the file on disk as its version.
+     */
+    public static final VersionProvider LAST_MODIFIED = file -> {
+        try {
+            return Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException e) {
+            return UNKNOWN_VERSION;
+        }
+    };
+
     public static class Key<K> {
         public final Path file;
         public final K key;
@@ -23,7 +73,7 @@ public class Cache<K, V> {
 
         @Override
         public boolean equals(Object other) {
-            if (other.getClass() != Cache.Key.class) return false;
+            if (other == null || other.getClass() != Cache.Key.class) return false;
             Cache.Key that = (Cache.Key) other;
             return Objects.equals(this.key, that.key) && Objects.equals(this.file, that.file);
         }
@@ -34,67 +84,258 @@ public class Cache<K, V> {
         }
     }
 
+    private static class FileEntry<K> {
+        final long version;
+        final Set<Key<K>> keys = new HashSet<>();
+
+        FileEntry(long version) {
+            this.version = version;
+        }
+    }
+
     private class Value {
         final V value;
-        final Instant created = Instant.now();
+        final long version;
+        final int weight;
 
-        Value(V value) {
+        Value(V value, long version, int weight) {
             this.value = value;
+            this.version = version;
+            this.weight = weight;
         }
     }
 
-    private final Map<Key<K>, Value> map = new HashMap<>();
+    /**
+     * Snapshot of the statistics of a cache.
+     */
+    public static class Stats {
+        public final long hitCount;
+        public final long missCount;
+        public final long evictionCount;
+        public final long totalWeight;
+        public final int size;
+
+        Stats(long hitCount, long missCount, long evictionCount, long totalWeight, int size) {
+            this.hitCount = hitCount;
+            this.missCount = missCount;
+            this.evictionCount = evictionCount;
+            this.totalWeight = totalWeight;
+            this.size = size;
+        }
+
+        public double hitRate() {
+            long requests = hitCount + missCount;
+            return requests == 0 ? 1.0 : (double) hitCount / requests;
+        }
+
+        @Override
+        public String toString() {
+            return "Stats{" +
+                   "hitCount=" + hitCount +
+                   ", missCount=" + missCount +
+                   ", evictionCount=" + evictionCount +
+                   ", totalWeight=" + totalWeight +
+                   ", size=" + size +
+                   '}';
+        }
+    }
+
+    private final VersionProvider versionProvider;
+    private final Weigher<? super K, ? super V> weigher;
+    private final long maxWeight;
+
+    // access ordered so the eldest entry is the least recently used one
+    private final LinkedHashMap<Key<K>, Value> map = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<Path, FileEntry<K>> files = new HashMap<>();
+    private long totalWeight;
+
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+
+    /**
+     * Creates an unbounded cache that uses the last modified time of the files on disk.
+     */
+    public Cache() {
+        this(LAST_MODIFIED, Long.MAX_VALUE, (k, v) -> 1);
+    }
+
+    /**
+     * @param versionProvider Provides the current version of the files
+     * @param maxWeight The maximum total weight of the values in this cache
+     * @param weigher Computes the weight of each value
+     */
+    public Cache(VersionProvider versionProvider,
+                 long maxWeight,
+                 Weigher<? super K, ? super V> weigher) {
+        this.versionProvider = versionProvider;
+        this.maxWeight = maxWeight;
+        this.weigher = weigher;
+    }
 
     public boolean has(Path file, K k) {
         return !needs(file, k);
     }
 
-    public void clear() {
+    public synchronized void clear() {
         map.clear();
+        files.clear();
+        totalWeight = 0;
     }
 
     public boolean needs(Path file, K k) {
-        // If key is not in map, it needs to be loaded
-        Key<K> key = new Key<>(file, k);
-        if (!map.containsKey(key)) return true;
+        Value value;
+        synchronized (this) {
+            value = map.get(new Key<>(file, k));
+            if (value == null) {
+                missCount++;
+                return true;
+            }
+        }
 
-        // If key was loaded before file was last modified, it needs to be reloaded
-        Value value = map.get(key);
-        FileTime modified = null;
-        try {
-            modified = Files.getLastModifiedTime(file);
-        } catch (IOException e) {
-            modified = FileTime.from(Instant.now());
+        long version = versionProvider.getVersion(file);
+        synchronized (this) {
+            if (version == UNKNOWN_VERSION || version != value.version) {
+                // the file has changed, none of its values can be used anymore
+                removeFile(file);
+                missCount++;
+                return true;
+            }
+            hitCount++;
+            return false;
         }
-        // TODO remove all keys associated with file when file changes
-        boolean before = value.created.isBefore(modified.toInstant());
-        return before;
+    }
+
+    /**
+     * Returns the value mapped to the file and key, loading it if it is not present
+     * or if the file has been modified since it was loaded. Unlike calling
+     * {@link #needs(Path, Object)} followed by {@link #get(Path, Object)}, the returned value
+     * is never affected by a concurrent eviction.
+     */
+    public V get(Path file, K k, Supplier<? extends V> loader) {
+        if (needs(file, k)) {
+            V v = loader.get();
+            load(file, k, v);
+            return v;
+        }
+        synchronized (this) {
+            Value value = map.get(new Key<>(file, k));
+            if (value != null) {
+                return value.value;
+            }
+        }
+        // evicted after the check
+        V v = loader.get();
+        load(file, k, v);
+        return v;
     }
 
     @SafeVarargs
-    public final void remove(Path file, K... keys) {
+    public final synchronized void remove(Path file, K... keys) {
         for (K k : keys) {
-            Key<K> key = new Key<>(file, k);
-            map.remove(key);
+            removeKey(new Key<>(file, k));
         }
     }
 
-    public Set<Key<K>> getKeys() {
-        return map.keySet();
+    /**
+     * Removes all the values associated with the file.
+     */
+    public synchronized void remove(Path file) {
+        removeFile(file);
+    }
+
+    /**
+     * @return A copy of the keys currently in this cache
+     */
+    public synchronized Set<Key<K>> getKeys() {
+        return new HashSet<>(map.keySet());
     }
 
     public void load(Path file, K k, V v) {
-        // TODO limit total size of cache
+        long version = versionProvider.getVersion(file);
+        int weight = weigher.weigh(k, v);
         Key<K> key = new Key<>(file, k);
-        Value value = new Value(v);
-        map.put(key, value);
+
+        synchronized (this) {
+            // removed first, the entry of the file is dropped if this was its only key
+            removeKey(key);
+            FileEntry<K> entry = files.get(file);
+            if (entry != null && entry.version != version) {
+                // the values of the previous version of the file are stale
+                removeFile(file);
+                entry = null;
+            }
+            if (entry == null) {
+                entry = new FileEntry<>(version);
+                files.put(file, entry);
+            }
+
+            map.put(key, new Value(v, version, weight));
+            entry.keys.add(key);
+            totalWeight += weight;
+            trim(key);
+        }
     }
 
-    public V get(Path file, K k) {
+    public synchronized V get(Path file, K k) {
         Key<K> key = new Key<>(file, k);
-        if (!map.containsKey(key)) {
-            throw new IllegalArgumentException(k + " is not in map " + map);
+        Value value = map.get(key);
+        if (value == null) {
+            throw new IllegalArgumentException(k + " is not in the cache of " + file);
+        }
+        return value.value;
+    }
+
+    public synchronized Stats stats() {
+        return new Stats(hitCount, missCount, evictionCount, totalWeight, map.size());
+    }
+
+    /**
+     * Evicts the least recently used values until the total weight is within the bound.
+     * The value that was just loaded is never evicted so it can be returned to the caller.
+     */
+    private void trim(Key<K> loaded) {
+        Iterator<Map.Entry<Key<K>, Value>> iterator = map.entrySet().iterator();
+        while (totalWeight > maxWeight && iterator.hasNext()) {
+            Map.Entry<Key<K>, Value> eldest = iterator.next();
+            if (eldest.getKey().equals(loaded)) {
+                continue;
+            }
+            iterator.remove();
+            totalWeight -= eldest.getValue().weight;
+            removeFromFileIndex(eldest.getKey());
+            evictionCount++;
+        }
+    }
+
+    private void removeFile(Path file) {
+        FileEntry<K> entry = files.remove(file);
+        if (entry == null) {
+            return;
+        }
+        for (Key<K> key : entry.keys) {
+            Value removed = map.remove(key);
+            if (removed != null) {
+                totalWeight -= removed.weight;
+            }
+        }
+    }
+
+    private void removeKey(Key<K> key) {
+        Value removed = map.remove(key);
+        if (removed != null) {
+            totalWeight -= removed.weight;
+            removeFromFileIndex(key);
+        }
+    }
+
+    private void removeFromFileIndex(Key<K> key) {
+        FileEntry<K> entry = files.get(key.file);
+        if (entry != null) {
+            entry.keys.remove(key);
+            if (entry.keys.isEmpty()) {
+                files.remove(key.file);
+            }
         }
-        return (V) map.get(key).value;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,99 @@
+package com.tyron.common.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+
+public class CacheTest {
+
+    private final Map<Path, Long> mVersions = new HashMap<>();
+
+    private long version(Path file) {
+        return mVersions.getOrDefault(file, 0L);
+    }
+
+    @Test
+    public void testVersionChangeRemovesAllKeysOfFile() {
+        Cache<String, String> cache = new Cache<>(this::version, Long.MAX_VALUE, (k, v) -> 1);
+        Path a = Paths.get("A.java");
+        Path b = Paths.get("B.java");
+        cache.load(a, "first", "1");
+        cache.load(a, "second", "2");
+        cache.load(b, "first", "3");
+
+        assertTrue(cache.has(a, "first"));
+
+        mVersions.put(a, 1L);
+        assertTrue(cache.needs(a, "first"));
+        // the other keys of the file are dropped as well
+        assertEquals(1, cache.getKeys().size());
+        assertTrue(cache.has(b, "first"));
+    }
+
+    @Test
+    public void testReloadedKeyIsRemovedWithFile() {
+        Cache<String, String> cache = new Cache<>(this::version, Long.MAX_VALUE, (k, v) -> 1);
+        Path file = Paths.get("A.java");
+        cache.load(file, "key", "1");
+        // the only key of the file is loaded again
+        cache.load(file, "key", "2");
+        assertEquals("2", cache.get(file, "key"));
+
+        cache.remove(file);
+        assertTrue(cache.getKeys().isEmpty());
+
+        cache.load(file, "key", "3");
+        cache.load(file, "key", "4");
+        mVersions.put(file, 1L);
+        assertTrue(cache.needs(file, "key"));
+        assertTrue(cache.getKeys().isEmpty());
+        assertEquals(0, cache.stats().totalWeight);
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsed() {
+        Cache<String, String> cache = new Cache<>(this::version, 3, (k, v) -> v.length());
+        Path file = Paths.get("A.java");
+        cache.load(file, "a", "a");
+        cache.load(file, "b", "bb");
+        // access a so b becomes the least recently used
+        assertEquals("a", cache.get(file, "a"));
+        assertTrue(cache.has(file, "a"));
+        cache.load(file, "c", "c");
+
+        assertTrue(cache.has(file, "a"));
+        assertFalse(cache.has(file, "b"));
+        assertTrue(cache.has(file, "c"));
+        assertEquals(1, cache.stats().evictionCount);
+        assertEquals(2, cache.stats().totalWeight);
+    }
+
+    @Test
+    public void testLoadedValueIsNeverEvicted() {
+        Cache<String, String> cache = new Cache<>(this::version, 1, (k, v) -> v.length());
+        Path file = Paths.get("A.java");
+        assertEquals("large", cache.get(file, "key", () -> "large"));
+        assertTrue(cache.has(file, "key"));
+    }
+
+    @Test
+    public void testStats() {
+        Cache<String, String> cache = new Cache<>(this::version, Long.MAX_VALUE, (k, v) -> 1);
+        Path file = Paths.get("A.java");
+        cache.get(file, "key", () -> "value");
+        cache.get(file, "key", () -> "value");
+        cache.get(file, "key", () -> "value");
+
+        Cache.Stats stats = cache.stats();
+        assertEquals(2, stats.hitCount);
+        assertEquals(1, stats.missCount);
+        assertEquals(1, stats.size);
+    }
+}
@@ -1,9 +1,10 @@
 package com.tyron.completion;
 
-import me.xdrop.fuzzywuzzy.FuzzySearch;
-
 /**
  * Logic of matching a completion name with a given completion prefix
+ *
+ * <p>The matcher runs for every candidate on each keystroke so it works directly on the
+ * characters of the strings and does not allocate.</p>
  */
 public class CompletionPrefixMatcher {
 
@@ -29,22 +30,124 @@ public class CompletionPrefixMatcher {
     }
 
     public static MatchLevel computeMatchLevel(String candidateName, String completionPrefix) {
-        if (candidateName.startsWith(completionPrefix)) {
-            return candidateName.length() == completionPrefix.length()
-                    ? MatchLevel.CASE_SENSITIVE_EQUAL
-                    : MatchLevel.CASE_SENSITIVE_PREFIX;
-        }
+        int candidateLength = candidateName.length();
+        int prefixLength = completionPrefix.length();
 
-        if (candidateName.toLowerCase().startsWith(completionPrefix.toLowerCase())) {
-            return candidateName.length() == completionPrefix.length()
-                    ? MatchLevel.CASE_INSENSITIVE_EQUAL
-                    : MatchLevel.CASE_INSENSITIVE_PREFIX;
+        if (prefixLength <= candidateLength) {
+            boolean caseSensitive = true;
+            int i = 0;
+            while (i < prefixLength) {
+                char c = candidateName.charAt(i);
+                char p = completionPrefix.charAt(i);
+                if (c != p) {
+                    if (!equalsIgnoreCase(c, p)) {
+                        break;
+                    }
+                    caseSensitive = false;
+                }
+                i++;
+            }
+            if (i == prefixLength) {
+                boolean equal = candidateLength == prefixLength;
+                if (caseSensitive) {
+                    return equal ? MatchLevel.CASE_SENSITIVE_EQUAL : MatchLevel.CASE_SENSITIVE_PREFIX;
+                }
+                return equal ? MatchLevel.CASE_INSENSITIVE_EQUAL : MatchLevel.CASE_INSENSITIVE_PREFIX;
+            }
         }
 
-        int score = FuzzySearch.ratio(candidateName, completionPrefix);
-        if (score > MINIMUM_SCORE) {
+        if (matchesCamelHump(candidateName, completionPrefix)) {
+            return MatchLevel.PARTIAL_MATCH;
+        }
+        if (computeFuzzyScore(candidateName, completionPrefix) >= MINIMUM_SCORE) {
             return MatchLevel.PARTIAL_MATCH;
         }
         return MatchLevel.NOT_MATCH;
     }
+
+    /**
+     * Checks whether the characters of the prefix can be matched in order by either continuing
+     * the previous match or starting at the beginning of a hump of the candidate. For example,
+     * {@code gVL} and {@code getvl} both match {@code getValueList}.
+     */
+    private static boolean matchesCamelHump(String candidate, String prefix) {
+        int prefixLength = prefix.length();
+        int candidateLength = candidate.length();
+        if (prefixLength == 0 || candidateLength == 0 ||
+            !equalsIgnoreCase(candidate.charAt(0), prefix.charAt(0))) {
+            return false;
+        }
+
+        int last = 0;
+        int i = 1;
+        for (int j = 1; j < candidateLength && i < prefixLength; j++) {
+            if (!equalsIgnoreCase(candidate.charAt(j), prefix.charAt(i))) {
+                continue;
+            }
+            if (j == last + 1 || isHumpStart(candidate, j)) {
+                last = j;
+                i++;
+            }
+        }
+        return i == prefixLength;
+    }
+
+    /**
+     * Computes how well the prefix matches the candidate as a subsequence, from 0 to 100. Each
+     * character of the prefix that continues the previous match or starts a hump of the
+     * candidate adds to the score, characters that are matched elsewhere do not. The
+     * candidate must start with the same character as the prefix and contain all of its
+     * characters in order, so a missing character is tolerated but a misplaced one is not.
+     */
+    private static int computeFuzzyScore(String candidate, String prefix) {
+        int prefixLength = prefix.length();
+        int candidateLength = candidate.length();
+        if (prefixLength == 0 || candidateLength == 0 ||
+            !equalsIgnoreCase(candidate.charAt(0), prefix.charAt(0))) {
+            return 0;
+        }
+
+        int points = 1;
+        int last = 0;
+        int i = 1;
+        for (int j = 1; j < candidateLength && i < prefixLength; j++) {
+            if (!equalsIgnoreCase(candidate.charAt(j), prefix.charAt(i))) {
+                continue;
+            }
+            if (j == last + 1 || isHumpStart(candidate, j)) {
+                points++;
+            }
+            last = j;
+            i++;
+        }
+        if (i < prefixLength) {
+            return 0;
+        }
+        return points * 100 / prefixLength;
+    }
+
+    private static boolean isHumpStart(String name, int index) {
+        if (index == 0) {
+            return true;
+        }
+        char c = name.charAt(index);
+        char previous = name.charAt(index - 1);
+        if (Character.isUpperCase(c)) {
+            // the last capital of an acronym starts a hump, e.g. the C in URLConnection
+            return !Character.isUpperCase(previous) ||
+                   (index + 1 < name.length() && Character.isLowerCase(name.charAt(index + 1)));
+        }
+        if (previous == '_' || previous == '$') {
+            return c != '_' && c != '$';
+        }
+        return Character.isDigit(c) && !Character.isDigit(previous);
+    }
+
+    private static boolean equalsIgnoreCase(char a, char b) {
+        if (a == b) {
+            return true;
+        }
+        return Character.toLowerCase(a) == Character.toLowerCase(b) ||
+               Character.toUpperCase(a) == Character.toUpperCase(b);
+    }
 }
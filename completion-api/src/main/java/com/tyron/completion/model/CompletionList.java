@@ -12,9 +12,9 @@ import com.tyron.completion.CompletionProvider;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * Represents a list of completion items to be return from a {@link CompletionProvider}
@@ -35,6 +35,20 @@ public class CompletionList {
 
     public List<CompletionItem> items = new ArrayList<>();
 
+    /**
+     * Every item that was added to the builder of this list, including the ones that did not
+     * match the prefix, so the list can be narrowed as the user types without completing again.
+     */
+    private List<CompletionItem> candidates = new ArrayList<>();
+
+    /**
+     * The sources whose items were truncated, they are queried again with the new prefix
+     * when this list is narrowed.
+     */
+    private List<Consumer<Builder>> requeries = new ArrayList<>();
+
+    private boolean refilterable = true;
+
     /**
      * For performance reasons, the completion items are limited to a certain amount.
      * A completion provider may indicate that its results are incomplete so next as
@@ -63,9 +77,40 @@ public class CompletionList {
         return builder.build();
     }
 
+    /**
+     * @return whether this list can be narrowed down with {@link #refilter(CompletionList, String)}
+     * for a longer prefix. This is false if some of the items were dropped because the list
+     * was too large and they cannot be queried again without completing again.
+     */
+    public boolean canRefilter() {
+        return refilterable;
+    }
+
+    /**
+     * Narrows and re-ranks the list for a longer prefix. Unlike {@link #copy(CompletionList, String)}
+     * every candidate of the original list is matched against the new prefix, not only the items
+     * that matched the old one, and the truncated sources are queried again.
+     */
+    public static CompletionList refilter(CompletionList old, String newPrefix) {
+        Builder builder = CompletionList.builder(newPrefix);
+        for (CompletionItem candidate : old.candidates) {
+            builder.addItem(candidate);
+        }
+        for (Consumer<Builder> requery : old.requeries) {
+            requery.accept(builder);
+        }
+        CompletionList list = builder.build();
+        // keep the full candidate set so the next keystroke starts from it again
+        list.candidates = old.candidates;
+        return list;
+    }
+
     public static class Builder {
         private final List<CompletionItem> items;
+        private final List<CompletionItem> candidates = new ArrayList<>();
+        private final List<Consumer<Builder>> requeries = new ArrayList<>();
         private boolean incomplete;
+        private boolean refilterable = true;
 
         private final String completionPrefix;
 
@@ -94,20 +139,18 @@ public class CompletionList {
         }
 
         public Builder addItem(CompletionItem item) {
-            List<MatchLevel> matchLevels = new ArrayList<>();
+            candidates.add(item);
+            MatchLevel matchLevel = MatchLevel.NOT_MATCH;
             for (String filterText : item.getFilterTexts()) {
-                MatchLevel matchLevel =
+                MatchLevel level =
                         CompletionPrefixMatcher.computeMatchLevel(filterText, completionPrefix);
-                if (matchLevel == MatchLevel.NOT_MATCH) {
-                    continue;
+                if (level.compareTo(matchLevel) > 0) {
+                    matchLevel = level;
                 }
-                matchLevels.add(matchLevel);
             }
-            if (matchLevels.isEmpty()) {
+            if (matchLevel == MatchLevel.NOT_MATCH) {
                 return this;
             }
-            Collections.sort(matchLevels);
-            MatchLevel matchLevel = matchLevels.get(matchLevels.size() - 1);
             item.setMatchLevel(matchLevel);
             items.add(item);
             return this;
@@ -117,8 +160,25 @@ public class CompletionList {
             return items.size();
         }
 
+        /**
+         * Marks the list as incomplete, it will have to be completed again
+         * as the user types.
+         */
         public void incomplete() {
             this.incomplete = true;
+            this.refilterable = false;
+        }
+
+        /**
+         * Marks the list as incomplete because a source has more items than was added.
+         * The source is queried again with the new prefix when the list is narrowed
+         * instead of completing again.
+         *
+         * @param requery Adds the items of the source to a builder with the new prefix
+         */
+        public void incomplete(Consumer<Builder> requery) {
+            this.incomplete = true;
+            this.requeries.add(requery);
         }
 
         public boolean isIncomplete() {
@@ -130,6 +190,9 @@ public class CompletionList {
             CompletionList list = new CompletionList();
             list.isIncomplete = this.incomplete;
             list.items = ITEM_ORDERING.immutableSortedCopy(items);
+            list.candidates = candidates;
+            list.requeries = requeries;
+            list.refilterable = refilterable;
             return list;
         }
     }
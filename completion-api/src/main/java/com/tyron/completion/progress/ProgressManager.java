@@ -40,8 +40,14 @@ public class ProgressManager {
 
     private final Map<Thread, ProgressIndicator> mThreadToIndicator;
 
+    /**
+     * Indicators of the work that is currently being done by a thread, such as a read of the
+     * compile information. These are checked in addition to the indicator of the task.
+     */
+    private final ThreadLocal<ProgressIndicator> mLocalIndicator = new ThreadLocal<>();
+
     public ProgressManager() {
-        mThreadToIndicator = new WeakHashMap<>();
+        mThreadToIndicator = Collections.synchronizedMap(new WeakHashMap<>());
     }
 
     /**
@@ -139,15 +145,35 @@ public class ProgressManager {
     }
 
     public void cancelThread(Thread thread) {
-        ProgressIndicator indicator = mThreadToIndicator.get(thread);
+        ProgressIndicator indicator = mThreadToIndicator.computeIfAbsent(thread,
+                t -> new ProgressIndicator());
+        indicator.cancel();
+    }
+
+    /**
+     * Sets the indicator of the work the current thread is about to do, {@link #checkCanceled()}
+     * throws once it is canceled. Unlike {@link #cancelThread(Thread)}, canceling this
+     * indicator after the work is done has no effect on the next work of the thread.
+     *
+     * @param indicator The indicator of the work, or null once the work is done
+     * @return The previous indicator, to be restored once the work is done
+     */
+    public ProgressIndicator setLocalIndicator(ProgressIndicator indicator) {
+        ProgressIndicator previous = mLocalIndicator.get();
         if (indicator == null) {
-            indicator = new ProgressIndicator();
+            mLocalIndicator.remove();
+        } else {
+            mLocalIndicator.set(indicator);
         }
-        indicator.cancel();
-        mThreadToIndicator.put(thread, indicator);
+        return previous;
     }
 
     private void doCheckCanceled() {
+        ProgressIndicator local = mLocalIndicator.get();
+        if (local != null && local.isCanceled()) {
+            throw new ProcessCanceledException();
+        }
+
         ProgressIndicator indicator = mThreadToIndicator.get(Thread.currentThread());
         if (indicator != null) {
             if (indicator.isCanceled()) {
@@ -0,0 +1,65 @@
+package com.tyron.completion;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Candidates shaped like the class and member names of the Android SDK and AndroidX, with
+ * the prefixes that are typed to complete them.
+ */
+final class CompletionCandidates {
+
+    private static final String[] CLASS_NAMES = {"Activity", "AppCompatActivity",
+            "FragmentActivity", "Fragment", "DialogFragment", "View", "ViewGroup", "TextView",
+            "EditText", "ImageView", "Button", "RecyclerView", "LinearLayoutManager",
+            "GridLayoutManager", "ConstraintLayout", "CoordinatorLayout", "FrameLayout",
+            "LinearLayout", "RelativeLayout", "ViewPager", "ViewPager2", "Toolbar",
+            "MaterialToolbar", "FloatingActionButton", "BottomNavigationView", "Snackbar",
+            "AlertDialog", "Context", "Intent", "Bundle", "Handler", "Looper", "Message",
+            "SharedPreferences", "ContentResolver", "Cursor", "SQLiteDatabase", "Uri", "Log",
+            "Toast", "LayoutInflater", "MenuItem", "Menu", "ActionBar", "Lifecycle",
+            "LifecycleOwner", "LiveData", "MutableLiveData", "ViewModel", "ViewModelProvider",
+            "Observer", "WorkManager", "OneTimeWorkRequest", "Room", "RoomDatabase",
+            "NotificationCompat", "NotificationManager", "PendingIntent", "Bitmap",
+            "BitmapFactory", "Canvas", "Paint", "Drawable", "ColorStateList", "TypedArray",
+            "AttributeSet", "MotionEvent", "KeyEvent", "InputMethodManager", "ArrayList",
+            "HashMap", "LinkedHashMap", "String", "StringBuilder", "Integer", "Object",
+            "Thread", "ExecutorService", "URLConnection", "HttpURLConnection", "JSONObject"};
+
+    private static final String[] MEMBER_NAMES = {"onCreate", "onStart", "onResume",
+            "onPause", "onStop", "onDestroy", "onCreateView", "onViewCreated",
+            "onActivityResult", "onRequestPermissionsResult", "setContentView",
+            "findViewById", "getContext", "getApplicationContext", "getResources", "getString",
+            "getColor", "getDrawable", "setOnClickListener", "setOnLongClickListener",
+            "setVisibility", "getVisibility", "setText", "getText", "setAdapter",
+            "setLayoutManager", "notifyDataSetChanged", "notifyItemInserted",
+            "startActivity", "startActivityForResult", "finish", "runOnUiThread", "post",
+            "postDelayed", "getSupportFragmentManager", "beginTransaction", "replace",
+            "commit", "addToBackStack", "observe", "setValue", "postValue", "getValue",
+            "toString", "equals", "hashCode", "getClass", "MATCH_PARENT", "WRAP_CONTENT",
+            "LENGTH_SHORT", "LENGTH_LONG", "VISIBLE", "INVISIBLE", "GONE"};
+
+    static final String[] PREFIXES = {"", "s", "set", "setOn", "get", "getS", "on",
+            "onCr", "fVBI", "sOCL", "Rec", "recycler", "AppCompat", "LLM", "Strng", "Lay",
+            "noti", "ViewMod", "MATCH", "x"};
+
+    static List<String> create() {
+        List<String> candidates = new ArrayList<>();
+        for (String member : MEMBER_NAMES) {
+            candidates.add(member);
+        }
+        for (String name : CLASS_NAMES) {
+            candidates.add(name);
+            // accessors and fields named after the classes
+            candidates.add("get" + name);
+            candidates.add("set" + name);
+            candidates.add("m" + name);
+            candidates.add(Character.toLowerCase(name.charAt(0)) + name.substring(1));
+        }
+        return candidates;
+    }
+
+    private CompletionCandidates() {
+
+    }
+}
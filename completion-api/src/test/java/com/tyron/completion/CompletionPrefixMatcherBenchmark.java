@@ -0,0 +1,62 @@
+package com.tyron.completion;
+
+import com.tyron.completion.CompletionPrefixMatcher.MatchLevel;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+
+/**
+ * Filters the {@link CompletionCandidates} with each of their prefixes, using
+ * {@link CompletionPrefixMatcher} and the previous Levenshtein based implementation.
+ * Run it with {@code org.openjdk.jmh.Main CompletionPrefixMatcherBenchmark} on the unit test
+ * classpath of this module.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class CompletionPrefixMatcherBenchmark {
+
+    private List<String> mCandidates;
+
+    @Setup
+    public void setup() {
+        mCandidates = CompletionCandidates.create();
+    }
+
+    @Benchmark
+    public int legacy() {
+        return filter(LegacyCompletionPrefixMatcher::computeMatchLevel);
+    }
+
+    @Benchmark
+    public int prefixMatcher() {
+        return filter(CompletionPrefixMatcher::computeMatchLevel);
+    }
+
+    private int filter(BiFunction<String, String, MatchLevel> matcher) {
+        int matches = 0;
+        for (String prefix : CompletionCandidates.PREFIXES) {
+            for (String candidate : mCandidates) {
+                if (matcher.apply(candidate, prefix) != MatchLevel.NOT_MATCH) {
+                    matches++;
+                }
+            }
+        }
+        return matches;
+    }
+}
@@ -0,0 +1,92 @@
+package com.tyron.completion;
+
+import static com.tyron.completion.CompletionPrefixMatcher.computeMatchLevel;
+import static org.junit.Assert.assertEquals;
+
+import com.tyron.completion.CompletionPrefixMatcher.MatchLevel;
+
+import org.junit.Test;
+
+public class CompletionPrefixMatcherTest {
+
+    @Test
+    public void testPrefixLevels() {
+        assertEquals(MatchLevel.CASE_SENSITIVE_EQUAL, computeMatchLevel("String", "String"));
+        assertEquals(MatchLevel.CASE_INSENSITIVE_EQUAL, computeMatchLevel("String", "string"));
+        assertEquals(MatchLevel.CASE_SENSITIVE_PREFIX, computeMatchLevel("String", "Str"));
+        assertEquals(MatchLevel.CASE_INSENSITIVE_PREFIX, computeMatchLevel("String", "sTR"));
+        assertEquals(MatchLevel.CASE_SENSITIVE_PREFIX, computeMatchLevel("String", ""));
+        assertEquals(MatchLevel.NOT_MATCH, computeMatchLevel("Str", "String"));
+    }
+
+    @Test
+    public void testCamelHump() {
+        assertEquals(MatchLevel.PARTIAL_MATCH, computeMatchLevel("ArrayList", "AL"));
+        assertEquals(MatchLevel.PARTIAL_MATCH, computeMatchLevel("ArrayList", "arli"));
+        assertEquals(MatchLevel.PARTIAL_MATCH, computeMatchLevel("getValueList", "gVL"));
+        assertEquals(MatchLevel.PARTIAL_MATCH, computeMatchLevel("URLConnection", "UC"));
+        assertEquals(MatchLevel.PARTIAL_MATCH, computeMatchLevel("MAX_VALUE", "MV"));
+        assertEquals(MatchLevel.NOT_MATCH, computeMatchLevel("ArrayList", "LA"));
+    }
+
+    @Test
+    public void testFuzzy() {
+        // a missing character is tolerated
+        assertEquals(MatchLevel.PARTIAL_MATCH, computeMatchLevel("String", "Strng"));
+        assertEquals(MatchLevel.PARTIAL_MATCH, computeMatchLevel("setOnClickListener", "setOnClckListener"));
+        // scattered characters are not
+        assertEquals(MatchLevel.NOT_MATCH, computeMatchLevel("ArrayList", "ary"));
+        assertEquals(MatchLevel.NOT_MATCH, computeMatchLevel("toString", "String"));
+    }
+
+    @Test
+    public void testOrdering() {
+        assert computeMatchLevel("String", "String")
+                .compareTo(computeMatchLevel("Stringer", "String")) > 0;
+        assert computeMatchLevel("Stringer", "String")
+                .compareTo(computeMatchLevel("Stringer", "string")) > 0;
+        assert computeMatchLevel("Stringer", "string")
+                .compareTo(computeMatchLevel("Stringer", "Strnger")) > 0;
+    }
+
+    @Test
+    public void testPrefixLevelsOfSdkNames() {
+        // the prefix levels are the same as comparing the strings
+        for (String prefix : CompletionCandidates.PREFIXES) {
+            for (String candidate : CompletionCandidates.create()) {
+                MatchLevel expected;
+                if (candidate.equals(prefix)) {
+                    expected = MatchLevel.CASE_SENSITIVE_EQUAL;
+                } else if (candidate.equalsIgnoreCase(prefix)) {
+                    expected = MatchLevel.CASE_INSENSITIVE_EQUAL;
+                } else if (candidate.startsWith(prefix)) {
+                    expected = MatchLevel.CASE_SENSITIVE_PREFIX;
+                } else if (candidate.regionMatches(true, 0, prefix, 0, prefix.length())) {
+                    expected = MatchLevel.CASE_INSENSITIVE_PREFIX;
+                } else {
+                    MatchLevel level = computeMatchLevel(candidate, prefix);
+                    assert level.compareTo(MatchLevel.PARTIAL_MATCH) <= 0
+                            : candidate + " " + prefix;
+                    continue;
+                }
+                assertEquals(candidate + " " + prefix, expected,
+                        computeMatchLevel(candidate, prefix));
+            }
+        }
+    }
+
+    @Test
+    public void testSamePrefixLevelsAsLegacy() {
+        // only the fuzzy matches are allowed to differ from the previous implementation
+        for (String prefix : CompletionCandidates.PREFIXES) {
+            for (String candidate : CompletionCandidates.create()) {
+                MatchLevel legacy =
+                        LegacyCompletionPrefixMatcher.computeMatchLevel(candidate, prefix);
+                if (legacy.compareTo(MatchLevel.PARTIAL_MATCH) > 0) {
+                    assertEquals(candidate + " " + prefix, legacy,
+                            computeMatchLevel(candidate, prefix));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.tyron.completion;
+
+import com.tyron.completion.CompletionPrefixMatcher.MatchLevel;
+
+import me.xdrop.fuzzywuzzy.FuzzySearch;
+
+/**
+ * The previous implementation of {@link CompletionPrefixMatcher}, kept to compare
+ * against in {@link CompletionPrefixMatcherBenchmark} and {@link CompletionPrefixMatcherTest}.
+ */
+class LegacyCompletionPrefixMatcher {
+
+    private static final int MINIMUM_SCORE = 70;
+
+    static MatchLevel computeMatchLevel(String candidateName, String completionPrefix) {
+        if (candidateName.startsWith(completionPrefix)) {
+            return candidateName.length() == completionPrefix.length()
+                    ? MatchLevel.CASE_SENSITIVE_EQUAL
+                    : MatchLevel.CASE_SENSITIVE_PREFIX;
+        }
+
+        if (candidateName.toLowerCase().startsWith(completionPrefix.toLowerCase())) {
+            return candidateName.length() == completionPrefix.length()
+                    ? MatchLevel.CASE_INSENSITIVE_EQUAL
+                    : MatchLevel.CASE_INSENSITIVE_PREFIX;
+        }
+
+        int score = FuzzySearch.ratio(candidateName, completionPrefix);
+        if (score > MINIMUM_SCORE) {
+            return MatchLevel.PARTIAL_MATCH;
+        }
+        return MatchLevel.NOT_MATCH;
+    }
+}
@@ -0,0 +1,59 @@
+package com.tyron.completion.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class CompletionListTest {
+
+    @Test
+    public void testRefilterUsesAllCandidates() {
+        CompletionList.Builder builder = CompletionList.builder("get");
+        builder.addItem(CompletionItem.create("getValue", "", "getValue"));
+        builder.addItem(CompletionItem.create("getName", "", "getName"));
+        builder.addItem(CompletionItem.create("setValue", "", "setValue"));
+        CompletionList list = builder.build();
+        assertEquals(2, list.items.size());
+
+        CompletionList refiltered = CompletionList.refilter(list, "getV");
+        assertEquals(1, refiltered.items.size());
+        assertEquals("getValue", refiltered.items.get(0).label);
+
+        // items that did not match the previous prefix are still candidates
+        CompletionList other = CompletionList.refilter(refiltered, "setV");
+        assertEquals(1, other.items.size());
+        assertEquals("setValue", other.items.get(0).label);
+    }
+
+    @Test
+    public void testRefilterQueriesTruncatedSources() {
+        List<String> queried = new ArrayList<>();
+        CompletionList.Builder builder = CompletionList.builder("A");
+        builder.addItem(CompletionItem.create("Activity", "", "Activity"));
+        builder.incomplete(b -> {
+            queried.add(b.getPrefix());
+            b.addItem(CompletionItem.create("AlertDialog", "", "AlertDialog"));
+        });
+        CompletionList list = builder.build();
+        assertTrue(list.isIncomplete());
+        assertTrue(list.canRefilter());
+
+        CompletionList refiltered = CompletionList.refilter(list, "Al");
+        assertEquals(1, refiltered.items.size());
+        assertEquals("AlertDialog", refiltered.items.get(0).label);
+        assertEquals("Al", queried.get(0));
+    }
+
+    @Test
+    public void testIncompleteWithoutSourceCannotRefilter() {
+        CompletionList.Builder builder = CompletionList.builder("");
+        builder.addItem(CompletionItem.create("toString", "", "toString"));
+        builder.incomplete();
+        assertFalse(builder.build().canRefilter());
+    }
+}
@@ -1,5 +1,7 @@
 package com.tyron.resolver;
 
+import androidx.annotation.VisibleForTesting;
+
 import java.math.BigInteger;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
@@ -8,7 +10,9 @@ import java.util.Deque;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * <p>
@@ -48,12 +52,26 @@ public class ComparableVersion
 
     private static final int MAX_LONGITEM_LENGTH = 18;
 
+    /**
+     * Versions are compared many times while resolving dependencies, but there are only a few distinct ones. The cache
+     * is cleared once it holds this many versions, so it cannot grow without bounds.
+     */
+    private static final int MAX_CACHED_VERSIONS = 1024;
+
+    private static final Map<String, ComparableVersion> CACHE = new ConcurrentHashMap<>();
+
     private String value;
 
     private String canonical;
 
     private ListItem items;
 
+    /**
+     * The components of a version that only has numbers separated by dots, like <code>1.2.3</code>, or null if the
+     * version has other characters. Two such versions are compared with these without going through the items.
+     */
+    private int[] numbers;
+
     private interface Item
     {
         int INT_ITEM = 3;
@@ -604,10 +622,35 @@ public class ComparableVersion
         parseVersion( version );
     }
 
+    /**
+     * Returns a shared, already parsed instance for the given version. Versions cannot be parsed again once they are
+     * created, so the instance can be used by any number of threads.
+     */
+    public static ComparableVersion of( String version )
+    {
+        ComparableVersion comparableVersion = CACHE.get( version );
+        if ( comparableVersion == null )
+        {
+            if ( CACHE.size() >= MAX_CACHED_VERSIONS )
+            {
+                CACHE.clear();
+            }
+            comparableVersion = new ComparableVersion( version );
+            ComparableVersion existing = CACHE.putIfAbsent( version, comparableVersion );
+            if ( existing != null )
+            {
+                comparableVersion = existing;
+            }
+        }
+        return comparableVersion;
+    }
+
     @SuppressWarnings( "checkstyle:innerassignment" )
-    public final void parseVersion( String version )
+    private void parseVersion( String version )
     {
         this.value = version;
+        this.canonical = null;
+        this.numbers = parseNumbers( version );
 
         items = new ListItem();
 
@@ -693,6 +736,57 @@ public class ComparableVersion
         }
     }
 
+    /**
+     * @return the numbers of a version made only of numbers that fit in an int separated by dots, or null
+     */
+    private static int[] parseNumbers( String version )
+    {
+        int length = version.length();
+        int count = 1;
+        int componentLength = 0;
+        for ( int i = 0; i < length; i++ )
+        {
+            char c = version.charAt( i );
+            if ( c == '.' )
+            {
+                if ( componentLength == 0 )
+                {
+                    return null;
+                }
+                count++;
+                componentLength = 0;
+            }
+            else if ( c >= '0' && c <= '9' && componentLength < MAX_INTITEM_LENGTH )
+            {
+                componentLength++;
+            }
+            else
+            {
+                return null;
+            }
+        }
+        if ( componentLength == 0 )
+        {
+            return null;
+        }
+
+        int[] numbers = new int[count];
+        int index = 0;
+        for ( int i = 0; i < length; i++ )
+        {
+            char c = version.charAt( i );
+            if ( c == '.' )
+            {
+                index++;
+            }
+            else
+            {
+                numbers[index] = numbers[index] * 10 + ( c - '0' );
+            }
+        }
+        return numbers;
+    }
+
     private static Item parseItem( boolean isDigit, String buf )
     {
         if ( isDigit )
@@ -732,6 +826,30 @@ public class ComparableVersion
 
     @Override
     public int compareTo( ComparableVersion o )
+    {
+        if ( numbers != null && o.numbers != null )
+        {
+            // missing numbers are zeros, 1.0 == 1
+            int length = Math.max( numbers.length, o.numbers.length );
+            for ( int i = 0; i < length; i++ )
+            {
+                int left = i < numbers.length ? numbers[i] : 0;
+                int right = i < o.numbers.length ? o.numbers[i] : 0;
+                if ( left != right )
+                {
+                    return left < right ? -1 : 1;
+                }
+            }
+            return 0;
+        }
+        return compareItems( o );
+    }
+
+    /**
+     * Compares the versions without the shortcut for versions that only have numbers
+     */
+    @VisibleForTesting
+    int compareItems( ComparableVersion o )
     {
         return items.compareTo( o.items );
     }
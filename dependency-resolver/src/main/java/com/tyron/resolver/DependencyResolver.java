@@ -7,13 +7,27 @@ import com.tyron.resolver.model.Pom;
 import com.tyron.resolver.repository.RepositoryManager;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class DependencyResolver {
 
+    /**
+     * The number of poms that are retrieved at the same time, most of the time is spent waiting
+     * for the network so this does not depend on the number of processors
+     */
+    private static final int MAX_PARALLEL_REQUESTS = 8;
+
     private final RepositoryManager repository;
     private final Map<Pom, String> resolvedPoms;
 
@@ -35,6 +49,8 @@ public class DependencyResolver {
     }
 
     public List<Pom> resolveDependencies(List<Dependency> declaredDependencies) {
+        prefetch(declaredDependencies);
+
         List<Pom> poms = new ArrayList<>();
         for (Dependency dependency : declaredDependencies) {
             if (mListener != null) {
@@ -60,6 +76,12 @@ public class DependencyResolver {
      * the conflicting libraries
      */
     public List<Pom> resolve(List<Pom> declaredDependencies) {
+        List<Dependency> dependencies = new ArrayList<>();
+        for (Pom pom : declaredDependencies) {
+            dependencies.addAll(getDependencies(pom, pom.getExcludes()));
+        }
+        prefetch(dependencies);
+
         for (Pom pom : declaredDependencies) {
             resolve(pom);
         }
@@ -96,31 +118,7 @@ public class DependencyResolver {
                 continue;
             }
 
-            boolean excluded = excludes.stream().filter(Objects::nonNull).anyMatch(ex -> {
-                if (ex == null) {
-                    return false;
-                }
-                if (ex.getGroupId() == null) {
-                    return false;
-                }
-                if (!ex.getGroupId().equals(dependency.getGroupId())) {
-                    return false;
-                }
-
-                if (ex.getArtifactId() == null) {
-                    return false;
-                }
-
-                if (!ex.getArtifactId().equals(dependency.getArtifactId())) {
-                    return false;
-                }
-                if (TextUtils.isEmpty(ex.getVersionName())) {
-                    return true;
-                }
-                return ex.getVersionName().equals(dependency.getVersionName());
-            });
-
-            if (excluded) {
+            if (isExcluded(excludes, dependency)) {
                 continue;
             }
 
@@ -139,9 +137,132 @@ public class DependencyResolver {
         resolvedPoms.put(pom, pom.getVersionName());
     }
 
+    /**
+     * Retrieves the poms of the given dependencies and of their transitive dependencies on
+     * several threads, so that resolving them afterwards, which has to be done in order, does
+     * not wait for each pom one after another. Poms that could not be retrieved here are simply
+     * retrieved again when they are resolved.
+     *
+     * A version of a library that is lower than one already retrieved would lose the conflict
+     * resolution, so it is skipped along with its dependencies. The winning version is only
+     * known once the whole graph has been read, so a lower version found before the higher
+     * one is still retrieved.
+     *
+     * @param dependencies the dependencies to retrieve, their excludes are applied to their
+     *                     transitive dependencies
+     */
+    private void prefetch(List<Dependency> dependencies) {
+        if (dependencies.isEmpty()) {
+            return;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(MAX_PARALLEL_REQUESTS);
+        CompletionService<List<Dependency>> completionService =
+                new ExecutorCompletionService<>(executor);
+        Set<String> visited = new HashSet<>();
+        Map<String, String> highestVersions = new HashMap<>();
+        try {
+            int pending = submit(completionService, visited, highestVersions, dependencies);
+            while (pending > 0) {
+                List<Dependency> next = completionService.take().get();
+                pending += submit(completionService, visited, highestVersions, next) - 1;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            // the remaining poms are retrieved while resolving
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * @param highestVersions the highest version of each library that has been submitted,
+     *                        keyed by its group and artifact id
+     */
+    private int submit(CompletionService<List<Dependency>> completionService,
+                       Set<String> visited, Map<String, String> highestVersions,
+                       List<Dependency> dependencies) {
+        int submitted = 0;
+        for (Dependency dependency : dependencies) {
+            if (isLowerThanSubmitted(highestVersions, dependency)) {
+                continue;
+            }
+            String declaration = dependency.toString();
+            if (visited.add(declaration)) {
+                completionService.submit(() -> fetch(declaration, dependency.getExcludes()));
+                submitted++;
+            }
+        }
+        return submitted;
+    }
+
+    private boolean isLowerThanSubmitted(Map<String, String> highestVersions,
+                                         Dependency dependency) {
+        String version = dependency.getVersionName();
+        if (TextUtils.isEmpty(version)) {
+            return false;
+        }
+        String library = dependency.getGroupId() + ':' + dependency.getArtifactId();
+        String highest = highestVersions.get(library);
+        if (highest != null && getHigherVersion(highest, version) > 0) {
+            return true;
+        }
+        highestVersions.put(library, version);
+        return false;
+    }
+
+    /**
+     * @return the dependencies of the given pom, with the exclusions they inherit stored as
+     * their excludes
+     */
+    private List<Dependency> fetch(String declaration, List<Dependency> excludes) {
+        Pom pom = repository.getPom(declaration);
+        if (pom == null) {
+            return Collections.emptyList();
+        }
+        return getDependencies(pom, excludes);
+    }
+
+    private List<Dependency> getDependencies(Pom pom, List<Dependency> excludes) {
+        List<Dependency> dependencies = new ArrayList<>();
+        for (Dependency dependency : pom.getDependencies()) {
+            if ("test".equals(dependency.getScope()) || isExcluded(excludes, dependency)) {
+                continue;
+            }
+            // a copy, the dependencies of the pom may be read by another thread
+            Dependency copy = new Dependency(dependency);
+            copy.getExcludes().clear();
+            copy.getExcludes().addAll(excludes);
+            dependencies.add(copy);
+        }
+        return dependencies;
+    }
+
+    private static boolean isExcluded(List<Dependency> excludes, Dependency dependency) {
+        return excludes.stream().filter(Objects::nonNull).anyMatch(ex -> {
+            if (ex.getGroupId() == null) {
+                return false;
+            }
+            if (!ex.getGroupId().equals(dependency.getGroupId())) {
+                return false;
+            }
+
+            if (ex.getArtifactId() == null) {
+                return false;
+            }
+
+            if (!ex.getArtifactId().equals(dependency.getArtifactId())) {
+                return false;
+            }
+            if (TextUtils.isEmpty(ex.getVersionName())) {
+                return true;
+            }
+            return ex.getVersionName().equals(dependency.getVersionName());
+        });
+    }
+
     private int getHigherVersion(String firstVersion, String secondVersion) {
-        ComparableVersion firstComparableVersion = new ComparableVersion(firstVersion);
-        ComparableVersion secondComparableVersion = new ComparableVersion(secondVersion);
-        return firstComparableVersion.compareTo(secondComparableVersion);
+        return ComparableVersion.of(firstVersion).compareTo(ComparableVersion.of(secondVersion));
     }
 }
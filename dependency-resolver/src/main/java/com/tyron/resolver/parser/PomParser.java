@@ -43,6 +43,22 @@ public class PomParser {
     private static final String ns = null;
     private static final Pattern VARIABLE_PATTERN = Pattern.compile("\\$\\{(.*?)\\}");
 
+    /**
+     * Creating a document builder looks up the implementation each time, poms are parsed from
+     * several threads so each of them keeps its own
+     */
+    private static final ThreadLocal<DocumentBuilder> DOCUMENT_BUILDER =
+            new ThreadLocal<DocumentBuilder>() {
+                @Override
+                protected DocumentBuilder initialValue() {
+                    try {
+                        return DocumentBuilderFactory.newInstance().newDocumentBuilder();
+                    } catch (ParserConfigurationException e) {
+                        throw new Error(e);
+                    }
+                }
+            };
+
     private Pom parent;
     private final Map<String, String> mProperties;
     private final RepositoryManager repository;
@@ -61,13 +77,8 @@ public class PomParser {
             return null;
         }
 
-        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-        DocumentBuilder documentBuilder;
-        try {
-            documentBuilder = factory.newDocumentBuilder();
-        } catch (ParserConfigurationException e) {
-            throw new Error(e);
-        }
+        DocumentBuilder documentBuilder = DOCUMENT_BUILDER.get();
+        documentBuilder.reset();
         InputSource source = new InputSource(new StringReader(in));
         Document document = documentBuilder.parse(source);
         Element documentElement = document.getDocumentElement();
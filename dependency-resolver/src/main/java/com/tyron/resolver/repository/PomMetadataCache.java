@@ -0,0 +1,196 @@
+package com.tyron.resolver.repository;
+
+import androidx.annotation.Nullable;
+
+import com.tyron.resolver.model.Dependency;
+import com.tyron.resolver.model.Pom;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Stores what was parsed from the pom files, so they don't have to be read and parsed again on
+ * the next session. A pom is appended to the file as soon as it has been parsed, an entry that
+ * was only partially written is ignored when the file is read.
+ */
+class PomMetadataCache {
+
+    private static final int VERSION = 1;
+
+    private final File mFile;
+
+    PomMetadataCache(File file) {
+        mFile = file;
+    }
+
+    /**
+     * @return the saved poms keyed by their {@code groupId:artifactId:version} declaration,
+     * empty if the file does not exist or was written by another version
+     */
+    Map<String, Pom> load() {
+        Map<String, Pom> poms = new HashMap<>();
+        if (!mFile.isFile()) {
+            return poms;
+        }
+
+        Map<Pom, String> parents = new IdentityHashMap<>();
+        long fileLength = mFile.length();
+        long validLength = 4;
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(mFile)))) {
+            if (in.readInt() != VERSION) {
+                return poms;
+            }
+            while (true) {
+                int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                if (length < 0 || validLength + 4 + length > fileLength) {
+                    break;
+                }
+                byte[] record = new byte[length];
+                in.readFully(record);
+                validLength += 4 + record.length;
+                DataInputStream recordIn = new DataInputStream(new ByteArrayInputStream(record));
+                String key = recordIn.readUTF();
+                Pom pom = readPom(recordIn);
+                String parent = readNullableString(recordIn);
+                if (parent != null) {
+                    parents.put(pom, parent);
+                }
+                poms.put(key, pom);
+            }
+        } catch (IOException | RuntimeException e) {
+            // the metadata is only a shortcut, the pom files are parsed again
+            poms.clear();
+            return poms;
+        }
+
+        if (validLength < fileLength) {
+            // drop the partially written entry, so the next one is appended after a valid one
+            try (RandomAccessFile file = new RandomAccessFile(mFile, "rw")) {
+                file.setLength(validLength);
+            } catch (IOException e) {
+                poms.clear();
+                return poms;
+            }
+        }
+
+        for (Pom pom : poms.values()) {
+            String parent = parents.get(pom);
+            if (parent != null) {
+                pom.setParent(poms.get(parent));
+            }
+        }
+        return poms;
+    }
+
+    /**
+     * Saves a pom that has just been parsed
+     */
+    synchronized void append(String key, Pom pom) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream recordOut = new DataOutputStream(bytes);
+        recordOut.writeUTF(key);
+        writePom(recordOut, pom);
+        Pom parent = pom.getParent();
+        writeNullableString(recordOut, parent == null ? null : parent.getDeclarationString());
+        recordOut.flush();
+
+        boolean exists = mFile.isFile() && mFile.length() > 0;
+        if (!exists) {
+            File parentDir = mFile.getParentFile();
+            if (parentDir != null && !parentDir.exists() && !parentDir.mkdirs()) {
+                throw new IOException("Unable to create " + parentDir);
+            }
+        }
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(mFile, true))) {
+            if (!exists) {
+                out.writeInt(VERSION);
+            }
+            out.writeInt(bytes.size());
+            bytes.writeTo(out);
+        }
+    }
+
+    private static void writePom(DataOutputStream out, Pom pom) throws IOException {
+        writeNullableString(out, pom.getGroupId());
+        writeNullableString(out, pom.getArtifactId());
+        writeNullableString(out, pom.getVersionName());
+        writeNullableString(out, pom.getPackaging());
+        writeDependencies(out, pom.getDependencies());
+        writeDependencies(out, pom.getManagedDependencies());
+    }
+
+    private static Pom readPom(DataInputStream in) throws IOException {
+        Pom pom = new Pom();
+        pom.setGroupId(readNullableString(in));
+        pom.setArtifactId(readNullableString(in));
+        pom.setVersionName(readNullableString(in));
+        pom.setPackaging(readNullableString(in));
+        pom.setDependencies(readDependencies(in));
+        pom.setManagedDependencies(readDependencies(in));
+        return pom;
+    }
+
+    private static void writeDependencies(DataOutputStream out, List<Dependency> dependencies)
+            throws IOException {
+        out.writeInt(dependencies.size());
+        for (Dependency dependency : dependencies) {
+            writeNullableString(out, dependency.getGroupId());
+            writeNullableString(out, dependency.getArtifactId());
+            writeNullableString(out, dependency.getVersionName());
+            writeNullableString(out, dependency.getScope());
+            writeNullableString(out, dependency.getType());
+            writeDependencies(out, dependency.getExcludes());
+        }
+    }
+
+    private static List<Dependency> readDependencies(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        List<Dependency> dependencies = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Dependency dependency = new Dependency();
+            dependency.setGroupId(readNullableString(in));
+            dependency.setArtifactId(readNullableString(in));
+            dependency.setVersionName(readNullableString(in));
+            dependency.setScope(readNullableString(in));
+            dependency.setType(readNullableString(in));
+            for (Dependency exclude : readDependencies(in)) {
+                dependency.addExclude(exclude);
+            }
+            dependencies.add(dependency);
+        }
+        return dependencies;
+    }
+
+    private static void writeNullableString(DataOutputStream out, @Nullable String value)
+            throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    @Nullable
+    private static String readNullableString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
@@ -9,9 +9,6 @@ import com.tyron.common.util.FileUtilsEx;
 import com.tyron.resolver.model.Pom;
 import com.tyron.resolver.parser.PomParser;
 
-import org.apache.commons.io.FileUtils;
-import org.apache.commons.io.filefilter.SuffixFileFilter;
-import org.apache.commons.io.filefilter.TrueFileFilter;
 import org.xml.sax.SAXException;
 import org.xmlpull.v1.XmlPullParserException;
 
@@ -22,8 +19,14 @@ import java.io.InputStreamReader;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Iterator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 import java.util.jar.JarFile;
 import java.util.logging.Logger;
 import java.util.zip.ZipFile;
@@ -34,13 +37,25 @@ public class RepositoryManagerImpl implements RepositoryManager {
 
     private static final Logger sLogger = IdeLog.getCurrentLogger(RepositoryManagerImpl.class);
 
+    private static final String METADATA_FILE_NAME = "pom-metadata.bin";
+
     private File cacheDir;
     private final List<Repository> repositories;
-    private final List<Pom> pomFiles;
+    private final Map<String, Pom> pomFiles;
+    private final ConcurrentMap<String, FutureTask<Pom>> pendingPoms;
+    private final ThreadLocal<Set<String>> loadingPoms;
+    private PomMetadataCache metadataCache;
 
     public RepositoryManagerImpl() {
         this.repositories = new ArrayList<>();
-        this.pomFiles = new ArrayList<>();
+        this.pomFiles = new ConcurrentHashMap<>();
+        this.pendingPoms = new ConcurrentHashMap<>();
+        this.loadingPoms = new ThreadLocal<Set<String>>() {
+            @Override
+            protected Set<String> initialValue() {
+                return new HashSet<>();
+            }
+        };
     }
 
     @Override
@@ -50,32 +65,60 @@ public class RepositoryManagerImpl implements RepositoryManager {
         if (pomNames == null) {
             return null;
         }
-        for (Pom pom : pomFiles) {
-            if (!pomNames[0].equals(pom.getGroupId())) {
-                continue;
-            }
-            if (!pomNames[1].equals(pom.getArtifactId())) {
-                continue;
-            }
-            if (!pomNames[2].equals(pom.getVersionName())) {
-                continue;
-            }
+        String key = pomNames[0] + ":" + pomNames[1] + ":" + pomNames[2];
+        Pom pom = pomFiles.get(key);
+        if (pom != null) {
             return pom;
         }
-        return getPomFromUrls(pomNames);
+
+        Set<String> loading = loadingPoms.get();
+        if (loading.contains(key)) {
+            // the pom is its own ancestor, waiting for it would never finish
+            sLogger.warning("Cyclic parent found while parsing " + key);
+            return null;
+        }
+
+        // only one thread retrieves a pom, the others wait for its result
+        FutureTask<Pom> task = new FutureTask<>(() -> getPomFromUrls(key, pomNames));
+        FutureTask<Pom> existing = pendingPoms.putIfAbsent(key, task);
+        if (existing == null) {
+            loading.add(key);
+            try {
+                task.run();
+            } finally {
+                loading.remove(key);
+                pendingPoms.remove(key, task);
+            }
+            existing = task;
+        }
+
+        try {
+            return existing.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            sLogger.severe("Unable to retrieve " + key + "\n" +
+                           "Reason: " + e.getCause());
+            return null;
+        }
     }
 
-    private Pom getPomFromUrls(String[] names) {
+    private Pom getPomFromUrls(String key, String[] names) {
         InputStream is = getFromUrls(getPathFromDeclaration(names) + ".pom");
         if (is != null) {
             String contents;
-            try {
-                contents = CharStreams.toString(new InputStreamReader(is));
+            try (InputStreamReader reader = new InputStreamReader(is)) {
+                contents = CharStreams.toString(reader);
                 Pom parsed = new PomParser(this).parse(contents);
+                if (parsed == null) {
+                    return null;
+                }
                 parsed.setGroupId(names[0]);
                 parsed.setArtifactId(names[1]);
                 parsed.setVersionName(names[2]);
-                pomFiles.add(parsed);
+                pomFiles.put(key, parsed);
+                saveMetadata(key, parsed);
                 return parsed;
             } catch (IOException | XmlPullParserException | SAXException e) {
                 String message = "Failed to parse input stream.\n" +
@@ -87,6 +130,17 @@ public class RepositoryManagerImpl implements RepositoryManager {
         return null;
     }
 
+    private void saveMetadata(String key, Pom pom) {
+        if (metadataCache == null) {
+            return;
+        }
+        try {
+            metadataCache.append(key, pom);
+        } catch (IOException e) {
+            sLogger.warning("Unable to save the metadata of " + key + ": " + e.getMessage());
+        }
+    }
+
     private InputStream getFromUrls(String appendUrl) {
         for (int i = 0; i < repositories.size(); i++) {
             Repository repository = repositories.get(i);
@@ -205,28 +259,10 @@ public class RepositoryManagerImpl implements RepositoryManager {
 
         for (Repository repository : repositories) {
             repository.setCacheDirectory(cacheDir);
-
-            File rootDirectory = repository.getRootDirectory();
-            if (rootDirectory == null || !rootDirectory.exists()) {
-                continue;
-            }
-            Iterator<File> pomFiles = FileUtils.iterateFiles(rootDirectory,
-                    new SuffixFileFilter(".pom"), TrueFileFilter.INSTANCE);
-
-            // save pom files for later
-            while (pomFiles.hasNext()) {
-                File pom = pomFiles.next();
-                PomParser parser = new PomParser(this);
-                try {
-                    Pom parsed = parser.parse(pom);
-                    this.pomFiles.add(parsed);
-                } catch (XmlPullParserException | IOException | SAXException e) {
-                    // ignored
-                    // TODO: should the file be deleted if its corrupt?
-                    sLogger.severe("Unable to parse file " + pom + "\n" +
-                                   "Reason: " + e.getMessage());
-                }
-            }
         }
+
+        // the poms parsed on previous sessions, the others are parsed once they are needed
+        metadataCache = new PomMetadataCache(new File(cacheDir, METADATA_FILE_NAME));
+        pomFiles.putAll(metadataCache.load());
     }
 }
@@ -0,0 +1,68 @@
+package com.tyron.resolver;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the versions of a resolution the way {@link DependencyResolver} does, parsing both
+ * versions of each comparison against comparing the shared instances of
+ * {@link ComparableVersion#of(String)}. Run it with
+ * {@code org.openjdk.jmh.Main ComparableVersionBenchmark} on the unit test classpath of this
+ * module.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class ComparableVersionBenchmark {
+
+    private static final String[] VERSIONS = {"1.0.0", "1.1.0", "1.2.0-alpha01", "1.3.4",
+            "1.6.0", "1.7.0-rc01", "2.0.0", "1.5.31", "1.6.10", "4.12", "28.0.0",
+            "1.0.0-beta05"};
+    private static final int COMPARISONS = 200_000;
+
+    private final int[] mFirst = new int[COMPARISONS];
+    private final int[] mSecond = new int[COMPARISONS];
+
+    @Setup
+    public void setup() {
+        Random random = new Random(0);
+        for (int i = 0; i < COMPARISONS; i++) {
+            mFirst[i] = random.nextInt(VERSIONS.length);
+            mSecond[i] = random.nextInt(VERSIONS.length);
+        }
+    }
+
+    @Benchmark
+    public long parsed() {
+        long sum = 0;
+        for (int i = 0; i < COMPARISONS; i++) {
+            sum += new ComparableVersion(VERSIONS[mFirst[i]])
+                    .compareTo(new ComparableVersion(VERSIONS[mSecond[i]]));
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long shared() {
+        long sum = 0;
+        for (int i = 0; i < COMPARISONS; i++) {
+            sum += ComparableVersion.of(VERSIONS[mFirst[i]])
+                    .compareTo(ComparableVersion.of(VERSIONS[mSecond[i]]));
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,98 @@
+package com.tyron.resolver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class ComparableVersionTest {
+
+    private static final String[] QUALIFIERS = {"alpha", "a", "beta", "b", "milestone", "m",
+            "rc", "cr", "snapshot", "SNAPSHOT", "ga", "final", "release", "sp", "dev", "x"};
+
+    @Test
+    public void testSameOrderingAsItems() {
+        Random random = new Random(42);
+        List<String> versions = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            versions.add(randomVersion(random));
+        }
+
+        for (int i = 0; i < 20000; i++) {
+            String first = versions.get(random.nextInt(versions.size()));
+            String second = versions.get(random.nextInt(versions.size()));
+
+            ComparableVersion firstVersion = new ComparableVersion(first);
+            ComparableVersion secondVersion = new ComparableVersion(second);
+            int expected = Integer.signum(firstVersion.compareItems(secondVersion));
+
+            String message = first + " <=> " + second;
+            assertEquals(message, expected, Integer.signum(firstVersion.compareTo(secondVersion)));
+            assertEquals(message, expected, Integer.signum(
+                    ComparableVersion.of(first).compareTo(ComparableVersion.of(second))));
+            assertEquals(message, -expected, Integer.signum(secondVersion.compareTo(firstVersion)));
+        }
+    }
+
+    @Test
+    public void testNumericVersions() {
+        assertEquals(0, ComparableVersion.of("1").compareTo(ComparableVersion.of("1.0.0")));
+        assertEquals(0, ComparableVersion.of("1.01").compareTo(ComparableVersion.of("1.1")));
+        assertTrue(ComparableVersion.of("1.10").compareTo(ComparableVersion.of("1.9")) > 0);
+        assertTrue(ComparableVersion.of("1.0.1").compareTo(ComparableVersion.of("1")) > 0);
+        assertTrue(ComparableVersion.of("1.0").compareTo(ComparableVersion.of("1.0-rc01")) > 0);
+        assertTrue(ComparableVersion.of("1.0").compareTo(ComparableVersion.of("1.0.1-alpha")) < 0);
+        assertTrue(
+                ComparableVersion.of("2147483648").compareTo(ComparableVersion.of("999999999")) > 0);
+    }
+
+    @Test
+    public void testSharedInstances() {
+        ComparableVersion version = ComparableVersion.of("1.2.3");
+        assertSame(version, ComparableVersion.of("1.2.3"));
+        assertEquals("1.2.3", version.toString());
+        assertEquals(new ComparableVersion("1.2.3"), version);
+    }
+
+    private static String randomVersion(Random random) {
+        StringBuilder builder = new StringBuilder();
+        int components = 1 + random.nextInt(5);
+        for (int i = 0; i < components; i++) {
+            if (i > 0) {
+                int separator = random.nextInt(10);
+                builder.append(separator < 7 ? "." : separator < 9 ? "-" : "");
+            }
+            int kind = random.nextInt(10);
+            if (kind < 7) {
+                builder.append(randomNumber(random));
+            } else if (kind < 9) {
+                builder.append(QUALIFIERS[random.nextInt(QUALIFIERS.length)]);
+            } else if (random.nextBoolean()) {
+                builder.append(QUALIFIERS[random.nextInt(QUALIFIERS.length)])
+                        .append(randomNumber(random));
+            }
+        }
+        return builder.toString();
+    }
+
+    private static String randomNumber(Random random) {
+        switch (random.nextInt(8)) {
+            case 0:
+                return "0";
+            case 1:
+                return "0" + random.nextInt(10);
+            case 2:
+                // does not fit in an int
+                return Long.toString(1_000_000_000L + (random.nextLong() >>> 20));
+            case 3:
+                return Integer.toString(999_999_990 + random.nextInt(10));
+            default:
+                return Integer.toString(random.nextInt(20));
+        }
+    }
+}
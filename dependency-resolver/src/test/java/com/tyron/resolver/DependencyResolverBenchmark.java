@@ -0,0 +1,79 @@
+package com.tyron.resolver;
+
+import com.tyron.resolver.model.Dependency;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resolves the graph of {@link DependencyResolverCacheTest} once per iteration, either with
+ * nothing cached or with only the metadata saved by {@code PomMetadataCache} left after the
+ * repository has been deleted. Run it with {@code org.openjdk.jmh.Main DependencyResolverBenchmark}
+ * on the unit test classpath of this module.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class DependencyResolverBenchmark {
+
+    /**
+     * Whether the metadata of the poms has been saved by a previous resolution
+     */
+    @Param({"false", "true"})
+    public boolean cached;
+
+    private List<Dependency> mDeclared;
+    private File mCacheDir;
+
+    @Setup(Level.Trial)
+    public void setupTrial() {
+        int last = DependencyResolverCacheTest.GROUPS *
+                   DependencyResolverCacheTest.ARTIFACTS_PER_GROUP - 1;
+        mDeclared = Collections.singletonList(
+                Dependency.valueOf(DependencyResolverCacheTest.getDeclaration(last, 1)));
+    }
+
+    @Setup(Level.Iteration)
+    public void setupIteration() throws IOException {
+        mCacheDir = Files.createTempDirectory("resolver-benchmark").toFile();
+        File rootDir = new File(mCacheDir, DependencyResolverCacheTest.REPOSITORY_NAME);
+        DependencyResolverCacheTest.generateRepository(rootDir);
+        if (cached) {
+            DependencyResolverCacheTest.resolve(mCacheDir, mDeclared);
+            // everything has to come from the saved metadata now
+            FileUtils.deleteDirectory(rootDir);
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDownIteration() throws IOException {
+        FileUtils.deleteDirectory(mCacheDir);
+    }
+
+    @Benchmark
+    public List<String> resolve() {
+        return DependencyResolverCacheTest.resolve(mCacheDir, mDeclared);
+    }
+}
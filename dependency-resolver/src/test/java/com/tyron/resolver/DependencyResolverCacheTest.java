@@ -0,0 +1,243 @@
+package com.tyron.resolver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+
+import com.tyron.resolver.model.Dependency;
+import com.tyron.resolver.model.Pom;
+import com.tyron.resolver.repository.LocalRepository;
+import com.tyron.resolver.repository.RepositoryManager;
+import com.tyron.resolver.repository.RepositoryManagerImpl;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Resolves a generated graph about the size of the AndroidX and Compose libraries from a local
+ * repository, once with nothing cached and once with the pom metadata saved by the first run.
+ * Both have to pick the highest version of each library that is depended on. The time each
+ * of them takes is measured by {@link DependencyResolverBenchmark}.
+ */
+public class DependencyResolverCacheTest {
+
+    static final String REPOSITORY_NAME = "local";
+    private static final String PARENT = "bench.parent:bom:1.0.0";
+    static final int GROUPS = 40;
+    static final int ARTIFACTS_PER_GROUP = 10;
+    private static final String[] VERSIONS = {"1.0.0", "1.1.0"};
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testResolutionWithSavedMetadata() throws IOException {
+        File cacheDir = temporaryFolder.newFolder("cache");
+        File rootDir = new File(cacheDir, REPOSITORY_NAME);
+        int[] highestVersions = generateRepository(rootDir);
+        int last = GROUPS * ARTIFACTS_PER_GROUP - 1;
+        List<Dependency> declared =
+                Collections.singletonList(Dependency.valueOf(getDeclaration(last, 1)));
+        highestVersions[last] = 1;
+
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < highestVersions.length; i++) {
+            expected.add(getDeclaration(i, highestVersions[i]));
+        }
+        Collections.sort(expected);
+
+        assertEquals(expected, resolve(cacheDir, declared));
+
+        // everything has to come from the saved metadata now
+        FileUtils.deleteDirectory(rootDir);
+
+        assertEquals(expected, resolve(cacheDir, declared));
+    }
+
+    @Test
+    public void testConcurrentRequestsShareResult() throws Exception {
+        File cacheDir = temporaryFolder.newFolder("cache");
+        generateRepository(new File(cacheDir, REPOSITORY_NAME));
+        RepositoryManager repository = createRepository(cacheDir);
+
+        String declaration = getDeclaration(GROUPS * ARTIFACTS_PER_GROUP - 1, 0);
+        Pom[] results = new Pom[8];
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < results.length; i++) {
+            int index = i;
+            Thread thread = new Thread(() -> results[index] = repository.getPom(declaration));
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertNotNull(results[0]);
+        for (Pom result : results) {
+            assertSame(results[0], result);
+        }
+    }
+
+    @Test
+    public void testLowerVersionsAreNotPrefetched() throws IOException {
+        File cacheDir = temporaryFolder.newFolder("cache");
+        File rootDir = new File(cacheDir, REPOSITORY_NAME);
+        writePom(rootDir, "test:app:1.0.0", null, "<dependencies>" +
+                dependency("test", "library", "2.0.0") + dependency("test", "other", "1.0.0") +
+                "</dependencies>");
+        writePom(rootDir, "test:library:2.0.0", null, "");
+        writePom(rootDir, "test:other:1.0.0", null, "<dependencies>" +
+                dependency("test", "library", "1.0.0") + "</dependencies>");
+        // only a dependency of the version that loses
+        writePom(rootDir, "test:library:1.0.0", null, "<dependencies>" +
+                dependency("test", "old", "1.0.0") + "</dependencies>");
+        writePom(rootDir, "test:old:1.0.0", null, "");
+
+        RepositoryManager delegate = createRepository(cacheDir);
+        Set<String> requested = Collections.synchronizedSet(new HashSet<>());
+        RepositoryManager repository = new RepositoryManagerImpl() {
+            @Override
+            public Pom getPom(String declaration) {
+                requested.add(declaration);
+                return delegate.getPom(declaration);
+            }
+        };
+        List<String> resolved = new ArrayList<>();
+        for (Pom pom : new DependencyResolver(repository)
+                .resolveDependencies(Collections.singletonList(
+                        Dependency.valueOf("test:app:1.0.0")))) {
+            resolved.add(pom.getDeclarationString());
+        }
+        Collections.sort(resolved);
+
+        assertEquals(Arrays.asList("test:app:1.0.0", "test:library:2.0.0", "test:other:1.0.0"),
+                resolved);
+        assertFalse(requested.contains("test:old:1.0.0"));
+    }
+
+    static List<String> resolve(File cacheDir, List<Dependency> declared) {
+        DependencyResolver resolver = new DependencyResolver(createRepository(cacheDir));
+        List<String> resolved = new ArrayList<>();
+        for (Pom pom : resolver.resolveDependencies(declared)) {
+            resolved.add(pom.getDeclarationString());
+        }
+        Collections.sort(resolved);
+        return resolved;
+    }
+
+    static RepositoryManager createRepository(File cacheDir) {
+        RepositoryManager repository = new RepositoryManagerImpl();
+        repository.addRepository(new LocalRepository(REPOSITORY_NAME));
+        repository.setCacheDirectory(cacheDir);
+        repository.initialize();
+        return repository;
+    }
+
+    /**
+     * Each library depends on a few libraries that come before it, in one of two versions, and
+     * takes the version of one of them from the dependency management of a shared parent
+     *
+     * @return the index of the highest version of each library that another library depends on,
+     * the version of the last library is not set since it is only declared
+     */
+    static int[] generateRepository(File rootDir) throws IOException {
+        Random random = new Random(0);
+        int count = GROUPS * ARTIFACTS_PER_GROUP;
+        int[] highestVersions = new int[count];
+
+        StringBuilder managed = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            managed.append(dependency(i, 0, null));
+        }
+        writePom(rootDir, PARENT, null, "<dependencyManagement><dependencies>" + managed +
+                                        "</dependencies></dependencyManagement>");
+
+        for (int i = 0; i < count; i++) {
+            StringBuilder dependencies = new StringBuilder();
+            if (i > 0) {
+                // every library is reachable from the last one
+                int version = random.nextInt(VERSIONS.length);
+                dependencies.append(dependency(i - 1, version, null));
+                highestVersions[i - 1] = Math.max(highestVersions[i - 1], version);
+                int managedIndex = random.nextInt(i);
+                String[] names = getDeclaration(managedIndex, 0).split(":");
+                dependencies.append("<dependency><groupId>").append(names[0])
+                        .append("</groupId><artifactId>").append(names[1])
+                        .append("</artifactId></dependency>");
+            }
+            for (int j = 0; j < 4 && i > 1; j++) {
+                String scope = j == 3 ? "test" : null;
+                int index = random.nextInt(i - 1);
+                int version = random.nextInt(VERSIONS.length);
+                dependencies.append(dependency(index, version, scope));
+                if (scope == null) {
+                    highestVersions[index] = Math.max(highestVersions[index], version);
+                }
+            }
+            for (int version = 0; version < VERSIONS.length; version++) {
+                writePom(rootDir, getDeclaration(i, version), PARENT,
+                        "<dependencies>" + dependencies + "</dependencies>");
+            }
+        }
+        return highestVersions;
+    }
+
+    static String getDeclaration(int index, int version) {
+        return "bench.group" + index / ARTIFACTS_PER_GROUP + ":artifact" +
+               index % ARTIFACTS_PER_GROUP + ":" + VERSIONS[version];
+    }
+
+    private static String dependency(int index, int version, String scope) {
+        String[] names = getDeclaration(index, version).split(":");
+        return dependency(names[0], names[1], names[2], scope);
+    }
+
+    private static String dependency(String groupId, String artifactId, String version) {
+        return dependency(groupId, artifactId, version, null);
+    }
+
+    private static String dependency(String groupId, String artifactId, String version,
+                                     String scope) {
+        return "<dependency><groupId>" + groupId + "</groupId><artifactId>" + artifactId +
+               "</artifactId><version>" + version + "</version>" +
+               (scope == null ? "" : "<scope>" + scope + "</scope>") + "</dependency>";
+    }
+
+    private static void writePom(File rootDir, String declaration, String parent,
+                                 String contents) throws IOException {
+        String[] names = declaration.split(":");
+        StringBuilder pom = new StringBuilder("<project>");
+        if (parent != null) {
+            String[] parentNames = parent.split(":");
+            pom.append("<parent><groupId>").append(parentNames[0])
+                    .append("</groupId><artifactId>").append(parentNames[1])
+                    .append("</artifactId><version>").append(parentNames[2])
+                    .append("</version></parent>");
+        }
+        pom.append("<groupId>").append(names[0]).append("</groupId>")
+                .append("<artifactId>").append(names[1]).append("</artifactId>")
+                .append("<version>").append(names[2]).append("</version>")
+                .append(contents)
+                .append("</project>");
+
+        String path = names[0].replace('.', '/') + "/" + names[1] + "/" + names[2] + "/" +
+                      names[1] + "-" + names[2] + ".pom";
+        FileUtils.writeStringToFile(new File(rootDir, path), pom.toString(),
+                StandardCharsets.UTF_8);
+    }
+}
@@ -96,13 +96,14 @@ public class JavaCompletionProvider extends CompletionProvider {
         if (isIncrementalCompletion(mCachedCompletion, params)) {
             String partial = partialIdentifier(params.getPrefix(), params.getPrefix().length());
             CompletionList cachedList = mCachedCompletion.getCompletionList();
-            CompletionList copy = CompletionList.copy(cachedList, partial);
 
-            // if the cached completion is incomplete,
-            // chances are there will be new items that are not in the cache
-            // so don't return the cached items
-            if (!copy.isIncomplete && !copy.items.isEmpty()) {
-                return copy;
+            // the cached list holds every candidate of this position, so it only needs to be
+            // narrowed down for the new prefix unless some of the candidates were dropped
+            if (cachedList.canRefilter()) {
+                CompletionList refiltered = CompletionList.refilter(cachedList, partial);
+                if (!refiltered.items.isEmpty()) {
+                    return refiltered;
+                }
             }
         }
 
@@ -50,15 +50,29 @@ public class CompileBatch implements AutoCloseable {
     public final Elements elements;
     public final Types types;
     public final List<CompilationUnitTree> roots;
+    /**
+     * The contents the only root was parsed from, or null if there are several roots or if
+     * its source may return different contents each time it is read
+     */
+    CharSequence parsedContents;
 
     public CompileBatch(JavaCompilerService parent, Collection<? extends JavaFileObject> files) {
+        this(parent, parent.compiler, files);
+    }
+
+    public CompileBatch(JavaCompilerService parent,
+                        ReusableCompiler compiler,
+                        Collection<? extends JavaFileObject> files) {
         this.parent = parent;
-        this.borrow = batchTask(parent, files);
+        this.borrow = batchTask(parent, compiler, files);
         this.task = borrow.task;
         this.trees = Trees.instance(borrow.task);
         this.elements = borrow.task.getElements();
         this.types = borrow.task.getTypes();
         this.roots = new ArrayList<>();
+        if (files.size() == 1) {
+            parsedContents = PartialReparser.getFixedContents(files.iterator().next());
+        }
         // Compile all roots
         try {
             for (CompilationUnitTree t : borrow.task.parse()) {
@@ -156,11 +170,12 @@ public class CompileBatch implements AutoCloseable {
         closed = true;
     }
 
-    private static ReusableCompiler.Borrow batchTask(JavaCompilerService parent, Collection<?
-            extends JavaFileObject> sources) {
+    private static ReusableCompiler.Borrow batchTask(JavaCompilerService parent,
+                                                     ReusableCompiler compiler,
+                                                     Collection<? extends JavaFileObject> sources) {
         parent.clearDiagnostics();
         List<String> options = options(parent.classPath, parent.addExports);
-        return parent.compiler.getTask(parent.mSourceFileManager, parent::addDiagnostic, options,
+        return compiler.getTask(parent.mSourceFileManager, parent::addDiagnostic, options,
                 Collections.emptyList(), sources);
     }
 
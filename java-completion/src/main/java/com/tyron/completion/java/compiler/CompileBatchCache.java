@@ -0,0 +1,228 @@
+package com.tyron.completion.java.compiler;
+
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import javax.tools.JavaFileObject;
+
+/**
+ * A bounded pool of warm {@link CompileBatch}es keyed by the set of sources they were
+ * compiled from, so switching between the files that are being edited reuses their
+ * attributed trees instead of compiling them again.
+ *
+ * Each batch is compiled with its own {@link ReusableCompiler} so that compiling a batch
+ * does not clear the context that another cached batch still refers to. The compilers are
+ * recycled when a batch is evicted, so the pool never holds more than {@code maxSize}
+ * compiler contexts.
+ *
+ * The cache owns the {@link ReusableCompiler.Borrow} of every batch it holds, the borrow is
+ * only closed when its batch is evicted. Closing it while the batch is still pooled would
+ * clear the context of a batch that can be reused on the next request.
+ *
+ * Batches are evicted in least recently used order when the pool is full or when the heap
+ * is running low.
+ */
+class CompileBatchCache {
+
+    private static final String TAG = CompileBatchCache.class.getSimpleName();
+
+    /**
+     * The ratio of the used heap to the max heap after which only the most
+     * recently used batch is kept.
+     */
+    private static final float HEAP_PRESSURE_RATIO = 0.75f;
+
+    private static class Entry {
+        private final ReusableCompiler compiler;
+        private final CompileBatch batch;
+        private final Map<JavaFileObject, Long> modified = new HashMap<>();
+
+        private Entry(ReusableCompiler compiler, CompileBatch batch) {
+            this.compiler = compiler;
+            this.batch = batch;
+        }
+    }
+
+    private final int mMaxSize;
+    private final LinkedHashMap<Set<JavaFileObject>, Entry> mEntries =
+            new LinkedHashMap<>(16, 0.75f, true);
+
+    CompileBatchCache(int maxSize) {
+        mMaxSize = maxSize;
+    }
+
+    /**
+     * @return The cached batch for these sources if none of them has been modified since
+     * it was compiled, null otherwise
+     */
+    @Nullable
+    synchronized CompileBatch get(Collection<? extends JavaFileObject> sources) {
+        Entry entry = mEntries.get(key(sources));
+        if (entry == null || isModified(entry, sources)) {
+            return null;
+        }
+        return entry.batch;
+    }
+
+    /**
+     * @return The compiler that was used to compile the cached batch of these sources,
+     * or null if there is no cached batch for them
+     */
+    @Nullable
+    synchronized ReusableCompiler getCompiler(Collection<? extends JavaFileObject> sources) {
+        Entry entry = mEntries.get(key(sources));
+        return entry == null ? null : entry.compiler;
+    }
+
+    /**
+     * Returns a compiler that can be used to compile the given sources. If the sources have
+     * been compiled before, the compiler of their stale batch is reused, otherwise the least
+     * recently used batch is evicted if the pool is full and its compiler is reused.
+     */
+    synchronized ReusableCompiler obtainCompiler(Collection<? extends JavaFileObject> sources) {
+        Entry existing = mEntries.remove(key(sources));
+        if (existing != null) {
+            release(existing);
+            return existing.compiler;
+        }
+
+        // leave room for the batch that is about to be compiled
+        ReusableCompiler recycled = trimToSize(mMaxSize - 1);
+        if (recycled != null) {
+            return recycled;
+        }
+        return new ReusableCompiler();
+    }
+
+    synchronized void put(Collection<? extends JavaFileObject> sources,
+                          CompileBatch batch,
+                          ReusableCompiler compiler) {
+        Entry entry = new Entry(compiler, batch);
+        for (JavaFileObject source : sources) {
+            entry.modified.put(source, source.getLastModified());
+        }
+        Entry previous = mEntries.put(key(sources), entry);
+        if (previous != null && previous.batch != batch) {
+            release(previous);
+        }
+    }
+
+    /**
+     * Evicts the given batch, used when it may be in an inconsistent state because the task
+     * using it has been canceled. The borrow of the batch is closed even if it is not pooled.
+     */
+    synchronized void evict(CompileBatch batch) {
+        Iterator<Entry> iterator = mEntries.values().iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (entry.batch == batch) {
+                iterator.remove();
+            }
+        }
+        close(batch);
+    }
+
+    /**
+     * Marks the batches containing this source as stale so they will be compiled again
+     * on the next request.
+     */
+    synchronized void invalidate(JavaFileObject source) {
+        for (Entry entry : mEntries.values()) {
+            entry.modified.remove(source);
+        }
+    }
+
+    /**
+     * Evicts all the batches and returns them to the garbage collector.
+     */
+    synchronized void clear() {
+        for (Entry entry : mEntries.values()) {
+            release(entry);
+        }
+        mEntries.clear();
+    }
+
+    synchronized int size() {
+        return mEntries.size();
+    }
+
+    /**
+     * Evicts the least recently used batches until at most {@code size} batches remain, or
+     * all of them if the heap is running low.
+     *
+     * @return The compiler of the last evicted batch, or null if nothing was evicted
+     */
+    @Nullable
+    private ReusableCompiler trimToSize(int size) {
+        if (isUnderHeapPressure()) {
+            size = 0;
+        }
+        ReusableCompiler recycled = null;
+        while (mEntries.size() > Math.max(size, 0)) {
+            Entry eldest = evictEldest();
+            if (eldest == null) {
+                break;
+            }
+            recycled = eldest.compiler;
+        }
+        return recycled;
+    }
+
+    @Nullable
+    private Entry evictEldest() {
+        Iterator<Entry> iterator = mEntries.values().iterator();
+        if (!iterator.hasNext()) {
+            return null;
+        }
+        Entry eldest = iterator.next();
+        iterator.remove();
+        release(eldest);
+        Log.d(TAG, "Evicted compile batch, " + mEntries.size() + " batches remaining.");
+        return eldest;
+    }
+
+    private static void release(Entry entry) {
+        close(entry.batch);
+    }
+
+    private static void close(CompileBatch batch) {
+        if (batch.borrow != null && !batch.borrow.closed) {
+            batch.borrow.close();
+        }
+    }
+
+    private static boolean isModified(Entry entry, Collection<? extends JavaFileObject> sources) {
+        if (entry.modified.size() != sources.size()) {
+            return true;
+        }
+        for (JavaFileObject f : sources) {
+            Long cached = entry.modified.get(f);
+            if (cached == null) {
+                return true;
+            }
+            if (f.getLastModified() != cached) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isUnderHeapPressure() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = runtime.totalMemory() - runtime.freeMemory();
+        return used > runtime.maxMemory() * HEAP_PRESSURE_RATIO;
+    }
+
+    private static Set<JavaFileObject> key(Collection<? extends JavaFileObject> sources) {
+        return new HashSet<>(sources);
+    }
+}
@@ -67,12 +67,12 @@ public class CompileTask implements AutoCloseable {
         return null;
     }
 
+    /**
+     * Marks the batch as no longer in use. Its borrow is not closed here, the batch stays in
+     * the pool of {@link JavaCompilerService} which closes the borrow when it is evicted.
+     */
     @Override
     public void close() {
         mCompileBatch.close();
-        ReusableCompiler.Borrow borrow = mCompileBatch.borrow;
-        if (borrow != null && !borrow.closed) {
-            borrow.close();
-        }
     }
 }
@@ -2,20 +2,15 @@ package com.tyron.completion.java.compiler;
 
 import android.util.Log;
 
-import androidx.annotation.GuardedBy;
-
-import com.sun.source.util.JavacTask;
-import com.sun.tools.javac.api.JavacTaskImpl;
-import com.sun.tools.javac.util.Context;
 import com.tyron.completion.java.BuildConfig;
-import com.tyron.completion.java.compiler.services.CancelService;
 import com.tyron.completion.progress.ProcessCanceledException;
+import com.tyron.completion.progress.ProgressIndicator;
 import com.tyron.completion.progress.ProgressManager;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
-import java.util.concurrent.Semaphore;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.StampedLock;
 import java.util.function.Consumer;
 
 import kotlin.jvm.functions.Function1;
@@ -26,45 +21,46 @@ import kotlin.jvm.functions.Function1;
  * A read is when the {@link CompileTask} is being accessed to get information about the parse tree.
  * A write is when the {@link CompileTask} is being changed from a compile call
  *
- * Any threads are allowed to read only if there is no thread that is currently writing.
- * If there is a thread that is currently writing, all other threads that attempts to read
- * will be blocked until the write thread has finished.
+ * Reads through {@link #run(Consumer)} and {@link #get(Function1)} are exclusive. Completion,
+ * hover and the rewrites attribute trees on the shared javac context, which mutates its symbol
+ * tables and its {@code Attr} and {@code Log} state, so only one of them may run at a time.
+ *
+ * Reads that only walk the trees, their source positions, the diagnostics and the symbols
+ * that javac already attached to the attributed trees, without attributing, resolving or
+ * completing anything, can use {@link #runShared(Consumer)} and {@link #getShared(Function1)}.
+ * Semantic highlighting, the diagnostics and the current path of the editor are read this way,
+ * any number of them run at the same time as long as no other thread is accessing the
+ * compile task exclusively.
  *
  * Only one thread is allowed to write at a time, during a write operation all threads that
- * attempts to read will be blocked until the thread writing has finished.
+ * attempts to read will be blocked until the thread writing has finished. Since the results
+ * of the readers are about to become stale, a write cancels the readers that are still
+ * running and waits for them to exit. Each read has its own {@link ProgressIndicator} that is
+ * checked by {@link ProgressManager#checkCanceled()} only while the read is running, so a
+ * cancellation that arrives after the read has finished does not cancel the next task of the
+ * thread.
  */
 public class CompilerContainer {
 
     private static final String TAG = CompilerContainer.class.getSimpleName();
 
-    private volatile boolean mIsWriting;
-
-    private final Semaphore semaphore = new Semaphore(1);
+    private final StampedLock mLock = new StampedLock();
 
-    private CompileTask mCompileTask;
-
-    public CompilerContainer() {
-
-    }
+    /**
+     * The number of writers that are waiting for or holding the write lock
+     */
+    private final AtomicInteger mWriters = new AtomicInteger();
 
-    private void cancel() {
-        if (mCompileTask == null) {
-            return;
-        }
+    /**
+     * The indicators of the reads currently holding the lock and the threads running them,
+     * so they can be canceled by a writer
+     */
+    private final Map<ProgressIndicator, Thread> mReaders = new ConcurrentHashMap<>();
 
-        JavacTask task = mCompileTask.task;
-        if (!(task instanceof JavacTaskImpl)) {
-            return;
-        }
+    private volatile CompileTask mCompileTask;
 
-        JavacTaskImpl taskImpl = ((JavacTaskImpl) task);
-        Context context = taskImpl.getContext();
-        if (context == null) {
-            return;
-        }
+    public CompilerContainer() {
 
-        ReusableCompiler.CancelServiceImpl cancelService =
-                (ReusableCompiler.CancelServiceImpl) ReusableCompiler.CancelServiceImpl.instance(context);
     }
 
     /**
@@ -73,66 +69,166 @@ public class CompilerContainer {
      * are synchronized
      */
     public void run(Consumer<CompileTask> consumer) {
-        cancel();
-        semaphore.acquireUninterruptibly();
+        long stamp = mLock.writeLock();
+        ProgressIndicator indicator = new ProgressIndicator();
+        ProgressIndicator previous = enterRead(indicator);
         try {
             consumer.accept(mCompileTask);
         } finally {
-            semaphore.release();
+            exitRead(indicator, previous);
+            mLock.unlockWrite(stamp);
         }
     }
 
     public <T> T get(Function1<CompileTask, T> fun) {
-        cancel();
+        long stamp = writeLockInterruptibly();
+        ProgressIndicator indicator = new ProgressIndicator();
+        ProgressIndicator previous = enterRead(indicator);
         try {
-            semaphore.acquire();
-        } catch (InterruptedException e) {
-            throw new ProcessCanceledException();
+            return fun.invoke(mCompileTask);
+        } finally {
+            exitRead(indicator, previous);
+            mLock.unlockWrite(stamp);
         }
+    }
+
+    /**
+     * Same as {@link #get(Function1)} but the read is not canceled by writers, use this
+     * for reads whose results are needed even if the compile task is about to change.
+     */
+    public <T> T getWithLock(Function1<CompileTask, T> fun) {
+        long stamp = writeLockInterruptibly();
         try {
             return fun.invoke(mCompileTask);
         } finally {
-            semaphore.release();
+            mLock.unlockWrite(stamp);
         }
     }
 
-    public <T> T getWithLock(Function1<CompileTask, T> fun) {
+    /**
+     * Runs a read that may share the compile task with other shared reads. The consumer
+     * must only walk the trees, their source positions and the symbols attached to them,
+     * anything that attributes, resolves, completes symbols or reports through the javac
+     * context must use {@link #run(Consumer)}.
+     */
+    public void runShared(Consumer<CompileTask> consumer) {
+        long stamp = mLock.readLock();
+        ProgressIndicator indicator = new ProgressIndicator();
+        ProgressIndicator previous = enterRead(indicator);
         try {
-            semaphore.acquire();
-        } catch (InterruptedException e) {
-            throw new ProcessCanceledException();
+            consumer.accept(mCompileTask);
+        } finally {
+            exitRead(indicator, previous);
+            mLock.unlockRead(stamp);
         }
+    }
+
+    /**
+     * @see #runShared(Consumer)
+     */
+    public <T> T getShared(Function1<CompileTask, T> fun) {
+        long stamp = readLockInterruptibly();
+        ProgressIndicator indicator = new ProgressIndicator();
+        ProgressIndicator previous = enterRead(indicator);
         try {
             return fun.invoke(mCompileTask);
         } finally {
-            semaphore.release();
+            exitRead(indicator, previous);
+            mLock.unlockRead(stamp);
         }
-
     }
 
-    public synchronized boolean isWriting() {
-        return mIsWriting || semaphore.hasQueuedThreads();
+    /**
+     * @return whether a thread is currently writing or is waiting to write, readers
+     * that start now will have to wait for the write to finish
+     */
+    public boolean isWriting() {
+        // exclusive reads hold the write lock as well, so only count the writers
+        return mWriters.get() > 0;
     }
 
     void initialize(Runnable runnable) {
+        initialize(runnable, true);
+    }
+
+    /**
+     * @param closePrevious whether the current compile task should be closed before
+     *                      running the write. If false, the writer is responsible for
+     *                      calling {@link #closeCompileTask()} if it does not reuse it.
+     */
+    void initialize(Runnable runnable, boolean closePrevious) {
+        mWriters.incrementAndGet();
+        long stamp;
         try {
-            semaphore.acquire();
+            cancelReaders();
+            stamp = mLock.writeLockInterruptibly();
         } catch (InterruptedException e) {
+            mWriters.decrementAndGet();
             throw new ProcessCanceledException();
         }
-        mIsWriting = true;
         try {
             // ensure that compile task is closed
-            if (mCompileTask != null) {
-                mCompileTask.close();
+            if (closePrevious) {
+                closeCompileTask();
             }
 
-            cancel();
-
             runnable.run();
         } finally {
-            mIsWriting = false;
-            semaphore.release();
+            mLock.unlockWrite(stamp);
+            mWriters.decrementAndGet();
+        }
+    }
+
+    /**
+     * Requests the reads that are currently running to stop, they will
+     * throw a {@link ProcessCanceledException} on their next cancellation check.
+     */
+    private void cancelReaders() {
+        Thread current = Thread.currentThread();
+        for (Map.Entry<ProgressIndicator, Thread> entry : mReaders.entrySet()) {
+            Thread reader = entry.getValue();
+            if (reader == current) {
+                continue;
+            }
+            if (BuildConfig.DEBUG) {
+                Log.d(TAG, "Canceling reader " + reader.getName());
+            }
+            entry.getKey().cancel();
+        }
+    }
+
+    private long writeLockInterruptibly() {
+        try {
+            return mLock.writeLockInterruptibly();
+        } catch (InterruptedException e) {
+            throw new ProcessCanceledException();
+        }
+    }
+
+    private long readLockInterruptibly() {
+        try {
+            return mLock.readLockInterruptibly();
+        } catch (InterruptedException e) {
+            throw new ProcessCanceledException();
+        }
+    }
+
+    private ProgressIndicator enterRead(ProgressIndicator indicator) {
+        indicator.setRunning(true);
+        mReaders.put(indicator, Thread.currentThread());
+        return ProgressManager.getInstance().setLocalIndicator(indicator);
+    }
+
+    private void exitRead(ProgressIndicator indicator, ProgressIndicator previous) {
+        mReaders.remove(indicator);
+        indicator.setRunning(false);
+        // a writer may still cancel the indicator, it is no longer checked by this thread
+        ProgressManager.getInstance().setLocalIndicator(previous);
+    }
+
+    void closeCompileTask() {
+        if (mCompileTask != null) {
+            mCompileTask.close();
         }
     }
 
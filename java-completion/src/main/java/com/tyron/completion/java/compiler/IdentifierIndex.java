@@ -0,0 +1,252 @@
+package com.tyron.completion.java.compiler;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import com.tyron.builder.project.api.FileManager;
+import com.tyron.builder.project.api.JavaModule;
+import com.tyron.builder.project.listener.FileListener;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An inverted index from identifier tokens to the source files that contain them, so finding
+ * the files that mention a name is a map lookup instead of a scan of every source file.
+ *
+ * Files are tokenized once when they are first indexed, after that the index is kept up to
+ * date from the snapshot changes of the {@link FileManager} of each indexed module. The last
+ * modified time of each file is stored with its tokens, so a file that was changed outside of
+ * the editor is indexed again on the next {@link #update(JavaModule)}. Like
+ * {@link com.tyron.common.util.StringSearch#containsWord(java.nio.file.Path, String)}, tokens
+ * found in comments and string literals are included so the results are a superset of the
+ * files that actually reference the name.
+ */
+public class IdentifierIndex implements FileListener {
+
+    private static final String TAG = IdentifierIndex.class.getSimpleName();
+
+    /**
+     * The tokens of a file and the last modified time of the file when it was tokenized
+     */
+    private static class Entry {
+        private final long lastModified;
+        private final Set<String> tokens;
+
+        private Entry(long lastModified, Set<String> tokens) {
+            this.lastModified = lastModified;
+            this.tokens = tokens;
+        }
+    }
+
+    private final Interner<String> mInterner = Interners.newWeakInterner();
+
+    private final Map<String, Set<File>> mFilesByToken = new ConcurrentHashMap<>();
+    private final Map<File, Entry> mEntriesByFile = new ConcurrentHashMap<>();
+    private final Set<FileManager> mFileManagers = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Indexes the source files of the module that are not yet indexed or that have been
+     * modified since they were indexed. The snapshot changes of the module are tracked from
+     * then on.
+     */
+    public void update(@NonNull JavaModule module) {
+        FileManager fileManager = module.getFileManager();
+        if (fileManager != null && mFileManagers.add(fileManager)) {
+            fileManager.addSnapshotListener(this);
+        }
+
+        Collection<File> files = module.getJavaFiles().values();
+        for (File file : files) {
+            if (!isIndexed(file)) {
+                index(file, readContents(fileManager, file));
+            }
+        }
+    }
+
+    /**
+     * Removes the files that are no longer part of any of the given modules.
+     */
+    public void retainAll(@NonNull Collection<JavaModule> modules) {
+        Set<File> files = new HashSet<>();
+        for (JavaModule module : modules) {
+            files.addAll(module.getJavaFiles().values());
+        }
+        for (File file : new ArrayList<>(mEntriesByFile.keySet())) {
+            if (!files.contains(file)) {
+                remove(file);
+            }
+        }
+    }
+
+    @Override
+    public void onSnapshotChanged(File file, CharSequence contents) {
+        if (!file.getName().endsWith(".java")) {
+            return;
+        }
+        index(file, contents);
+    }
+
+    /**
+     * Replaces the tokens of the file with the tokens of the given contents, the contents
+     * are assumed to be the current contents of the file.
+     */
+    public synchronized void index(@NonNull File file, @NonNull CharSequence contents) {
+        Set<String> tokens = tokenize(contents);
+        Entry previousEntry = mEntriesByFile.put(file, new Entry(getLastModified(file), tokens));
+        Set<String> previous = previousEntry == null ? null : previousEntry.tokens;
+        if (previous != null) {
+            for (String token : previous) {
+                if (!tokens.contains(token)) {
+                    removePosting(token, file);
+                }
+            }
+        }
+        for (String token : tokens) {
+            if (previous == null || !previous.contains(token)) {
+                mFilesByToken.computeIfAbsent(token, t -> ConcurrentHashMap.newKeySet())
+                        .add(file);
+            }
+        }
+    }
+
+    public synchronized void remove(@NonNull File file) {
+        Entry entry = mEntriesByFile.remove(file);
+        if (entry == null) {
+            return;
+        }
+        for (String token : entry.tokens) {
+            removePosting(token, file);
+        }
+    }
+
+    /**
+     * @return whether the file has been indexed and has not been modified since
+     */
+    public boolean isIndexed(@NonNull File file) {
+        Entry entry = mEntriesByFile.get(file);
+        return entry != null && entry.lastModified == getLastModified(file);
+    }
+
+    /**
+     * @return whether the indexed file contains the identifier, false if the file
+     * has not been indexed
+     */
+    public boolean contains(@NonNull File file, @NonNull String identifier) {
+        Entry entry = mEntriesByFile.get(file);
+        return entry != null && entry.tokens.contains(identifier);
+    }
+
+    /**
+     * @return The indexed files that contain all of the given identifiers
+     */
+    @NonNull
+    public Set<File> findFiles(@NonNull String... identifiers) {
+        if (identifiers.length == 0) {
+            return Collections.emptySet();
+        }
+        List<Set<File>> postings = new ArrayList<>(identifiers.length);
+        for (String identifier : identifiers) {
+            Set<File> files = mFilesByToken.get(identifier);
+            if (files == null || files.isEmpty()) {
+                return Collections.emptySet();
+            }
+            postings.add(files);
+        }
+
+        // intersect starting from the rarest identifier
+        postings.sort(Comparator.comparingInt(Set::size));
+        Set<File> result = new HashSet<>(postings.get(0));
+        for (int i = 1; i < postings.size() && !result.isEmpty(); i++) {
+            result.retainAll(postings.get(i));
+        }
+        return result;
+    }
+
+    /**
+     * Removes all the files from the index and stops listening to snapshot changes.
+     */
+    public synchronized void clear() {
+        for (FileManager fileManager : mFileManagers) {
+            fileManager.removeSnapshotListener(this);
+        }
+        mFileManagers.clear();
+        mFilesByToken.clear();
+        mEntriesByFile.clear();
+    }
+
+    /**
+     * @return The last modified time of the snapshot of the file if it is opened, or the last
+     * modified time of the file on disk otherwise
+     */
+    private long getLastModified(File file) {
+        for (FileManager fileManager : mFileManagers) {
+            Instant modified = fileManager.getLastModified(file);
+            if (modified != null) {
+                return modified.toEpochMilli();
+            }
+        }
+        return file.lastModified();
+    }
+
+    private void removePosting(String token, File file) {
+        mFilesByToken.computeIfPresent(token, (t, files) -> {
+            files.remove(file);
+            return files.isEmpty() ? null : files;
+        });
+    }
+
+    private Set<String> tokenize(CharSequence contents) {
+        Set<String> tokens = new HashSet<>();
+        int length = contents.length();
+        int i = 0;
+        while (i < length) {
+            if (!Character.isJavaIdentifierStart(contents.charAt(i))) {
+                i++;
+                continue;
+            }
+            int start = i++;
+            while (i < length && Character.isJavaIdentifierPart(contents.charAt(i))) {
+                i++;
+            }
+            tokens.add(contents.subSequence(start, i).toString());
+        }
+
+        Set<String> interned = new HashSet<>(tokens.size());
+        for (String token : tokens) {
+            interned.add(mInterner.intern(token));
+        }
+        return Collections.unmodifiableSet(interned);
+    }
+
+    private static CharSequence readContents(FileManager fileManager, File file) {
+        if (fileManager != null) {
+            Optional<CharSequence> content = fileManager.getFileContent(file);
+            if (content.isPresent()) {
+                return content.get();
+            }
+        }
+        try {
+            return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            Log.w(TAG, "Unable to index " + file, e);
+            return "";
+        }
+    }
+}
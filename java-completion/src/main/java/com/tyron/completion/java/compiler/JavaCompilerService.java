@@ -11,6 +11,7 @@ import com.tyron.builder.model.SourceFileObject;
 import com.tyron.builder.project.Project;
 import com.tyron.builder.project.api.JavaModule;
 import com.tyron.builder.project.api.Module;
+import com.tyron.builder.project.util.ClassNameIndex;
 import com.tyron.builder.project.util.PackageTrie;
 import com.tyron.common.util.Cache;
 import com.tyron.common.util.StringSearch;
@@ -24,7 +25,11 @@ import javax.tools.JavaFileObject;
 import javax.tools.StandardLocation;
 
 import com.sun.source.tree.CompilationUnitTree;
+import com.sun.tools.javac.api.JavacTaskImpl;
 import com.sun.tools.javac.file.PathFileObject;
+import com.sun.tools.javac.tree.JCTree;
+import com.sun.tools.javac.tree.TreeInfo;
+import com.sun.tools.javac.util.Context;
 import com.tyron.completion.java.compiler.services.CancelAbort;
 import com.tyron.completion.progress.ProcessCanceledException;
 
@@ -37,10 +42,8 @@ import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.locks.ReentrantLock;
@@ -62,9 +65,32 @@ public class JavaCompilerService implements CompilerProvider {
     public ReusableCompiler compiler = new ReusableCompiler();
     private final Docs docs;
 
+    /**
+     * The maximum number of warm compile batches kept in {@link #mBatchCache}
+     */
+    private static final int MAX_CACHED_BATCHES = 3;
+
     private final CompilerContainer mContainer = new CompilerContainer();
+    private final CompileBatchCache mBatchCache = new CompileBatchCache(MAX_CACHED_BATCHES);
     private CompileBatch cachedCompile;
-    private final Map<JavaFileObject, Long> cachedModified = new HashMap<>();
+
+    /**
+     * The maximum total length of the sources whose parsed trees are kept in
+     * {@link #parseCache}
+     */
+    private static final long MAX_PARSE_CACHE_WEIGHT = 2_000_000;
+
+    /**
+     * The maximum number of entries kept in {@link #cacheContainsWord} and
+     * {@link #cacheContainsType}
+     */
+    private static final long MAX_SEARCH_CACHE_WEIGHT = 20_000;
+
+    private final Cache<String, ParseTask> parseCache;
+    private final Cache<String, Boolean> cacheContainsWord;
+    private final Cache<Void, List<String>> cacheContainsType;
+
+    private final IdentifierIndex mIdentifierIndex = new IdentifierIndex();
 
     public final ReentrantLock mLock = new ReentrantLock();
 
@@ -78,6 +104,38 @@ public class JavaCompilerService implements CompilerProvider {
         this.addExports = Collections.unmodifiableSet(addExports);
         this.mSourceFileManager = new SourceFileManager(project);
         this.docs = new Docs(project, docPath);
+
+        Cache.VersionProvider versionProvider = this::getSnapshotVersion;
+        this.parseCache = new Cache<>(versionProvider, MAX_PARSE_CACHE_WEIGHT,
+                (name, task) -> weigh(task));
+        this.cacheContainsWord = new Cache<>(versionProvider, MAX_SEARCH_CACHE_WEIGHT,
+                (word, contains) -> 1);
+        this.cacheContainsType = new Cache<>(versionProvider, MAX_SEARCH_CACHE_WEIGHT,
+                (key, types) -> 1 + types.size());
+    }
+
+    /**
+     * Uses the modification time of the in-memory snapshot of the file if it is opened,
+     * so the cached values of opened files are validated without touching the disk.
+     */
+    private long getSnapshotVersion(Path path) {
+        File file = path.toFile();
+        Module module = mProject.getModule(file);
+        if (module != null) {
+            Instant modified = module.getFileManager().getLastModified(file);
+            if (modified != null) {
+                return modified.getEpochSecond() * 1_000_000_000L + modified.getNano();
+            }
+        }
+        return Cache.LAST_MODIFIED.getVersion(path);
+    }
+
+    private static int weigh(ParseTask task) {
+        if (task.root instanceof JCTree.JCCompilationUnit) {
+            JCTree.JCCompilationUnit unit = (JCTree.JCCompilationUnit) task.root;
+            return Math.max(1, TreeInfo.getEndPos(unit, unit.endPositions));
+        }
+        return 1;
     }
 
     public Project getProject() {
@@ -90,27 +148,19 @@ public class JavaCompilerService implements CompilerProvider {
     }
 
     /**
-     * Checks whether this list has been compiled before
+     * Checks whether this list has been compiled before, if so the cached batch is
+     * made the current one.
      *
      * @param sources list of java files to compile
      * @return true if there's a valid cache for it, false otherwise
      */
     private boolean needsCompile(Collection<? extends JavaFileObject> sources) {
-        if (cachedModified.size() != sources.size()) {
+        CompileBatch cached = mBatchCache.get(sources);
+        if (cached == null) {
             return true;
         }
-        for (JavaFileObject f : sources) {
-            if (!cachedModified.containsKey(f)) {
-                return true;
-            }
-            Long cached = cachedModified.get(f);
-            if (cached == null) {
-                return true;
-            }
-            if (f.getLastModified() != cached) {
-                return true;
-            }
-        }
+        cachedCompile = cached;
+        compiler = mBatchCache.getCompiler(sources);
         return false;
     }
 
@@ -119,13 +169,11 @@ public class JavaCompilerService implements CompilerProvider {
             if (!cachedCompile.closed) {
                 throw new RuntimeException("Compiler is still in-use!");
             }
-            cachedCompile.borrow.close();
+            // the borrow of the batch is closed by the cache once it is evicted
         }
+        compiler = mBatchCache.obtainCompiler(sources);
         cachedCompile = doCompile(sources);
-        cachedModified.clear();
-        for (JavaFileObject f : sources) {
-            cachedModified.put(f, f.getLastModified());
-        }
+        mBatchCache.put(sources, cachedCompile, compiler);
     }
 
     public void invalidate(Path source) {
@@ -134,7 +182,7 @@ public class JavaCompilerService implements CompilerProvider {
 
     public void invalidate(Collection<? extends JavaFileObject> sources) {
         for (JavaFileObject source : sources) {
-            cachedModified.remove(source);
+            mBatchCache.invalidate(source);
         }
     }
 
@@ -166,26 +214,86 @@ public class JavaCompilerService implements CompilerProvider {
      * @return CompileBatch for this compilation
      */
     private CompilerContainer compileBatch(Collection<? extends JavaFileObject> sources) {
+        return compileBatch(sources, false);
+    }
+
+    /**
+     * @param incremental whether to try updating the current compile batch in place if
+     *                    the edit is contained in a single method body
+     */
+    private CompilerContainer compileBatch(Collection<? extends JavaFileObject> sources,
+                                           boolean incremental) {
         try {
             mContainer.initialize(() -> {
+                if (incremental && reparseMethodBody(sources)) {
+                    mBatchCache.put(sources, cachedCompile, compiler);
+                    mContainer.setCompileTask(new CompileTask(cachedCompile));
+                    return;
+                }
+                if (incremental) {
+                    mContainer.closeCompileTask();
+                }
                 if (needsCompile(sources)) {
                     loadCompile(sources);
                 }
                 CompileTask task = new CompileTask(cachedCompile);
                 mContainer.setCompileTask(task);
-            });
+            }, !incremental);
             return mContainer;
         } catch (Throwable t) {
             if (t instanceof CancelAbort || t.getCause() instanceof CancelAbort) {
-                if (cachedCompile != null) {
-                    cachedCompile.borrow.close();
-                }
+                discardCompileBatch();
                 throw new ProcessCanceledException();
             }
             throw t;
         }
     }
 
+    /**
+     * Updates the current compile batch in place if it was compiled from the same file
+     * and the edit is contained in a single method body.
+     *
+     * @return true if the current batch has been updated
+     */
+    private boolean reparseMethodBody(Collection<? extends JavaFileObject> sources) {
+        if (sources.size() != 1 || cachedCompile == null || cachedCompile.borrow.closed) {
+            return false;
+        }
+        if (cachedCompile.roots.size() != 1 || cachedCompile.parsedContents == null) {
+            return false;
+        }
+        JavaFileObject source = sources.iterator().next();
+        CharSequence newContents = PartialReparser.getFixedContents(source);
+        if (newContents == null) {
+            return false;
+        }
+        JCTree.JCCompilationUnit root = (JCTree.JCCompilationUnit) cachedCompile.roots.get(0);
+        if (!root.getSourceFile().toUri().equals(source.toUri())) {
+            return false;
+        }
+        Context context = ((JavacTaskImpl) cachedCompile.task).getContext();
+        if (context == null) {
+            return false;
+        }
+        try {
+            clearDiagnostics();
+            if (PartialReparser.reparseMethodBody(context, root, cachedCompile.parsedContents,
+                    source)) {
+                cachedCompile.parsedContents = newContents;
+                return true;
+            }
+            return false;
+        } catch (CancelAbort e) {
+            throw e;
+        } catch (Throwable e) {
+            // the batch may be in an inconsistent state, it will be compiled again
+            Log.w("JavaCompilerService", "Unable to reparse method body", e);
+            cachedCompile.parsedContents = null;
+            mBatchCache.invalidate(source);
+            return false;
+        }
+    }
+
     public void clearDiagnostics() {
         diagnostics.clear();
         if (mDiagnosticListener != null) {
@@ -225,6 +333,25 @@ public class JavaCompilerService implements CompilerProvider {
         return classes;
     }
 
+    /**
+     * Finds the classes whose simple name matches the partial name using the prebuilt
+     * {@link ClassNameIndex} of the current module and its dependencies.
+     *
+     * @param partial the partial simple name of the class
+     * @param caseSensitive whether the prefix matching is case sensitive
+     * @param limit the maximum number of results
+     * @return the fully qualified names of the matching classes, in ranked order
+     */
+    public List<String> findClassNames(String partial, boolean caseSensitive, int limit) {
+        List<ClassNameIndex> indexes = new ArrayList<>();
+        for (Module module : mProject.getDependencies(mCurrentModule)) {
+            if (module instanceof JavaModule) {
+                indexes.add(((JavaModule) module).getClassNameIndex());
+            }
+        }
+        return ClassNameIndex.search(indexes, partial, caseSensitive, limit);
+    }
+
     public Set<String> findClasses(String packageName) {
         Set<String> classes = new HashSet<>();
         for (Module module : mProject.getDependencies(mCurrentModule)) {
@@ -324,25 +451,21 @@ public class JavaCompilerService implements CompilerProvider {
         return "";
     }
 
-    private static final Cache<String, Boolean> cacheContainsWord = new Cache<>();
-
     private boolean containsWord(Path file, String word) {
-        if (cacheContainsWord.needs(file, word)) {
-            cacheContainsWord.load(file, word, StringSearch.containsWord(file, word));
+        File f = file.toFile();
+        if (mIdentifierIndex.isIndexed(f)) {
+            return mIdentifierIndex.contains(f, word);
         }
-        return cacheContainsWord.get(file, word);
+        return cacheContainsWord.get(file, word, () -> StringSearch.containsWord(file, word));
     }
 
-    private static final Cache<Void, List<String>> cacheContainsType = new Cache<>();
-
     private boolean containsType(Path file, String className) {
-        if (cacheContainsType.needs(file, null)) {
+        return cacheContainsType.get(file, null, () -> {
             CompilationUnitTree root = parse(file).root;
             List<String> types = new ArrayList<>();
             new FindTypeDeclarations().scan(root, types);
-            cacheContainsType.load(file, null, types);
-        }
-        return cacheContainsType.get(file, null).contains(className);
+            return types;
+        }).contains(className);
     }
 
 
@@ -415,24 +538,61 @@ public class JavaCompilerService implements CompilerProvider {
         return Optional.ofNullable(source);
     }
 
+    /**
+     * Finds the source files that may reference the class. A file can only reference the class
+     * if it mentions its simple name, and either imports it, uses its fully qualified name or
+     * is in the same package, all of which require the last segment of the package name.
+     */
     @Override
     public Path[] findTypeReferences(String className) {
-        return null;
+        updateIdentifierIndex();
+
+        String packageName = packageName(className);
+        String simpleName = simpleName(className);
+        if (simpleName.isEmpty()) {
+            return new Path[0];
+        }
+        Set<File> files;
+        if (packageName.isEmpty()) {
+            files = mIdentifierIndex.findFiles(simpleName);
+        } else {
+            String lastSegment = packageName.substring(packageName.lastIndexOf('.') + 1);
+            files = mIdentifierIndex.findFiles(simpleName, lastSegment);
+        }
+        return toPaths(files);
     }
 
     @Override
     public Path[] findMemberReferences(String className, String memberName) {
-        return null;
+        updateIdentifierIndex();
+        return toPaths(mIdentifierIndex.findFiles(memberName));
     }
 
-    private final Cache<String, ParseTask> parseCache = new Cache<>();
+    private void updateIdentifierIndex() {
+        List<JavaModule> modules = new ArrayList<>();
+        for (Module module : mProject.getDependencies(mCurrentModule)) {
+            if (module instanceof JavaModule) {
+                modules.add((JavaModule) module);
+                mIdentifierIndex.update((JavaModule) module);
+            }
+        }
+        mIdentifierIndex.retainAll(modules);
+    }
+
+    private static Path[] toPaths(Collection<File> files) {
+        Path[] paths = new Path[files.size()];
+        int i = 0;
+        for (File file : files) {
+            paths[i++] = file.toPath();
+        }
+        return paths;
+    }
 
     private ParseTask cachedParse(Path file) {
-        if (parseCache.needs(file, file.toFile().getName())) {
+        return parseCache.get(file, file.toFile().getName(), () -> {
             Parser parser = Parser.parseFile(mProject, file);
-            parseCache.load(file, file.toFile().getName(), new ParseTask(parser.task, parser.root));
-        }
-        return parseCache.get(file, file.toFile().getName());
+            return new ParseTask(parser.task, parser.root);
+        });
     }
 
     private ParseTask cachedParse(JavaFileObject file) {
@@ -442,14 +602,10 @@ public class JavaCompilerService implements CompilerProvider {
                     file.toUri().toString().substring(4, file.toUri().toString().lastIndexOf("!"));
 
             Path parsedPath = new File(URI.create(path)).toPath();
-            if (parseCache.needs(parsedPath, file.getName())) {
+            return parseCache.get(parsedPath, file.getName(), () -> {
                 Parser parser = Parser.parseJavaFileObject(mProject, file);
-                parseCache
-                        .load(parsedPath, file.getName(), new ParseTask(parser.task, parser.root));
-            } else {
-                Log.d("JavaCompilerService", "Using cached parse for " + file.getName());
-            }
-            return parseCache.get(parsedPath, file.getName());
+                return new ParseTask(parser.task, parser.root);
+            });
         } else if (file instanceof SourceFileObject) {
             return cachedParse(((SourceFileObject) file).mFile);
         }
@@ -515,6 +671,21 @@ public class JavaCompilerService implements CompilerProvider {
         return compileBatch(sources);
     }
 
+    /**
+     * Compiles a single file for code completion. If the previous completion compiled the
+     * same file and the edit is contained in a single method body, only that method is
+     * parsed and attributed again, otherwise this behaves the same as
+     * {@link #compile(Collection)}.
+     *
+     * Diagnostics reported by an incremental compile only cover the edited method.
+     *
+     * @param source the java file to compile
+     * @return a CompileTask for this compilation
+     */
+    public CompilerContainer compileIncrementally(JavaFileObject source) {
+        return compileBatch(Collections.singletonList(source), true);
+    }
+
     public synchronized void close() {
         if (cachedCompile != null && !cachedCompile.closed) {
             cachedCompile.close();
@@ -538,11 +709,27 @@ public class JavaCompilerService implements CompilerProvider {
                 }
             }
             cachedCompile = null;
-            cachedModified.clear();
+            mBatchCache.clear();
+            Log.d("JavaCompilerService", "Parse cache " + parseCache.stats());
+            parseCache.clear();
+            cacheContainsWord.clear();
+            cacheContainsType.clear();
+            mIdentifierIndex.clear();
             compiler = new ReusableCompiler();
         });
     }
 
+    /**
+     * Evicts the current batch from the pool and closes its borrow. Used when the task using
+     * it has been canceled, so it is compiled again on the next request.
+     */
+    public synchronized void discardCompileBatch() {
+        if (cachedCompile != null) {
+            mBatchCache.evict(cachedCompile);
+            cachedCompile = null;
+        }
+    }
+
     public CompileBatch getCompileBatch() {
         return cachedCompile;
     }
@@ -0,0 +1,257 @@
+package com.tyron.completion.java.compiler;
+
+import androidx.annotation.Nullable;
+
+import com.sun.tools.javac.comp.Annotate;
+import com.sun.tools.javac.comp.Attr;
+import com.sun.tools.javac.comp.AttrContext;
+import com.sun.tools.javac.comp.Enter;
+import com.sun.tools.javac.comp.Env;
+import com.sun.tools.javac.parser.JavacParser;
+import com.sun.tools.javac.parser.ParserFactory;
+import com.sun.tools.javac.tree.EndPosTable;
+import com.sun.tools.javac.tree.JCTree;
+import com.sun.tools.javac.tree.JCTree.JCBlock;
+import com.sun.tools.javac.tree.JCTree.JCClassDecl;
+import com.sun.tools.javac.tree.JCTree.JCCompilationUnit;
+import com.sun.tools.javac.tree.JCTree.JCMethodDecl;
+import com.sun.tools.javac.tree.TreeInfo;
+import com.sun.tools.javac.tree.TreeScanner;
+import com.sun.tools.javac.util.Context;
+import com.sun.tools.javac.util.Log;
+import com.sun.tools.javac.util.Position;
+import com.tyron.builder.model.SourceFileObject;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import javax.tools.JavaFileObject;
+
+/**
+ * Updates an already attributed compilation unit in place when an edit is contained
+ * within a single method body.
+ *
+ * Instead of parsing and attributing the whole file again, only the body of the edited method
+ * is parsed and attributed against the existing class skeleton. The positions of the trees
+ * after the method are shifted by the length of the edit. This makes the cost of a completion
+ * request proportional to the size of the edited method rather than the size of the file.
+ *
+ * The edit is found by comparing the new contents with the contents the unit was parsed from.
+ * Those have to be kept with the unit, reading its source again may return the contents of
+ * the editor or of the file as they are now.
+ *
+ * The context the compilation unit was attributed with must still be open, once its
+ * {@link ReusableCompiler.Borrow} is closed the class environments are cleared and the
+ * unit can no longer be updated.
+ */
+public class PartialReparser {
+
+    private PartialReparser() {
+
+    }
+
+    /**
+     * Attempts to update the compilation unit with the contents of the new source.
+     *
+     * @param context the context that the unit was attributed with
+     * @param unit the attributed compilation unit
+     * @param oldContents the contents the unit was parsed from, see {@link #getFixedContents}
+     * @param newSource the new contents of the unit
+     * @return true if the unit has been updated, false if the edit is not contained
+     * in a single method body and the file should be compiled again
+     */
+    public static boolean reparseMethodBody(Context context,
+                                            JCCompilationUnit unit,
+                                            CharSequence oldContents,
+                                            JavaFileObject newSource) {
+        if (unit.endPositions == null) {
+            return false;
+        }
+        CharSequence newContents;
+        try {
+            newContents = newSource.getCharContent(true);
+        } catch (IOException e) {
+            return false;
+        }
+
+        int oldLength = oldContents.length();
+        int newLength = newContents.length();
+        int prefix = 0;
+        int max = Math.min(oldLength, newLength);
+        while (prefix < max && oldContents.charAt(prefix) == newContents.charAt(prefix)) {
+            prefix++;
+        }
+        int suffix = 0;
+        while (suffix < max - prefix &&
+               oldContents.charAt(oldLength - suffix - 1) ==
+               newContents.charAt(newLength - suffix - 1)) {
+            suffix++;
+        }
+        if (prefix == oldLength && oldLength == newLength) {
+            unit.sourcefile = newSource;
+            return true;
+        }
+
+        int oldChangeEnd = oldLength - suffix;
+        JCMethodDecl method = findEnclosingMethod(unit, prefix, oldChangeEnd);
+        if (method == null || method.sym == null) {
+            return false;
+        }
+
+        int delta = newLength - oldLength;
+        int bodyStart = TreeInfo.getStartPos(method.body);
+        int oldBodyEnd = TreeInfo.getEndPos(method.body, unit.endPositions);
+        int newBodyEnd = oldBodyEnd + delta;
+
+        Log log = Log.instance(context);
+        JavaFileObject prevSource = log.useSource(newSource);
+        try {
+            // pad the body with whitespace so the parsed trees have the same positions
+            // as they would have if the whole file was parsed
+            char[] padded = new char[newBodyEnd];
+            Arrays.fill(padded, 0, bodyStart, ' ');
+            for (int i = bodyStart; i < newBodyEnd; i++) {
+                padded[i] = newContents.charAt(i);
+            }
+            JavacParser parser = ParserFactory.instance(context)
+                    .newParser(new String(padded), false, true, false);
+            JCBlock block = parser.block();
+            if (parser.getEndPos(block) != newBodyEnd) {
+                // the braces of the method no longer match
+                return false;
+            }
+
+            Env<AttrContext> classEnv = Enter.instance(context).getEnv(method.sym.enclClass());
+            if (classEnv == null) {
+                return false;
+            }
+
+            shiftPositions(unit, method.body, oldBodyEnd, delta);
+            copyEndPositions(parser, block, unit.endPositions);
+
+            method.body = block;
+            unit.sourcefile = newSource;
+            char[] chars = newContents.toString().toCharArray();
+            unit.lineMap = Position.makeLineMap(chars, chars.length, true);
+
+            if (log instanceof ReusableCompiler.ReusableContext.ReusableLog) {
+                ((ReusableCompiler.ReusableContext.ReusableLog) log).invalidate(newSource);
+            }
+
+            Attr.instance(context).attribStat(method, classEnv);
+            Annotate.instance(context).flush();
+            return true;
+        } finally {
+            log.useSource(prevSource);
+        }
+    }
+
+    /**
+     * @return the contents of the source if it returns the same contents each time it is read,
+     * or null if they may change and can not be used as the contents the unit was parsed from
+     */
+    @Nullable
+    public static CharSequence getFixedContents(JavaFileObject source) {
+        if (source instanceof SourceFileObject) {
+            SourceFileObject sourceFile = (SourceFileObject) source;
+            if (sourceFile.hasFixedContents()) {
+                return sourceFile.getCharContent(true);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Finds the method of a class member whose body fully contains the given range,
+     * methods of local and anonymous classes are not considered.
+     */
+    @Nullable
+    private static JCMethodDecl findEnclosingMethod(JCCompilationUnit unit, int start, int end) {
+        for (JCTree def : unit.defs) {
+            if (def instanceof JCClassDecl) {
+                JCMethodDecl method = findEnclosingMethod(unit, (JCClassDecl) def, start, end);
+                if (method != null) {
+                    return method;
+                }
+            }
+        }
+        return null;
+    }
+
+    @Nullable
+    private static JCMethodDecl findEnclosingMethod(JCCompilationUnit unit,
+                                                    JCClassDecl classDecl,
+                                                    int start,
+                                                    int end) {
+        for (JCTree def : classDecl.defs) {
+            if (def instanceof JCClassDecl) {
+                JCMethodDecl method = findEnclosingMethod(unit, (JCClassDecl) def, start, end);
+                if (method != null) {
+                    return method;
+                }
+            } else if (def instanceof JCMethodDecl) {
+                JCMethodDecl method = (JCMethodDecl) def;
+                if (method.body == null) {
+                    continue;
+                }
+                // the opening and closing braces must not be part of the edit
+                int bodyStart = TreeInfo.getStartPos(method.body);
+                int bodyEnd = TreeInfo.getEndPos(method.body, unit.endPositions);
+                if (bodyStart < start && end < bodyEnd) {
+                    return method;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Shifts the start and end positions of the trees located after the edited body.
+     */
+    private static void shiftPositions(JCCompilationUnit unit,
+                                       JCBlock oldBody,
+                                       int oldBodyEnd,
+                                       int delta) {
+        if (delta == 0) {
+            return;
+        }
+        EndPosTable endPositions = unit.endPositions;
+        new TreeScanner() {
+            @Override
+            public void scan(JCTree tree) {
+                if (tree == null || tree == oldBody) {
+                    return;
+                }
+                int end = endPositions.getEndPos(tree);
+                if (end != Position.NOPOS && end >= oldBodyEnd) {
+                    endPositions.storeEnd(tree, end + delta);
+                }
+                if (tree.pos >= oldBodyEnd) {
+                    tree.pos += delta;
+                }
+                if (tree instanceof JCBlock && ((JCBlock) tree).endpos >= oldBodyEnd) {
+                    ((JCBlock) tree).endpos += delta;
+                }
+                super.scan(tree);
+            }
+        }.scan(unit);
+    }
+
+    private static void copyEndPositions(JavacParser parser,
+                                         JCBlock block,
+                                         EndPosTable endPositions) {
+        new TreeScanner() {
+            @Override
+            public void scan(JCTree tree) {
+                if (tree == null) {
+                    return;
+                }
+                int end = parser.getEndPos(tree);
+                if (end != Position.NOPOS) {
+                    endPositions.storeEnd(tree, end);
+                }
+                super.scan(tree);
+            }
+        }.scan(block);
+    }
+}
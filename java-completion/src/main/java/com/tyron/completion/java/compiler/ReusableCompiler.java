@@ -310,6 +310,14 @@ public class ReusableCompiler {
                 this.context = context;
             }
 
+            /**
+             * Removes the cached source of the file so diagnostics are reported against
+             * its new contents.
+             */
+            void invalidate(JavaFileObject file) {
+                sourceMap.remove(file);
+            }
+
             void clear() {
                 recorded.clear();
                 sourceMap.clear();
@@ -12,7 +12,6 @@ import com.tyron.common.util.StringSearch;
 import com.tyron.completion.java.compiler.CompileTask;
 import com.tyron.completion.java.compiler.JavaCompilerService;
 import com.tyron.completion.java.insert.ClassImportInsertHandler;
-import com.tyron.completion.java.util.ActionUtil;
 import com.tyron.completion.model.CompletionItem;
 import com.tyron.completion.model.CompletionList;
 
@@ -21,8 +20,10 @@ import com.sun.source.util.TreePath;
 
 import java.io.File;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Objects;
 import java.util.Set;
+import java.util.function.Consumer;
 import java.util.function.Predicate;
 
 public class ClassNameCompletionProvider extends BaseCompletionProvider {
@@ -68,27 +69,70 @@ public class ClassNameCompletionProvider extends BaseCompletionProvider {
             uniques.add(className);
         }
 
-        for (String className : compiler.publicTopLevelTypes()) {
-            // more strict on matching class names
-            String simpleName = ActionUtil.getSimpleName(className);
-            if (!predicate.test(simpleName)) {
-                continue;
-            }
-            if (uniques.contains(className)) {
-                continue;
-            }
-            if (list.getItemCount() >= Completions.MAX_COMPLETION_ITEMS) {
-                list.incomplete();
-                break;
+        File file = new File(root.getSourceFile().toUri());
+        new ImportableClassNames(compiler, file, caseSensitive, uniques)
+                .addItems(list, partial, true);
+    }
+
+    /**
+     * Adds the classes that need to be imported from the class name index. When there are
+     * more classes than the list can hold, the list is marked as incomplete with this source
+     * so the index is queried again with the new prefix instead of compiling again.
+     */
+    private static class ImportableClassNames implements Consumer<CompletionList.Builder> {
+
+        private final JavaCompilerService mCompiler;
+        private final File mFile;
+        private final boolean mCaseSensitive;
+
+        /**
+         * The classes that are already in the candidates of the list
+         */
+        private final Set<String> mExisting;
+
+        private ImportableClassNames(JavaCompilerService compiler,
+                                     File file,
+                                     boolean caseSensitive,
+                                     Set<String> existing) {
+            mCompiler = compiler;
+            mFile = file;
+            mCaseSensitive = caseSensitive;
+            mExisting = new HashSet<>(existing);
+        }
+
+        @Override
+        public void accept(CompletionList.Builder builder) {
+            addItems(builder, builder.getPrefix(), false);
+        }
+
+        /**
+         * @param candidates whether the added items are kept as the candidates of the list,
+         *                   these are re-filtered by the list itself and are skipped when
+         *                   querying again
+         */
+        private void addItems(CompletionList.Builder list, String partial, boolean candidates) {
+            // request one more than the remaining space to know whether the list is incomplete
+            int remaining = Completions.MAX_COMPLETION_ITEMS - list.getItemCount();
+            List<String> classNames =
+                    mCompiler.findClassNames(partial, mCaseSensitive, Math.max(remaining, 0) + 1);
+            Set<String> added = new HashSet<>();
+            for (String className : classNames) {
+                if (mExisting.contains(className) || !added.add(className)) {
+                    continue;
+                }
+                if (list.getItemCount() >= Completions.MAX_COMPLETION_ITEMS) {
+                    list.incomplete(this);
+                    break;
+                }
+                CompletionItem item = classItem(className);
+                item.data = className;
+                item.setInsertHandler(new ClassImportInsertHandler(mCompiler, mFile, item));
+                item.setSortText(JavaSortCategory.TO_IMPORT.toString());
+                list.addItem(item);
+                if (candidates) {
+                    mExisting.add(className);
+                }
             }
-            CompletionItem item = classItem(className);
-            item.data = className;
-            item.setInsertHandler(new ClassImportInsertHandler(compiler, new File(
-                    root.getSourceFile()
-                            .toUri()), item));
-            item.setSortText(JavaSortCategory.TO_IMPORT.toString());
-            list.addItem(item);
-            uniques.add(className);
         }
     }
 }
@@ -40,7 +40,6 @@ import java.io.File;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.Instant;
-import java.util.Collections;
 
 /**
  * Main entry point for getting completions
@@ -105,7 +104,7 @@ public class Completions {
             return null;
         }
 
-        CompilerContainer container = compiler.compile(Collections.singletonList(source));
+        CompilerContainer container = compiler.compileIncrementally(source);
 
         try {
             return container.get(task -> {
@@ -132,9 +131,7 @@ public class Completions {
 
             if (cancelled || e instanceof ProcessCanceledException) {
                 compiler.close();
-                if (compiler.getCompileBatch() != null) {
-                    compiler.getCompileBatch().borrow.close();
-                }
+                compiler.discardCompileBatch();
                 throw e;
             }
 
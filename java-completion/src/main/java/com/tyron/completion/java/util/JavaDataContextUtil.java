@@ -34,7 +34,8 @@ public class JavaDataContextUtil {
                 CompilerContainer cachedContainer = compiler.getCachedContainer();
                 // don't block the ui thread
                 if (!cachedContainer.isWriting()) {
-                    cachedContainer.run(task -> {
+                    // only looks up the tree path, nothing is attributed
+                    cachedContainer.runShared(task -> {
                         if (task != null) {
                             CompilationUnitTree root = task.root(file);
                             if (root != null) {
@@ -0,0 +1,152 @@
+package com.tyron.completion.java.compiler;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.tyron.completion.progress.ProcessCanceledException;
+import com.tyron.completion.progress.ProgressManager;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, resourceDir = Config.NONE)
+public class CompilerContainerTest {
+
+    @Test
+    public void testSharedReadersRunInParallel() throws InterruptedException {
+        CompilerContainer container = new CompilerContainer();
+        CountDownLatch bothReading = new CountDownLatch(2);
+        AtomicBoolean parallel = new AtomicBoolean(true);
+
+        Runnable reader = () -> container.runShared(task -> {
+            bothReading.countDown();
+            try {
+                // only completes if the other reader is inside the container as well
+                if (!bothReading.await(5, TimeUnit.SECONDS)) {
+                    parallel.set(false);
+                }
+            } catch (InterruptedException e) {
+                parallel.set(false);
+            }
+        });
+
+        Thread first = new Thread(reader);
+        Thread second = new Thread(reader);
+        first.start();
+        second.start();
+        first.join();
+        second.join();
+
+        assertTrue(parallel.get());
+    }
+
+    @Test
+    public void testReadsAreExclusive() throws InterruptedException {
+        CompilerContainer container = new CompilerContainer();
+        AtomicInteger inside = new AtomicInteger();
+        AtomicBoolean overlapped = new AtomicBoolean(false);
+
+        Runnable reader = () -> {
+            for (int i = 0; i < 100; i++) {
+                container.run(task -> {
+                    if (inside.incrementAndGet() > 1) {
+                        overlapped.set(true);
+                    }
+                    Thread.yield();
+                    inside.decrementAndGet();
+                });
+                container.getShared(task -> {
+                    if (inside.get() > 0) {
+                        overlapped.set(true);
+                    }
+                    return null;
+                });
+            }
+        };
+
+        Thread first = new Thread(reader);
+        Thread second = new Thread(reader);
+        first.start();
+        second.start();
+        first.join();
+        second.join();
+
+        assertFalse(overlapped.get());
+    }
+
+    @Test
+    public void testWriterCancelsReaders() throws InterruptedException {
+        CompilerContainer container = new CompilerContainer();
+        CountDownLatch reading = new CountDownLatch(1);
+        AtomicBoolean canceled = new AtomicBoolean(false);
+
+        Thread reader = new Thread(() -> {
+            try {
+                container.get(task -> {
+                    reading.countDown();
+                    long deadline = System.currentTimeMillis() + 5000;
+                    while (System.currentTimeMillis() < deadline) {
+                        ProgressManager.checkCanceled();
+                    }
+                    return null;
+                });
+            } catch (ProcessCanceledException e) {
+                canceled.set(true);
+            }
+        });
+        reader.start();
+        assertTrue(reading.await(5, TimeUnit.SECONDS));
+
+        AtomicBoolean written = new AtomicBoolean(false);
+        container.initialize(() -> written.set(true));
+        reader.join();
+
+        assertTrue(written.get());
+        assertTrue(canceled.get());
+        assertFalse(container.isWriting());
+    }
+
+    @Test
+    public void testCancelDoesNotLeakAfterRead() throws InterruptedException {
+        CompilerContainer container = new CompilerContainer();
+        AtomicBoolean leaked = new AtomicBoolean(false);
+        AtomicBoolean stop = new AtomicBoolean(false);
+
+        Thread reader = new Thread(() -> {
+            while (!stop.get()) {
+                try {
+                    container.get(task -> {
+                        Thread.yield();
+                        ProgressManager.checkCanceled();
+                        return null;
+                    });
+                } catch (ProcessCanceledException ignored) {
+                    // canceled while reading, expected
+                }
+                try {
+                    // the read is over, a late cancel must not reach the rest of the task
+                    ProgressManager.checkCanceled();
+                } catch (ProcessCanceledException e) {
+                    leaked.set(true);
+                }
+            }
+        });
+        reader.start();
+        for (int i = 0; i < 1000; i++) {
+            container.initialize(() -> {});
+            Thread.yield();
+        }
+        stop.set(true);
+        reader.join();
+
+        assertFalse(leaked.get());
+    }
+}
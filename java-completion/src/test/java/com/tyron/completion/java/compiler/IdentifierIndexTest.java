@@ -0,0 +1,87 @@
+package com.tyron.completion.java.compiler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.tyron.builder.project.mock.MockFileManager;
+import com.tyron.builder.project.mock.MockJavaModule;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+public class IdentifierIndexTest {
+
+    private static final File FIRST = new File("First.java");
+    private static final File SECOND = new File("Second.java");
+
+    @Test
+    public void testFindFiles() {
+        IdentifierIndex index = new IdentifierIndex();
+        index.index(FIRST, "package com.test;\nclass First { List<String> list; }");
+        index.index(SECOND, "package com.other;\nimport com.test.First;\nclass Second {}");
+
+        assertEquals(set(FIRST, SECOND), index.findFiles("First"));
+        assertEquals(set(SECOND), index.findFiles("First", "other"));
+        assertEquals(set(FIRST), index.findFiles("List"));
+        assertTrue(index.findFiles("Lis").isEmpty());
+        assertTrue(index.findFiles("First", "missing").isEmpty());
+
+        assertTrue(index.contains(FIRST, "list"));
+        assertFalse(index.contains(SECOND, "list"));
+    }
+
+    @Test
+    public void testReindexReplacesTokens() {
+        IdentifierIndex index = new IdentifierIndex();
+        index.index(FIRST, "class First { int oldName; }");
+        index.onSnapshotChanged(FIRST, "class First { int newName; }");
+
+        assertTrue(index.findFiles("oldName").isEmpty());
+        assertEquals(set(FIRST), index.findFiles("newName"));
+
+        index.remove(FIRST);
+        assertFalse(index.isIndexed(FIRST));
+        assertTrue(index.findFiles("First").isEmpty());
+    }
+
+    @Test
+    public void testReindexModifiedFile() throws IOException {
+        File root = Files.createTempDirectory("identifier_index").toFile();
+        File file = new File(root, "Test.java");
+        write(file, "class Test { int oldName; }");
+        MockJavaModule module = new MockJavaModule(root, new MockFileManager(root));
+        module.addJavaFile(file);
+
+        IdentifierIndex index = new IdentifierIndex();
+        index.update(module);
+        assertEquals(set(file), index.findFiles("oldName"));
+
+        // changed outside of the editor, the tokens are stale until the next update
+        write(file, "class Test { int newName; }");
+        assertTrue(file.setLastModified(file.lastModified() + 2000));
+        assertFalse(index.isIndexed(file));
+
+        index.update(module);
+        assertTrue(index.isIndexed(file));
+        assertTrue(index.findFiles("oldName").isEmpty());
+        assertEquals(set(file), index.findFiles("newName"));
+    }
+
+    private static void write(File file, String contents) throws IOException {
+        Files.write(file.toPath(), contents.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Set<File> set(File... files) {
+        Set<File> set = new HashSet<>();
+        Collections.addAll(set, files);
+        return set;
+    }
+}
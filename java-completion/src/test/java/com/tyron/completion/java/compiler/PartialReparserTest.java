@@ -0,0 +1,134 @@
+package com.tyron.completion.java.compiler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.sun.source.tree.MethodInvocationTree;
+import com.sun.source.util.SourcePositions;
+import com.sun.source.util.TreePathScanner;
+import com.sun.source.util.Trees;
+import com.sun.tools.javac.api.JavacTaskImpl;
+import com.sun.tools.javac.api.JavacTool;
+import com.sun.tools.javac.tree.JCTree.JCCompilationUnit;
+import com.tyron.builder.model.SourceFileObject;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class PartialReparserTest {
+
+    private static final Path FILE = Paths.get("Main.java");
+
+    private static final String SOURCE = "class Main {\n" +
+                                         "    void first() {\n" +
+                                         "        int x = 1;\n" +
+                                         "    }\n" +
+                                         "    String second() {\n" +
+                                         "        return \"\".trim();\n" +
+                                         "    }\n" +
+                                         "}";
+
+    private JavacTaskImpl mTask;
+    private JCCompilationUnit mRoot;
+    private CharSequence mContents;
+
+    private void compile(String contents) throws IOException {
+        compile(new SourceFileObject(FILE, contents, Instant.now()));
+    }
+
+    private void compile(SourceFileObject file) throws IOException {
+        mContents = PartialReparser.getFixedContents(file);
+        mTask = (JavacTaskImpl) JavacTool.create()
+                .getTask(null, null, null, null, null, Collections.singletonList(file));
+        mRoot = (JCCompilationUnit) mTask.parse().iterator().next();
+        mTask.analyze();
+    }
+
+    private boolean reparse(String contents) {
+        SourceFileObject file = new SourceFileObject(FILE, contents, Instant.now());
+        if (PartialReparser.reparseMethodBody(mTask.getContext(), mRoot, mContents, file)) {
+            mContents = contents;
+            return true;
+        }
+        return false;
+    }
+
+    @Test
+    public void testReparseMethodBody() throws IOException {
+        compile(SOURCE);
+
+        String newSource = SOURCE.replace("int x = 1;", "String s = \"\";\n        s.length();");
+        assertTrue(reparse(newSource));
+
+        Trees trees = Trees.instance(mTask);
+        SourcePositions positions = trees.getSourcePositions();
+        List<String> invocations = new ArrayList<>();
+        new TreePathScanner<Void, Void>() {
+            @Override
+            public Void visitMethodInvocation(MethodInvocationTree node, Void unused) {
+                long start = positions.getStartPosition(mRoot, node);
+                long end = positions.getEndPosition(mRoot, node);
+                if (start >= 0 && end >= 0) {
+                    String text = newSource.substring((int) start, (int) end);
+                    invocations.add(text + ":" + trees.getTypeMirror(getCurrentPath()));
+                }
+                return super.visitMethodInvocation(node, unused);
+            }
+        }.scan(mRoot, null);
+
+        // the new invocation is attributed and the method after the edit has been shifted
+        assertEquals(2, invocations.size());
+        assertEquals("s.length():int", invocations.get(0));
+        assertEquals("\"\".trim():java.lang.String", invocations.get(1));
+    }
+
+    @Test
+    public void testEditOutsideMethodBody() throws IOException {
+        compile(SOURCE);
+        assertFalse(reparse(SOURCE.replace("void first()", "void renamed()")));
+    }
+
+    @Test
+    public void testLiveSourceHasNoParsedContents() throws IOException {
+        // the contents of this source are read from the file each time
+        Path file = Files.createTempDirectory("reparse").resolve("Main.java");
+        Files.write(file, SOURCE.getBytes(StandardCharsets.UTF_8));
+        compile(new SourceFileObject(file));
+
+        // the file now has the new contents as well, they can not be compared with the source
+        Files.write(file, SOURCE.replace("int x = 1;", "int x = 2;")
+                .getBytes(StandardCharsets.UTF_8));
+        assertNull(mContents);
+        assertNotNull(PartialReparser.getFixedContents(
+                new SourceFileObject(file, SOURCE, Instant.now())));
+    }
+
+    @Test
+    public void testEditOfSameLength() throws IOException {
+        compile(SOURCE);
+
+        // compared with the contents that were parsed, not with the current source of the unit
+        assertTrue(reparse(SOURCE.replace("int x = 1;", "int x = 2;")));
+        assertTrue(mRoot.toString().contains("int x = 2;"));
+        assertTrue(reparse(SOURCE.replace("int x = 1;", "int x = 3;")));
+        assertTrue(mRoot.toString().contains("int x = 3;"));
+    }
+
+    @Test
+    public void testUnbalancedBraces() throws IOException {
+        compile(SOURCE);
+        assertFalse(reparse(SOURCE.replace("int x = 1;", "int x = 1; }")));
+    }
+}
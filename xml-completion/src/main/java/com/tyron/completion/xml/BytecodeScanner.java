@@ -9,22 +9,43 @@ import com.google.common.collect.ImmutableSet;
 import com.tyron.builder.BuildModule;
 import com.tyron.completion.xml.util.PartialClassParser;
 
+import org.apache.bcel.Const;
 import org.apache.bcel.Repository;
+import org.apache.bcel.classfile.Attribute;
+import org.apache.bcel.classfile.ClassFormatException;
+import org.apache.bcel.classfile.Constant;
+import org.apache.bcel.classfile.ConstantClass;
+import org.apache.bcel.classfile.ConstantPool;
+import org.apache.bcel.classfile.ConstantUtf8;
+import org.apache.bcel.classfile.Field;
 import org.apache.bcel.classfile.JavaClass;
 import org.apache.bcel.classfile.Method;
 import org.apache.bcel.generic.Type;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
 /**
  * Scans jar files and saves all the class files that extends {@link View} and has the
@@ -56,39 +77,215 @@ public class BytecodeScanner {
         sIgnoredPaths = builder.build();
     }
 
-    public static void loadJar(File jar) throws IOException {
-        try (JarFile jarFile = new JarFile(jar)) {
-            iterateClasses(jarFile, element -> {
-                PartialClassParser classParser =
-                        new PartialClassParser(jar.getAbsolutePath(), element.getName());
-                try {
-                    Repository.addClass(classParser.parse());
-                } catch (IOException e) {
-                    // ignored, keep parsing other classes
+    /**
+     * The classes read from the bootstrap jar, kept so they don't have to be read again once
+     * the BCEL repository has been cleared
+     */
+    private static List<JavaClass> sBootstrapClasses;
+    private static String sBootstrapKey;
+
+    /**
+     * Reads the name and the super class of every class of the given jars. Each jar is read
+     * only once, and the jars are read in parallel. The classes are not added to the BCEL
+     * repository, see {@link #getHierarchy} and {@link #findViewClasses} to find the views.
+     *
+     * @param jars the jars to read
+     * @return the classes of each jar, a jar that cannot be read is not in the map
+     */
+    public static Map<File, List<JavaClass>> readJars(Collection<File> jars) {
+        List<File> files = new ArrayList<>(new LinkedHashSet<>(jars));
+        Map<File, List<JavaClass>> classesByJar = new LinkedHashMap<>();
+        if (files.isEmpty()) {
+            return classesByJar;
+        }
+
+        int threads = Math.min(files.size(), Runtime.getRuntime().availableProcessors());
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threads));
+        try {
+            List<Future<List<JavaClass>>> futures = new ArrayList<>();
+            for (File file : files) {
+                futures.add(executor.submit(() -> readClasses(file, name -> true)));
+            }
+            for (int i = 0; i < files.size(); i++) {
+                List<JavaClass> classes = getResult(futures.get(i));
+                if (classes != null) {
+                    classesByJar.put(files.get(i), classes);
                 }
-            });
+            }
+        } finally {
+            executor.shutdownNow();
         }
+        return classesByJar;
     }
 
-    public static List<JavaClass> scan(File file) throws IOException {
-        List<JavaClass> viewClasses = new ArrayList<>();
-        try (JarFile jarFile = new JarFile(file)) {
-            iterateClasses(jarFile, element -> {
-                String fqn = element.getName().replace('/', '.')
-                        .substring(0, element.getName().length() - ".class".length());
-                try {
-                    JavaClass javaClass = Repository.lookupClass(fqn);
-                    if (isViewClass(javaClass)) {
-                        viewClasses.add(javaClass);
-                    }
-                } catch (ClassNotFoundException e) {
-                    // should not happen, the class should already be loaded here.
-                }
-            });
+    /**
+     * @return the classes of the bootstrap jar, empty if the bootstrap jar cannot be read
+     */
+    public static List<JavaClass> getBootstrapClasses() {
+        return readBootstrapClasses();
+    }
+
+    /**
+     * Finds the classes of a jar that are views or that may be views depending on the other
+     * jars of the classpath. A class whose super classes leave the jar at a class of the java
+     * platform can never be a view so it is left out, the others are kept by name so whether
+     * they are views can be decided once the classes of every jar are known.
+     *
+     * @param classes the classes of a single jar
+     * @return the names of the classes that are kept, mapped to the name of their super class
+     */
+    public static Map<String, String> getHierarchy(Collection<JavaClass> classes) {
+        Map<String, String> superClasses = new HashMap<>();
+        for (JavaClass javaClass : classes) {
+            superClasses.put(javaClass.getClassName(), javaClass.getSuperclassName());
+        }
+
+        Map<String, Boolean> kept = new HashMap<>();
+        Map<String, String> hierarchy = new LinkedHashMap<>();
+        for (JavaClass javaClass : classes) {
+            String className = javaClass.getClassName();
+            if (isKept(className, superClasses, kept)) {
+                hierarchy.put(className, javaClass.getSuperclassName());
+            }
+        }
+        return hierarchy;
+    }
+
+    /**
+     * Walks the super classes of the class inside the jar until a class whose result is known,
+     * the result is then remembered for every class on the way
+     */
+    private static boolean isKept(String className, Map<String, String> superClasses,
+                                  Map<String, Boolean> kept) {
+        List<String> chain = new ArrayList<>();
+        String current = className;
+        boolean result;
+        while (true) {
+            Boolean known = kept.get(current);
+            if (known != null) {
+                result = known;
+                break;
+            }
+            if (View.class.getName().equals(current)) {
+                result = true;
+                break;
+            }
+            if (!superClasses.containsKey(current)) {
+                // the hierarchy leaves the jar, only the platform is known not to have views
+                result = !isPlatformClass(current);
+                break;
+            }
+            chain.add(current);
+            current = superClasses.get(current);
+            if (current == null || chain.contains(current)) {
+                result = false;
+                break;
+            }
+        }
+
+        for (String name : chain) {
+            kept.put(name, result);
+        }
+        return result;
+    }
+
+    private static boolean isPlatformClass(String className) {
+        return className.startsWith("java.") || className.startsWith("javax.");
+    }
+
+    /**
+     * Finds the view classes given the hierarchies of every jar of the classpath, including
+     * the bootstrap jar.
+     *
+     * @param superClasses the classes returned by {@link #getHierarchy} for each jar
+     * @return the names of the classes that extend {@link View}, including {@link View} itself
+     */
+    public static Set<String> findViewClasses(Map<String, String> superClasses) {
+        Map<String, Boolean> isView = new HashMap<>();
+        isView.put(View.class.getName(), true);
+        Set<String> viewClasses = new LinkedHashSet<>();
+        for (String className : superClasses.keySet()) {
+            if (isView(className, superClasses, isView)) {
+                viewClasses.add(className);
+            }
         }
         return viewClasses;
     }
 
+    /**
+     * Walks the super classes of the class until a class whose result is known, the result is
+     * then remembered for every class on the way
+     */
+    private static boolean isView(String className, Map<String, String> superClasses,
+                                  Map<String, Boolean> isView) {
+        List<String> chain = new ArrayList<>();
+        String current = className;
+        Boolean result = null;
+        while (current != null) {
+            result = isView.get(current);
+            if (result != null) {
+                break;
+            }
+            chain.add(current);
+
+            current = superClasses.get(current);
+            if (chain.contains(current)) {
+                break;
+            }
+        }
+
+        boolean value = result != null && result;
+        for (String name : chain) {
+            isView.put(name, value);
+        }
+        return value;
+    }
+
+    /**
+     * Creates a class that only has a name and a super class, which is enough to walk the
+     * class hierarchy without reading the jar the class comes from again.
+     *
+     * @param className the fully qualified name of the class
+     * @param superClassName the fully qualified name of its super class
+     */
+    public static JavaClass newClass(String className, String superClassName) {
+        Constant[] constants = new Constant[]{
+                null,
+                new ConstantUtf8(className.replace('.', '/')),
+                new ConstantClass(1),
+                new ConstantUtf8(superClassName.replace('.', '/')),
+                new ConstantClass(3)
+        };
+        return new JavaClass(2, 4, className.replace('.', '/') + ".class", Const.MAJOR_1_8,
+                Const.MINOR_1_8, Const.ACC_PUBLIC, new ConstantPool(constants), new int[0],
+                new Field[0], new Method[0], new Attribute[0]);
+    }
+
+    /**
+     * Reads the name and the super class of every class in the jar, the jar is opened once
+     * and only the beginning of each class file is inflated
+     */
+    private static List<JavaClass> readClasses(File jar, Predicate<String> filter)
+            throws IOException {
+        List<JavaClass> classes = new ArrayList<>();
+        try (ZipFile zipFile = new ZipFile(jar)) {
+            Enumeration<? extends ZipEntry> entries = zipFile.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                String name = entry.getName();
+                if (!CLASS_NAME_FILTER.test(name) || !filter.test(name)) {
+                    continue;
+                }
+                try (InputStream inputStream = zipFile.getInputStream(entry)) {
+                    classes.add(new PartialClassParser(inputStream, name).parse());
+                } catch (IOException | ClassFormatException e) {
+                    // ignored, keep parsing other classes
+                }
+            }
+        }
+        return classes;
+    }
+
     public static boolean isViewGroup(JavaClass javaClass) {
         JavaClass[] superClasses = getSuperClasses(javaClass);
         return Arrays.stream(superClasses)
@@ -100,31 +297,35 @@ public class BytecodeScanner {
             return;
         }
 
+        List<JavaClass> classes = readBootstrapClasses();
+        synchronized (Repository.class) {
+            for (JavaClass javaClass : classes) {
+                Repository.addClass(javaClass);
+            }
+        }
+    }
+
+    private static synchronized List<JavaClass> readBootstrapClasses() {
         File androidJar = BuildModule.getAndroidJar();
-        if (androidJar != null && androidJar.exists()) {
-            try (JarFile jarFile = new JarFile(androidJar)) {
-                iterateClasses(jarFile, element -> {
-                    String name = element.getName();
-                    String packagePath = name.substring(0, name.lastIndexOf('/'));
-                    if (sIgnoredPaths.contains(packagePath)) {
-                        return;
-                    }
-                    if (packagePath.startsWith("java/")) {
-                        return;
-                    }
-                    PartialClassParser classParser =
-                            new PartialClassParser(androidJar.getAbsolutePath(), name);
-                    try {
-                        Repository.addClass(classParser.parse());
-                    } catch (IOException e) {
-                        // ignored, keep parsing other classes
-                    }
+        if (androidJar == null || !androidJar.exists()) {
+            return Collections.emptyList();
+        }
 
+        String key = androidJar.getAbsolutePath() + ':' + androidJar.length() + ':' +
+                     androidJar.lastModified();
+        if (!key.equals(sBootstrapKey)) {
+            try {
+                sBootstrapClasses = readClasses(androidJar, name -> {
+                    String packagePath = name.substring(0, Math.max(0, name.lastIndexOf('/')));
+                    return !sIgnoredPaths.contains(packagePath) &&
+                           !packagePath.startsWith("java/");
                 });
+                sBootstrapKey = key;
             } catch (IOException e) {
-                // ignored
+                return Collections.emptyList();
             }
         }
+        return sBootstrapClasses;
     }
 
     private static boolean needScanBootstrap() {
@@ -136,12 +337,6 @@ public class BytecodeScanner {
         }
     }
 
-    private static boolean isViewClass(JavaClass javaClass) {
-        JavaClass[] superClasses = getSuperClasses(javaClass);
-        return Arrays.stream(superClasses)
-                .anyMatch(it -> View.class.getName().equals(it.getClassName()));
-    }
-
     /**
      * Get the array of java classes even if the root class does not exist
      *
@@ -167,6 +362,18 @@ public class BytecodeScanner {
         return superClasses.toArray(new JavaClass[0]);
     }
 
+    private static <T> T getResult(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            // the jar cannot be read, its classes are skipped
+            return null;
+        }
+    }
+
     private static boolean containsViewConstructors(Method[] methods) {
         for (Method method : methods) {
             if (!"<init>".equals(method.getName())) {
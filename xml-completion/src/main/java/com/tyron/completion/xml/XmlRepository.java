@@ -21,6 +21,7 @@ import android.widget.TextView;
 import android.widget.ViewFlipper;
 import android.widget.ViewSwitcher;
 
+import com.tyron.builder.BuildModule;
 import com.tyron.builder.project.Project;
 import com.tyron.builder.project.api.AndroidModule;
 import com.tyron.common.ApplicationProvider;
@@ -31,6 +32,7 @@ import com.tyron.completion.xml.model.DeclareStyleable;
 import com.tyron.completion.xml.model.Format;
 import com.tyron.xml.completion.repository.ResourceRepository;
 import com.tyron.completion.xml.util.StyleUtils;
+import com.tyron.completion.xml.util.ViewIndexFile;
 
 import org.apache.bcel.Repository;
 import org.apache.bcel.classfile.JavaClass;
@@ -43,6 +45,9 @@ import java.io.FileReader;
 import java.io.IOException;
 import java.io.Reader;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -85,44 +90,101 @@ public class XmlRepository {
         if (mInitialized) {
             return;
         }
-        BytecodeScanner.scanBootstrapIfNeeded();
-
         mRepository = new ResourceRepository(module);
         mRepository.initialize();
 
+        addViewClasses(module);
+
+        addFrameworkViews();
+
+        Repository.clearCache();
+
+        mInitialized = true;
+    }
+
+    /**
+     * Adds the view classes of the libraries of the module. The classes are read from the
+     * view index of each jar, only the jars that have not been indexed yet are scanned. The
+     * bootstrap jar is indexed like the libraries so it is not read again once it has an
+     * index.
+     */
+    private void addViewClasses(AndroidModule module) {
+        File indexDirectory = new File(module.getBuildDirectory(), "intermediate/view_index");
+
+        Set<File> jars = new LinkedHashSet<>();
+        File androidJar = BuildModule.getAndroidJar();
+        if (androidJar != null && androidJar.exists()) {
+            jars.add(androidJar);
+        }
         for (File library : module.getLibraries()) {
             File parent = library.getParentFile();
-            if (parent == null) {
-                continue;
+            if (parent != null) {
+                File classesFile = new File(parent, "classes.jar");
+                if (classesFile.exists()) {
+                    jars.add(classesFile);
+                }
             }
-            File classesFile = new File(parent, "classes.jar");
-            if (classesFile.exists()) {
-                try {
-                    BytecodeScanner.loadJar(classesFile);
-                } catch (IOException ignored) {
+            jars.add(library);
+        }
 
-                }
+        Map<File, Map<String, String>> superClasses = new LinkedHashMap<>();
+        List<File> toScan = new ArrayList<>();
+        for (File jar : jars) {
+            ViewIndexFile index = ViewIndexFile.load(jar, indexDirectory);
+            if (index == null) {
+                toScan.add(jar);
+            } else {
+                superClasses.put(jar, index.getSuperClasses());
             }
         }
 
-        for (File library : module.getLibraries()) {
-            try {
-                List<JavaClass> scan =
-                        BytecodeScanner.scan(library);
-                for (JavaClass javaClass : scan) {
-                    StyleUtils.putStyles(javaClass);
-                    mJavaViewClasses.put(javaClass.getClassName(), javaClass);
+        if (!toScan.isEmpty()) {
+            Map<File, List<JavaClass>> scanned = new LinkedHashMap<>();
+            if (toScan.remove(androidJar)) {
+                scanned.put(androidJar, BytecodeScanner.getBootstrapClasses());
+            }
+            scanned.putAll(BytecodeScanner.readJars(toScan));
+
+            for (Map.Entry<File, List<JavaClass>> entry : scanned.entrySet()) {
+                Map<String, String> jarSuperClasses =
+                        BytecodeScanner.getHierarchy(entry.getValue());
+                superClasses.put(entry.getKey(), jarSuperClasses);
+                try {
+                    ViewIndexFile.create(entry.getKey(), indexDirectory, jarSuperClasses);
+                } catch (IOException e) {
+                    // the jar is scanned again next time
                 }
-            } catch (IOException e) {
-                e.printStackTrace();
             }
         }
 
-        addFrameworkViews();
-
-        Repository.clearCache();
+        // the super classes of a view may come from another jar, so the views are only
+        // resolved once the classes of every jar are known
+        Map<String, String> allSuperClasses = new HashMap<>();
+        for (Map<String, String> jarSuperClasses : superClasses.values()) {
+            allSuperClasses.putAll(jarSuperClasses);
+        }
+        Map<String, JavaClass> classes = new HashMap<>();
+        for (String className : BytecodeScanner.findViewClasses(allSuperClasses)) {
+            JavaClass javaClass =
+                    BytecodeScanner.newClass(className, allSuperClasses.get(className));
+            Repository.addClass(javaClass);
+            classes.put(className, javaClass);
+        }
 
-        mInitialized = true;
+        for (File library : module.getLibraries()) {
+            Map<String, String> librarySuperClasses = superClasses.get(library);
+            if (librarySuperClasses == null) {
+                continue;
+            }
+            for (String className : librarySuperClasses.keySet()) {
+                JavaClass javaClass = classes.get(className);
+                if (javaClass == null) {
+                    continue;
+                }
+                StyleUtils.putStyles(javaClass);
+                mJavaViewClasses.put(javaClass.getClassName(), javaClass);
+            }
+        }
     }
 
     private void addFrameworkViews() {
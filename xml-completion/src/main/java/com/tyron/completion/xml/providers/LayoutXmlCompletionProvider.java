@@ -21,26 +21,39 @@ import com.tyron.completion.xml.util.AndroidAttributeUtils;
 import com.tyron.completion.xml.util.AndroidResourcesUtils;
 import com.tyron.completion.xml.util.AndroidXmlTagUtils;
 import com.tyron.completion.xml.util.AttributeValueUtils;
+import com.tyron.completion.xml.util.IncrementalDOMParser;
 import com.tyron.xml.completion.util.DOMUtils;
 import com.tyron.completion.xml.util.XmlUtils;
 
 import org.eclipse.lemminx.dom.DOMAttr;
 import org.eclipse.lemminx.dom.DOMDocument;
-import org.eclipse.lemminx.dom.DOMNode;
-import org.eclipse.lemminx.dom.DOMParser;
-import org.eclipse.lemminx.uriresolver.URIResolverExtensionManager;
 import org.openjdk.javax.xml.parsers.ParserConfigurationException;
 import org.xml.sax.SAXException;
 import org.xmlpull.v1.XmlPullParserException;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 @SuppressLint("NewApi")
 public class LayoutXmlCompletionProvider extends CompletionProvider {
 
+    /**
+     * The number of documents whose DOM is kept between completions
+     */
+    private static final int MAX_DOCUMENTS = 8;
+
     private CachedCompletion mCachedCompletion;
 
+    private final Map<File, IncrementalDOMParser> mParsers =
+            new LinkedHashMap<File, IncrementalDOMParser>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<File, IncrementalDOMParser> eldest) {
+                    return size() > MAX_DOCUMENTS;
+                }
+            };
+
     public LayoutXmlCompletionProvider() {
 
     }
@@ -64,18 +77,19 @@ public class LayoutXmlCompletionProvider extends CompletionProvider {
 
             ResourceNamespace namespace =
                     ResourceNamespace.fromPackageName(((AndroidModule) params.getModule()).getPackageName());
-            DOMDocument parsed = DOMParser.getInstance()
-                    .parse(contents, namespace.getXmlNamespaceUri(),
-                           new URIResolverExtensionManager());
-            DOMNode node = parsed.findNodeAt((int) params.getIndex());
+            IncrementalDOMParser.Result result =
+                    getParser(params.getFile(), namespace.getXmlNamespaceUri())
+                            .parse(contents, (int) params.getIndex());
+            DOMDocument parsed = result.getDocument();
+            int index = result.toDocumentOffset((int) params.getIndex());
 
             XmlCompletionType completionType =
-                    XmlUtils.getCompletionType(parsed, params.getIndex());
+                    XmlUtils.getCompletionType(parsed, index);
             if (completionType == XmlCompletionType.UNKNOWN) {
                 return CompletionList.EMPTY;
             }
 
-            String prefix = XmlUtils.getPrefix(parsed, params.getIndex(), completionType);
+            String prefix = XmlUtils.getPrefix(parsed, index, completionType);
             if (prefix == null) {
                 return CompletionList.EMPTY;
             }
@@ -90,7 +104,7 @@ public class LayoutXmlCompletionProvider extends CompletionProvider {
             CompletionList.Builder builder =
                     completeInternal(params.getProject(), ((AndroidModule) params.getModule()),
                                      repository, parsed, prefix, completionType, namespace,
-                                     params.getIndex());
+                                     index);
             CompletionList build = builder.build();
             mCachedCompletion =
                     new CachedCompletion(params.getFile(), params.getLine(), params.getColumn(),
@@ -103,6 +117,15 @@ public class LayoutXmlCompletionProvider extends CompletionProvider {
         return CompletionList.EMPTY;
     }
 
+    private synchronized IncrementalDOMParser getParser(File file, String uri) {
+        IncrementalDOMParser parser = mParsers.get(file);
+        if (parser == null || !uri.equals(parser.getUri())) {
+            parser = new IncrementalDOMParser(uri);
+            mParsers.put(file, parser);
+        }
+        return parser;
+    }
+
     @NonNull
     @RequiresApi(api = Build.VERSION_CODES.N)
     protected CompletionList.Builder completeInternal(Project project, AndroidModule module,
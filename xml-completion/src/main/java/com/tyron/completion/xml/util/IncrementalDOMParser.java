@@ -0,0 +1,218 @@
+package com.tyron.completion.xml.util;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.eclipse.lemminx.dom.DOMDocument;
+import org.eclipse.lemminx.dom.DOMElement;
+import org.eclipse.lemminx.dom.DOMNode;
+import org.eclipse.lemminx.dom.DOMParser;
+import org.eclipse.lemminx.uriresolver.URIResolverExtensionManager;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps the DOM of an open document between completion requests, so typing inside an element
+ * does not parse the whole document again.
+ *
+ * <p>The new contents are compared with the contents of the last full parse. If the edit is
+ * inside a closed element that is not the root element, only that element is parsed again,
+ * wrapped in the start and end tags of its ancestors so the namespaces and the parent tags
+ * are still known. The resulting document only contains that element and its ancestors, the
+ * offsets of the contents are translated to offsets in it with {@link Result#toDocumentOffset}.
+ * Any edit that changes the structure around the element parses the whole document again.</p>
+ */
+public class IncrementalDOMParser {
+
+    public static class Result {
+
+        private final DOMDocument mDocument;
+        private final int mOffset;
+
+        private Result(DOMDocument document, int offset) {
+            mDocument = document;
+            mOffset = offset;
+        }
+
+        @NonNull
+        public DOMDocument getDocument() {
+            return mDocument;
+        }
+
+        /**
+         * @param offset an offset in the contents that were parsed
+         * @return the same offset in the text of {@link #getDocument()}
+         */
+        public int toDocumentOffset(int offset) {
+            return offset - mOffset;
+        }
+    }
+
+    private final String mUri;
+
+    private String mText;
+    private DOMDocument mDocument;
+
+    private String mLastContents;
+    private Result mLastResult;
+    private int mLastStart;
+    private int mLastEnd;
+
+    public IncrementalDOMParser(String uri) {
+        mUri = uri;
+    }
+
+    public String getUri() {
+        return mUri;
+    }
+
+    /**
+     * Parses the new contents of the document
+     *
+     * @param contents the current contents of the document
+     * @param cursor the offset the document is queried at, it has to be inside the part of
+     *               the contents that is parsed
+     */
+    @NonNull
+    public synchronized Result parse(@NonNull String contents, int cursor) {
+        if (mDocument != null) {
+            if (contents.equals(mText)) {
+                return new Result(mDocument, 0);
+            }
+            if (contents.equals(mLastContents) && cursor >= mLastStart && cursor <= mLastEnd) {
+                return mLastResult;
+            }
+            Result result = reparse(contents, cursor);
+            if (result != null) {
+                return result;
+            }
+        }
+
+        mDocument = parseText(contents);
+        mText = contents;
+        mLastContents = null;
+        mLastResult = null;
+        return new Result(mDocument, 0);
+    }
+
+    @Nullable
+    private Result reparse(String contents, int cursor) {
+        int oldLength = mText.length();
+        int newLength = contents.length();
+        int minLength = Math.min(oldLength, newLength);
+
+        int start = 0;
+        while (start < minLength && mText.charAt(start) == contents.charAt(start)) {
+            start++;
+        }
+        int suffix = 0;
+        while (suffix < minLength - start &&
+               mText.charAt(oldLength - suffix - 1) == contents.charAt(newLength - suffix - 1)) {
+            suffix++;
+        }
+        int oldEnd = oldLength - suffix;
+        int delta = newLength - oldLength;
+
+        DOMElement element = findEnclosingElement(mDocument, start, oldEnd);
+        if (element == null || !(element.getParentNode() instanceof DOMElement)) {
+            // the edit is not inside an element below the root element
+            return null;
+        }
+        int elementStart = element.getStart();
+        int elementEnd = element.getEnd() + delta;
+        if (cursor < elementStart || cursor > elementEnd) {
+            return null;
+        }
+
+        List<DOMElement> ancestors = new ArrayList<>();
+        for (DOMNode parent = element.getParentNode(); parent instanceof DOMElement;
+             parent = parent.getParentNode()) {
+            DOMElement ancestor = (DOMElement) parent;
+            if (!ancestor.isStartTagClosed() || ancestor.getTagName() == null) {
+                return null;
+            }
+            ancestors.add(0, ancestor);
+        }
+
+        StringBuilder builder = new StringBuilder();
+        for (DOMElement ancestor : ancestors) {
+            builder.append(mText, ancestor.getStart(), ancestor.getStartTagCloseOffset() + 1);
+        }
+        int offset = elementStart - builder.length();
+        builder.append(contents, elementStart, elementEnd);
+        for (int i = ancestors.size() - 1; i >= 0; i--) {
+            builder.append("</").append(ancestors.get(i).getTagName()).append('>');
+        }
+
+        DOMDocument document = parseText(builder.toString());
+        if (!isSameStructure(document, ancestors, elementStart - offset, elementEnd - offset)) {
+            return null;
+        }
+        mLastContents = contents;
+        mLastResult = new Result(document, offset);
+        mLastStart = elementStart;
+        mLastEnd = elementEnd;
+        return mLastResult;
+    }
+
+    private DOMDocument parseText(String text) {
+        return DOMParser.getInstance().parse(text, mUri, new URIResolverExtensionManager());
+    }
+
+    /**
+     * @return the deepest closed element whose range contains the given range, without
+     * starting or ending at the same offset
+     */
+    @Nullable
+    private static DOMElement findEnclosingElement(DOMNode root, int start, int end) {
+        DOMElement enclosing = null;
+        DOMNode node = root;
+        while (node != null) {
+            DOMNode next = null;
+            for (DOMNode child : node.getChildren()) {
+                if (child.getStart() >= start) {
+                    break;
+                }
+                if (child instanceof DOMElement && child.isClosed() && end < child.getEnd()) {
+                    next = child;
+                    break;
+                }
+            }
+            if (next != null) {
+                enclosing = (DOMElement) next;
+            }
+            node = next;
+        }
+        return enclosing;
+    }
+
+    /**
+     * Checks that the parsed text has only the ancestors, one inside the other, and that the
+     * edited element still ends where it is expected to, so it is parsed the same way it would
+     * be in the whole document.
+     */
+    private static boolean isSameStructure(DOMDocument document, List<DOMElement> ancestors,
+                                           int elementStart, int elementEnd) {
+        DOMNode node = document;
+        for (DOMElement ancestor : ancestors) {
+            List<DOMNode> children = node.getChildren();
+            if (children.size() != 1 || !(children.get(0) instanceof DOMElement)) {
+                return false;
+            }
+            DOMElement parsed = (DOMElement) children.get(0);
+            if (!ancestor.getTagName().equals(parsed.getTagName()) || !parsed.isClosed()) {
+                return false;
+            }
+            node = parsed;
+        }
+
+        List<DOMNode> children = node.getChildren();
+        if (children.size() != 1 || !(children.get(0) instanceof DOMElement)) {
+            return false;
+        }
+        DOMNode element = children.get(0);
+        return element.isClosed() && element.getStart() == elementStart &&
+               element.getEnd() == elementEnd;
+    }
+}
@@ -3,16 +3,22 @@ package com.tyron.completion.xml.util;
 import org.apache.bcel.Const;
 import org.apache.bcel.classfile.Attribute;
 import org.apache.bcel.classfile.ClassFormatException;
+import org.apache.bcel.classfile.Constant;
+import org.apache.bcel.classfile.ConstantClass;
 import org.apache.bcel.classfile.ConstantPool;
+import org.apache.bcel.classfile.ConstantUtf8;
 import org.apache.bcel.classfile.Field;
 import org.apache.bcel.classfile.JavaClass;
 import org.apache.bcel.classfile.Method;
 
 import java.io.BufferedInputStream;
 import java.io.DataInputStream;
+import java.io.EOFException;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 
@@ -29,6 +35,8 @@ public final class PartialClassParser {
     private int accessFlags; // Access rights of parsed class
     private int[] interfaces; // Names of implemented interfaces
     private ConstantPool constantPool; // collection of constants
+    private String[] utf8Constants; // strings of the constant pool while it is read
+    private int[] classConstants; // name indices of the class entries while it is read
     private Field[] fields; // class fields, i.e., its variables
     private Method[] methods; // methods defined in the class
     private Attribute[] attributes; // attributes defined in the class
@@ -119,6 +127,8 @@ public final class PartialClassParser {
             readConstantPool();
             // Get class information
             readClassInfo();
+            // Keep only the names of the class and of its super class
+            compactConstantPool();
             // Get interface information, i.e., implemented interfaces
 //            readInterfaces();
 //            /****************** Read class fields and methods ***************/
@@ -206,12 +216,97 @@ public final class PartialClassParser {
 
 
     /**
-     * Reads constant pool entries.
+     * Reads constant pool entries. Only the strings and the class entries are kept, the other
+     * entries are skipped without creating any object for them.
      * @throws  IOException
      * @throws org.apache.bcel.classfile.ClassFormatException
      */
     private void readConstantPool() throws IOException, org.apache.bcel.classfile.ClassFormatException {
-        constantPool = new ConstantPool(dataInputStream);
+        final int count = dataInputStream.readUnsignedShort();
+        utf8Constants = new String[count];
+        classConstants = new int[count];
+        for (int i = 1; i < count; i++) {
+            final byte tag = dataInputStream.readByte();
+            switch (tag) {
+                case Const.CONSTANT_Utf8:
+                    utf8Constants[i] = dataInputStream.readUTF();
+                    break;
+                case Const.CONSTANT_Class:
+                    classConstants[i] = dataInputStream.readUnsignedShort();
+                    break;
+                case Const.CONSTANT_Long:
+                case Const.CONSTANT_Double:
+                    skipFully(8);
+                    // takes two entries of the constant pool
+                    i++;
+                    break;
+                case Const.CONSTANT_Integer:
+                case Const.CONSTANT_Float:
+                case Const.CONSTANT_Fieldref:
+                case Const.CONSTANT_Methodref:
+                case Const.CONSTANT_InterfaceMethodref:
+                case Const.CONSTANT_NameAndType:
+                case Const.CONSTANT_Dynamic:
+                case Const.CONSTANT_InvokeDynamic:
+                    skipFully(4);
+                    break;
+                case Const.CONSTANT_MethodHandle:
+                    skipFully(3);
+                    break;
+                case Const.CONSTANT_String:
+                case Const.CONSTANT_MethodType:
+                case Const.CONSTANT_Module:
+                case Const.CONSTANT_Package:
+                    skipFully(2);
+                    break;
+                default:
+                    throw new org.apache.bcel.classfile.ClassFormatException("Invalid constant pool tag " + tag + " in " + fileName);
+            }
+        }
+    }
+
+
+    /**
+     * Replaces the constant pool with one that only has the name of the class and of its
+     * super class, which is all that is needed to walk the class hierarchy
+     * @throws org.apache.bcel.classfile.ClassFormatException
+     */
+    private void compactConstantPool() throws org.apache.bcel.classfile.ClassFormatException {
+        final List<Constant> constants = new ArrayList<>(5);
+        constants.add(null);
+        constants.add(new ConstantUtf8(getClassConstant(classNameIndex)));
+        constants.add(new ConstantClass(1));
+        classNameIndex = 2;
+        if (superclassNameIndex != 0) {
+            constants.add(new ConstantUtf8(getClassConstant(superclassNameIndex)));
+            constants.add(new ConstantClass(3));
+            superclassNameIndex = 4;
+        }
+        constantPool = new ConstantPool(constants.toArray(new Constant[0]));
+        utf8Constants = null;
+        classConstants = null;
+    }
+
+
+    private String getClassConstant(final int index) throws org.apache.bcel.classfile.ClassFormatException {
+        if (index <= 0 || index >= classConstants.length || classConstants[index] <= 0
+            || classConstants[index] >= utf8Constants.length
+            || utf8Constants[classConstants[index]] == null) {
+            throw new org.apache.bcel.classfile.ClassFormatException("Invalid class constant " + index + " in " + fileName);
+        }
+        return utf8Constants[classConstants[index]];
+    }
+
+
+    private void skipFully(final int length) throws IOException {
+        int remaining = length;
+        while (remaining > 0) {
+            final int skipped = dataInputStream.skipBytes(remaining);
+            if (skipped <= 0) {
+                throw new EOFException("Unexpected end of " + fileName);
+            }
+            remaining -= skipped;
+        }
     }
 
 
@@ -0,0 +1,189 @@
+package com.tyron.completion.xml.util;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * An on-disk index of the classes of a jar file that are views or may be views, along with
+ * the super class of each of them. Whether a class is a view can depend on classes of other
+ * jars, so only the super class names are stored and the views are resolved once the indices
+ * of every jar of the classpath are loaded, see {@link
+ * com.tyron.completion.xml.BytecodeScanner#findViewClasses}. Classes whose super classes only
+ * lead to the java platform are left out.
+ *
+ * The index is reused as long as the contents of the jar it was created from have not
+ * changed. The content hash of the jar is only compared if its size or last modified time
+ * are not the same anymore.
+ *
+ * File layout:
+ * <pre>
+ *     int     magic
+ *     int     version
+ *     long    jar size
+ *     long    jar last modified time
+ *     byte[16] jar content hash
+ *     int     class count
+ *     entries each entry is the name of the class followed by the name of its super class,
+ *             both in modified UTF-8
+ * </pre>
+ */
+public class ViewIndexFile {
+
+    private static final int MAGIC = 0x56494458; // VIDX
+    private static final int VERSION = 2;
+    private static final int HASH_LENGTH = 16;
+
+    /**
+     * Loads the index of the given jar file from the index directory.
+     *
+     * @param jar The jar file that was indexed
+     * @param indexDirectory The directory where the index files are stored
+     * @return The index of the jar file, or null if it does not exist or is out of date
+     */
+    @Nullable
+    public static ViewIndexFile load(@NonNull File jar, @NonNull File indexDirectory) {
+        File indexFile = getIndexFile(jar, indexDirectory);
+        if (!indexFile.isFile()) {
+            return null;
+        }
+
+        boolean touched;
+        Map<String, String> superClasses = new LinkedHashMap<>();
+        byte[] storedHash = new byte[HASH_LENGTH];
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(indexFile)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return null;
+            }
+
+            long size = in.readLong();
+            long lastModified = in.readLong();
+            in.readFully(storedHash);
+            touched = size != jar.length() || lastModified != jar.lastModified();
+            if (touched && !Arrays.equals(storedHash, hash(jar))) {
+                return null;
+            }
+
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                superClasses.put(in.readUTF(), in.readUTF());
+            }
+        } catch (IOException e) {
+            return null;
+        }
+
+        if (touched) {
+            // the jar has only been touched, save its new size and time for the next time
+            try {
+                write(indexFile, jar, storedHash, superClasses);
+            } catch (IOException ignored) {
+                // the hash is compared again next time
+            }
+        }
+        return new ViewIndexFile(jar, superClasses);
+    }
+
+    /**
+     * Creates the index of the jar file, replacing the existing one.
+     *
+     * @param jar The jar file that was scanned
+     * @param indexDirectory The directory where the index files are stored
+     * @param superClasses The classes of the jar that may be views, mapped to the name of
+     *                     their super class
+     * @return The index of the jar file
+     * @throws IOException if the index cannot be written
+     */
+    @NonNull
+    public static ViewIndexFile create(@NonNull File jar,
+                                       @NonNull File indexDirectory,
+                                       @NonNull Map<String, String> superClasses)
+            throws IOException {
+        File indexFile = getIndexFile(jar, indexDirectory);
+        Map<String, String> copy = new LinkedHashMap<>(superClasses);
+        write(indexFile, jar, hash(jar), copy);
+        return new ViewIndexFile(jar, copy);
+    }
+
+    @NonNull
+    private static File getIndexFile(File jar, File indexDirectory) {
+        String path = jar.getAbsolutePath();
+        String name = jar.getParentFile() == null
+                ? jar.getName()
+                : jar.getParentFile().getName() + "_" + jar.getName();
+        return new File(indexDirectory,
+                name + "_" + Integer.toHexString(path.hashCode()) + ".vidx");
+    }
+
+    private static byte[] hash(File jar) throws IOException {
+        return Files.asByteSource(jar).hash(Hashing.murmur3_128()).asBytes();
+    }
+
+    private static void write(File indexFile,
+                              File jar,
+                              byte[] hash,
+                              Map<String, String> superClasses) throws IOException {
+        File parent = indexFile.getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Unable to create directory " + parent);
+        }
+
+        File temp = new File(indexFile.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(jar.length());
+            out.writeLong(jar.lastModified());
+            out.write(hash, 0, HASH_LENGTH);
+            out.writeInt(superClasses.size());
+            for (Map.Entry<String, String> entry : superClasses.entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeUTF(entry.getValue());
+            }
+        }
+        if (indexFile.exists() && !indexFile.delete()) {
+            throw new IOException("Unable to delete old index " + indexFile);
+        }
+        if (!temp.renameTo(indexFile)) {
+            throw new IOException("Unable to create index " + indexFile);
+        }
+    }
+
+    private final File mJarFile;
+    private final Map<String, String> mSuperClasses;
+
+    private ViewIndexFile(File jarFile, Map<String, String> superClasses) {
+        mJarFile = jarFile;
+        mSuperClasses = Collections.unmodifiableMap(superClasses);
+    }
+
+    @NonNull
+    public File getJarFile() {
+        return mJarFile;
+    }
+
+    /**
+     * @return The fully qualified names of the classes of the jar that may be views, mapped
+     * to the fully qualified name of their super class
+     */
+    @NonNull
+    public Map<String, String> getSuperClasses() {
+        return mSuperClasses;
+    }
+}
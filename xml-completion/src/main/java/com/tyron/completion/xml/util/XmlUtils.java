@@ -413,8 +413,11 @@ public class XmlUtils {
             return XmlCompletionType.TAG;
         }
 
-        if (isInAttributeValue(parsed.getTextDocument()
-                                       .getText(), (int) cursor)) {
+        // the lexer starts at the node, the text before it cannot change its tokens
+        String text = parsed.getTextDocument()
+                .getText();
+        int start = Math.max(0, nodeAt.getStart());
+        if (isInAttributeValue(text.substring(start), (int) cursor - start)) {
             return XmlCompletionType.ATTRIBUTE_VALUE;
         }
         return XmlCompletionType.ATTRIBUTE;
@@ -0,0 +1,64 @@
+package com.tyron.completion.xml;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.bcel.classfile.JavaClass;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class BytecodeScannerTest {
+
+    @Test
+    public void testViewsAreResolvedAcrossJars() {
+        List<JavaClass> bootstrap = Arrays.asList(
+                BytecodeScanner.newClass("android.view.View", "java.lang.Object"),
+                BytecodeScanner.newClass("android.view.ViewGroup", "android.view.View"),
+                BytecodeScanner.newClass("android.app.Activity", "android.content.ContextWrapper"),
+                BytecodeScanner.newClass("android.os.Bundle", "java.lang.Object"));
+        List<JavaClass> base = Arrays.asList(
+                BytecodeScanner.newClass("com.base.BaseLayout", "android.view.ViewGroup"),
+                BytecodeScanner.newClass("com.base.Helper", "java.util.ArrayList"));
+        List<JavaClass> library = Arrays.asList(
+                BytecodeScanner.newClass("com.library.CustomLayout", "com.base.BaseLayout"),
+                BytecodeScanner.newClass("com.library.Nested", "com.library.CustomLayout"),
+                BytecodeScanner.newClass("com.library.Screen", "android.app.Activity"),
+                BytecodeScanner.newClass("com.library.Model", "java.lang.Object"));
+
+        Map<String, String> bootstrapHierarchy = BytecodeScanner.getHierarchy(bootstrap);
+        Map<String, String> baseHierarchy = BytecodeScanner.getHierarchy(base);
+        Map<String, String> libraryHierarchy = BytecodeScanner.getHierarchy(library);
+
+        // the classes that only lead to the java platform are never views
+        assertFalse(bootstrapHierarchy.containsKey("android.os.Bundle"));
+        assertFalse(baseHierarchy.containsKey("com.base.Helper"));
+        assertFalse(libraryHierarchy.containsKey("com.library.Model"));
+        // the others depend on the jars they extend
+        assertTrue(libraryHierarchy.containsKey("com.library.CustomLayout"));
+        assertTrue(libraryHierarchy.containsKey("com.library.Screen"));
+
+        Map<String, String> all = new HashMap<>();
+        all.putAll(bootstrapHierarchy);
+        all.putAll(baseHierarchy);
+        all.putAll(libraryHierarchy);
+        Set<String> viewClasses = BytecodeScanner.findViewClasses(all);
+
+        assertEquals(new HashSet<>(Arrays.asList("android.view.View", "android.view.ViewGroup",
+                "com.base.BaseLayout", "com.library.CustomLayout", "com.library.Nested")),
+                viewClasses);
+
+        // without the jar of its super class, the layout is not a view
+        Map<String, String> withoutBase = new HashMap<>();
+        withoutBase.putAll(bootstrapHierarchy);
+        withoutBase.putAll(libraryHierarchy);
+        assertFalse(BytecodeScanner.findViewClasses(withoutBase)
+                .contains("com.library.CustomLayout"));
+    }
+}
@@ -0,0 +1,204 @@
+package com.tyron.completion.xml.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+
+import com.tyron.completion.xml.model.XmlCompletionType;
+
+import org.eclipse.lemminx.dom.DOMAttr;
+import org.eclipse.lemminx.dom.DOMDocument;
+import org.eclipse.lemminx.dom.DOMElement;
+import org.eclipse.lemminx.dom.DOMNode;
+import org.eclipse.lemminx.dom.DOMParser;
+import org.eclipse.lemminx.uriresolver.URIResolverExtensionManager;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+
+/**
+ * Applies edits to a layout and checks that the document returned by
+ * {@link IncrementalDOMParser} gives the same answers at the cursor as a full parse of the
+ * edited contents.
+ */
+public class IncrementalDOMParserTest {
+
+    private static final String URI = "http://schemas.android.com/apk/res-auto";
+
+    private static final String LAYOUT =
+            "<LinearLayout xmlns:android=\"http://schemas.android.com/apk/res/android\"\n" +
+            "    android:layout_width=\"match_parent\">\n" +
+            "    <TextView\n" +
+            "        android:id=\"@+id/text\"\n" +
+            "        android:text=\"hello\"/>\n" +
+            "    <FrameLayout android:layout_width=\"wrap_content\">\n" +
+            "        <Button android:text=\"ok\"></Button>\n" +
+            "    </FrameLayout>\n" +
+            "</LinearLayout>";
+
+    private IncrementalDOMParser mParser;
+    private String mContents;
+
+    @Before
+    public void setup() {
+        mParser = new IncrementalDOMParser(URI);
+        mContents = LAYOUT;
+        IncrementalDOMParser.Result result = mParser.parse(mContents, 0);
+        assertEquals(0, result.toDocumentOffset(0));
+    }
+
+    @Test
+    public void testTypingAttributeValue() {
+        int cursor = insert("hello", " world");
+        IncrementalDOMParser.Result result = assertSameAsFullParse(cursor);
+        assertReparsed(result, cursor);
+        assertEquals(XmlCompletionType.ATTRIBUTE_VALUE, getCompletionType(result, cursor));
+
+        // the next keystroke is compared with the full parse, not with the last reparse
+        cursor = insert("hello world", "s");
+        assertReparsed(assertSameAsFullParse(cursor), cursor);
+    }
+
+    @Test
+    public void testTypingAttribute() {
+        int cursor = insert("<Button ", "android:gra ");
+        cursor--;
+        IncrementalDOMParser.Result result = assertSameAsFullParse(cursor);
+        assertReparsed(result, cursor);
+        assertEquals(XmlCompletionType.ATTRIBUTE, getCompletionType(result, cursor));
+    }
+
+    @Test
+    public void testTypingTag() {
+        int cursor = insert("<Button android:text=\"ok\"></Button>\n", "        <Ima");
+        IncrementalDOMParser.Result result = assertSameAsFullParse(cursor);
+        assertEquals(XmlCompletionType.TAG, getCompletionType(result, cursor));
+    }
+
+    @Test
+    public void testBrokenEndTag() {
+        mContents = mContents.replace("</Button>", "</Butto>");
+        int cursor = mContents.indexOf("</Butto>") + "</Butto".length();
+        assertSameAsFullParse(cursor);
+
+        cursor = insert("</Butto", "n");
+        assertSameAsFullParse(cursor);
+    }
+
+    @Test
+    public void testEditInRootTagParsesEverything() {
+        int cursor = insert("android:layout_width=\"match_parent\"", " android:o");
+        IncrementalDOMParser.Result result = assertSameAsFullParse(cursor);
+        assertEquals(cursor, result.toDocumentOffset(cursor));
+        assertEquals(mContents, result.getDocument().getText());
+    }
+
+    @Test
+    public void testSameContentsReuseTheResult() {
+        int cursor = insert("hello", "!");
+        IncrementalDOMParser.Result result = mParser.parse(mContents, cursor);
+        assertSame(result, mParser.parse(mContents, cursor - 1));
+        assertSameAsFullParse(cursor - 1);
+    }
+
+    /**
+     * Inserts text after the first occurrence of the given text
+     *
+     * @return the offset after the inserted text
+     */
+    private int insert(String after, String text) {
+        int offset = mContents.indexOf(after);
+        assertNotEquals(-1, offset);
+        offset += after.length();
+        mContents = mContents.substring(0, offset) + text + mContents.substring(offset);
+        return offset + text.length();
+    }
+
+    private static void assertReparsed(IncrementalDOMParser.Result result, int cursor) {
+        assertNotEquals("Only the edited element should be parsed", cursor,
+                        result.toDocumentOffset(cursor));
+    }
+
+    private IncrementalDOMParser.Result assertSameAsFullParse(int cursor) {
+        IncrementalDOMParser.Result result = mParser.parse(mContents, cursor);
+        DOMDocument expected = DOMParser.getInstance()
+                .parse(mContents, URI, new URIResolverExtensionManager());
+        DOMDocument actual = result.getDocument();
+        int documentCursor = result.toDocumentOffset(cursor);
+        int shift = cursor - documentCursor;
+
+        DOMNode expectedNode = expected.findNodeAt(cursor);
+        DOMNode actualNode = actual.findNodeAt(documentCursor);
+        assertNotNull(expectedNode);
+        assertNotNull(actualNode);
+        assertSameNode(expectedNode, actualNode, shift);
+
+        DOMElement expectedParent = expectedNode.getParentElement();
+        DOMElement actualParent = actualNode.getParentElement();
+        assertEquals(expectedParent == null, actualParent == null);
+        if (expectedParent != null) {
+            assertEquals(expectedParent.getTagName(), actualParent.getTagName());
+        }
+
+        assertEquals(XmlUtils.getCompletionType(expected, cursor),
+                     XmlUtils.getCompletionType(actual, documentCursor));
+        return result;
+    }
+
+    private static XmlCompletionType getCompletionType(IncrementalDOMParser.Result result,
+                                                       int cursor) {
+        return XmlUtils.getCompletionType(result.getDocument(), result.toDocumentOffset(cursor));
+    }
+
+    private static void assertSameNode(DOMNode expected, DOMNode actual, int shift) {
+        assertEquals(expected.getNodeType(), actual.getNodeType());
+        assertEquals(expected.getNodeName(), actual.getNodeName());
+        assertEquals(expected.getStart(), actual.getStart() + shift);
+        assertEquals(expected.getEnd(), actual.getEnd() + shift);
+        assertEquals(expected.isClosed(), actual.isClosed());
+        if (!(expected instanceof DOMElement)) {
+            return;
+        }
+
+        DOMElement expectedElement = (DOMElement) expected;
+        DOMElement actualElement = (DOMElement) actual;
+        assertEquals(expectedElement.getTagName(), actualElement.getTagName());
+        assertEquals(expectedElement.isStartTagClosed(), actualElement.isStartTagClosed());
+        assertEquals(expectedElement.getStartTagCloseOffset(),
+                     shift(actualElement.getStartTagCloseOffset(), shift));
+        assertEquals(expectedElement.getEndTagOpenOffset(),
+                     shift(actualElement.getEndTagOpenOffset(), shift));
+
+        List<DOMAttr> expectedAttributes = expectedElement.getAttributeNodes();
+        List<DOMAttr> actualAttributes = actualElement.getAttributeNodes();
+        assertEquals(expectedAttributes == null, actualAttributes == null);
+        if (expectedAttributes == null) {
+            return;
+        }
+        assertEquals(expectedAttributes.size(), actualAttributes.size());
+        for (int i = 0; i < expectedAttributes.size(); i++) {
+            DOMAttr expectedAttribute = expectedAttributes.get(i);
+            DOMAttr actualAttribute = actualAttributes.get(i);
+            assertEquals(expectedAttribute.getName(), actualAttribute.getName());
+            assertEquals(expectedAttribute.getValue(), actualAttribute.getValue());
+            assertEquals(expectedAttribute.getStart(), actualAttribute.getStart() + shift);
+            assertEquals(expectedAttribute.getEnd(), actualAttribute.getEnd() + shift);
+            DOMNode expectedValue = expectedAttribute.getNodeAttrValue();
+            DOMNode actualValue = actualAttribute.getNodeAttrValue();
+            assertEquals(expectedValue == null, actualValue == null);
+            if (expectedValue != null) {
+                assertEquals(expectedValue.getStart(), actualValue.getStart() + shift);
+                assertEquals(expectedValue.getEnd(), actualValue.getEnd() + shift);
+            }
+        }
+    }
+
+    /**
+     * Offsets that are not set are kept as they are
+     */
+    private static int shift(int offset, int shift) {
+        return offset == DOMNode.NULL_VALUE ? offset : offset + shift;
+    }
+}
@@ -0,0 +1,195 @@
+package com.tyron.completion.xml.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import org.apache.bcel.Const;
+import org.apache.bcel.classfile.ClassFormatException;
+import org.apache.bcel.classfile.ClassParser;
+import org.apache.bcel.classfile.JavaClass;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.function.Supplier;
+
+/**
+ * Parses class files with {@link PartialClassParser} and compares the result with a full
+ * parse by BCEL. A constant pool entry that is skipped with the wrong length shifts every
+ * entry after it, so the names of the class and of its super class would not match.
+ */
+public class PartialClassParserTest {
+
+    // the constants and the lambdas put long, double, method handle, method type and
+    // invoke dynamic entries in the constant pool of this class
+    private static final long LONG_CONSTANT = 1234567890123L;
+    private static final double DOUBLE_CONSTANT = 3.5;
+    private static final Supplier<String> METHOD_REFERENCE = String::new;
+    private static final Runnable LAMBDA = () -> System.getProperty("user.dir");
+
+    @Test
+    public void testEveryConstantPoolTag() throws IOException {
+        byte[] bytes = createClassWithEveryTag();
+
+        JavaClass javaClass = assertSameAsFullParse(bytes, "com/example/Sample.class");
+        assertEquals("com.example.Sample", javaClass.getClassName());
+        assertEquals("android.view.View", javaClass.getSuperclassName());
+    }
+
+    @Test
+    public void testCompiledClasses() throws IOException {
+        assertSameAsFullParse(readClass(PartialClassParserTest.class),
+                "com/tyron/completion/xml/util/PartialClassParserTest.class");
+        assertSameAsFullParse(readClass(String.class), "java/lang/String.class");
+        assertSameAsFullParse(readClass(java.util.HashMap.class), "java/util/HashMap.class");
+        assertSameAsFullParse(readClass(java.lang.invoke.MethodHandles.class),
+                "java/lang/invoke/MethodHandles.class");
+    }
+
+    @Test(expected = ClassFormatException.class)
+    public void testInvalidTag() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(Const.JVM_CLASSFILE_MAGIC);
+        out.writeShort(0);
+        out.writeShort(55);
+        out.writeShort(2);
+        out.writeByte(2); // not a constant pool tag
+
+        new PartialClassParser(new ByteArrayInputStream(bytes.toByteArray()), "Invalid.class")
+                .parse();
+    }
+
+    private static JavaClass assertSameAsFullParse(byte[] bytes, String fileName)
+            throws IOException {
+        JavaClass expected = new ClassParser(new ByteArrayInputStream(bytes), fileName).parse();
+        JavaClass actual =
+                new PartialClassParser(new ByteArrayInputStream(bytes), fileName).parse();
+
+        assertEquals(expected.getClassName(), actual.getClassName());
+        assertEquals(expected.getSuperclassName(), actual.getSuperclassName());
+        assertEquals(expected.getAccessFlags(), actual.getAccessFlags());
+        assertEquals(expected.getMajor(), actual.getMajor());
+        assertEquals(expected.getMinor(), actual.getMinor());
+        return actual;
+    }
+
+    private static byte[] readClass(Class<?> clazz) throws IOException {
+        String name = clazz.getName().replace('.', '/') + ".class";
+        try (InputStream inputStream = clazz.getResourceAsStream("/" + name)) {
+            assertNotNull(name, inputStream);
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                bytes.write(buffer, 0, read);
+            }
+            return bytes.toByteArray();
+        }
+    }
+
+    /**
+     * Writes a class with one constant pool entry of every tag. The entries of the class and
+     * of its super class come after the long and double entries, which take two slots.
+     */
+    private static byte[] createClassWithEveryTag() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(Const.JVM_CLASSFILE_MAGIC);
+        out.writeShort(0);
+        // java 11, the first version with dynamic constants
+        out.writeShort(55);
+
+        out.writeShort(27);
+        // 1
+        out.writeByte(Const.CONSTANT_Utf8);
+        out.writeUTF("com/example/Sample");
+        // 2 and 3
+        out.writeByte(Const.CONSTANT_Long);
+        out.writeLong(LONG_CONSTANT);
+        // 4 and 5
+        out.writeByte(Const.CONSTANT_Double);
+        out.writeDouble(DOUBLE_CONSTANT);
+        // 6
+        out.writeByte(Const.CONSTANT_Integer);
+        out.writeInt(42);
+        // 7
+        out.writeByte(Const.CONSTANT_Float);
+        out.writeFloat(1.5f);
+        // 8
+        out.writeByte(Const.CONSTANT_Utf8);
+        out.writeUTF("run");
+        // 9
+        out.writeByte(Const.CONSTANT_Utf8);
+        out.writeUTF("()V");
+        // 10
+        out.writeByte(Const.CONSTANT_NameAndType);
+        out.writeShort(8);
+        out.writeShort(9);
+        // 11
+        out.writeByte(Const.CONSTANT_Utf8);
+        out.writeUTF("android/view/View");
+        // 12
+        out.writeByte(Const.CONSTANT_Class);
+        out.writeShort(11);
+        // 13
+        out.writeByte(Const.CONSTANT_Methodref);
+        out.writeShort(12);
+        out.writeShort(10);
+        // 14
+        out.writeByte(Const.CONSTANT_Fieldref);
+        out.writeShort(12);
+        out.writeShort(10);
+        // 15
+        out.writeByte(Const.CONSTANT_InterfaceMethodref);
+        out.writeShort(12);
+        out.writeShort(10);
+        // 16
+        out.writeByte(Const.CONSTANT_String);
+        out.writeShort(8);
+        // 17
+        out.writeByte(Const.CONSTANT_MethodHandle);
+        out.writeByte(Const.REF_invokeStatic);
+        out.writeShort(13);
+        // 18
+        out.writeByte(Const.CONSTANT_MethodType);
+        out.writeShort(9);
+        // 19
+        out.writeByte(Const.CONSTANT_InvokeDynamic);
+        out.writeShort(0);
+        out.writeShort(10);
+        // 20
+        out.writeByte(Const.CONSTANT_Dynamic);
+        out.writeShort(0);
+        out.writeShort(10);
+        // 21
+        out.writeByte(Const.CONSTANT_Utf8);
+        out.writeUTF("com/example");
+        // 22
+        out.writeByte(Const.CONSTANT_Module);
+        out.writeShort(21);
+        // 23
+        out.writeByte(Const.CONSTANT_Package);
+        out.writeShort(21);
+        // 24 and 25
+        out.writeByte(Const.CONSTANT_Long);
+        out.writeLong(-1);
+        // 26
+        out.writeByte(Const.CONSTANT_Class);
+        out.writeShort(1);
+
+        out.writeShort(Const.ACC_PUBLIC | Const.ACC_SUPER);
+        out.writeShort(26);
+        out.writeShort(12);
+        // interfaces, fields, methods and attributes
+        out.writeShort(0);
+        out.writeShort(0);
+        out.writeShort(0);
+        out.writeShort(0);
+        out.flush();
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,135 @@
+package com.tyron.completion.xml.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class ViewIndexFileTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private File mJar;
+    private File mIndexDirectory;
+    private Map<String, String> mSuperClasses;
+
+    @Before
+    public void setup() throws IOException {
+        mJar = temporaryFolder.newFile("library.jar");
+        Files.write(mJar.toPath(), "first".getBytes(StandardCharsets.UTF_8));
+        mIndexDirectory = new File(temporaryFolder.getRoot(), "index");
+
+        mSuperClasses = new LinkedHashMap<>();
+        mSuperClasses.put("com.example.CustomView", "android.view.View");
+        mSuperClasses.put("com.example.CustomLayout", "android.widget.FrameLayout");
+        mSuperClasses.put("com.example.CustomActivity", "android.app.Activity");
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        ViewIndexFile created = ViewIndexFile.create(mJar, mIndexDirectory, mSuperClasses);
+        ViewIndexFile loaded = ViewIndexFile.load(mJar, mIndexDirectory);
+
+        assertNotNull(loaded);
+        assertEquals(mJar, loaded.getJarFile());
+        assertEquals(created.getSuperClasses(), loaded.getSuperClasses());
+        // the order of the classes is kept
+        assertEquals(Arrays.asList(mSuperClasses.keySet().toArray()),
+                Arrays.asList(loaded.getSuperClasses().keySet().toArray()));
+    }
+
+    @Test
+    public void testTouchedJarIsReused() throws IOException {
+        ViewIndexFile.create(mJar, mIndexDirectory, mSuperClasses);
+        assertTrue(mJar.setLastModified(mJar.lastModified() + 10_000));
+
+        ViewIndexFile loaded = ViewIndexFile.load(mJar, mIndexDirectory);
+        assertNotNull(loaded);
+        assertEquals(mSuperClasses, loaded.getSuperClasses());
+
+        // the new time is saved, the index is still valid after that
+        loaded = ViewIndexFile.load(mJar, mIndexDirectory);
+        assertNotNull(loaded);
+        assertEquals(mSuperClasses, loaded.getSuperClasses());
+    }
+
+    @Test
+    public void testChangedJarIsRejected() throws IOException {
+        ViewIndexFile.create(mJar, mIndexDirectory, mSuperClasses);
+        long lastModified = mJar.lastModified();
+        Files.write(mJar.toPath(), "second".getBytes(StandardCharsets.UTF_8));
+        assertTrue(mJar.setLastModified(lastModified + 10_000));
+
+        assertNull(ViewIndexFile.load(mJar, mIndexDirectory));
+    }
+
+    @Test
+    public void testChangedJarWithSameSizeIsRejected() throws IOException {
+        ViewIndexFile.create(mJar, mIndexDirectory, mSuperClasses);
+        long lastModified = mJar.lastModified();
+        Files.write(mJar.toPath(), "other".getBytes(StandardCharsets.UTF_8));
+        assertTrue(mJar.setLastModified(lastModified + 10_000));
+
+        assertNull(ViewIndexFile.load(mJar, mIndexDirectory));
+    }
+
+    @Test
+    public void testMissingIndex() {
+        assertNull(ViewIndexFile.load(mJar, mIndexDirectory));
+    }
+
+    @Test
+    public void testBadMagicIsRejected() throws IOException {
+        ViewIndexFile.create(mJar, mIndexDirectory, mSuperClasses);
+        try (RandomAccessFile file = new RandomAccessFile(getIndexFile(), "rw")) {
+            file.writeInt(0xCAFEBABE);
+        }
+
+        assertNull(ViewIndexFile.load(mJar, mIndexDirectory));
+    }
+
+    @Test
+    public void testTruncatedIndexIsRejected() throws IOException {
+        ViewIndexFile.create(mJar, mIndexDirectory, mSuperClasses);
+        File indexFile = getIndexFile();
+        try (RandomAccessFile file = new RandomAccessFile(indexFile, "rw")) {
+            file.setLength(file.length() - 5);
+        }
+
+        assertNull(ViewIndexFile.load(mJar, mIndexDirectory));
+    }
+
+    @Test
+    public void testCorruptIndexIsRejected() throws IOException {
+        ViewIndexFile.create(mJar, mIndexDirectory, mSuperClasses);
+        // a class count far larger than the entries in the file
+        try (RandomAccessFile file = new RandomAccessFile(getIndexFile(), "rw")) {
+            file.seek(4 + 4 + 8 + 8 + 16);
+            file.writeInt(Integer.MAX_VALUE);
+        }
+
+        assertNull(ViewIndexFile.load(mJar, mIndexDirectory));
+    }
+
+    private File getIndexFile() {
+        File[] files = mIndexDirectory.listFiles((dir, name) -> name.endsWith(".vidx"));
+        assertNotNull(files);
+        assertEquals(1, files.length);
+        return files[0];
+    }
+}